@@ -0,0 +1,56 @@
+package com.ninja.BankStAnalysis.app.api;
+
+import com.ninja.BankStAnalysis.core.port.in.BankStAnalysisServicePort;
+import jakarta.validation.constraints.NotNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/v1/realms/{realmId}")
+@RequiredArgsConstructor
+@Slf4j
+public class BankStatementBatchApiImpl {
+
+    private final BankStAnalysisServicePort bankStAnalysisServicePort;
+
+    // Bulk load of partner dumps: the i-th userId owns the i-th file
+    @PostMapping(value = "/bankStatements/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<Map<String, Object>> batchLoad(
+            @PathVariable("realmId") @NotNull String realmId,
+            @RequestParam("userIds") @NotNull List<Integer> userIds,
+            @RequestParam("bankStatements") @NotNull List<MultipartFile> bankStatements) {
+
+        log.info("Processing batch of {} bank statements in realmId: {}", bankStatements.size(), realmId);
+
+        try {
+            Map<String, Object> result = bankStAnalysisServicePort.processBankStatementBatch(realmId, userIds, bankStatements);
+            return ResponseEntity.ok(result);
+
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid batch input in realmId: {} - {}", realmId, e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(Map.of(
+                            "error", "Invalid request",
+                            "message", e.getMessage(),
+                            "status", "BAD_REQUEST"
+                    ));
+
+        } catch (Exception e) {
+            log.error("Error processing bank statement batch in realmId: {}", realmId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of(
+                            "error", "Internal server error",
+                            "message", "An unexpected error occurred while loading the batch",
+                            "status", "INTERNAL_SERVER_ERROR"
+                    ));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.ninja.BankStAnalysis.app.api;
+
+import com.ninja.BankStAnalysis.core.port.in.MerkleProofServicePort;
+import com.ninja.BankStAnalysis.infra.exceptions.ErrorCode;
+import com.ninja.BankStAnalysis.infra.exceptions.ServiceRuntimeException;
+import com.ninja.BankStAnalysis.infra.nao.model.MerkleProofVerificationRequest;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/v1/realms/{realmId}/users/{userId}/bankStatements/{statementId}/proofs")
+@RequiredArgsConstructor
+@Slf4j
+public class MerkleProofApiImpl {
+
+    private final MerkleProofServicePort merkleProofServicePort;
+
+    @GetMapping("")
+    public ResponseEntity<Map<String, Object>> generateProof(
+            @PathVariable("realmId") @NotNull String realmId,
+            @PathVariable("userId") @NotNull Integer userId,
+            @PathVariable("statementId") @NotNull Long statementId,
+            @RequestParam("token") @NotNull String token) {
+
+        log.info("Generating inclusion proof for statementId: {} of userId: {}", statementId, userId);
+
+        try {
+            return ResponseEntity.ok(merkleProofServicePort.generateProof(userId, realmId, statementId, token));
+
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid proof request for statementId: {} - {}", statementId, e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Invalid request: " + e.getMessage(),
+                            "status", "BAD_REQUEST"));
+
+        } catch (Exception e) {
+            if (e instanceof ServiceRuntimeException expired && expired.getErrorCode() == ErrorCode.RS_ERROR_0004) {
+                log.warn("Proof requested for expired statementId: {} - {}", statementId, e.getMessage());
+                return ResponseEntity.status(HttpStatus.GONE)
+                        .body(Map.of("error", e.getMessage(),
+                                "status", "GONE"));
+            }
+            log.error("Failed to generate proof for statementId: {}, userId: {}", statementId, userId, e);
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", "An unexpected error occurred while generating the proof",
+                            "status", "INTERNAL_SERVER_ERROR"));
+        }
+    }
+
+    @PostMapping("/verify")
+    public ResponseEntity<Map<String, Object>> verifyProof(
+            @PathVariable("realmId") @NotNull String realmId,
+            @PathVariable("userId") @NotNull Integer userId,
+            @PathVariable("statementId") @NotNull Long statementId,
+            @Valid @RequestBody MerkleProofVerificationRequest request) {
+
+        log.info("Verifying inclusion proof for statementId: {} of userId: {}", statementId, userId);
+
+        try {
+            return ResponseEntity.ok(merkleProofServicePort.verifyProof(userId, realmId, statementId, request.getToken(), request.getProof()));
+
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid verify request for statementId: {} - {}", statementId, e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Invalid request: " + e.getMessage(),
+                            "status", "BAD_REQUEST"));
+
+        } catch (Exception e) {
+            log.error("Failed to verify proof for statementId: {}, userId: {}", statementId, userId, e);
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", "An unexpected error occurred while verifying the proof",
+                            "status", "INTERNAL_SERVER_ERROR"));
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.ninja.BankStAnalysis.core.ananomyzer.core;
+
+import com.ninja.BankStAnalysis.core.model.TransactionColumns;
+import com.ninja.BankStAnalysis.core.modelHelper.BankStatementHashType;
+import com.ninja.BankStAnalysis.core.modelHelper.TokenEncoding;
+
+import java.util.Arrays;
+
+/**
+ * Writes the versioned binary token input of a row or account header into a reusable buffer.
+ *
+ * <p>Every input starts with the encoding version and the section ordinal, followed by the fields the
+ * section defines, always in that order and each led by a tag byte: absent, exact (epoch day as int,
+ * paise as long, or UTF-8 text with an int length) or raw (the unparsed date text, or the bits of an amount
+ * that has no exact paise value). Multi-byte values are big-endian. An account header is its accountNo,
+ * the accountType in accountXns, and the row count; its token hashes the header followed by the row digests.</p>
+ *
+ * <p>The layout only depends on the normalized values, so extractor or serializer changes cannot move tokens.</p>
+ *
+ * <p>A single field of a row is encoded the same way, led by the version, the section ordinal and the field's
+ * {@link TransactionColumns} flag, as the input of that field's leaf hash.</p>
+ */
+public final class CanonicalTokenEncoder {
+
+	private static final int VERSION = TokenEncoding.CANONICAL_V1.getVersion();
+
+	private static final byte ABSENT = 0;
+	private static final byte EXACT = 1;
+	private static final byte RAW = 2;
+
+	// Row fields per section, in encoding order
+	private static final int[] ACCOUNT_XNS_FIELDS = {
+			TransactionColumns.DATE, TransactionColumns.AMOUNT, TransactionColumns.BALANCE, TransactionColumns.NARRATION
+	};
+	private static final int[] BANK_TRANSACTION_FIELDS = {
+			TransactionColumns.DATE, TransactionColumns.AMOUNT, TransactionColumns.BALANCE
+	};
+	private static final int[] EOD_BALANCE_FIELDS = {
+			TransactionColumns.DATE, TransactionColumns.BALANCE
+	};
+
+	private byte[] bytes = new byte[256];
+	private int size;
+
+	public byte[] bytes() {
+		return bytes;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void encodeRow(BankStatementHashType section, TransactionColumns columns, int row) {
+		size = 0;
+		writeByte(VERSION);
+		writeByte(section.ordinal());
+		for (int field : fields(section)) {
+			writeField(field, columns, row);
+		}
+	}
+
+	// The index-th field of the section's rows, see fieldCount
+	public void encodeField(BankStatementHashType section, TransactionColumns columns, int row, int index) {
+		int field = fields(section)[index];
+		size = 0;
+		writeByte(VERSION);
+		writeByte(section.ordinal());
+		writeByte(field);
+		writeField(field, columns, row);
+	}
+
+	// Fields a row of the section has, in encoding order
+	public static int fieldCount(BankStatementHashType section) {
+		return fields(section).length;
+	}
+
+	public void encodeAccount(BankStatementHashType section, String accountNo, String accountType, int rowCount) {
+		size = 0;
+		writeByte(VERSION);
+		writeByte(section.ordinal());
+		writeText(accountNo);
+		if (section == BankStatementHashType.ACCOUNT_XNS) {
+			writeText(accountType);
+		}
+		writeInt(rowCount);
+	}
+
+	private static int[] fields(BankStatementHashType section) {
+		return switch (section) {
+			case ACCOUNT_XNS -> ACCOUNT_XNS_FIELDS;
+			case BANK_TRANSACTION -> BANK_TRANSACTION_FIELDS;
+			case EOD_BALANCE -> EOD_BALANCE_FIELDS;
+		};
+	}
+
+	private void writeField(int field, TransactionColumns columns, int row) {
+		if (!columns.has(row, field)) {
+			writeByte(ABSENT);
+			return;
+		}
+		switch (field) {
+			case TransactionColumns.DATE -> writeDate(columns, row);
+			case TransactionColumns.AMOUNT -> writeAmount(columns.getAmountMinorUnits(row), columns, row, field);
+			case TransactionColumns.BALANCE -> writeAmount(columns.getBalanceMinorUnits(row), columns, row, field);
+			case TransactionColumns.NARRATION -> writeText(columns.getNarration(row));
+			default -> throw new IllegalArgumentException("Unknown field: " + field);
+		}
+	}
+
+	private void writeDate(TransactionColumns columns, int row) {
+		int epochDay = columns.getEpochDay(row);
+		if (epochDay != TransactionColumns.NO_EPOCH_DAY) {
+			writeByte(EXACT);
+			writeInt(epochDay);
+			return;
+		}
+		String date = columns.getDate(row);
+		if (date == null) {
+			writeByte(ABSENT);
+			return;
+		}
+		writeByte(RAW);
+		writeUtf8(date);
+	}
+
+	private void writeAmount(long minorUnits, TransactionColumns columns, int row, int field) {
+		if (minorUnits != TransactionColumns.NO_MINOR_UNITS) {
+			writeByte(EXACT);
+			writeLong(minorUnits);
+			return;
+		}
+		double value = field == TransactionColumns.AMOUNT ? columns.getAmount(row) : columns.getBalance(row);
+		writeByte(RAW);
+		writeLong(Double.doubleToLongBits(value)); // Canonical NaN, keeps -0.0
+	}
+
+	private void writeText(String text) {
+		if (text == null) {
+			writeByte(ABSENT);
+			return;
+		}
+		writeByte(EXACT);
+		writeUtf8(text);
+	}
+
+	// Int length followed by the UTF-8 bytes, encoded in place; unpaired surrogates become '?' as in String.getBytes
+	private void writeUtf8(String text) {
+		int lengthAt = size;
+		ensureCapacity(4 + text.length() * 3);
+		size += 4;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c < 0x80) {
+				bytes[size++] = (byte) c;
+			} else if (c < 0x800) {
+				bytes[size++] = (byte) (0xC0 | c >> 6);
+				bytes[size++] = (byte) (0x80 | c & 0x3F);
+			} else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, text.charAt(++i));
+				bytes[size++] = (byte) (0xF0 | codePoint >> 18);
+				bytes[size++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+				bytes[size++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+				bytes[size++] = (byte) (0x80 | codePoint & 0x3F);
+			} else if (Character.isSurrogate(c)) {
+				bytes[size++] = '?';
+			} else {
+				bytes[size++] = (byte) (0xE0 | c >> 12);
+				bytes[size++] = (byte) (0x80 | c >> 6 & 0x3F);
+				bytes[size++] = (byte) (0x80 | c & 0x3F);
+			}
+		}
+		putInt(lengthAt, size - lengthAt - 4);
+	}
+
+	private void writeByte(int value) {
+		ensureCapacity(1);
+		bytes[size++] = (byte) value;
+	}
+
+	private void writeInt(int value) {
+		ensureCapacity(4);
+		putInt(size, value);
+		size += 4;
+	}
+
+	private void writeLong(long value) {
+		ensureCapacity(8);
+		putInt(size, (int) (value >>> 32));
+		putInt(size + 4, (int) value);
+		size += 8;
+	}
+
+	private void putInt(int at, int value) {
+		bytes[at] = (byte) (value >>> 24);
+		bytes[at + 1] = (byte) (value >>> 16);
+		bytes[at + 2] = (byte) (value >>> 8);
+		bytes[at + 3] = (byte) value;
+	}
+
+	private void ensureCapacity(int extra) {
+		if (size + extra > bytes.length) {
+			bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package com.ninja.BankStAnalysis.core.ananomyzer.core;
+
+import java.util.Arrays;
+
+/**
+ * Append-only Merkle accumulator (Merkle Mountain Range) over transaction digests. The state is the leaf count
+ * and one perfect-tree peak per set bit of it, highest first, so appending costs amortized one hash per leaf
+ * and two accumulators over the same leaves always have identical peaks.
+ *
+ * <p>A parent is SHA-256(left || right). The count and the peaks together commit to every leaf in order, so a
+ * statement that extends an earlier one is recognised by reaching the earlier state after its first leaves.</p>
+ */
+public final class MerkleMountainRange {
+
+	private static final int DIGEST_LENGTH = TokenEngine.DIGEST_LENGTH;
+	private static final int MAX_PEAKS = Long.SIZE;
+
+	private final byte[] peaks = new byte[MAX_PEAKS * DIGEST_LENGTH];
+	private long leafCount;
+
+	public long getLeafCount() {
+		return leafCount;
+	}
+
+	public int getPeakCount() {
+		return Long.bitCount(leafCount);
+	}
+
+	// Appends the count digests at digests[offset..offset+count*32), in order
+	public void append(byte[] digests, int offset, int count) {
+		TokenEngine engine = TokenEngine.current();
+		for (int i = 0; i < count; i++) {
+			int top = getPeakCount() * DIGEST_LENGTH;
+			System.arraycopy(digests, offset + i * DIGEST_LENGTH, peaks, top, DIGEST_LENGTH);
+
+			// Every trailing one of the old count is a peak of the same height as the new one
+			for (int merges = Long.numberOfTrailingZeros(~leafCount); merges > 0; merges--) {
+				top -= DIGEST_LENGTH;
+				engine.hash(peaks, top, 2 * DIGEST_LENGTH, peaks, top);
+			}
+			leafCount++;
+		}
+	}
+
+	public byte[] getPeaks() {
+		return Arrays.copyOf(peaks, getPeakCount() * DIGEST_LENGTH);
+	}
+
+	// True when this accumulator holds exactly the leaves that produced the given state
+	public boolean matches(long leafCount, byte[] peaks) {
+		return this.leafCount == leafCount && peaks != null
+				&& Arrays.equals(this.peaks, 0, getPeakCount() * DIGEST_LENGTH, peaks, 0, peaks.length);
+	}
+}
@@ -0,0 +1,157 @@
+package com.ninja.BankStAnalysis.core.ananomyzer.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Bottom-up Merkle root over leaf digests stored back to back in one array, computing the same root as a
+ * {@link PartialMerkleTree} built with every leaf included: double SHA-256 of each pair in bitcoin byte order,
+ * the last node of an odd level paired with itself, and a level with two identical siblings rejected.
+ *
+ * <p>Each level is hashed into the front of the level below it, so nothing is allocated per node. Digests are
+ * read and written in the order {@code Sha256Hash#getBytes()} uses.</p>
+ *
+ * <p>Large trees can be hashed on a pool: the leaves are cut into aligned ranges of 2^h leaves, each range is
+ * folded exactly h levels on its own (a short last range keeps pairing its top node with itself, as the full
+ * tree would), and the range roots are then folded as the level h of the tree. The root is the sequential one.</p>
+ */
+public final class MerkleRootBuilder {
+
+	// Smallest subtree worth a task of its own
+	private static final int MIN_SUBTREE_LEAVES = 1 << 12;
+
+	private static final int DIGEST_LENGTH = TokenEngine.DIGEST_LENGTH;
+
+	private MerkleRootBuilder() {
+	}
+
+	/**
+	 * Writes the root of {@code count} leaves at {@code nodes[0..count*32)} to {@code out[outOffset..outOffset+32)}.
+	 * The leaves are overwritten by the interior levels.
+	 */
+	public static void rootInPlace(byte[] nodes, int count, byte[] out, int outOffset) {
+		checkCount(count);
+		toInternalOrder(nodes, 0, count);
+		fold(nodes, 0, count, treeHeight(count));
+		writeRoot(nodes, out, outOffset);
+	}
+
+	/**
+	 * Same as {@link #rootInPlace(byte[], int, byte[], int)}, hashing independent subtrees on {@code pool}.
+	 * Trees too small to split are hashed on the calling thread.
+	 */
+	public static void rootInPlace(byte[] nodes, int count, byte[] out, int outOffset, ForkJoinPool pool) {
+		checkCount(count);
+		int height = subtreeHeight(count, pool.getParallelism());
+		if (height < 0) {
+			rootInPlace(nodes, count, out, outOffset);
+			return;
+		}
+
+		int subtreeLeaves = 1 << height;
+		int subtrees = (count + subtreeLeaves - 1) >> height;
+		List<ForkJoinTask<?>> tasks = new ArrayList<>(subtrees);
+		for (int subtree = 0; subtree < subtrees; subtree++) {
+			int offset = subtree * subtreeLeaves * DIGEST_LENGTH;
+			int leaves = Math.min(subtreeLeaves, count - subtree * subtreeLeaves);
+			tasks.add(ForkJoinTask.adapt(() -> {
+				toInternalOrder(nodes, offset, leaves);
+				fold(nodes, offset, leaves, height);
+			}));
+		}
+		if (ForkJoinTask.inForkJoinPool()) { // Already a task of some pool, let its workers steal the subtrees
+			ForkJoinTask.invokeAll(tasks);
+		} else {
+			pool.submit(() -> ForkJoinTask.invokeAll(tasks)).join();
+		}
+
+		// Subtree roots form level h; move them together and finish the tree
+		for (int subtree = 1; subtree < subtrees; subtree++) {
+			System.arraycopy(nodes, subtree * subtreeLeaves * DIGEST_LENGTH, nodes, subtree * DIGEST_LENGTH, DIGEST_LENGTH);
+		}
+		fold(nodes, 0, subtrees, treeHeight(subtrees));
+		writeRoot(nodes, out, outOffset);
+	}
+
+	// Root of the leaves at leaves[offset..offset+count*32), leaving them untouched
+	public static byte[] root(byte[] leaves, int offset, int count) {
+		byte[] nodes = new byte[count * DIGEST_LENGTH];
+		System.arraycopy(leaves, offset, nodes, 0, nodes.length);
+		byte[] root = new byte[DIGEST_LENGTH];
+		rootInPlace(nodes, count, root, 0);
+		return root;
+	}
+
+	// Height of the subtrees to hash concurrently, about four per worker; -1 when the tree is not worth splitting
+	private static int subtreeHeight(int count, int parallelism) {
+		if (parallelism < 2 || count < 2 * MIN_SUBTREE_LEAVES) return -1;
+		int height = Integer.numberOfTrailingZeros(MIN_SUBTREE_LEAVES);
+		while ((count >> (height + 1)) >= parallelism * 4) {
+			height++;
+		}
+		return height;
+	}
+
+	// Levels above count leaves
+	private static int treeHeight(int count) {
+		return 32 - Integer.numberOfLeadingZeros(count - 1);
+	}
+
+	/**
+	 * Folds the {@code width} nodes at {@code nodes[offset..]} into their parents for {@code levels} levels, leaving
+	 * the top node at {@code offset}. A single node below the requested height is paired with itself like the last
+	 * node of any odd level.
+	 */
+	private static void fold(byte[] nodes, int offset, int width, int levels) {
+		TokenEngine engine = TokenEngine.current();
+		byte[] pair = null;
+		for (int level = 0; level < levels; level++) {
+			for (int parent = 0; parent < (width + 1) / 2; parent++) {
+				int left = offset + parent * 2 * DIGEST_LENGTH;
+				int at = offset + parent * DIGEST_LENGTH;
+				if (parent * 2 + 1 < width) {
+					if (Arrays.equals(nodes, left, left + DIGEST_LENGTH, nodes, left + DIGEST_LENGTH, left + 2 * DIGEST_LENGTH)) {
+						throw new IllegalArgumentException("Invalid merkle tree with duplicated left/right branches");
+					}
+					engine.hash(nodes, left, 2 * DIGEST_LENGTH, nodes, at);
+				} else {
+					if (pair == null) pair = new byte[2 * DIGEST_LENGTH];
+					System.arraycopy(nodes, left, pair, 0, DIGEST_LENGTH);
+					System.arraycopy(nodes, left, pair, DIGEST_LENGTH, DIGEST_LENGTH);
+					engine.hash(pair, 0, pair.length, nodes, at);
+				}
+				engine.hash(nodes, at, DIGEST_LENGTH, nodes, at);
+			}
+			width = (width + 1) / 2;
+		}
+	}
+
+	private static void checkCount(int count) {
+		if (count < 1) {
+			throw new IllegalArgumentException("A Merkle tree needs at least one leaf");
+		}
+	}
+
+	// Hash in the internal byte order of the tree and only turn the root back
+	private static void toInternalOrder(byte[] nodes, int offset, int count) {
+		for (int i = 0; i < count; i++) {
+			reverse(nodes, offset + i * DIGEST_LENGTH);
+		}
+	}
+
+	private static void writeRoot(byte[] nodes, byte[] out, int outOffset) {
+		reverse(nodes, 0);
+		System.arraycopy(nodes, 0, out, outOffset, DIGEST_LENGTH);
+	}
+
+	private static void reverse(byte[] nodes, int offset) {
+		for (int i = offset, j = offset + DIGEST_LENGTH - 1; i < j; i++, j--) {
+			byte b = nodes[i];
+			nodes[i] = nodes[j];
+			nodes[j] = b;
+		}
+	}
+}
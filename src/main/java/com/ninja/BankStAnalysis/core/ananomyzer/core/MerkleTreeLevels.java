@@ -0,0 +1,111 @@
+package com.ninja.BankStAnalysis.core.ananomyzer.core;
+
+import java.util.Arrays;
+
+/**
+ * Every level of the bitcoin style Merkle tree over a statement's transaction digests, leaves first, kept in one
+ * array. Only the levels above the leaves are stored, since the leaves are the transaction rows themselves; a
+ * proof reads one node per level at {@link #interiorOffset}. Parents and the self paired last node of odd levels
+ * are computed exactly like {@link PartialMerkleTree}; digests are held in {@code Sha256Hash#getBytes()} order.
+ * Unlike {@link MerkleRootBuilder}, identical siblings are kept as they are.
+ */
+public final class MerkleTreeLevels {
+
+	private static final int DIGEST_LENGTH = TokenEngine.DIGEST_LENGTH;
+
+	private final int leafCount;
+	private final byte[] nodes;
+	private final int[] levelStarts; // Index of the first node of each level, the root level last
+
+	private MerkleTreeLevels(int leafCount, byte[] nodes) {
+		this.leafCount = leafCount;
+		this.nodes = nodes;
+		this.levelStarts = levelStarts(leafCount);
+	}
+
+	// Builds the tree over the count digests at leaves[offset..offset+count*32)
+	public static MerkleTreeLevels build(byte[] leaves, int offset, int count) {
+		if (count < 1) {
+			throw new IllegalArgumentException("A Merkle tree needs at least one leaf");
+		}
+		int[] starts = levelStarts(count);
+		byte[] nodes = new byte[nodeCount(starts) * DIGEST_LENGTH];
+		System.arraycopy(leaves, offset, nodes, 0, count * DIGEST_LENGTH);
+
+		TokenEngine engine = TokenEngine.current();
+		byte[] pair = new byte[2 * DIGEST_LENGTH];
+		for (int level = 1, width = count; level < starts.length; level++, width = (width + 1) / 2) {
+			int below = starts[level - 1];
+			for (int parent = 0; parent < (width + 1) / 2; parent++) {
+				int left = below + parent * 2;
+				int right = parent * 2 + 1 < width ? left + 1 : left;
+				copyReversed(nodes, left * DIGEST_LENGTH, pair, 0);
+				copyReversed(nodes, right * DIGEST_LENGTH, pair, DIGEST_LENGTH);
+
+				int at = (starts[level] + parent) * DIGEST_LENGTH;
+				engine.hash(pair, 0, pair.length, pair, 0);
+				engine.hash(pair, 0, DIGEST_LENGTH, pair, 0);
+				copyReversed(pair, 0, nodes, at);
+			}
+		}
+		return new MerkleTreeLevels(count, nodes);
+	}
+
+	// Levels above the leaves of a tree over leafCount leaves
+	public static int height(int leafCount) {
+		return levelStarts(leafCount).length - 1;
+	}
+
+	// Nodes at the given height of a tree over leafCount leaves
+	public static int width(int leafCount, int height) {
+		return (leafCount + (1 << height) - 1) >> height;
+	}
+
+	// Byte offset of the node at (height, pos) in getInteriorNodes(), height >= 1
+	public static long interiorOffset(int leafCount, int height, int pos) {
+		long start = 0;
+		for (int level = 1, width = leafCount; level < height; level++) {
+			width = (width + 1) / 2;
+			start += width;
+		}
+		return (start + pos) * DIGEST_LENGTH;
+	}
+
+	public int getLeafCount() {
+		return leafCount;
+	}
+
+	// Every level above the leaves, lowest first; empty for a single leaf
+	public byte[] getInteriorNodes() {
+		return Arrays.copyOfRange(nodes, leafCount * DIGEST_LENGTH, nodes.length);
+	}
+
+	public byte[] getRoot() {
+		return getNode(levelStarts.length - 1, 0);
+	}
+
+	public byte[] getNode(int height, int pos) {
+		int at = (levelStarts[height] + pos) * DIGEST_LENGTH;
+		return Arrays.copyOfRange(nodes, at, at + DIGEST_LENGTH);
+	}
+
+	private static int[] levelStarts(int leafCount) {
+		int height = 32 - Integer.numberOfLeadingZeros(leafCount - 1);
+		int[] starts = new int[height + 1];
+		for (int level = 1, width = leafCount; level <= height; level++) {
+			starts[level] = starts[level - 1] + width;
+			width = (width + 1) / 2;
+		}
+		return starts;
+	}
+
+	private static int nodeCount(int[] starts) {
+		return starts[starts.length - 1] + 1; // The root level always holds one node
+	}
+
+	private static void copyReversed(byte[] from, int fromOffset, byte[] to, int toOffset) {
+		for (int i = 0; i < DIGEST_LENGTH; i++) {
+			to[toOffset + i] = from[fromOffset + DIGEST_LENGTH - 1 - i];
+		}
+	}
+}
@@ -95,18 +95,43 @@ public class PartialMerkleTree extends Message {
      * are calculated and a new PMT returned.
      */
     public static PartialMerkleTree buildFromLeaves(NetworkParameters params, byte[] includeBits, List<Sha256Hash> allLeafHashes) {
+        return build(params, allLeafHashes.size(), (height, pos) -> anyIncluded(includeBits, height, pos, allLeafHashes.size()),
+                (height, pos) -> calcHash(height, pos, allLeafHashes));
+    }
+
+    /**
+     * Calculates the PMT proving the single leaf at the given position from the hashes on its path alone: the leaf
+     * itself and, per height, the sibling of the path node, null where that node has none. Only these hashes are
+     * read, so the proof costs O(log n) whatever the leaf count.
+     */
+    public static PartialMerkleTree buildFromPath(NetworkParameters params, int leafCount, int leaf, byte[] leafHash, byte[][] siblings) {
+        return build(params, leafCount, (height, pos) -> (leaf >> height) == pos,
+                (height, pos) -> Sha256Hash.wrap(height == 0 && pos == leaf ? leafHash : siblings[height]));
+    }
+
+    private static PartialMerkleTree build(NetworkParameters params, int leafCount, ParentOfMatch parentOfMatch, NodeHash nodeHash) {
         // Calculate height of the tree.
         int height = 0;
-        while (getTreeWidth(allLeafHashes.size(), height) > 1)
+        while (getTreeWidth(leafCount, height) > 1)
             height++;
         List<Boolean> bitList = new ArrayList<>();
         List<Sha256Hash> hashes = new ArrayList<>();
-        traverseAndBuild(height, 0, allLeafHashes, includeBits, bitList, hashes);
+        traverseAndBuild(height, 0, leafCount, parentOfMatch, nodeHash, bitList, hashes);
         byte[] bits = new byte[(int)Math.ceil(bitList.size() / 8.0)];
         for (int i = 0; i < bitList.size(); i++)
             if (bitList.get(i))
                 Utils.setBitLE(bits, i);
-        return new PartialMerkleTree(params, bits, hashes, allLeafHashes.size());
+        return new PartialMerkleTree(params, bits, hashes, leafCount);
+    }
+
+    // Hash of the node at (height, pos) of the full tree
+    private interface NodeHash {
+        Sha256Hash at(int height, int pos);
+    }
+
+    // Whether the node at (height, pos) is a matched leaf or the parent of one
+    private interface ParentOfMatch {
+        boolean test(int height, int pos);
     }
 
     @Override
@@ -137,29 +162,31 @@ public class PartialMerkleTree extends Message {
     }
 
     // Based on CPartialMerkleTree::TraverseAndBuild in Bitcoin Core.
-    private static void traverseAndBuild(int height, int pos, List<Sha256Hash> allLeafHashes, byte[] includeBits,
+    private static void traverseAndBuild(int height, int pos, int leafCount, ParentOfMatch matches, NodeHash nodeHash,
                                          List<Boolean> matchedChildBits, List<Sha256Hash> resultHashes) {
-        boolean parentOfMatch = false;
         // Is this node a parent of at least one matched hash?
-        for (int p = pos << height; p < (pos+1) << height && p < allLeafHashes.size(); p++) {
-            if (Utils.checkBitLE(includeBits, p)) {
-                parentOfMatch = true;
-                break;
-            }
-        }
+        boolean parentOfMatch = matches.test(height, pos);
         // Store as a flag bit.
         matchedChildBits.add(parentOfMatch);
         if (height == 0 || !parentOfMatch) {
             // If at height 0, or nothing interesting below, store hash and stop.
-            resultHashes.add(calcHash(height, pos, allLeafHashes));
+            resultHashes.add(nodeHash.at(height, pos));
         } else {
             // Otherwise descend into the subtrees.
             int h = height - 1;
             int p = pos * 2;
-            traverseAndBuild(h, p, allLeafHashes, includeBits, matchedChildBits, resultHashes);
-            if (p + 1 < getTreeWidth(allLeafHashes.size(), h))
-                traverseAndBuild(h, p + 1, allLeafHashes, includeBits, matchedChildBits, resultHashes);
+            traverseAndBuild(h, p, leafCount, matches, nodeHash, matchedChildBits, resultHashes);
+            if (p + 1 < getTreeWidth(leafCount, h))
+                traverseAndBuild(h, p + 1, leafCount, matches, nodeHash, matchedChildBits, resultHashes);
+        }
+    }
+
+    private static boolean anyIncluded(byte[] includeBits, int height, int pos, int leafCount) {
+        for (int p = pos << height; p < (pos+1) << height && p < leafCount; p++) {
+            if (Utils.checkBitLE(includeBits, p))
+                return true;
         }
+        return false;
     }
 
     private static Sha256Hash calcHash(int height, int pos, List<Sha256Hash> hashes) {
@@ -0,0 +1,84 @@
+package com.ninja.BankStAnalysis.core.ananomyzer.core;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * SHA-256 token hashing with one reusable pair of digests per thread.
+ *
+ * <p>Digests are written as raw 32 byte values into caller owned arrays, so a whole statement can keep its
+ * tokens in a few contiguous arrays; Base64 text is only produced by {@link #encode} where a token leaves the
+ * application. {@link #hash} serves single inputs, {@link #update}/{@link #finish} an input written in pieces,
+ * and both can be in progress at the same time.</p>
+ */
+public final class TokenEngine {
+
+	public static final int DIGEST_LENGTH = 32;
+
+	private static final ThreadLocal<TokenEngine> ENGINES = ThreadLocal.withInitial(TokenEngine::new);
+
+	private final MessageDigest digest = sha256();
+	private final MessageDigest runningDigest = sha256();
+
+	private TokenEngine() {
+	}
+
+	public static TokenEngine current() {
+		return ENGINES.get();
+	}
+
+	// Writes SHA-256(input[offset..offset+length)) to out[outOffset..outOffset+32)
+	public void hash(byte[] input, int offset, int length, byte[] out, int outOffset) {
+		digest.update(input, offset, length);
+		complete(digest, out, outOffset);
+	}
+
+	public void update(byte[] input, int offset, int length) {
+		runningDigest.update(input, offset, length);
+	}
+
+	// Completes the running digest and resets it for the next input
+	public void finish(byte[] out, int outOffset) {
+		complete(runningDigest, out, outOffset);
+	}
+
+	// Token text of the digest at digests[offset..offset+32)
+	public static String encode(byte[] digests, int offset) {
+		return Base64.getEncoder().encodeToString(Arrays.copyOfRange(digests, offset, offset + DIGEST_LENGTH));
+	}
+
+	// Leading 64 bits of the digest at digests[offset..offset+32), big-endian; the lookup key of a stored token
+	public static long fingerprint(byte[] digests, int offset) {
+		long fingerprint = 0;
+		for (int i = 0; i < Long.BYTES; i++) {
+			fingerprint = fingerprint << 8 | (digests[offset + i] & 0xFF);
+		}
+		return fingerprint;
+	}
+
+	public static String token(byte[] input) {
+		byte[] out = new byte[DIGEST_LENGTH];
+		current().hash(input, 0, input.length, out, 0);
+		return encode(out, 0);
+	}
+
+	private static void complete(MessageDigest digest, byte[] out, int outOffset) {
+		try {
+			digest.digest(out, outOffset, DIGEST_LENGTH);
+		} catch (DigestException e) {
+			digest.reset();
+			throw new IllegalArgumentException("No room for a digest at offset " + outOffset, e);
+		}
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e); // Required of every Java platform
+		}
+	}
+}
@@ -4,17 +4,17 @@ import com.google.common.collect.ImmutableList;
 import com.jayway.jsonpath.JsonPath;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 import com.ninja.BankStAnalysis.core.ananomyzer.core.JsonFlattener;
-import com.ninja.BankStAnalysis.core.ananomyzer.core.PartialMerkleTree;
+import com.ninja.BankStAnalysis.core.ananomyzer.core.MerkleRootBuilder;
+import com.ninja.BankStAnalysis.core.ananomyzer.core.TokenEngine;
 import com.ninja.BankStAnalysis.core.ananomyzer.iface.AbstractAlgorithm;
 import com.ninja.BankStAnalysis.core.ananomyzer.iface.AnonymousToken;
-import org.bitcoinj.core.NetworkParameters;
-import org.bitcoinj.core.Sha256Hash;
-import org.bitcoinj.params.MainNetParams;
 
 public class Anonymizer extends AbstractAlgorithm {
 	final private boolean transactionLevel;
+	final private ForkJoinPool pool; // Hashes the combined token's subtrees when set, e.g. the tokenization pool
 	private static final char seperator = '|';
 	private static final ImmutableList<String> AccountXNSPaths = ImmutableList.of(
 			"$.accountXns[*].xns[*].date",
@@ -27,13 +27,17 @@ public class Anonymizer extends AbstractAlgorithm {
 			// We need to check with business on the same
 
 	public Anonymizer(int userId, String realmId) {
-		super(userId, realmId);
-		this.transactionLevel = false;
+		this(userId, realmId, false, null);
 	}
 	
 	public Anonymizer(int userId, String realmId, boolean transactionLevel) {
+		this(userId, realmId, transactionLevel, null);
+	}
+
+	public Anonymizer(int userId, String realmId, boolean transactionLevel, ForkJoinPool pool) {
 		super(userId, realmId);
 		this.transactionLevel = transactionLevel;
+		this.pool = pool;
 	}
 
 	@Override
@@ -57,7 +61,7 @@ public class Anonymizer extends AbstractAlgorithm {
 				// Get Row which is comma separated
 				List<String> elements = Arrays.asList(key.split("\\|"));
 				
-				String merkleRoot = genMerkleTreeToken (elements);
+				String merkleRoot = genMerkleTreeToken (elements, null);
 
 				// Create anonymous token
 				AnonymousToken token = new AnonymousToken(getUserId(), getRealmId(), accountNumber, true);
@@ -71,7 +75,7 @@ public class Anonymizer extends AbstractAlgorithm {
 			// Step 4: Transaction level Key generation (Statement Level - Holistic Key)
 			if (transactionLevel) {
 				Collections.sort(individualTXNTokens);
-				String merkleRoot = genMerkleTreeToken (individualTXNTokens);
+				String merkleRoot = genMerkleTreeToken (individualTXNTokens, pool);
 				
 				AnonymousToken token = new AnonymousToken(getUserId(), getRealmId(), accountNumber, true);
 				token.setToken(merkleRoot.toString());
@@ -83,31 +87,24 @@ public class Anonymizer extends AbstractAlgorithm {
 		return tokens;
 	}
 	
-	private String genMerkleTreeToken(List<String> elements) {
-		// Step 3b: Generate field hash
-		List<Sha256Hash> dataHashes = new ArrayList<>();
-		for (String data : elements) {
-			Sha256Hash hash = Sha256Hash.of(data.getBytes());
-			dataHashes.add(hash);
+	// Subtrees of large trees are hashed on the pool when one is given
+	private String genMerkleTreeToken(List<String> elements, ForkJoinPool pool) {
+		// Step 3b: Generate field hashes back to back, in the leaf order of the tree
+		TokenEngine engine = TokenEngine.current();
+		byte[] nodes = new byte[elements.size() * TokenEngine.DIGEST_LENGTH];
+		for (int i = 0; i < elements.size(); i++) {
+			byte[] data = elements.get(i).getBytes();
+			engine.hash(data, 0, data.length, nodes, i * TokenEngine.DIGEST_LENGTH);
 		}
 
-		// Step 3c: Set matchedChildBits to include all hashes
-		int numHashes = dataHashes.size();
-		byte[] matchedChildBits = new byte[(numHashes + 7) / 8];
-		for (int i = 0; i < numHashes; i++) {
-			int byteIndex = i / 8;
-			int bitIndex = i % 8;
-			matchedChildBits[byteIndex] |= (1 << bitIndex);
+		// Step 3c: Fold the levels bottom-up into the root hash
+		if (pool != null) {
+			MerkleRootBuilder.rootInPlace(nodes, elements.size(), nodes, 0, pool);
+		} else {
+			MerkleRootBuilder.rootInPlace(nodes, elements.size(), nodes, 0);
 		}
 
-		// Step 3d: Build the PartialMerkleTree
-		NetworkParameters params = MainNetParams.get();
-		PartialMerkleTree merkleTree = PartialMerkleTree.buildFromLeaves(params, matchedChildBits, dataHashes);
-
-		// Step 3e: Generate root hash
-		Sha256Hash merkleRoot = merkleTree.getTxnHashAndMerkleRoot(dataHashes);
-		
-		return merkleRoot.toString();
+		return HexFormat.of().formatHex(nodes, 0, TokenEngine.DIGEST_LENGTH);
 	}
 
 	public boolean isTransactionLevel() {
@@ -115,8 +112,7 @@ public class Anonymizer extends AbstractAlgorithm {
 	}
 
 	public String generateToken(String jsonData) {
-		byte[] hash = Sha256Hash.hash(jsonData.getBytes());
-		return Base64.getEncoder().encodeToString(hash);
+		return TokenEngine.token(jsonData.getBytes());
 	}
 
 }
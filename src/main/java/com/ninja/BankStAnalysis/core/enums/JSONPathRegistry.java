@@ -0,0 +1,46 @@
+package com.ninja.BankStAnalysis.core.enums;
+
+import com.jayway.jsonpath.JsonPath;
+
+/**
+ * Every JSON path read from provider statements and dedupe responses, compiled once.
+ */
+public enum JSONPathRegistry {
+
+    // Perfios statement (the Ninjacart variant is read from its "report" object)
+    REPORT("$.report"),
+    CUSTOMER_INFO_NAME("$.customerInfo.name"),
+    CUSTOMER_INFO_MOBILE("$.customerInfo.mobile"),
+    CUSTOMER_INFO_PAN("$.customerInfo.pan"),
+    CUSTOMER_INFO_AADHAR_MASKED("$.customerInfo.aadharMasked"),
+    CUSTOMER_INFO_BANK("$.customerInfo.bank"),
+    ACCOUNT_XNS("$.accountXns"),
+    ACCOUNT_XNS_COUNT("$.accountXns.length()"),
+    ACCOUNT_ANALYSIS("$.accountAnalysis"),
+
+    ACCOUNT_NOS("$.accountXns[*].accountNo"),
+
+    // Dedupe response
+    USER_ID("$.userId"),
+    REALM_ID("$.realmId"),
+    STATUS("$.status"),
+    FIRST_ACCOUNT_NUMBER("$.accounts[0].accountNumber"),
+    COUNTER_PARTY_USER_IDS("$.statements[*].matchedCounterParty[*].counterPartyUserId"),
+    COUNTER_PARTY_ACCOUNT_NUMBERS("$.statements[*].matchedCounterParty[*].counterPartyAccountNumber");
+
+    private final String expression;
+    private final JsonPath compiled;
+
+    JSONPathRegistry(String expression) {
+        this.expression = expression;
+        this.compiled = JsonPath.compile(expression);
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    public JsonPath get() {
+        return compiled;
+    }
+}
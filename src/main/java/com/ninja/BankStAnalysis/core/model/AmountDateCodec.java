@@ -0,0 +1,253 @@
+package com.ninja.BankStAnalysis.core.model;
+
+/**
+ * Allocation free conversion between provider text and the fixed point forms of {@link TransactionColumns}:
+ * amounts as a long of paise and dates as an int epoch day.
+ *
+ * <p>Formatting reproduces the text the pipeline has always hashed: {@code Double.toString} of the rupee
+ * value for amounts and ISO {@code yyyy-MM-dd} for dates. Anything that has no exact fixed point form is
+ * reported as {@link #NO_MINOR_UNITS} / {@link #NO_EPOCH_DAY} so callers can keep the original value instead.</p>
+ */
+public final class AmountDateCodec {
+
+    public static final long NO_MINOR_UNITS = Long.MIN_VALUE;
+    public static final int NO_EPOCH_DAY = Integer.MIN_VALUE;
+
+    // Up to 15 significant digits, where the shortest text of minorUnits / 100.0 is exactly its decimal digits
+    public static final long MAX_MINOR_UNITS = 999_999_999_999_999L;
+
+    // Longest formatted amount, e.g. "-9.99999999999999E12"
+    public static final int MAX_AMOUNT_LENGTH = 24;
+    public static final int DATE_LENGTH = 10;
+
+    private static final long PLAIN_LIMIT = 1_000_000_000L; // Double.toString switches to E notation at 1.0E7 rupees
+    private static final int DAYS_0000_TO_1970 = 719_468;
+    private static final String MONTHS = "JanFebMarAprMayJunJulAugSepOctNovDec";
+
+    private AmountDateCodec() {
+    }
+
+    // ---- Amounts ----
+
+    public static long toMinorUnits(double value) {
+        if (!(Math.abs(value) <= MAX_MINOR_UNITS / 100.0)) return NO_MINOR_UNITS; // Also rejects NaN
+        long minorUnits = Math.round(value * 100);
+        return Double.doubleToLongBits(minorUnits / 100.0) == Double.doubleToLongBits(value) ? minorUnits : NO_MINOR_UNITS;
+    }
+
+    public static double toDouble(long minorUnits) {
+        return minorUnits / 100.0;
+    }
+
+    /**
+     * Parses a plain decimal such as {@code -1234.5} into paise. Exponents, signs other than a leading minus,
+     * a third non-zero decimal and negative zero are not accepted; with {@code grouped}, commas in the integer
+     * part are skipped. The result equals {@code toMinorUnits(Double.parseDouble(text))} whenever it is accepted.
+     */
+    public static long parseMinorUnits(CharSequence text, boolean grouped) {
+        if (text == null) return NO_MINOR_UNITS;
+        int length = text.length();
+        int i = 0;
+        boolean negative = length > 0 && text.charAt(0) == '-';
+        if (negative) i++;
+
+        long value = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean point = false;
+        for (; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+                if (point && fractionDigits == 2) {
+                    if (c != '0') return NO_MINOR_UNITS;
+                    continue;
+                }
+                value = value * 10 + (c - '0');
+                if (value > MAX_MINOR_UNITS) return NO_MINOR_UNITS;
+                if (point) fractionDigits++;
+            } else if (c == '.' && !point) {
+                point = true;
+            } else if (!(c == ',' && grouped && !point)) {
+                return NO_MINOR_UNITS;
+            }
+        }
+        if (digits == 0 || (negative && value == 0)) return NO_MINOR_UNITS;
+
+        for (; fractionDigits < 2; fractionDigits++) {
+            value *= 10;
+        }
+        if (value > MAX_MINOR_UNITS) return NO_MINOR_UNITS;
+        return negative ? -value : value;
+    }
+
+    /**
+     * Writes {@code Double.toString(minorUnits / 100.0)} into {@code buffer} and returns the end offset.
+     * The buffer needs {@link #MAX_AMOUNT_LENGTH} free chars.
+     */
+    public static int formatMinorUnits(long minorUnits, char[] buffer, int offset) {
+        if (minorUnits < 0) {
+            buffer[offset++] = '-';
+            minorUnits = -minorUnits;
+        }
+
+        if (minorUnits < PLAIN_LIMIT) {
+            offset = writeDigits(minorUnits / 100, buffer, offset);
+            buffer[offset++] = '.';
+            int fraction = (int) (minorUnits % 100);
+            if (fraction % 10 == 0) {
+                buffer[offset++] = (char) ('0' + fraction / 10);
+            } else {
+                buffer[offset++] = (char) ('0' + fraction / 10);
+                buffer[offset++] = (char) ('0' + fraction % 10);
+            }
+            return offset;
+        }
+
+        // d.dddEn with trailing zeros dropped, the exponent counting rupees
+        int digitCount = digitCount(minorUnits);
+        long significand = minorUnits;
+        int significantDigits = digitCount;
+        while (significantDigits > 1 && significand % 10 == 0) {
+            significand /= 10;
+            significantDigits--;
+        }
+        int start = offset;
+        offset = writeDigits(significand, buffer, offset + 1);
+        buffer[start] = buffer[start + 1];
+        buffer[start + 1] = '.';
+        if (significantDigits == 1) {
+            buffer[offset++] = '0';
+        }
+        buffer[offset++] = 'E';
+        return writeDigits(digitCount - 3, buffer, offset);
+    }
+
+    public static String formatMinorUnits(long minorUnits) {
+        char[] buffer = new char[MAX_AMOUNT_LENGTH];
+        return new String(buffer, 0, formatMinorUnits(minorUnits, buffer, 0));
+    }
+
+    // ---- Dates ----
+
+    // Proleptic Gregorian epoch day of a calendar date with a four digit year, NO_EPOCH_DAY when out of range
+    public static int toEpochDay(int year, int month, int day) {
+        if (year < 0 || year > 9999 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+            return NO_EPOCH_DAY;
+        }
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097 + dayOfEra - DAYS_0000_TO_1970;
+    }
+
+    // ISO yyyy-MM-dd, exactly as LocalDate prints it
+    public static int parseIsoDate(CharSequence text, int start, int end) {
+        if (text == null || end - start != DATE_LENGTH || end > text.length()
+                || text.charAt(start + 4) != '-' || text.charAt(start + 7) != '-') {
+            return NO_EPOCH_DAY;
+        }
+        int year = parseDigits(text, start, start + 4);
+        int month = parseDigits(text, start + 5, start + 7);
+        int day = parseDigits(text, start + 8, start + 10);
+        return year < 0 || month < 0 || day < 0 ? NO_EPOCH_DAY : toEpochDay(year, month, day);
+    }
+
+    public static int parseIsoDate(CharSequence text) {
+        return text == null ? NO_EPOCH_DAY : parseIsoDate(text, 0, text.length());
+    }
+
+    // dd-MMM-yyyy with an English month abbreviation, as spreadsheet date cells are rendered
+    public static int parseDayMonthYear(CharSequence text) {
+        if (text == null || text.length() != 11 || text.charAt(2) != '-' || text.charAt(6) != '-') {
+            return NO_EPOCH_DAY;
+        }
+        int month = monthNumber(text, 3);
+        int day = parseDigits(text, 0, 2);
+        int year = parseDigits(text, 7, 11);
+        return month < 0 || day < 0 || year < 0 ? NO_EPOCH_DAY : toEpochDay(year, month, day);
+    }
+
+    // Writes the epoch day as yyyy-MM-dd and returns the end offset
+    public static int formatDate(int epochDay, char[] buffer, int offset) {
+        int z = epochDay + DAYS_0000_TO_1970;
+        int era = Math.floorDiv(z, 146_097);
+        int dayOfEra = z - era * 146_097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        writePadded(year, 4, buffer, offset);
+        buffer[offset + 4] = '-';
+        writePadded(month, 2, buffer, offset + 5);
+        buffer[offset + 7] = '-';
+        writePadded(day, 2, buffer, offset + 8);
+        return offset + DATE_LENGTH;
+    }
+
+    public static String formatDate(int epochDay) {
+        char[] buffer = new char[DATE_LENGTH];
+        formatDate(epochDay, buffer, 0);
+        return new String(buffer);
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> (year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    private static int monthNumber(CharSequence text, int start) {
+        for (int month = 0; month < 12; month++) {
+            int at = month * 3;
+            if (MONTHS.charAt(at) == text.charAt(start) && MONTHS.charAt(at + 1) == text.charAt(start + 1)
+                    && MONTHS.charAt(at + 2) == text.charAt(start + 2)) {
+                return month + 1;
+            }
+        }
+        return -1;
+    }
+
+    // -1 unless every char is a digit
+    private static int parseDigits(CharSequence text, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int digitCount(long value) {
+        int count = 1;
+        while (value >= 10) {
+            value /= 10;
+            count++;
+        }
+        return count;
+    }
+
+    private static int writeDigits(long value, char[] buffer, int offset) {
+        int end = offset + digitCount(value);
+        for (int i = end - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+
+    private static void writePadded(int value, int width, char[] buffer, int offset) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.ninja.BankStAnalysis.core.model;
+
+import com.ninja.BankStAnalysis.core.modelHelper.Provider;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * One extracted and tokenized statement of a bulk load, with the user it belongs to and the content hashes it is
+ * registered under once loaded.
+ */
+@Getter
+@RequiredArgsConstructor
+public class BatchStatement {
+
+    private final Integer userId;
+    private final Provider provider;
+    private final NormalizedStatement statement;
+    private final StatementTokens tokens;
+    private final byte[] uploadHash;    // SHA-256 of the file, ContentHashType.RAW_UPLOAD
+    private final byte[] statementHash; // ContentHashType.STATEMENT_ROOT
+}
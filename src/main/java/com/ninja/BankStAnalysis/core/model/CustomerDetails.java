@@ -0,0 +1,18 @@
+package com.ninja.BankStAnalysis.core.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Customer fields of one account as reported by the provider; any of them may be null.
+ */
+@Getter
+@RequiredArgsConstructor
+public class CustomerDetails {
+
+    private final String name;
+    private final String mobileNo;
+    private final String pan;
+    private final String aadharMasked;
+    private final String bankName;
+}
@@ -0,0 +1,139 @@
+package com.ninja.BankStAnalysis.core.model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Holds a single uploaded bank statement for the lifetime of one request.
+ * The upload is read into memory once and the JSON document is parsed lazily on first use,
+ * so provider detection, extractor selection and extraction all share the same bytes and tree.
+ *
+ * <p>Instances are request scoped and not safe for use by multiple threads.</p>
+ */
+public class IngestionContext {
+
+    @Getter
+    private final String originalFilename;
+
+    @Getter
+    private final String contentType;
+
+    private final byte[] content;
+    private final ObjectMapper objectMapper;
+
+    private JsonNode document;
+    private String contentAsString;
+    private byte[] contentHash;
+    private Map<String, Set<String>> outline;
+
+    private IngestionContext(String originalFilename, String contentType, byte[] content, ObjectMapper objectMapper) {
+        this.originalFilename = originalFilename;
+        this.contentType = contentType;
+        this.content = content;
+        this.objectMapper = objectMapper;
+    }
+
+    public static IngestionContext of(MultipartFile bankStatement, ObjectMapper objectMapper) throws IOException {
+        return new IngestionContext(bankStatement.getOriginalFilename(), bankStatement.getContentType(),
+                bankStatement.getBytes(), objectMapper);
+    }
+
+    public byte[] getContent() {
+        return content;
+    }
+
+    public int getSize() {
+        return content.length;
+    }
+
+    // SHA-256 of the upload as received, computed over the bytes already held
+    public byte[] getContentHash() {
+        if (contentHash == null) {
+            try {
+                contentHash = MessageDigest.getInstance("SHA-256").digest(content);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+        }
+        return contentHash;
+    }
+
+    public InputStream getInputStream() {
+        return new ByteArrayInputStream(content);
+    }
+
+    // Parsed at most once per request, whichever stage asks first
+    public JsonNode getDocument() throws IOException {
+        if (document == null) {
+            document = objectMapper.readTree(content);
+        }
+        return document;
+    }
+
+    /**
+     * Checks whether a top level field (one name) or a field of a top level object (two names) exists.
+     * Answered from the parsed tree when some stage already needed it, otherwise from a token-level
+     * outline of the first two levels, so streaming extractors never pay for a full tree.
+     */
+    public boolean hasField(String... path) throws IOException {
+        if (path.length == 0 || path.length > 2) {
+            throw new IllegalArgumentException("Only top level fields and their direct children can be probed");
+        }
+        if (document != null) {
+            JsonNode node = document.get(path[0]);
+            return node != null && (path.length == 1 || node.has(path[1]));
+        }
+        Set<String> children = getOutline().get(path[0]);
+        return children != null && (path.length == 1 || children.contains(path[1]));
+    }
+
+    private Map<String, Set<String>> getOutline() throws IOException {
+        if (outline != null) {
+            return outline;
+        }
+        Map<String, Set<String>> fields = new HashMap<>();
+        try (JsonParser parser = objectMapper.getFactory().createParser(content)) {
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.currentName();
+                    Set<String> children = new HashSet<>();
+                    if (parser.nextToken() == JsonToken.START_OBJECT) {
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            children.add(parser.currentName());
+                            parser.nextToken();
+                            parser.skipChildren();
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                    fields.put(name, children);
+                }
+            }
+        }
+        outline = Collections.unmodifiableMap(fields);
+        return outline;
+    }
+
+    public String getContentAsString() {
+        if (contentAsString == null) {
+            contentAsString = new String(content, StandardCharsets.UTF_8);
+        }
+        return contentAsString;
+    }
+}
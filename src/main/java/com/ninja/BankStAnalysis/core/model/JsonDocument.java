@@ -0,0 +1,48 @@
+package com.ninja.BankStAnalysis.core.model;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.Option;
+import com.ninja.BankStAnalysis.core.enums.JSONPathRegistry;
+
+import java.util.Optional;
+
+/**
+ * A JSON document parsed once and queried with the compiled paths of {@link JSONPathRegistry}.
+ * Lookups never throw for missing or mistyped values; they come back as {@link Optional#empty()}.
+ */
+public class JsonDocument {
+
+    private static final Configuration CONFIGURATION = Configuration.defaultConfiguration()
+            .addOptions(Option.SUPPRESS_EXCEPTIONS);
+
+    private final DocumentContext context;
+
+    private JsonDocument(DocumentContext context) {
+        this.context = context;
+    }
+
+    public static JsonDocument parse(String json) {
+        return new JsonDocument(JsonPath.using(CONFIGURATION).parse(json));
+    }
+
+    // Wraps an already parsed sub-tree (e.g. a value found in another document) without parsing again
+    public static JsonDocument of(Object tree) {
+        return new JsonDocument(JsonPath.using(CONFIGURATION).parse(tree));
+    }
+
+    public <T> Optional<T> find(JSONPathRegistry path, Class<T> type) {
+        return cast(context.read(path.get()), type);
+    }
+
+    // For values the caller cannot do without
+    public <T> T require(JSONPathRegistry path, Class<T> type) {
+        return find(path, type).orElseThrow(() ->
+                new IllegalArgumentException("No " + type.getSimpleName() + " found at JSON path: " + path.getExpression()));
+    }
+
+    private static <T> Optional<T> cast(Object value, Class<T> type) {
+        return type.isInstance(value) ? Optional.of(type.cast(value)) : Optional.empty();
+    }
+}
@@ -0,0 +1,48 @@
+package com.ninja.BankStAnalysis.core.model;
+
+import com.ninja.BankStAnalysis.core.modelHelper.BankStatementHashType;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Provider independent form of a bank statement, produced by the extractors and consumed by reference by
+ * tokenization, persistence and dedupe. Sections follow the {@link BankStatementHashType} they are hashed as.
+ */
+@Getter
+@RequiredArgsConstructor
+public class NormalizedStatement {
+
+    private final List<CustomerDetails> customerDetails;
+    private final List<StatementAccount> accountXns;
+    private final List<StatementAccount> eod; // Null when the provider reports no EOD balances
+    private final List<StatementAccount> bankTransactions;
+
+    public boolean hasSection(BankStatementHashType section) {
+        return getSection(section) != null;
+    }
+
+    public List<StatementAccount> getSection(BankStatementHashType section) {
+        return switch (section) {
+            case ACCOUNT_XNS -> accountXns;
+            case EOD_BALANCE -> eod;
+            case BANK_TRANSACTION -> bankTransactions;
+        };
+    }
+
+    public Optional<CustomerDetails> getCustomerDetails(int index) {
+        return index >= 0 && index < customerDetails.size() ? Optional.of(customerDetails.get(index)) : Optional.empty();
+    }
+
+    public List<String> getAccountNos() {
+        List<String> accountNos = new ArrayList<>(accountXns.size());
+        for (StatementAccount account : accountXns) {
+            accountNos.add(account.getAccountNo());
+        }
+        return Collections.unmodifiableList(accountNos);
+    }
+}
@@ -0,0 +1,21 @@
+package com.ninja.BankStAnalysis.core.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * One account within a section of a {@link NormalizedStatement}. The same {@link TransactionColumns}
+ * instance is shared when a provider reports identical rows in several sections.
+ */
+@Getter
+@RequiredArgsConstructor
+public class StatementAccount {
+
+    private final String accountNo;
+    private final String accountType; // Only reported in the accountXns section
+    private final TransactionColumns transactions;
+
+    public StatementAccount(String accountNo, TransactionColumns transactions) {
+        this(accountNo, null, transactions);
+    }
+}
@@ -0,0 +1,20 @@
+package com.ninja.BankStAnalysis.core.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * What a proof needs of a stored statement's Merkle tree before reading its path: the leaves are the transaction
+ * rows of the statement and of the statements it extends, and the levels above them stay in the database.
+ */
+@Getter
+@RequiredArgsConstructor
+public class StatementMerkleTree {
+
+    private final Long statementId;
+    private final int hashType;
+    private final int leafCount;
+    private final byte[] root;
+    private final Long[] rowStatementIds; // The statement and every statement it extends, which hold its leaves
+    private final boolean expired; // Some of its leaves were stored before the retention window and are dropped
+}
@@ -0,0 +1,108 @@
+package com.ninja.BankStAnalysis.core.model;
+
+import com.ninja.BankStAnalysis.core.ananomyzer.core.MerkleMountainRange;
+import com.ninja.BankStAnalysis.core.ananomyzer.core.MerkleTreeLevels;
+import com.ninja.BankStAnalysis.core.ananomyzer.core.TokenEngine;
+import com.ninja.BankStAnalysis.core.modelHelper.BankStatementHashType;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tokens generated for a {@link NormalizedStatement}: per section, one token for each account and one
+ * for each of its rows, in statement order. A section the statement does not report has no entry.
+ * Tokens are kept as raw SHA-256 digests and only turned into text when read as a token.
+ *
+ * <p>Each row also carries one short leaf hash per field, so rows can be matched on a subset of their fields.</p>
+ */
+public class StatementTokens {
+
+    private final Map<BankStatementHashType, List<AccountTokens>> sections = new EnumMap<>(BankStatementHashType.class);
+
+    public void putSection(BankStatementHashType section, List<AccountTokens> accounts) {
+        sections.put(section, accounts);
+    }
+
+    public boolean hasSection(BankStatementHashType section) {
+        return sections.containsKey(section);
+    }
+
+    public List<AccountTokens> getSection(BankStatementHashType section) {
+        return sections.getOrDefault(section, Collections.emptyList());
+    }
+
+    @RequiredArgsConstructor
+    public static class AccountTokens {
+
+        // Leading bytes of the SHA-256 leaf hash kept per field
+        public static final int FIELD_HASH_LENGTH = 8;
+
+        @Getter
+        private final String accountNo;
+        private final byte[] digest;
+        private final byte[] transactionDigests; // TokenEngine.DIGEST_LENGTH bytes per row, in row order
+        private final byte[] fieldHashes;        // FIELD_HASH_LENGTH bytes per field of each row, fields in section order
+
+        public String getToken() {
+            return TokenEngine.encode(digest, 0);
+        }
+
+        public byte[] getDigest() {
+            return digest.clone();
+        }
+
+        public int getTransactionCount() {
+            return transactionDigests.length / TokenEngine.DIGEST_LENGTH;
+        }
+
+        public String getTransactionToken(int row) {
+            return TokenEngine.encode(transactionDigests, row * TokenEngine.DIGEST_LENGTH);
+        }
+
+        /**
+         * Leaf hashes of the first {@code fields} fields of a row, back to back. Fields are in the section's encoding
+         * order (date, amount, balance, then narration), so a prefix matches rows on those fields alone.
+         */
+        public byte[] getFieldHashes(int row, int fields) {
+            int rowLength = fieldHashes.length / getTransactionCount();
+            int from = row * rowLength;
+            return Arrays.copyOfRange(fieldHashes, from, from + Math.min(fields * FIELD_HASH_LENGTH, rowLength));
+        }
+
+        public byte[] getFieldHashes(int row) {
+            return getFieldHashes(row, Integer.MAX_VALUE / FIELD_HASH_LENGTH);
+        }
+
+        public byte[] getTransactionDigest(int row) {
+            return Arrays.copyOfRange(transactionDigests, row * TokenEngine.DIGEST_LENGTH, (row + 1) * TokenEngine.DIGEST_LENGTH);
+        }
+
+        public long getTransactionFingerprint(int row) {
+            return TokenEngine.fingerprint(transactionDigests, row * TokenEngine.DIGEST_LENGTH);
+        }
+
+        // Appends the digests of rows [from, to) to the accumulator
+        public void appendTransactions(MerkleMountainRange accumulator, int from, int to) {
+            accumulator.append(transactionDigests, from * TokenEngine.DIGEST_LENGTH, to - from);
+        }
+
+        // Merkle tree over the row digests for inclusion proofs, null without rows
+        public MerkleTreeLevels buildTransactionTree() {
+            return getTransactionCount() == 0 ? null : MerkleTreeLevels.build(transactionDigests, 0, getTransactionCount());
+        }
+
+        public List<String> getTransactionTokens() {
+            List<String> tokens = new ArrayList<>(getTransactionCount());
+            for (int row = 0; row < getTransactionCount(); row++) {
+                tokens.add(getTransactionToken(row));
+            }
+            return tokens;
+        }
+    }
+}
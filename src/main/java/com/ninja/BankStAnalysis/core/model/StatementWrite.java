@@ -0,0 +1,49 @@
+package com.ninja.BankStAnalysis.core.model;
+
+import com.ninja.BankStAnalysis.core.modelHelper.Provider;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Everything persisting one upload needs once it is tokenized: the tokens, and of the statement itself only the
+ * customer's mobile number at each account index. Small enough to be queued and written later, together with the
+ * content hashes the upload is registered under once written; those are null when it is written directly.
+ */
+@Getter
+@RequiredArgsConstructor
+public class StatementWrite {
+
+    private final Integer userId;
+    private final String realmId;
+    private final Provider provider;
+    private final List<String> phoneNumbers;
+    private final StatementTokens tokens;
+    private final byte[] uploadHash;    // ContentHashType.RAW_UPLOAD
+    private final byte[] statementHash; // ContentHashType.STATEMENT_ROOT
+
+    public static StatementWrite of(Integer userId, String realmId, Provider provider, NormalizedStatement statement,
+                                    StatementTokens tokens) {
+        return of(userId, realmId, provider, statement, tokens, null, null);
+    }
+
+    public static StatementWrite of(Integer userId, String realmId, Provider provider, NormalizedStatement statement,
+                                    StatementTokens tokens, byte[] uploadHash, byte[] statementHash) {
+        List<String> phoneNumbers = new ArrayList<>(statement.getCustomerDetails().size());
+        for (int i = 0; i < statement.getCustomerDetails().size(); i++) {
+            phoneNumbers.add(statement.getCustomerDetails(i).map(CustomerDetails::getMobileNo).orElse(""));
+        }
+        return new StatementWrite(userId, realmId, provider, phoneNumbers, tokens, uploadHash, statementHash);
+    }
+
+    public boolean isRegistered() {
+        return uploadHash != null && statementHash != null;
+    }
+
+    // Mobile number of the customer at the account index, "" when unknown
+    public String getPhoneNumber(int index) {
+        return index >= 0 && index < phoneNumbers.size() ? phoneNumbers.get(index) : "";
+    }
+}
@@ -0,0 +1,190 @@
+package com.ninja.BankStAnalysis.core.model;
+
+import java.util.Arrays;
+
+/**
+ * The transactions (or EOD balances) of one account stored column-wise in primitive arrays.
+ * Dates are epoch days and amounts/balances are minor units (paise), converted by {@link AmountDateCodec}.
+ * A value that cannot be represented that way without loss (an unparseable date, a third decimal, -0.0) is
+ * kept as provider text or double instead, so the exact reported value is always recoverable through
+ * {@link #getDate} and {@link #getAmount}.
+ *
+ * <p>Every field of a row may also be absent, matching what the provider actually reported.</p>
+ */
+public class TransactionColumns {
+
+    public static final int NO_EPOCH_DAY = AmountDateCodec.NO_EPOCH_DAY;
+    public static final long NO_MINOR_UNITS = AmountDateCodec.NO_MINOR_UNITS;
+
+    // Presence flags per row
+    public static final int DATE = 1;
+    public static final int AMOUNT = 1 << 1;
+    public static final int BALANCE = 1 << 2;
+    public static final int NARRATION = 1 << 3;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private byte[] fields = new byte[INITIAL_CAPACITY];
+    private int[] epochDays = new int[INITIAL_CAPACITY];
+    private long[] amounts = new long[INITIAL_CAPACITY];
+    private long[] balances = new long[INITIAL_CAPACITY];
+    private String[] narrations = new String[INITIAL_CAPACITY];
+
+    // Allocated on first use only, for the few values that do not fit the primitive columns
+    private String[] rawDates;
+    private double[] rawAmounts;
+    private double[] rawBalances;
+
+    private int size;
+
+    public int addRow() {
+        if (size == fields.length) {
+            grow();
+        }
+        return size++;
+    }
+
+    public void add(String date, double amount, double balance, String narration) {
+        int row = addRow();
+        setDate(row, date);
+        setAmount(row, amount);
+        setBalance(row, balance);
+        setNarration(row, narration);
+    }
+
+    public void addBalance(String date, double balance) {
+        int row = addRow();
+        setDate(row, date);
+        setBalance(row, balance);
+    }
+
+    // Only dates that print back exactly as reported are stored as epoch days
+    public void setDate(int row, String date) {
+        int epochDay = AmountDateCodec.parseIsoDate(date);
+        if (epochDay != NO_EPOCH_DAY) {
+            setEpochDay(row, epochDay);
+            return;
+        }
+        fields[row] |= DATE;
+        epochDays[row] = NO_EPOCH_DAY;
+        if (rawDates == null) rawDates = new String[fields.length];
+        rawDates[row] = date;
+    }
+
+    public void setEpochDay(int row, int epochDay) {
+        fields[row] |= DATE;
+        epochDays[row] = epochDay;
+    }
+
+    public void setAmount(int row, double amount) {
+        long minorUnits = AmountDateCodec.toMinorUnits(amount);
+        if (minorUnits != NO_MINOR_UNITS) {
+            setAmountMinorUnits(row, minorUnits);
+            return;
+        }
+        fields[row] |= AMOUNT;
+        amounts[row] = NO_MINOR_UNITS;
+        if (rawAmounts == null) rawAmounts = new double[fields.length];
+        rawAmounts[row] = amount;
+    }
+
+    public void setAmountMinorUnits(int row, long minorUnits) {
+        fields[row] |= AMOUNT;
+        amounts[row] = minorUnits;
+    }
+
+    public void setBalance(int row, double balance) {
+        long minorUnits = AmountDateCodec.toMinorUnits(balance);
+        if (minorUnits != NO_MINOR_UNITS) {
+            setBalanceMinorUnits(row, minorUnits);
+            return;
+        }
+        fields[row] |= BALANCE;
+        balances[row] = NO_MINOR_UNITS;
+        if (rawBalances == null) rawBalances = new double[fields.length];
+        rawBalances[row] = balance;
+    }
+
+    public void setBalanceMinorUnits(int row, long minorUnits) {
+        fields[row] |= BALANCE;
+        balances[row] = minorUnits;
+    }
+
+    public void setNarration(int row, String narration) {
+        fields[row] |= NARRATION;
+        narrations[row] = narration;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean has(int row, int field) {
+        return (fields[row] & field) != 0;
+    }
+
+    // NO_EPOCH_DAY when the reported date is not an ISO calendar date
+    public int getEpochDay(int row) {
+        return epochDays[row];
+    }
+
+    // NO_MINOR_UNITS when the reported amount has no exact paise value
+    public long getAmountMinorUnits(int row) {
+        return amounts[row];
+    }
+
+    public long getBalanceMinorUnits(int row) {
+        return balances[row];
+    }
+
+    public String getDate(int row) {
+        int epochDay = epochDays[row];
+        return epochDay != NO_EPOCH_DAY ? AmountDateCodec.formatDate(epochDay) : rawDates[row];
+    }
+
+    public double getAmount(int row) {
+        long minorUnits = amounts[row];
+        return minorUnits != NO_MINOR_UNITS ? AmountDateCodec.toDouble(minorUnits) : rawAmounts[row];
+    }
+
+    public double getBalance(int row) {
+        long minorUnits = balances[row];
+        return minorUnits != NO_MINOR_UNITS ? AmountDateCodec.toDouble(minorUnits) : rawBalances[row];
+    }
+
+    public String getNarration(int row) {
+        return narrations[row];
+    }
+
+    // Copies one field of another row set, keeping its exact representation
+    public void copy(int row, TransactionColumns source, int sourceRow, int field) {
+        switch (field) {
+            case DATE -> {
+                if (source.epochDays[sourceRow] != NO_EPOCH_DAY) setEpochDay(row, source.epochDays[sourceRow]);
+                else setDate(row, source.rawDates[sourceRow]);
+            }
+            case AMOUNT -> {
+                if (source.amounts[sourceRow] != NO_MINOR_UNITS) setAmountMinorUnits(row, source.amounts[sourceRow]);
+                else setAmount(row, source.rawAmounts[sourceRow]);
+            }
+            case BALANCE -> {
+                if (source.balances[sourceRow] != NO_MINOR_UNITS) setBalanceMinorUnits(row, source.balances[sourceRow]);
+                else setBalance(row, source.rawBalances[sourceRow]);
+            }
+            case NARRATION -> setNarration(row, source.narrations[sourceRow]);
+            default -> throw new IllegalArgumentException("Unknown field: " + field);
+        }
+    }
+
+    private void grow() {
+        int capacity = fields.length * 2;
+        fields = Arrays.copyOf(fields, capacity);
+        epochDays = Arrays.copyOf(epochDays, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+        balances = Arrays.copyOf(balances, capacity);
+        narrations = Arrays.copyOf(narrations, capacity);
+        if (rawDates != null) rawDates = Arrays.copyOf(rawDates, capacity);
+        if (rawAmounts != null) rawAmounts = Arrays.copyOf(rawAmounts, capacity);
+        if (rawBalances != null) rawBalances = Arrays.copyOf(rawBalances, capacity);
+    }
+}
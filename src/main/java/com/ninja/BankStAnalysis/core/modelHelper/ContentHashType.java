@@ -0,0 +1,6 @@
+package com.ninja.BankStAnalysis.core.modelHelper;
+
+// What an upload's content hash was computed over
+public enum ContentHashType {
+    RAW_UPLOAD, STATEMENT_ROOT
+}
@@ -0,0 +1,18 @@
+package com.ninja.BankStAnalysis.core.modelHelper;
+
+/**
+ * Input format hashed into account and transaction tokens. Tokens of different encodings never match,
+ * so stored statements have to be re-tokenized before the encoding of a running system is changed.
+ */
+public enum TokenEncoding {
+    LEGACY(0),       // JSON text of the account and of each row, as the extractors used to emit it
+    CANONICAL_V1(1); // CanonicalTokenEncoder binary layout, version 1
+
+    private final int version;
+
+    TokenEncoding(int version) {
+        this.version = version;
+    }
+
+    public int getVersion() { return version; }
+}
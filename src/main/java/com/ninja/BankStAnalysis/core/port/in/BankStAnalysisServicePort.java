@@ -7,4 +7,6 @@ import java.util.Map;
 
 public interface BankStAnalysisServicePort {
     List<Map<String, Object>> processBankStatement(Integer userId, String realmId, MultipartFile bankStatement);
+
+    Map<String, Object> processBankStatementBatch(String realmId, List<Integer> userIds, List<MultipartFile> bankStatements);
 }
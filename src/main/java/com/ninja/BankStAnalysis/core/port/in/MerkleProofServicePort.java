@@ -0,0 +1,9 @@
+package com.ninja.BankStAnalysis.core.port.in;
+
+import java.util.Map;
+
+public interface MerkleProofServicePort {
+    Map<String, Object> generateProof(Integer userId, String realmId, Long statementId, String token);
+
+    Map<String, Object> verifyProof(Integer userId, String realmId, Long statementId, String token, String proof);
+}
@@ -1,5 +1,8 @@
 package com.ninja.BankStAnalysis.core.port.in;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface ResponsePersistServicePort {
-    void persistResponse(String response);
+    // Completes once the flag status row is committed; inside a transaction the row is queued only after it commits
+    CompletableFuture<Void> persistResponse(String response);
 }
@@ -1,10 +1,15 @@
 package com.ninja.BankStAnalysis.core.port.out;
 
+import com.ninja.BankStAnalysis.core.model.NormalizedStatement;
+import com.ninja.BankStAnalysis.core.model.StatementTokens;
+import com.ninja.BankStAnalysis.core.model.StatementWrite;
 import com.ninja.BankStAnalysis.core.modelHelper.Provider;
 
 import java.util.List;
 import java.util.Map;
 
 public interface BankStAnalysisRepositoryPort {
-    List<Map<String, Object>> saveDetails(Integer userId, String realmId, Provider provider, String report, String summaryJson);
+    List<Map<String, Object>> saveDetails(Integer userId, String realmId, Provider provider, NormalizedStatement statement, StatementTokens tokens);
+
+    List<Map<String, Object>> saveDetails(List<StatementWrite> writes);
 }
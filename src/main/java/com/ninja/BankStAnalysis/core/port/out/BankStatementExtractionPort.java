@@ -1,8 +1,9 @@
 package com.ninja.BankStAnalysis.core.port.out;
 
+import com.ninja.BankStAnalysis.core.model.IngestionContext;
+import com.ninja.BankStAnalysis.core.model.NormalizedStatement;
 import com.ninja.BankStAnalysis.core.modelHelper.Provider;
-import org.springframework.web.multipart.MultipartFile;
 
 public interface BankStatementExtractionPort {
-    String extractReport(Provider provider, MultipartFile bankStatement) throws Exception;
-}
+    NormalizedStatement extractStatement(Provider provider, IngestionContext ingestion) throws Exception;
+}
\ No newline at end of file
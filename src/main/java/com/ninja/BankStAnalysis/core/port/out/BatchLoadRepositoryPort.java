@@ -0,0 +1,10 @@
+package com.ninja.BankStAnalysis.core.port.out;
+
+import com.ninja.BankStAnalysis.core.model.BatchStatement;
+
+import java.util.List;
+import java.util.Map;
+
+public interface BatchLoadRepositoryPort {
+    Map<String, Object> loadBatch(String realmId, List<BatchStatement> statements);
+}
@@ -1,9 +1,11 @@
 package com.ninja.BankStAnalysis.core.port.out;
 
+import com.ninja.BankStAnalysis.core.model.NormalizedStatement;
+import com.ninja.BankStAnalysis.core.model.StatementTokens;
 import com.ninja.BankStAnalysis.core.modelHelper.Provider;
 
 import java.util.Map;
 
 public interface DedupeRepositoryPort {
-    Map<String, Object> fetchDetails(Integer userId, String realmId, Provider provider, String report, String summaryJson);
+    Map<String, Object> fetchDetails(Integer userId, String realmId, Provider provider, NormalizedStatement statement, StatementTokens tokens);
 }
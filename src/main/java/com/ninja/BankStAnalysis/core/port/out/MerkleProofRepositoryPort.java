@@ -0,0 +1,15 @@
+package com.ninja.BankStAnalysis.core.port.out;
+
+import com.ninja.BankStAnalysis.core.model.StatementMerkleTree;
+
+import java.util.Optional;
+import java.util.OptionalInt;
+
+public interface MerkleProofRepositoryPort {
+    Optional<StatementMerkleTree> findStatementTree(Integer userId, String realmId, Long statementId);
+
+    OptionalInt findLeafIndex(StatementMerkleTree tree, byte[] digest);
+
+    // Sibling of the leaf's path at every height below the root, null where the path node has none
+    byte[][] findPathSiblings(StatementMerkleTree tree, int leaf);
+}
@@ -1,7 +1,10 @@
 package com.ninja.BankStAnalysis.core.port.out;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface ResponsePersistRepositoryPort {
     void insertUserBankStatementFlagStatus(List<Object[]> batchData);
+
+    CompletableFuture<Void> queueUserBankStatementFlagStatus(Object[] record);
 }
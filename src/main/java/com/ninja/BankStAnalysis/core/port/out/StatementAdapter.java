@@ -1,7 +1,8 @@
 package com.ninja.BankStAnalysis.core.port.out;
 
-import org.springframework.web.multipart.MultipartFile;
+import com.ninja.BankStAnalysis.core.model.IngestionContext;
+import com.ninja.BankStAnalysis.core.model.NormalizedStatement;
 
 public interface StatementAdapter {
-    String processStatement(MultipartFile bankStatement) throws Exception;
-}
+    NormalizedStatement processStatement(IngestionContext ingestion) throws Exception;
+}
\ No newline at end of file
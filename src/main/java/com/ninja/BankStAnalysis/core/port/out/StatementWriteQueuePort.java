@@ -0,0 +1,10 @@
+package com.ninja.BankStAnalysis.core.port.out;
+
+import com.ninja.BankStAnalysis.core.model.StatementWrite;
+
+public interface StatementWriteQueuePort {
+    /**
+     * Durably queues the write and returns its sequence number; throws IllegalStateException when the queue is full.
+     */
+    long enqueue(StatementWrite write);
+}
@@ -0,0 +1,15 @@
+package com.ninja.BankStAnalysis.core.port.out;
+
+import com.ninja.BankStAnalysis.core.modelHelper.ContentHashType;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public interface UploadRegistryPort {
+    Optional<List<Map<String, Object>>> findResult(Integer userId, String realmId, ContentHashType hashType, byte[] contentHash);
+
+    boolean claim(Integer userId, String realmId, ContentHashType hashType, byte[] contentHash);
+
+    void saveResult(Integer userId, String realmId, ContentHashType hashType, byte[] contentHash, List<Map<String, Object>> result);
+}
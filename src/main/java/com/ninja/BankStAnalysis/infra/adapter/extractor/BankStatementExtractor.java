@@ -6,4 +6,8 @@ import com.ninja.BankStAnalysis.core.port.out.StatementAdapter;
 
 public interface BankStatementExtractor extends StatementAdapter {
     boolean supports(Provider provider); // Determines if this extractor supports the given provider
+
+    default boolean isStreaming() { // Token-level extractors never materialize the whole document
+        return false;
+    }
 }
\ No newline at end of file
@@ -1,27 +1,40 @@
 package com.ninja.BankStAnalysis.infra.adapter.extractor;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ninja.BankStAnalysis.core.model.IngestionContext;
+import com.ninja.BankStAnalysis.core.model.NormalizedStatement;
 import com.ninja.BankStAnalysis.core.modelHelper.Provider;
 import com.ninja.BankStAnalysis.core.port.out.BankStatementExtractionPort;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 @Component
 @RequiredArgsConstructor
 public class BankStatementExtractorContext implements BankStatementExtractionPort {
 
     private final List<BankStatementExtractor> extractors; // All strategy implementations
-    private final ObjectMapper objectMapper;
 
-    private BankStatementExtractor getExtractor(Provider provider, MultipartFile bankStatement) throws Exception {
+    @Value("${bankstatement.extractor.streaming-providers:}")
+    private Set<Provider> streamingProviders; // Providers routed to a token-level extractor when one exists
+
+    private BankStatementExtractor getExtractor(Provider provider, IngestionContext ingestion) throws Exception {
+        // Streaming extractors handle every layout of their provider themselves
+        if (streamingProviders.contains(provider)) {
+            Optional<BankStatementExtractor> streamingExtractor = extractors.stream()
+                    .filter(extractor -> extractor.isStreaming() && extractor.supports(provider))
+                    .findFirst();
+            if (streamingExtractor.isPresent()) {
+                return streamingExtractor.get();
+            }
+        }
+
         // Special case for Perfios with "report" field
         if (provider == Provider.PERFIOS) {
-            JsonNode rootNode = objectMapper.readTree(bankStatement.getInputStream());
-            if (rootNode.has("report")) {
+            if (ingestion.hasField("report")) {
                 return extractors.stream()
                         .filter(extractor -> extractor instanceof PerfiosNinjacartExtractor)
                         .findFirst()
@@ -31,14 +44,14 @@ public class BankStatementExtractorContext implements BankStatementExtractionPor
 
         // General case
         return extractors.stream()
-                .filter(extractor -> extractor.supports(provider))
+                .filter(extractor -> !extractor.isStreaming() && extractor.supports(provider))
                 .findFirst()
                 .orElseThrow(() -> new IllegalArgumentException("No extractor found for provider: " + provider));
     }
 
     @Override
-    public String extractReport(Provider provider, MultipartFile bankStatement) throws Exception {
-        BankStatementExtractor extractor = getExtractor(provider, bankStatement);
-        return extractor.processStatement(bankStatement);
+    public NormalizedStatement extractStatement(Provider provider, IngestionContext ingestion) throws Exception {
+        BankStatementExtractor extractor = getExtractor(provider, ingestion);
+        return extractor.processStatement(ingestion);
     }
 }
@@ -1,37 +1,33 @@
 package com.ninja.BankStAnalysis.infra.adapter.extractor;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.ninja.BankStAnalysis.core.model.AmountDateCodec;
+import com.ninja.BankStAnalysis.core.model.CustomerDetails;
+import com.ninja.BankStAnalysis.core.model.IngestionContext;
+import com.ninja.BankStAnalysis.core.model.NormalizedStatement;
+import com.ninja.BankStAnalysis.core.model.StatementAccount;
+import com.ninja.BankStAnalysis.core.model.TransactionColumns;
 import com.ninja.BankStAnalysis.core.modelHelper.Provider;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
-import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 @Slf4j
 @Component
 public class FinboxExtractor implements BankStatementExtractor {
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
-
     @Override
     public boolean supports(Provider provider) {
         return provider == Provider.FINBOX;
     }
 
     @Override
-    public String processStatement(MultipartFile bankStatement) throws Exception {
+    public NormalizedStatement processStatement(IngestionContext ingestion) throws Exception {
         try {
-            JsonNode jsonNode = objectMapper.readTree(bankStatement.getInputStream());
-            String jsonString = jsonNode.toString();
-
-            ObjectNode finalJson = transformJson(jsonString);
-
-            return objectMapper.writeValueAsString(finalJson);
+            return transformJson(ingestion.getDocument());
 
         } catch (Exception e) {
             log.error("Error processing bank statement: {}", e.getMessage(), e);
@@ -40,84 +36,67 @@ public class FinboxExtractor implements BankStatementExtractor {
     }
 
     // Main transformation method
-    private ObjectNode transformJson(String inputJson) throws IOException {
-        JsonNode rootNode = objectMapper.readTree(inputJson);
-        ObjectNode outputNode = objectMapper.createObjectNode();
-
-        ArrayNode customerDetailsArray = objectMapper.createArrayNode();
-        ArrayNode accountXnsArray = objectMapper.createArrayNode();
-        ArrayNode eodArray = objectMapper.createArrayNode();
-        ArrayNode bankTransactionsArray = objectMapper.createArrayNode();
+    private NormalizedStatement transformJson(JsonNode rootNode) {
+        List<CustomerDetails> customerDetailsList = new ArrayList<>();
+        List<StatementAccount> accountXns = new ArrayList<>();
+        List<StatementAccount> eod = new ArrayList<>();
+        List<StatementAccount> bankTransactions = new ArrayList<>();
 
         JsonNode accountsNode = rootNode.path("accounts");
         for (JsonNode account : accountsNode) {
-            customerDetailsArray.add(createCustomerDetails(account));
-            accountXnsArray.add(createAccountXns(account));
-            eodArray.add(createEod(account));
-            bankTransactionsArray.add(createBankTransactions(account));
-        }
+            String accountNo = account.path("data").path("account_details").path("account_number").asText();
+            String accountType = account.path("data").path("account_details").path("account_category").asText();
 
-        outputNode.set("customerDetails", customerDetailsArray);
-        outputNode.set("accountXns", accountXnsArray);
-        outputNode.set("eod", eodArray);
-        outputNode.set("bankTransactions", bankTransactionsArray);
+            // accountXns and bankTransactions report the same rows, so both sections share one set of columns
+            TransactionColumns transactions = createTransactions(account);
 
-        return outputNode;
+            customerDetailsList.add(createCustomerDetails(account));
+            accountXns.add(new StatementAccount(accountNo, accountType, transactions));
+            eod.add(new StatementAccount(accountNo, createEodBalances(account)));
+            bankTransactions.add(new StatementAccount(accountNo, transactions));
+        }
+
+        return new NormalizedStatement(customerDetailsList, accountXns, eod, bankTransactions);
 
     }
 
     // Method to create customerDetails section
-    private ObjectNode createCustomerDetails(JsonNode account) {
+    private CustomerDetails createCustomerDetails(JsonNode account) {
         String name = account.path("data").path("account_details").path("name").asText();
         String mobileNo = account.path("data").path("account_details").path("phone_number").asText();
         String pan = account.path("data").path("account_details").path("pan_number").asText();
         String aadharMasked = account.path("data").path("account_details").path("aadhar_masked").asText();
         String bankName = account.path("data").path("account_details").path("bank").asText();
 
-        ObjectNode customerDetailsNode = objectMapper.createObjectNode();
-        customerDetailsNode.put("name", name);
-        customerDetailsNode.put("mobileNo", mobileNo);
-        customerDetailsNode.put("pan", pan);
-        customerDetailsNode.put("aadharMasked", aadharMasked);
-        customerDetailsNode.put("bankName", bankName);
-
-        return customerDetailsNode;
+        return new CustomerDetails(name, mobileNo, pan, aadharMasked, bankName);
     }
 
-    // Method to create accountXns section
-    private ObjectNode createAccountXns(JsonNode account) {
-        String accountNo = account.path("data").path("account_details").path("account_number").asText();
-        String accountType = account.path("data").path("account_details").path("account_category").asText();
-
-        ObjectNode accountXnNode = objectMapper.createObjectNode();
-        accountXnNode.put("accountNo", accountNo);
-        accountXnNode.put("accountType", accountType);
-
-        ArrayNode xnsArray = objectMapper.createArrayNode();
-        JsonNode transactions = account.path("data").path("transactions");
-        for (JsonNode txn : transactions) {
-            ObjectNode xnNode = objectMapper.createObjectNode();
-            String date = txn.path("date").asText().substring(0, 10);
+    // Method to create the transaction rows shared by accountXns and bankTransactions
+    private TransactionColumns createTransactions(JsonNode account) {
+        TransactionColumns transactions = new TransactionColumns();
+        for (JsonNode txn : account.path("data").path("transactions")) {
+            String timestamp = txn.path("date").asText();
             double amount = txn.path("amount").asDouble();
             String txnType = txn.path("transaction_type").asText();
-            xnNode.put("date", date);
-            xnNode.put("amount", "debit".equals(txnType) ? -amount:amount);
-            xnNode.put("balance", txn.path("balance").asDouble());
-            xnNode.put("narration", txn.path("transaction_note").asText());
-            xnsArray.add(xnNode);
+
+            // The date prefix of the timestamp is read in place
+            int row = transactions.addRow();
+            int epochDay = AmountDateCodec.parseIsoDate(timestamp, 0, Math.min(10, timestamp.length()));
+            if (epochDay != AmountDateCodec.NO_EPOCH_DAY) {
+                transactions.setEpochDay(row, epochDay);
+            } else {
+                transactions.setDate(row, timestamp.substring(0, 10));
+            }
+            transactions.setAmount(row, "debit".equals(txnType) ? -amount:amount);
+            transactions.setBalance(row, txn.path("balance").asDouble());
+            transactions.setNarration(row, txn.path("transaction_note").asText());
         }
-        accountXnNode.set("xns", xnsArray);
-        return accountXnNode;
+        return transactions;
     }
 
     // Method to create eod section
-    private ObjectNode createEod(JsonNode account) {
-        String accountNo = account.path("data").path("account_details").path("account_number").asText();
-
-        ObjectNode eodNode = objectMapper.createObjectNode();
-        eodNode.put("accountNo", accountNo);
-
-        ArrayNode balancesArray = objectMapper.createArrayNode();
+    private TransactionColumns createEodBalances(JsonNode account) {
+        TransactionColumns balances = new TransactionColumns();
         JsonNode eodBalances = account.path("data").path("eod_balances");
         for (Iterator<String> it = eodBalances.fieldNames(); it.hasNext(); ) {
             String monthYear = it.next();
@@ -132,38 +111,17 @@ public class FinboxExtractor implements BankStatementExtractor {
             JsonNode dailyBalances = eodBalances.path(monthYear);
             for (int day = 0; day < dailyBalances.size() && day < daysInMonth; day++) {
                 double balance = dailyBalances.get(day).asDouble();
-                String fullDate = String.format("%d-%02d-%02d", year, monthNum, day + 1);
-                ObjectNode balanceNode = objectMapper.createObjectNode();
-                balanceNode.put("date", fullDate);
-                balanceNode.put("balance", balance);
-                balancesArray.add(balanceNode);
+                int row = balances.addRow();
+                int epochDay = AmountDateCodec.toEpochDay(year, monthNum, day + 1);
+                if (epochDay != AmountDateCodec.NO_EPOCH_DAY) {
+                    balances.setEpochDay(row, epochDay);
+                } else {
+                    balances.setDate(row, String.format("%d-%02d-%02d", year, monthNum, day + 1));
+                }
+                balances.setBalance(row, balance);
             }
         }
-        eodNode.set("balances", balancesArray);
-        return eodNode;
-    }
-
-    // Method to create bankTransactions section
-    private ObjectNode createBankTransactions(JsonNode account) {
-        String accountNo = account.path("data").path("account_details").path("account_number").asText();
-
-        ObjectNode bankTxnNode = objectMapper.createObjectNode();
-        bankTxnNode.put("accountNo", accountNo);
-
-        ArrayNode bankTxnsArray = objectMapper.createArrayNode();
-        JsonNode transactions = account.path("data").path("transactions");
-        for (JsonNode txn : transactions) {
-            ObjectNode bankTxn = objectMapper.createObjectNode();
-            String date = txn.path("date").asText().substring(0, 10);
-            double amount = txn.path("amount").asDouble();
-            String txnType = txn.path("transaction_type").asText();
-            bankTxn.put("date", date);
-            bankTxn.put("amount", "debit".equals(txnType) ? -amount:amount);
-            bankTxn.put("balance", txn.path("balance").asDouble());
-            bankTxnsArray.add(bankTxn);
-        }
-        bankTxnNode.set("transactions", bankTxnsArray);
-        return bankTxnNode;
+        return balances;
     }
 
     // Helper method to convert month abbreviation to number
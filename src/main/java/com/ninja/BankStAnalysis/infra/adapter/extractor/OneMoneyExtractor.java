@@ -1,36 +1,31 @@
 package com.ninja.BankStAnalysis.infra.adapter.extractor;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.ninja.BankStAnalysis.core.model.CustomerDetails;
+import com.ninja.BankStAnalysis.core.model.IngestionContext;
+import com.ninja.BankStAnalysis.core.model.NormalizedStatement;
+import com.ninja.BankStAnalysis.core.model.StatementAccount;
+import com.ninja.BankStAnalysis.core.model.TransactionColumns;
 import com.ninja.BankStAnalysis.core.modelHelper.Provider;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
-import org.springframework.web.multipart.MultipartFile;
 
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 @Slf4j
 @Component
 public class OneMoneyExtractor implements BankStatementExtractor {
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
-
     @Override
     public boolean supports(Provider provider) {
         return provider == Provider.ONEMONEY;
     }
 
     @Override
-    public String processStatement(MultipartFile bankStatement) throws Exception {
+    public NormalizedStatement processStatement(IngestionContext ingestion) throws Exception {
         try {
-            JsonNode jsonNode = objectMapper.readTree(bankStatement.getInputStream());
-            String jsonString = jsonNode.toString();
-
-            ObjectNode finalJson = transformJson(jsonString);
-
-            return objectMapper.writeValueAsString(finalJson);
+            return transformJson(ingestion.getDocument());
 
         } catch (Exception e) {
             log.error("Error processing bank statement: {}", e.getMessage(), e);
@@ -39,74 +34,52 @@ public class OneMoneyExtractor implements BankStatementExtractor {
     }
 
     // Main transformation method
-    private ObjectNode transformJson(String inputJson) throws IOException {
-        JsonNode rootNode = objectMapper.readTree(inputJson);
-        ObjectNode outputNode = objectMapper.createObjectNode();
-
-        ArrayNode customerDetailsArray = objectMapper.createArrayNode();
-        ArrayNode accountXnsArray = objectMapper.createArrayNode();
-        ArrayNode eodArray = objectMapper.createArrayNode();
-        ArrayNode bankTransactionsArray = objectMapper.createArrayNode();
+    private NormalizedStatement transformJson(JsonNode rootNode) {
+        List<CustomerDetails> customerDetailsList = new ArrayList<>();
+        List<StatementAccount> accountXns = new ArrayList<>();
+        List<StatementAccount> bankTransactions = new ArrayList<>();
 
         JsonNode accountsNode = rootNode.path("data");
         for (JsonNode account : accountsNode) {
-            customerDetailsArray.add(createCustomerDetails(account));
-            accountXnsArray.add(createAccountXns(account));
+            String accountNo = account.path("maskedAccNumber").asText();
+            String accountType = account.path("Summary").path("type").asText();
+
+            // accountXns and bankTransactions report the same rows, so both sections share one set of columns
+            TransactionColumns transactions = createTransactions(account);
+
+            customerDetailsList.add(createCustomerDetails(account));
+            accountXns.add(new StatementAccount(accountNo, accountType, transactions));
 //            eodArray.add(createEod(account));
-            bankTransactionsArray.add(createBankTransactions(account));
+            bankTransactions.add(new StatementAccount(accountNo, transactions));
         }
 
-        outputNode.set("customerDetails", customerDetailsArray);
-        outputNode.set("accountXns", accountXnsArray);
-//        outputNode.set("eod", eodArray);
-        outputNode.set("bankTransactions", bankTransactionsArray);
-
-        return outputNode;
+        // OneMoney reports no EOD balances, so the statement has no eod section
+        return new NormalizedStatement(customerDetailsList, accountXns, null, bankTransactions);
 
     }
 
     // Method to create customerDetails section
-    private ObjectNode createCustomerDetails(JsonNode account) {
+    private CustomerDetails createCustomerDetails(JsonNode account) {
         String name = account.path("Profile").path("Holders").path("Holder").path("name").asText();
         String mobileNo = account.path("Profile").path("Holders").path("Holder").path("mobile").asText();
         String pan = account.path("Profile").path("Holders").path("Holder").path("pan").asText();
         String aadharMasked = account.path("Profile").path("Holders").path("Holder").path("aadharMasked").asText();
         String bankName = account.path("fipName").asText();
 
-        ObjectNode customerDetailsNode = objectMapper.createObjectNode();
-        customerDetailsNode.put("name", name);
-        customerDetailsNode.put("mobileNo", mobileNo);
-        customerDetailsNode.put("pan", pan);
-        customerDetailsNode.put("aadharMasked", aadharMasked);
-        customerDetailsNode.put("bankName", bankName);
-
-        return customerDetailsNode;
+        return new CustomerDetails(name, mobileNo, pan, aadharMasked, bankName);
     }
 
-    // Method to create accountXns section
-    private ObjectNode createAccountXns(JsonNode account) {
-        String accountNo = account.path("maskedAccNumber").asText();
-        String accountType = account.path("Summary").path("type").asText();
-
-        ObjectNode accountXnNode = objectMapper.createObjectNode();
-        accountXnNode.put("accountNo", accountNo);
-        accountXnNode.put("accountType", accountType);
-
-        ArrayNode xnsArray = objectMapper.createArrayNode();
-        JsonNode transactions = account.path("Transactions").path("Transaction");
-        for (JsonNode txn : transactions) {
-            ObjectNode xnNode = objectMapper.createObjectNode();
+    // Method to create the transaction rows shared by accountXns and bankTransactions
+    private TransactionColumns createTransactions(JsonNode account) {
+        TransactionColumns transactions = new TransactionColumns();
+        for (JsonNode txn : account.path("Transactions").path("Transaction")) {
             String date = txn.path("valueDate").asText();
             double amount = txn.path("amount").asDouble();
             String txnType = txn.path("type").asText();
-            xnNode.put("date", date);
-            xnNode.put("amount", "DEBIT".equals(txnType) ? -amount:amount);
-            xnNode.put("balance", txn.path("currentBalance").asDouble());
-            xnNode.put("narration", txn.path("narration").asText());
-            xnsArray.add(xnNode);
+            transactions.add(date, "DEBIT".equals(txnType) ? -amount:amount, txn.path("currentBalance").asDouble(),
+                    txn.path("narration").asText());
         }
-        accountXnNode.set("xns", xnsArray);
-        return accountXnNode;
+        return transactions;
     }
 
     // Method to create eod section
@@ -141,27 +114,4 @@ public class OneMoneyExtractor implements BankStatementExtractor {
 //        eodNode.set("balances", balancesArray);
 //        return eodNode;
 //    }
-
-    // Method to create bankTransactions section
-    private ObjectNode createBankTransactions(JsonNode account) {
-        String accountNo = account.path("maskedAccNumber").asText();
-
-        ObjectNode bankTxnNode = objectMapper.createObjectNode();
-        bankTxnNode.put("accountNo", accountNo);
-
-        ArrayNode bankTxnsArray = objectMapper.createArrayNode();
-        JsonNode transactions = account.path("Transactions").path("Transaction");
-        for (JsonNode txn : transactions) {
-            ObjectNode bankTxn = objectMapper.createObjectNode();
-            String date = txn.path("valueDate").asText();
-            double amount = txn.path("amount").asDouble();
-            String txnType = txn.path("type").asText();
-            bankTxn.put("date", date);
-            bankTxn.put("amount", "DEBIT".equals(txnType) ? -amount:amount);
-            bankTxn.put("balance", txn.path("currentBalance").asDouble());
-            bankTxnsArray.add(bankTxn);
-        }
-        bankTxnNode.set("transactions", bankTxnsArray);
-        return bankTxnNode;
-    }
-}
\ No newline at end of file
+}
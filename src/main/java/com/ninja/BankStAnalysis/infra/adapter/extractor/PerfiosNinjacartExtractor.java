@@ -1,14 +1,15 @@
 package com.ninja.BankStAnalysis.infra.adapter.extractor;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.jayway.jsonpath.JsonPath;
+import com.ninja.BankStAnalysis.core.enums.JSONPathRegistry;
+import com.ninja.BankStAnalysis.core.model.CustomerDetails;
+import com.ninja.BankStAnalysis.core.model.IngestionContext;
+import com.ninja.BankStAnalysis.core.model.JsonDocument;
+import com.ninja.BankStAnalysis.core.model.NormalizedStatement;
+import com.ninja.BankStAnalysis.core.model.StatementAccount;
+import com.ninja.BankStAnalysis.core.model.TransactionColumns;
 import com.ninja.BankStAnalysis.core.modelHelper.Provider;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -18,25 +19,19 @@ import java.util.Map;
 @Component
 public class PerfiosNinjacartExtractor implements BankStatementExtractor {
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
-
     @Override
     public boolean supports(Provider provider) {
         return provider == Provider.PERFIOS;
     }
 
     @Override
-    public String processStatement(MultipartFile bankStatement) throws Exception {
+    public NormalizedStatement processStatement(IngestionContext ingestion) throws Exception {
         try {
-            JsonNode jsonNode = objectMapper.readTree(bankStatement.getInputStream());
-            String jsonString = jsonNode.toString();
-
-
-            ObjectNode finalJson = processStatement(jsonString);
-
-//            System.out.println(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(finalJson));
+            // Parsed once; the Perfios layout is read from inside the "report" object
+            JsonDocument document = JsonDocument.of(JsonDocument.parse(ingestion.getContentAsString())
+                    .require(JSONPathRegistry.REPORT, Map.class));
 
-            return objectMapper.writeValueAsString(finalJson);
+            return processStatement(document);
 
         } catch (Exception e) {
             log.error("Error processing bank statement: {}", e.getMessage(), e);
@@ -44,128 +39,82 @@ public class PerfiosNinjacartExtractor implements BankStatementExtractor {
         }
     }
 
-    private ObjectNode processStatement(String jsonString) throws Exception {
-        List<String> accountNos = JsonPath.read(jsonString, "$.report.accountXns[*].accountNo");
+    private NormalizedStatement processStatement(JsonDocument document) throws Exception {
+        List<String> accountNos = document.require(JSONPathRegistry.ACCOUNT_NOS, List.class);
 
-        ArrayNode customerDetailsArray = extractCustomerDetails(jsonString);
-        ArrayNode accountXnsArray = extractAccountTransactions(jsonString, accountNos);
-        ArrayNode eodArray = extractEodBalances(jsonString, accountNos);
-        ArrayNode bankTransactionsArray = extractBankTransactions(jsonString, accountNos);
+        List<CustomerDetails> customerDetails = extractCustomerDetails(document);
+        List<StatementAccount> accountXns = new ArrayList<>();
+        List<StatementAccount> bankTransactions = new ArrayList<>();
+        extractAccountTransactions(document, accountXns, bankTransactions);
+        List<StatementAccount> eod = extractEodBalances(document, accountNos);
 
-
-        ObjectNode finalJson = objectMapper.createObjectNode();
-        finalJson.set("customerDetails", customerDetailsArray);
-        finalJson.set("accountXns", accountXnsArray);
-        finalJson.set("eod", eodArray);
-        finalJson.set("bankTransactions", bankTransactionsArray);
-
-        return finalJson;
+        return new NormalizedStatement(customerDetails, accountXns, eod, bankTransactions);
     }
 
-    private ArrayNode extractCustomerDetails(String jsonString) {
+    private List<CustomerDetails> extractCustomerDetails(JsonDocument document) {
 
-        ArrayNode customerDetailsArray = objectMapper.createArrayNode();
+        List<CustomerDetails> customerDetailsList = new ArrayList<>();
 
-        int totalAccountCount = JsonPath.read(jsonString, "$.report.accountXns.length()");
+        int totalAccountCount = document.require(JSONPathRegistry.ACCOUNT_XNS_COUNT, Integer.class);
 
-        for (int i = 0; i < totalAccountCount; i++) {
+        // Same customer for every account, so the fields are looked up once
+        CustomerDetails customerDetails = new CustomerDetails(
+                document.find(JSONPathRegistry.CUSTOMER_INFO_NAME, String.class).orElse(null),
+                document.find(JSONPathRegistry.CUSTOMER_INFO_MOBILE, String.class).orElse(null),
+                document.find(JSONPathRegistry.CUSTOMER_INFO_PAN, String.class).orElse(null),
+                document.find(JSONPathRegistry.CUSTOMER_INFO_AADHAR_MASKED, String.class).orElse(null),
+                document.find(JSONPathRegistry.CUSTOMER_INFO_BANK, String.class).orElse(null));
 
-            ObjectNode customerDetails = objectMapper.createObjectNode();
-            customerDetails.put("name", safeReadJsonPath(jsonString, "$.report.customerInfo.name"));
-            customerDetails.put("mobileNo", safeReadJsonPath(jsonString, "$.report.customerInfo.mobile"));
-            customerDetails.put("pan", safeReadJsonPath(jsonString, "$.report.customerInfo.pan"));
-            customerDetails.put("aadharMasked", safeReadJsonPath(jsonString, "$.report.customerInfo.aadharMasked"));
-            customerDetails.put("bankName", safeReadJsonPath(jsonString, "$.report.customerInfo.bank"));
-
-            customerDetailsArray.add(customerDetails);
+        for (int i = 0; i < totalAccountCount; i++) {
+            customerDetailsList.add(customerDetails);
         }
-        return customerDetailsArray;
+        return customerDetailsList;
     }
 
-    private ArrayNode extractAccountTransactions(String jsonString, List<String> accountNos) {
-        List<Map<String, Object>> accountXnsList = JsonPath.read(jsonString, "$.report.accountXns");
-        ArrayNode accountXnsArray = objectMapper.createArrayNode();
+    // accountXns and bankTransactions report the same rows, so both sections share one set of columns
+    private void extractAccountTransactions(JsonDocument document, List<StatementAccount> accountXns,
+                                            List<StatementAccount> bankTransactions) {
+        List<Map<String, Object>> accountXnsList = document.require(JSONPathRegistry.ACCOUNT_XNS, List.class);
 
         for (int i = 0; i < accountXnsList.size(); i++) {
-            Map<String, Object> accountXns = accountXnsList.get(i);
-            String accountNo = (String) accountXns.get("accountNo");
-            String accountType = (String) accountXns.get("accountType");
-            List<Map<String, Object>> xns = (List<Map<String, Object>>) accountXns.get("xns");
+            Map<String, Object> account = accountXnsList.get(i);
+            String accountNo = (String) account.get("accountNo");
+            String accountType = (String) account.get("accountType");
+            List<Map<String, Object>> xns = (List<Map<String, Object>>) account.get("xns");
 
-            ArrayNode xnsArray = objectMapper.createArrayNode();
+            TransactionColumns transactions = new TransactionColumns();
             for (int j = 0; j < xns.size(); j++) {
                 Map<String, Object> txn = xns.get(j);
-                ObjectNode transaction = objectMapper.createObjectNode();
-                transaction.put("date", (String) txn.get("date"));
-                transaction.put("amount", ((Number) txn.get("amount")).doubleValue());
-                transaction.put("balance", ((Number) txn.get("balance")).doubleValue());
-                transaction.put("narration", (String) txn.get("narration"));
-                xnsArray.add(transaction);
+                transactions.add((String) txn.get("date"),
+                        ((Number) txn.get("amount")).doubleValue(),
+                        ((Number) txn.get("balance")).doubleValue(),
+                        (String) txn.get("narration"));
             }
 
-            ObjectNode accountXnsObject = objectMapper.createObjectNode();
-            accountXnsObject.put("accountNo", accountNo);
-            accountXnsObject.put("accountType", accountType);
-            accountXnsObject.set("xns", xnsArray);
-            accountXnsArray.add(accountXnsObject);
+            accountXns.add(new StatementAccount(accountNo, accountType, transactions));
+            bankTransactions.add(new StatementAccount(accountNo, transactions));
         }
-
-        return accountXnsArray;
     }
 
-    private ArrayNode extractEodBalances(String jsonString, List<String> accountNos) {
-        List<Map<String, Object>> accountAnalysisList = JsonPath.read(jsonString, "$.report.accountAnalysis");
-        ArrayNode eodArray = objectMapper.createArrayNode();
+    private List<StatementAccount> extractEodBalances(JsonDocument document, List<String> accountNos) {
+        List<Map<String, Object>> accountAnalysisList = document.require(JSONPathRegistry.ACCOUNT_ANALYSIS, List.class);
+        List<StatementAccount> eod = new ArrayList<>();
 
         for (int i = 0; i < accountAnalysisList.size(); i++) {
             Map<String, Object> accountAnalysis = accountAnalysisList.get(i);
             String accountNo = accountNos.get(i);
             List<Map<String, Object>> eodBalances = (List<Map<String, Object>>) accountAnalysis.get("eODBalances");
 
-            ArrayNode balanceArray = objectMapper.createArrayNode();
+            TransactionColumns balances = new TransactionColumns();
             for (int j = 0; j < eodBalances.size(); j++) {
-                Map<String, Object> eod = eodBalances.get(j);
-                ObjectNode balanceObject = objectMapper.createObjectNode();
-                balanceObject.put("date", (String) eod.get("date"));
-                balanceObject.put("balance", ((Number) eod.get("balance")).doubleValue());
-                balanceArray.add(balanceObject);
+                Map<String, Object> balance = eodBalances.get(j);
+                balances.addBalance((String) balance.get("date"), ((Number) balance.get("balance")).doubleValue());
             }
 
-            ObjectNode eodObject = objectMapper.createObjectNode();
-            eodObject.put("accountNo", accountNo);
-            eodObject.set("balances", balanceArray);
-            eodArray.add(eodObject);
+            eod.add(new StatementAccount(accountNo, balances));
         }
 
-        return eodArray;
-    }
-
-    private ArrayNode extractBankTransactions(String jsonString, List<String> accountNos) {
-        List<Map<String, Object>> accountXnsList = JsonPath.read(jsonString, "$.report.accountXns");
-        ArrayNode bankTransactionsArray = objectMapper.createArrayNode();
-
-        for (int i = 0; i < accountXnsList.size(); i++) {
-            Map<String, Object> accountXns = accountXnsList.get(i);
-            String accountNo = (String) accountXns.get("accountNo");
-            List<Map<String, Object>> xns = (List<Map<String, Object>>) accountXns.get("xns");
-
-            ArrayNode transactionArray = objectMapper.createArrayNode();
-            for (int j = 0; j < xns.size(); j++) {
-                Map<String, Object> txn = xns.get(j);
-                ObjectNode transaction = objectMapper.createObjectNode();
-                transaction.put("date", (String) txn.get("date"));
-                transaction.put("amount", ((Number) txn.get("amount")).doubleValue());
-                transaction.put("balance", ((Number) txn.get("balance")).doubleValue());
-                transactionArray.add(transaction);
-            }
-
-            ObjectNode bankTransactionObject = objectMapper.createObjectNode();
-            bankTransactionObject.put("accountNo", accountNo);
-            bankTransactionObject.set("transactions", transactionArray);
-            bankTransactionsArray.add(bankTransactionObject);
-        }
-
-        return bankTransactionsArray;
+        return eod;
     }
 
     // Helper method to convert Number list to Double list
@@ -177,12 +126,5 @@ public class PerfiosNinjacartExtractor implements BankStatementExtractor {
         return doubles;
     }
 
-    private String safeReadJsonPath(String json, String path) {
-        try {
-            return JsonPath.read(json, path);
-        } catch (Exception e) {
-            return null;
-        }
-    }
 }
 
@@ -0,0 +1,17 @@
+package com.ninja.BankStAnalysis.infra.adapter.extractor;
+
+import com.ninja.BankStAnalysis.core.model.TransactionColumns;
+
+/**
+ * Receives a Perfios statement account by account while {@link PerfiosStreamingExtractor} streams it.
+ */
+interface PerfiosStatementSink {
+
+    void customerInfo(String name, String mobileNo, String pan, String aadharMasked, String bankName);
+
+    void accountTransactions(String accountNo, String accountType, TransactionColumns xns);
+
+    void eodBalances(int accountIndex, TransactionColumns balances); // Date and balance only
+
+    void end();
+}
@@ -0,0 +1,369 @@
+package com.ninja.BankStAnalysis.infra.adapter.extractor;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ninja.BankStAnalysis.core.model.AmountDateCodec;
+import com.ninja.BankStAnalysis.core.model.CustomerDetails;
+import com.ninja.BankStAnalysis.core.model.IngestionContext;
+import com.ninja.BankStAnalysis.core.model.NormalizedStatement;
+import com.ninja.BankStAnalysis.core.model.StatementAccount;
+import com.ninja.BankStAnalysis.core.model.TransactionColumns;
+import com.ninja.BankStAnalysis.core.modelHelper.Provider;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Token-level Perfios extractor for both the plain and the Ninjacart ("report" wrapped) layout.
+ * Walks accountXns[*].xns[*] and accountAnalysis[*].eODBalances[*] once with a JsonParser, filling the
+ * transaction columns directly, and produces the same statement as {@link PerfiosExtractor}.
+ *
+ * <p>What it saves is the JsonNode tree, the String copy and the json-smart maps of the tree based extractors.
+ * Heap still grows with the file: the upload bytes are held by {@link IngestionContext} and the returned
+ * statement keeps the columns of every account, since tokenization and persistence need all sections at once.</p>
+ */
+@Slf4j
+@Component
+public class PerfiosStreamingExtractor implements BankStatementExtractor {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Override
+    public boolean supports(Provider provider) {
+        return provider == Provider.PERFIOS;
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return true;
+    }
+
+    @Override
+    public NormalizedStatement processStatement(IngestionContext ingestion) throws Exception {
+        try {
+            StatementBuilder statementBuilder = new StatementBuilder();
+            readStatement(ingestion.getContent(), ingestion.hasField("report"), statementBuilder);
+            return statementBuilder.toStatement();
+
+        } catch (Exception e) {
+            log.error("Error processing bank statement: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to process bank statement", e);
+        }
+    }
+
+    void readStatement(byte[] content, boolean wrappedInReport, PerfiosStatementSink sink) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(content)) {
+            expect(parser, parser.nextToken(), JsonToken.START_OBJECT, "statement");
+            if (!wrappedInReport) {
+                readReport(parser, sink);
+                return;
+            }
+            boolean reportFound = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                if ("report".equals(field) && parser.nextToken() == JsonToken.START_OBJECT) {
+                    readReport(parser, sink);
+                    reportFound = true;
+                } else {
+                    parser.nextToken();
+                    parser.skipChildren();
+                }
+            }
+            if (!reportFound) {
+                throw new IllegalStateException("No report object found in statement");
+            }
+        }
+    }
+
+    private void readReport(JsonParser parser, PerfiosStatementSink sink) throws IOException {
+        TokenText text = new TokenText();
+        boolean accountXnsFound = false;
+        boolean accountAnalysisFound = false;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "customerInfo" -> readCustomerInfo(parser, token, sink);
+                case "accountXns" -> {
+                    expect(parser, token, JsonToken.START_ARRAY, field);
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        readAccount(parser, sink, text);
+                    }
+                    accountXnsFound = true;
+                }
+                case "accountAnalysis" -> {
+                    expect(parser, token, JsonToken.START_ARRAY, field);
+                    int accountIndex = 0;
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        sink.eodBalances(accountIndex++, readAccountAnalysis(parser, text));
+                    }
+                    accountAnalysisFound = true;
+                }
+                default -> parser.skipChildren();
+            }
+        }
+
+        if (!accountXnsFound || !accountAnalysisFound) {
+            throw new IllegalStateException("Statement is missing accountXns or accountAnalysis");
+        }
+        sink.end();
+    }
+
+    private void readCustomerInfo(JsonParser parser, JsonToken token, PerfiosStatementSink sink) throws IOException {
+        String name = null, mobileNo = null, pan = null, aadharMasked = null, bankName = null;
+        if (token == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "name" -> name = optionalText(parser);
+                    case "mobile" -> mobileNo = optionalText(parser);
+                    case "pan" -> pan = optionalText(parser);
+                    case "aadharMasked" -> aadharMasked = optionalText(parser);
+                    case "bank" -> bankName = optionalText(parser);
+                    default -> parser.skipChildren();
+                }
+            }
+        } else {
+            parser.skipChildren();
+        }
+        sink.customerInfo(name, mobileNo, pan, aadharMasked, bankName);
+    }
+
+    private void readAccount(JsonParser parser, PerfiosStatementSink sink, TokenText text) throws IOException {
+        String accountNo = null;
+        String accountType = null;
+        boolean xnsFound = false;
+        TransactionColumns xns = new TransactionColumns();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "accountNo" -> accountNo = text(parser);
+                case "accountType" -> accountType = text(parser);
+                case "xns" -> {
+                    expect(parser, token, JsonToken.START_ARRAY, field);
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        readEntry(parser, xns, true, text);
+                    }
+                    xnsFound = true;
+                }
+                default -> parser.skipChildren();
+            }
+        }
+
+        if (!xnsFound) {
+            throw new IllegalStateException("No xns found for account: " + accountNo);
+        }
+        sink.accountTransactions(accountNo, accountType, xns);
+    }
+
+    private TransactionColumns readAccountAnalysis(JsonParser parser, TokenText text) throws IOException {
+        boolean balancesFound = false;
+        TransactionColumns balances = new TransactionColumns();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if ("eODBalances".equals(field)) {
+                expect(parser, token, JsonToken.START_ARRAY, field);
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    readEntry(parser, balances, false, text);
+                }
+                balancesFound = true;
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        if (!balancesFound) {
+            throw new IllegalStateException("No eODBalances found in accountAnalysis");
+        }
+        return balances;
+    }
+
+    // Reads one xns or eODBalances element; EOD entries carry no amount or narration.
+    // Dates and amounts are converted from the parser's buffer, the reported text is only kept when that is not exact.
+    private void readEntry(JsonParser parser, TransactionColumns columns, boolean transaction, TokenText text) throws IOException {
+        int epochDay = AmountDateCodec.NO_EPOCH_DAY;
+        String date = null;
+        String narration = null;
+        boolean amountFound = false;
+        long amount = AmountDateCodec.NO_MINOR_UNITS;
+        double amountValue = 0;
+        boolean balanceFound = false;
+        long balance = AmountDateCodec.NO_MINOR_UNITS;
+        double balanceValue = 0;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "date" -> {
+                    epochDay = token == JsonToken.VALUE_STRING
+                            ? AmountDateCodec.parseIsoDate(text.of(parser)) : AmountDateCodec.NO_EPOCH_DAY;
+                    date = epochDay == AmountDateCodec.NO_EPOCH_DAY ? text(parser) : null;
+                }
+                case "amount" -> {
+                    amountFound = token != JsonToken.VALUE_NULL;
+                    amount = amountFound ? minorUnits(parser, text) : AmountDateCodec.NO_MINOR_UNITS;
+                    if (amountFound && amount == AmountDateCodec.NO_MINOR_UNITS) amountValue = parser.getDoubleValue();
+                }
+                case "balance" -> {
+                    balanceFound = token != JsonToken.VALUE_NULL;
+                    balance = balanceFound ? minorUnits(parser, text) : AmountDateCodec.NO_MINOR_UNITS;
+                    if (balanceFound && balance == AmountDateCodec.NO_MINOR_UNITS) balanceValue = parser.getDoubleValue();
+                }
+                case "narration" -> narration = text(parser);
+                default -> parser.skipChildren();
+            }
+        }
+
+        if (!balanceFound || (transaction && !amountFound)) {
+            throw new IllegalStateException("Missing amount or balance in entry dated: "
+                    + (epochDay != AmountDateCodec.NO_EPOCH_DAY ? AmountDateCodec.formatDate(epochDay) : date));
+        }
+
+        int row = columns.addRow();
+        if (epochDay != AmountDateCodec.NO_EPOCH_DAY) {
+            columns.setEpochDay(row, epochDay);
+        } else {
+            columns.setDate(row, date);
+        }
+        if (transaction) {
+            if (amount != AmountDateCodec.NO_MINOR_UNITS) columns.setAmountMinorUnits(row, amount);
+            else columns.setAmount(row, amountValue);
+        }
+        if (balance != AmountDateCodec.NO_MINOR_UNITS) columns.setBalanceMinorUnits(row, balance);
+        else columns.setBalance(row, balanceValue);
+        if (transaction) {
+            columns.setNarration(row, narration);
+        }
+    }
+
+    // Strings that are required to be strings when present, as the tree extractor casts them
+    private static String text(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NULL) return null;
+        if (token != JsonToken.VALUE_STRING) {
+            throw new IllegalStateException("Expected a string for '" + parser.currentName() + "' but found " + token);
+        }
+        return parser.getText();
+    }
+
+    // Optional customer fields read leniently, anything but a string becomes null
+    private static String optionalText(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_STRING) {
+            return parser.getText();
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    // Paise straight from the number's text, NO_MINOR_UNITS when only the double value is exact
+    private static long minorUnits(JsonParser parser, TokenText text) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (!token.isNumeric()) {
+            throw new IllegalStateException("Expected a number for '" + parser.currentName() + "' but found " + token);
+        }
+        return AmountDateCodec.parseMinorUnits(text.of(parser), false);
+    }
+
+    private static void expect(JsonParser parser, JsonToken actual, JsonToken expected, String field) {
+        if (actual != expected) {
+            throw new IllegalStateException("Expected " + expected + " for '" + field + "' but found " + actual
+                    + " at " + parser.currentLocation());
+        }
+    }
+
+    /**
+     * The text of the parser's current token read in place, without creating a String.
+     */
+    private static class TokenText implements CharSequence {
+
+        private char[] chars;
+        private int offset;
+        private int length;
+
+        TokenText of(JsonParser parser) throws IOException {
+            chars = parser.getTextCharacters();
+            offset = parser.getTextOffset();
+            length = parser.getTextLength();
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return chars[offset + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(chars, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, offset, length);
+        }
+    }
+
+    /**
+     * Assembles the {@link NormalizedStatement} of the tree based extractor. EOD balances are labelled with
+     * the account numbers of accountXns by position, so they are attached once the whole report is read.
+     */
+    private static class StatementBuilder implements PerfiosStatementSink {
+
+        private final List<StatementAccount> accountXns = new ArrayList<>();
+        private final List<StatementAccount> bankTransactions = new ArrayList<>();
+        private final List<TransactionColumns> eodBalances = new ArrayList<>();
+        private CustomerDetails customerDetails = new CustomerDetails(null, null, null, null, null);
+
+        @Override
+        public void customerInfo(String name, String mobileNo, String pan, String aadharMasked, String bankName) {
+            customerDetails = new CustomerDetails(name, mobileNo, pan, aadharMasked, bankName);
+        }
+
+        @Override
+        public void accountTransactions(String accountNo, String accountType, TransactionColumns xns) {
+            accountXns.add(new StatementAccount(accountNo, accountType, xns));
+            bankTransactions.add(new StatementAccount(accountNo, xns));
+        }
+
+        @Override
+        public void eodBalances(int accountIndex, TransactionColumns balances) {
+            eodBalances.add(balances);
+        }
+
+        @Override
+        public void end() {
+            if (eodBalances.size() > accountXns.size()) {
+                throw new IllegalStateException("Found EOD balances for " + eodBalances.size()
+                        + " accounts but transactions for only " + accountXns.size());
+            }
+        }
+
+        NormalizedStatement toStatement() {
+            List<CustomerDetails> customers = new ArrayList<>(accountXns.size());
+            for (int i = 0; i < accountXns.size(); i++) {
+                customers.add(customerDetails);
+            }
+            List<StatementAccount> eod = new ArrayList<>(eodBalances.size());
+            for (int i = 0; i < eodBalances.size(); i++) {
+                eod.add(new StatementAccount(accountXns.get(i).getAccountNo(), eodBalances.get(i)));
+            }
+            return new NormalizedStatement(customers, accountXns, eod, bankTransactions);
+        }
+    }
+}
@@ -1,41 +1,38 @@
 package com.ninja.BankStAnalysis.infra.adapter.extractor;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.ninja.BankStAnalysis.core.model.AmountDateCodec;
+import com.ninja.BankStAnalysis.core.model.CustomerDetails;
+import com.ninja.BankStAnalysis.core.model.IngestionContext;
+import com.ninja.BankStAnalysis.core.model.NormalizedStatement;
+import com.ninja.BankStAnalysis.core.model.StatementAccount;
+import com.ninja.BankStAnalysis.core.model.TransactionColumns;
 import com.ninja.BankStAnalysis.core.modelHelper.Provider;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.poifs.filesystem.FileMagic;
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.ss.util.CellRangeAddress;
 import org.springframework.stereotype.Component;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.io.InputStream;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.function.Function;
 
 @Slf4j
-@RequiredArgsConstructor
 @Component
 public class ScoremeExtractor implements BankStatementExtractor {
 
-    private final ObjectMapper objectMapper;
-
     @Override
     public boolean supports(Provider provider) {
         return provider == Provider.SCOREME;
     }
 
     @Override
-    public String processStatement(MultipartFile bankStatement) throws Exception {
-        try (InputStream inputStream = bankStatement.getInputStream();
-             Workbook workbook = WorkbookFactory.create(inputStream)) {
-
-            ObjectNode finalJson = transformExcel(workbook);
+    public NormalizedStatement processStatement(IngestionContext ingestion) throws Exception {
+        try {
+            ScoremeWorkbookData workbook = readWorkbook(ingestion);
 
-            return objectMapper.writeValueAsString(finalJson);
+            return transformExcel(workbook);
 
         } catch (Exception e) {
             log.error("Error processing bank statement: {}", e.getMessage(), e);
@@ -43,174 +40,128 @@ public class ScoremeExtractor implements BankStatementExtractor {
         }
     }
 
-    private ObjectNode transformExcel(Workbook workbook) throws Exception {
+    // .xlsx is streamed sheet by sheet, legacy .xls still goes through the usermodel
+    private ScoremeWorkbookData readWorkbook(IngestionContext ingestion) throws Exception {
+        if (FileMagic.valueOf(ingestion.getContent()) == FileMagic.OOXML) {
+            return ScoremeSheetReader.read(ingestion.getInputStream());
+        }
 
-        ObjectNode outputNode = objectMapper.createObjectNode();
+        try (InputStream inputStream = ingestion.getInputStream();
+             Workbook workbook = WorkbookFactory.create(inputStream)) {
 
-        ArrayNode customerDetailsArray = objectMapper.createArrayNode();
-        ArrayNode accountXnsArray = objectMapper.createArrayNode();
-        ArrayNode eodArray = objectMapper.createArrayNode();
-        ArrayNode bankTransactionsArray = objectMapper.createArrayNode();
+            ScoremeWorkbookData data = new ScoremeWorkbookData();
+            Sheet accountDetails = workbook.getSheetAt(0);
+            Sheet bankStatement = workbook.getSheetAt(1);
+            Sheet eod = workbook.getSheetAt(9);
 
-        customerDetailsArray.add(createCustomerDetails(workbook));
-        accountXnsArray.add(createAccountXns(workbook));
-        eodArray.add(createEod(workbook));
-        bankTransactionsArray.add(createBankTransactions(workbook));
+            accountDetails.getMergedRegions().forEach(data.accountDetailsSink()::mergedRegion);
+            copySheet(accountDetails, data.accountDetailsSink(), this::getCellValueAsString);
+            copySheet(bankStatement, data.bankStatementSink(), Cell::toString);
+            copySheet(eod, data.eodSink(), this::getCellValueAsString);
+            return data;
+        }
+    }
 
-        outputNode.set("customerDetails", customerDetailsArray);
-        outputNode.set("accountXns", accountXnsArray);
-        outputNode.set("eod", eodArray);
-        outputNode.set("bankTransactions", bankTransactionsArray);
+    private void copySheet(Sheet sheet, ScoremeWorkbookData.SheetSink sink, Function<Cell, String> renderer) {
+        for (Row row : sheet) {
+            sink.row(row.getRowNum());
+            for (Cell cell : row) {
+                if (sink.wantsCell(row.getRowNum(), cell.getColumnIndex())) {
+                    sink.cell(row.getRowNum(), cell.getColumnIndex(), renderer.apply(cell));
+                }
+            }
+        }
+    }
 
-        return outputNode;
+    private NormalizedStatement transformExcel(ScoremeWorkbookData workbook) throws Exception {
 
-    }
+        StatementColumns columns = readStatementColumns(workbook);
+
+        // Extract account details
+        String accountNo = workbook.getCellData(9, 6);
+        String accountType = workbook.getCellData(12, 6);
+
+        // bankTransactions carries the same rows as accountXns, only without narration
+        TransactionColumns transactions = createTransactions(columns);
 
-    private ObjectNode createCustomerDetails(Workbook workbook) {
+        return new NormalizedStatement(
+                List.of(createCustomerDetails(workbook)),
+                List.of(new StatementAccount(accountNo, accountType, transactions)),
+                List.of(new StatementAccount(accountNo, createEodBalances(workbook))),
+                List.of(new StatementAccount(accountNo, transactions)));
+    }
 
-        ObjectNode customerDetails = objectMapper.createObjectNode();
-        Sheet sheet = workbook.getSheetAt(0);
+    private CustomerDetails createCustomerDetails(ScoremeWorkbookData workbook) {
 
         // Extract Name from merged cells (Row 7, Columns E-H)
-        String name = getMergedCellValue(sheet, 6, 4, 7);
+        String name = workbook.getMergedCellValue(6, 4, 7);
         name = name.replace("Bank Statement Analysis Report - ", "").trim();
 
 
         String mobileNo = "";
         String pan = "";
         String aadharMasked = "";
-        String bankName = getCellData(sheet, 8, 6); // Row 9, Column G
-
-        customerDetails.put("name", name);
-        customerDetails.put("mobileNo", mobileNo);
-        customerDetails.put("pan", pan);
-        customerDetails.put("aadharMasked", aadharMasked);
-        customerDetails.put("bankName", bankName);
+        String bankName = workbook.getCellData(8, 6); // Row 9, Column G
 
-        return customerDetails;
+        return new CustomerDetails(name, mobileNo, pan, aadharMasked, bankName);
     }
 
-    private String getMergedCellValue(Sheet sheet, int rowIndex, int startCol, int endCol) {
-        for (CellRangeAddress region : sheet.getMergedRegions()) {
-            if (region.getFirstRow() == rowIndex &&
-                    region.getFirstColumn() >= startCol &&
-                    region.getLastColumn() <= endCol) {
-
-                Row row = sheet.getRow(rowIndex);
-                if (row != null) {
-                    Cell cell = row.getCell(region.getFirstColumn());
-                    return getCellValueAsString(cell);
-                }
-            }
-        }
-        return "";
+    // Bank Statement columns converted once and shared by accountXns and bankTransactions.
+    // Each column is read independently, so dates, amounts and balances are one-field row sets of their own.
+    private record StatementColumns(TransactionColumns dates, TransactionColumns amounts, TransactionColumns balances,
+                                    List<String> narrations) {
     }
 
-    private ObjectNode createAccountXns(Workbook workbook) throws Exception {
-
-        Sheet sheet = workbook.getSheetAt(1);
-
-        List<String> sheetDates = readColumnData(sheet, 2);
-        List<String> sheetDebitAmount = readColumnData(sheet, 5);
-        List<String> sheetCreditAmount = readColumnData(sheet, 6);
-        List<String> sheetBalances = readColumnData(sheet, 7);
-        List<String> sheetNarration = readColumnData(sheet, 3);
+    private StatementColumns readStatementColumns(ScoremeWorkbookData workbook) {
 
-        List<String> dates = convertDateFormat(sheetDates);
-        List<Double> balances = convertBalanceFormat(sheetBalances);
-        List<Double> amounts = mergeDebitCredit(sheetDebitAmount, sheetCreditAmount);
+        List<String> sheetDates = workbook.readColumnData(2);
+        List<String> sheetDebitAmount = workbook.readColumnData(5);
+        List<String> sheetCreditAmount = workbook.readColumnData(6);
+        List<String> sheetBalances = workbook.readColumnData(7);
+        List<String> sheetNarration = workbook.readColumnData(3);
 
+        TransactionColumns dates = convertDateFormat(sheetDates);
+        TransactionColumns balances = convertBalanceFormat(sheetBalances);
+        TransactionColumns amounts = mergeDebitCredit(sheetDebitAmount, sheetCreditAmount);
 
-        // Construct the new JSON output using Jackson
-        ArrayNode xnsArray = objectMapper.createArrayNode();
-        int maxSize = Math.max(dates.size(), Math.max(amounts.size(), balances.size()));
-
-        for (int i = 0; i < maxSize; i++) {
-            ObjectNode transactionObject = objectMapper.createObjectNode();
-
-            if (i < dates.size() && dates.get(i)!=null) {
-                transactionObject.put("date", dates.get(i));
-            }
-            if (i < amounts.size() && amounts.get(i)!=null) {
-                transactionObject.put("amount", amounts.get(i));
-            }
-            if (i < balances.size() && balances.get(i)!=null) {
-                transactionObject.put("balance", balances.get(i));
-            }
-            if (i < sheetNarration.size() && sheetNarration.get(i)!=null) {
-                transactionObject.put("narration", sheetNarration.get(i));
-            }
-            xnsArray.add(transactionObject);
-        }
-
-        // Extract account details
-        String accountNo = getCellData(workbook.getSheetAt(0), 9, 6);
-        String accountType = getCellData(workbook.getSheetAt(0), 12, 6);
-
-        // Create account JSON object
-        ObjectNode accountXnsObject = objectMapper.createObjectNode();
-        accountXnsObject.put("accountNo", accountNo);
-        accountXnsObject.put("accountType", accountType);
-        accountXnsObject.set("xns", xnsArray);
-
-        return accountXnsObject;
-
+        return new StatementColumns(dates, amounts, balances, sheetNarration);
     }
 
-    private ObjectNode createBankTransactions(Workbook workbook) throws Exception {
-
-        Sheet sheet = workbook.getSheetAt(1);
+    private TransactionColumns createTransactions(StatementColumns columns) {
 
-        List<String> sheetDates = readColumnData(sheet, 2);
-        List<String> sheetDebitAmount = readColumnData(sheet, 5);
-        List<String> sheetCreditAmount = readColumnData(sheet, 6);
-        List<String> sheetBalances = readColumnData(sheet, 7);
+        TransactionColumns dates = columns.dates();
+        TransactionColumns amounts = columns.amounts();
+        TransactionColumns balances = columns.balances();
+        List<String> sheetNarration = columns.narrations();
 
-        List<String> dates = convertDateFormat(sheetDates);
-        List<Double> balances = convertBalanceFormat(sheetBalances);
-        List<Double> amounts = mergeDebitCredit(sheetDebitAmount, sheetCreditAmount);
-
-        // Construct the new JSON output using Jackson
-        ArrayNode transactionsArray = objectMapper.createArrayNode();
+        // The columns are read independently, so a row only gets the fields its column actually has
+        TransactionColumns transactions = new TransactionColumns();
         int maxSize = Math.max(dates.size(), Math.max(amounts.size(), balances.size()));
 
         for (int i = 0; i < maxSize; i++) {
-            ObjectNode transactionObject = objectMapper.createObjectNode();
+            int row = transactions.addRow();
 
-            if (i < dates.size() && dates.get(i)!=null) {
-                transactionObject.put("date", dates.get(i));
+            if (i < dates.size()) {
+                transactions.copy(row, dates, i, TransactionColumns.DATE);
             }
-            if (i < amounts.size() && amounts.get(i)!=null) {
-                transactionObject.put("amount", amounts.get(i));
+            if (i < amounts.size()) {
+                transactions.copy(row, amounts, i, TransactionColumns.AMOUNT);
             }
-            if (i < balances.size() && balances.get(i)!=null) {
-                transactionObject.put("balance", balances.get(i));
+            if (i < balances.size()) {
+                transactions.copy(row, balances, i, TransactionColumns.BALANCE);
+            }
+            if (i < sheetNarration.size() && sheetNarration.get(i)!=null) {
+                transactions.setNarration(row, sheetNarration.get(i));
             }
-            transactionsArray.add(transactionObject);
         }
-
-        // Extract account details
-        String accountNo = getCellData(workbook.getSheetAt(0), 9, 6);
-
-        // Create account JSON object
-        ObjectNode bankTransactionsObject = objectMapper.createObjectNode();
-        bankTransactionsObject.put("accountNo", accountNo);
-        bankTransactionsObject.set("transactions", transactionsArray);
-
-        return bankTransactionsObject;
-
+        return transactions;
     }
 
-    private ObjectNode createEod(Workbook workbook) throws Exception{
+    private TransactionColumns createEodBalances(ScoremeWorkbookData workbook) {
 
-        Sheet sheet = workbook.getSheetAt(9);
+        List<Map<String, String>> data = workbook.readDataFromExcelSheetEOD();
 
-        List<Map<String, String>> data = readDataFromExcelSheetEOD(sheet);
-
-
-        String accountNo = getCellData(workbook.getSheetAt(0), 9, 6);
-
-        ArrayNode balances = objectMapper.createArrayNode();
+        TransactionColumns balances = new TransactionColumns();
 
         for (Map<String, String> entry : data) {
             String monthYear = entry.get("Month/Year");
@@ -235,91 +186,54 @@ public class ScoremeExtractor implements BankStatementExtractor {
             addBalanceEntry(balances, year, month, lastDay, entry.get("Last Day"));
         }
 
-        ObjectNode eodbalancesObject = objectMapper.createObjectNode();
-        eodbalancesObject.put("accountNo", accountNo);
-        eodbalancesObject.set("balances", balances);
-
-        return eodbalancesObject;
+        return balances;
     }
 
-    public List<Map<String, String>> readDataFromExcelSheetEOD(Sheet sheet) throws Exception {
-        List<Map<String, String>> data = new ArrayList<>();
-
-        int totalRows = sheet.getLastRowNum(); // Count of actual rows with data
+    // Sheet dates are dd-MMM-yyyy; anything else goes through the lenient SimpleDateFormat as before
+    private TransactionColumns convertDateFormat(List<String> dateList) {
+        TransactionColumns formattedDates = new TransactionColumns();
+        SimpleDateFormat inputFormat = null;
+        SimpleDateFormat outputFormat = null;
 
-        if (totalRows <= 7) return data; // Ensure valid data range
-
-        Row headerRow = sheet.getRow(5); // Get header row for column names
-        if (headerRow==null) return data; // Prevent null pointer errors
-
-        for (int rowIndex = 7; rowIndex < totalRows; rowIndex++) { // Start from row 8 (index 7)
-            Row row = sheet.getRow(rowIndex);
-            if (row==null) continue;
-
-            Map<String, String> entry = new HashMap<>();
-            Cell monthYearCell = row.getCell(1);
-            if (monthYearCell==null) continue; // Skip if Month/Year is missing
-
-            String monthYear = getCellValueAsString(monthYearCell);
-            entry.put("Month/Year", monthYear);
-
-            for (int colIndex = 9; colIndex <= 15; colIndex++) { // Columns J to P (index 9 to 15)
-                Cell headerCell = headerRow.getCell(colIndex);
-                Cell cell = row.getCell(colIndex);
-
-                if (headerCell!=null) {
-                    String key = getCellValueAsString(headerCell);
-                    String value = getCellValueAsString(cell);
-                    entry.put(key, value);
-                }
+        for (String dateStr : dateList) {
+            int row = formattedDates.addRow();
+            int epochDay = AmountDateCodec.parseDayMonthYear(dateStr);
+            if (epochDay != AmountDateCodec.NO_EPOCH_DAY) {
+                formattedDates.setEpochDay(row, epochDay);
+                continue;
             }
-            data.add(entry);
-        }
-        return data;
-    }
 
-    private List<String> readColumnData(Sheet sheet, int columnIndex) {
-        List<String> dataList = new ArrayList<>();
-        int rowCount = sheet.getPhysicalNumberOfRows();
-        for (int i = 5; i < rowCount - 1; i++) {  // Start from row index 6
-            Row row = sheet.getRow(i);
-            if (row!=null) {
-                Cell cell = row.getCell(columnIndex);
-                if (cell!=null) {
-                    dataList.add(cell.toString()); // Only add non-empty values
-                }
+            if (inputFormat == null) {
+                inputFormat = new SimpleDateFormat("dd-MMM-yyyy"); // Input format
+                outputFormat = new SimpleDateFormat("yyyy-MM-dd"); // Desired format
             }
-        }
-        return dataList;
-    }
-
-    private List<String> convertDateFormat(List<String> dateList) {
-        List<String> formattedDates = new ArrayList<>();
-        SimpleDateFormat inputFormat = new SimpleDateFormat("dd-MMM-yyyy"); // Input format
-        SimpleDateFormat outputFormat = new SimpleDateFormat("yyyy-MM-dd"); // Desired format
-
-        for (String dateStr : dateList) {
             try {
                 Date date = inputFormat.parse(dateStr);
-                formattedDates.add(outputFormat.format(date));
+                formattedDates.setDate(row, outputFormat.format(date));
             } catch (ParseException e) {
-                formattedDates.add(dateStr); // Keep original value if parsing fails
+                formattedDates.setDate(row, dateStr); // Keep original value if parsing fails
             }
         }
         return formattedDates;
     }
 
-    private List<Double> convertBalanceFormat(List<String> balances) {
-        List<Double> convertedBalances = new ArrayList<>();
+    private TransactionColumns convertBalanceFormat(List<String> balances) {
+        TransactionColumns convertedBalances = new TransactionColumns();
 
         for (String balance : balances) {
             if (balance!=null && !balance.trim().isEmpty()) {
+                int row = convertedBalances.addRow();
+                long minorUnits = AmountDateCodec.parseMinorUnits(balance, true); // Commas are grouping separators
+                if (minorUnits != AmountDateCodec.NO_MINOR_UNITS) {
+                    convertedBalances.setBalanceMinorUnits(row, Math.abs(minorUnits)); // Ensure absolute value
+                    continue;
+                }
                 try {
                     String sanitizedBalance = balance.replaceAll(",", ""); // Remove commas
                     double parsedBalance = Double.parseDouble(sanitizedBalance);
-                    convertedBalances.add(Math.abs(parsedBalance)); // Ensure absolute value
+                    convertedBalances.setBalance(row, Math.abs(parsedBalance)); // Ensure absolute value
                 } catch (NumberFormatException e) {
-                    convertedBalances.add(0.0);
+                    convertedBalances.setBalance(row, 0.0);
 //                    log.error("Invalid number format: " + balance);
                 }
             }
@@ -327,8 +241,8 @@ public class ScoremeExtractor implements BankStatementExtractor {
         return convertedBalances;
     }
 
-    private List<Double> mergeDebitCredit(List<String> debitList, List<String> creditList) {
-        List<Double> mergedList = new ArrayList<>();
+    private TransactionColumns mergeDebitCredit(List<String> debitList, List<String> creditList) {
+        TransactionColumns mergedList = new TransactionColumns();
         int size = Math.min(debitList.size(), creditList.size()); // Ensure same length
 
         for (int i = 0; i < size; i++) {
@@ -336,28 +250,26 @@ public class ScoremeExtractor implements BankStatementExtractor {
             String credit = creditList.get(i).trim();
 
             if (!credit.equals("-") && !credit.isEmpty()) {
-                mergedList.add(Double.parseDouble(credit)); // Add credit as positive
+                int row = mergedList.addRow();
+                long minorUnits = AmountDateCodec.parseMinorUnits(credit, false);
+                if (minorUnits != AmountDateCodec.NO_MINOR_UNITS) {
+                    mergedList.setAmountMinorUnits(row, minorUnits); // Add credit as positive
+                } else {
+                    mergedList.setAmount(row, Double.parseDouble(credit));
+                }
             } else if (!debit.equals("-") && !debit.isEmpty()) {
-                mergedList.add(-Double.parseDouble(debit)); // Add debit as negative
+                int row = mergedList.addRow();
+                long minorUnits = AmountDateCodec.parseMinorUnits(debit, false);
+                if (minorUnits != AmountDateCodec.NO_MINOR_UNITS && minorUnits != 0) {
+                    mergedList.setAmountMinorUnits(row, -minorUnits); // Add debit as negative
+                } else {
+                    mergedList.setAmount(row, -Double.parseDouble(debit)); // A zero debit stays -0.0
+                }
             }
         }
         return mergedList;
     }
 
-    private String getCellData(Sheet sheet, int rowNum, int colNum) {
-        try {
-            Row row = sheet.getRow(rowNum);
-            if (row==null) return ""; // Return empty if row is missing
-
-            Cell cell = row.getCell(colNum);
-            if (cell==null) return ""; // Return empty if cell is missing
-
-            return getCellValueAsString(cell);
-        } catch (Exception e) {
-            throw new RuntimeException("Error reading cell at row " + rowNum + ", col " + colNum, e);
-        }
-    }
-
     private String getCellValueAsString(Cell cell) {
         switch (cell.getCellType()) {
             case STRING:
@@ -378,13 +290,29 @@ public class ScoremeExtractor implements BankStatementExtractor {
         }
     }
 
-    private void addBalanceEntry(ArrayNode balances, String year, String month, int day, String balanceStr) {
+    private void addBalanceEntry(TransactionColumns balances, String year, String month, int day, String balanceStr) {
         if (balanceStr != null && !balanceStr.trim().isEmpty()) {
-            ObjectNode balanceEntry = objectMapper.createObjectNode();
-            balanceEntry.put("date", String.format("%s-%02d-%02d", year, getMonthNumber(month), day));
-            balanceEntry.put("balance", parseBalance(balanceStr));
-            balances.add(balanceEntry);
+            int row = balances.addRow();
+            int epochDay = year.length() == 4 ? AmountDateCodec.toEpochDay(parseYear(year), getMonthNumber(month), day)
+                    : AmountDateCodec.NO_EPOCH_DAY;
+            if (epochDay != AmountDateCodec.NO_EPOCH_DAY) {
+                balances.setEpochDay(row, epochDay);
+            } else {
+                balances.setDate(row, String.format("%s-%02d-%02d", year, getMonthNumber(month), day));
+            }
+            balances.setBalance(row, parseBalance(balanceStr));
+        }
+    }
+
+    // -1 unless the year is all digits, so it can only be used when it prints back unchanged
+    private int parseYear(String year) {
+        int value = 0;
+        for (int i = 0; i < year.length(); i++) {
+            char c = year.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
         }
+        return value;
     }
 
     private double parseBalance(String balanceStr) {
@@ -0,0 +1,236 @@
+package com.ninja.BankStAnalysis.infra.adapter.extractor;
+
+import org.apache.poi.ooxml.POIXMLTypeLoader;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.LocaleUtil;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTWorkbook;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.WorkbookDocument;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.InputStream;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Iterator;
+
+/**
+ * Reads the Account Details, Bank Statement and EOD sheets of a Scoreme .xlsx with the XSSF event model.
+ * Each sheet is parsed once as a SAX stream against the shared strings and styles tables, and cells are
+ * rendered exactly as the usermodel rendered them: Bank Statement cells like {@code Cell.toString()},
+ * the other sheets like {@code ScoremeExtractor.getCellValueAsString}.
+ */
+public final class ScoremeSheetReader {
+
+    private static final int ACCOUNT_DETAILS_SHEET = 0;
+    private static final int BANK_STATEMENT_SHEET = 1;
+    private static final int EOD_SHEET = 9;
+
+    private ScoremeSheetReader() {
+    }
+
+    public static ScoremeWorkbookData read(InputStream inputStream) throws Exception {
+        try (OPCPackage pkg = OPCPackage.open(inputStream)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable sharedStrings = new ReadOnlySharedStringsTable(pkg, false);
+            StylesTable styles = reader.getStylesTable();
+            boolean date1904 = isDate1904(reader);
+
+            ScoremeWorkbookData data = new ScoremeWorkbookData();
+            XMLReader xmlReader = XMLHelper.newXMLReader();
+
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            int sheetIndex = 0;
+            while (sheetIndex <= EOD_SHEET && sheets.hasNext()) {
+                try (InputStream sheet = sheets.next()) {
+                    ScoremeWorkbookData.SheetSink sink = switch (sheetIndex) {
+                        case ACCOUNT_DETAILS_SHEET -> data.accountDetailsSink();
+                        case BANK_STATEMENT_SHEET -> data.bankStatementSink();
+                        case EOD_SHEET -> data.eodSink();
+                        default -> null;
+                    };
+                    if (sink != null) {
+                        xmlReader.setContentHandler(new SheetHandler(sink, sharedStrings, styles, date1904,
+                                sheetIndex == BANK_STATEMENT_SHEET));
+                        xmlReader.parse(new InputSource(sheet));
+                    }
+                }
+                sheetIndex++;
+            }
+
+            if (sheetIndex <= EOD_SHEET) {
+                throw new IllegalArgumentException("Sheet index (" + EOD_SHEET + ") is out of range (0.." + (sheetIndex - 1) + ")");
+            }
+            return data;
+        }
+    }
+
+    private static boolean isDate1904(XSSFReader reader) throws Exception {
+        try (InputStream workbookData = reader.getWorkbookData()) {
+            CTWorkbook workbook = WorkbookDocument.Factory.parse(workbookData, POIXMLTypeLoader.DEFAULT_XML_OPTIONS).getWorkbook();
+            return workbook.isSetWorkbookPr() && workbook.getWorkbookPr().getDate1904();
+        }
+    }
+
+    /**
+     * Collects one cell at a time from the sheet XML and hands it to the sink once the cell closes.
+     */
+    private static class SheetHandler extends DefaultHandler {
+
+        private static final byte UNKNOWN = 0, DATE = 1, NOT_DATE = 2;
+
+        private final ScoremeWorkbookData.SheetSink sink;
+        private final ReadOnlySharedStringsTable sharedStrings;
+        private final StylesTable styles;
+        private final boolean date1904;
+        private final boolean displayText;
+        private final byte[] dateStyles;
+        private DateFormat displayDateFormat;
+
+        private int rowIndex = -1;
+        private int columnIndex;
+        private boolean wanted;
+        private String cellType;
+        private int styleIndex;
+        private boolean formula;
+        private boolean inPhonetic;
+        private StringBuilder capture;
+        private final StringBuilder value = new StringBuilder();
+        private final StringBuilder formulaText = new StringBuilder();
+        private final StringBuilder inlineText = new StringBuilder();
+
+        SheetHandler(ScoremeWorkbookData.SheetSink sink, ReadOnlySharedStringsTable sharedStrings, StylesTable styles,
+                     boolean date1904, boolean displayText) {
+            this.sink = sink;
+            this.sharedStrings = sharedStrings;
+            this.styles = styles;
+            this.date1904 = date1904;
+            this.displayText = displayText;
+            this.dateStyles = new byte[styles == null ? 0 : styles.getNumCellStyles()];
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "row" -> {
+                    String ref = attributes.getValue("r");
+                    rowIndex = ref != null ? Integer.parseInt(ref) - 1 : rowIndex + 1;
+                    columnIndex = -1;
+                    sink.row(rowIndex);
+                }
+                case "c" -> {
+                    String ref = attributes.getValue("r");
+                    columnIndex = ref != null ? new CellReference(ref).getCol() : columnIndex + 1;
+                    wanted = sink.wantsCell(rowIndex, columnIndex);
+                    cellType = attributes.getValue("t");
+                    String style = attributes.getValue("s");
+                    styleIndex = style != null ? Integer.parseInt(style) : 0;
+                    formula = false;
+                    value.setLength(0);
+                    formulaText.setLength(0);
+                    inlineText.setLength(0);
+                }
+                case "v" -> capture = wanted ? value : null;
+                case "f" -> {
+                    formula = true;
+                    capture = wanted ? formulaText : null;
+                }
+                case "rPh" -> inPhonetic = true;
+                case "t" -> capture = wanted && !inPhonetic ? inlineText : null;
+                case "mergeCell" -> sink.mergedRegion(CellRangeAddress.valueOf(attributes.getValue("ref")));
+                default -> {
+                }
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "v", "f", "t" -> capture = null;
+                case "rPh" -> inPhonetic = false;
+                case "c" -> {
+                    if (wanted) {
+                        sink.cell(rowIndex, columnIndex, displayText ? toDisplayText() : toValueText());
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (capture != null) {
+                capture.append(ch, start, length);
+            }
+        }
+
+        // Cell.toString() of the usermodel
+        private String toDisplayText() {
+            if (formula) return formulaText.toString();
+            if (cellType == null || "n".equals(cellType)) {
+                if (value.isEmpty()) return "";
+                double number = Double.parseDouble(value.toString());
+                if (isDateFormatted(number)) {
+                    if (displayDateFormat == null) {
+                        displayDateFormat = new SimpleDateFormat("dd-MMM-yyyy", LocaleUtil.getUserLocale());
+                        displayDateFormat.setTimeZone(LocaleUtil.getUserTimeZone());
+                    }
+                    return displayDateFormat.format(DateUtil.getJavaDate(number, date1904));
+                }
+                return Double.toString(number);
+            }
+            return switch (cellType) {
+                case "s", "inlineStr" -> stringValue();
+                case "b" -> "1".equals(value.toString()) ? "TRUE" : "FALSE";
+                case "e" -> value.toString();
+                default -> "";
+            };
+        }
+
+        // ScoremeExtractor.getCellValueAsString of the usermodel cell
+        private String toValueText() {
+            if (formula) return formulaText.toString();
+            if (cellType == null || "n".equals(cellType)) {
+                if (value.isEmpty()) return "";
+                double number = Double.parseDouble(value.toString());
+                if (isDateFormatted(number)) {
+                    return DateUtil.getJavaDate(number, date1904).toString();
+                }
+                return String.valueOf(number);
+            }
+            return switch (cellType) {
+                case "s", "inlineStr" -> stringValue().trim();
+                case "b" -> String.valueOf("1".equals(value.toString()));
+                default -> "Unsupported Cell Type";
+            };
+        }
+
+        private String stringValue() {
+            if ("inlineStr".equals(cellType)) {
+                return inlineText.isEmpty() ? value.toString() : inlineText.toString();
+            }
+            if (value.isEmpty()) return "";
+            return sharedStrings.getItemAt(Integer.parseInt(value.toString())).getString();
+        }
+
+        private boolean isDateFormatted(double number) {
+            if (!DateUtil.isValidExcelDate(number) || styleIndex >= dateStyles.length) return false;
+            if (dateStyles[styleIndex] == UNKNOWN) {
+                XSSFCellStyle style = styles.getStyleAt(styleIndex);
+                boolean date = style != null && DateUtil.isADateFormat(style.getDataFormat(), style.getDataFormatString());
+                dateStyles[styleIndex] = date ? DATE : NOT_DATE;
+            }
+            return dateStyles[styleIndex] == DATE;
+        }
+    }
+}
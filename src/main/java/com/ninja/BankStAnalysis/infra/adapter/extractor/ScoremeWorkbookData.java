@@ -0,0 +1,215 @@
+package com.ninja.BankStAnalysis.infra.adapter.extractor;
+
+import org.apache.poi.ss.util.CellRangeAddress;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The cells of a Scoreme workbook that {@link ScoremeExtractor} reads, captured in a single pass per sheet.
+ * Readers only hand over cells from the rows and columns below, already rendered as text, so the
+ * rest of the workbook is never kept in memory.
+ */
+public class ScoremeWorkbookData {
+
+    // Account Details sheet: customer name, bank, account number and type
+    private static final int HEADER_FIRST_ROW = 6;
+    private static final int HEADER_LAST_ROW = 12;
+
+    // Bank Statement sheet: date, narration, debit, credit and balance columns
+    private static final int TRANSACTION_FIRST_ROW = 5;
+    private static final Set<Integer> TRANSACTION_COLUMNS = Set.of(2, 3, 5, 6, 7);
+
+    // EOD sheet: header row, then one row per month with balances on fixed days
+    private static final int EOD_HEADER_ROW = 5;
+    private static final int EOD_FIRST_ROW = 7;
+    private static final int EOD_MONTH_COLUMN = 1;
+    private static final int EOD_FIRST_COLUMN = 9;
+    private static final int EOD_LAST_COLUMN = 15;
+
+    private final Set<Integer> headerRows = new HashSet<>();
+    private final Map<Long, String> headerCells = new HashMap<>();
+    private final List<CellRangeAddress> mergedRegions = new ArrayList<>();
+
+    private final Map<Integer, Column> transactionColumns = new HashMap<>();
+    private int transactionPhysicalRows;
+
+    private final TreeMap<Integer, String[]> eodRows = new TreeMap<>();
+    private int eodLastRowNum = -1;
+
+    /**
+     * Receives the rows and cells of one sheet in document order.
+     */
+    public interface SheetSink {
+
+        void row(int rowIndex);
+
+        boolean wantsCell(int rowIndex, int columnIndex); // Lets readers skip rendering unused cells
+
+        void cell(int rowIndex, int columnIndex, String value);
+
+        default void mergedRegion(CellRangeAddress region) {
+        }
+    }
+
+    public SheetSink accountDetailsSink() {
+        return new SheetSink() {
+            @Override
+            public void row(int rowIndex) {
+                headerRows.add(rowIndex);
+            }
+
+            @Override
+            public boolean wantsCell(int rowIndex, int columnIndex) {
+                return rowIndex >= HEADER_FIRST_ROW && rowIndex <= HEADER_LAST_ROW;
+            }
+
+            @Override
+            public void cell(int rowIndex, int columnIndex, String value) {
+                headerCells.put(cellKey(rowIndex, columnIndex), value);
+            }
+
+            @Override
+            public void mergedRegion(CellRangeAddress region) {
+                mergedRegions.add(region);
+            }
+        };
+    }
+
+    public SheetSink bankStatementSink() {
+        return new SheetSink() {
+            @Override
+            public void row(int rowIndex) {
+                transactionPhysicalRows++;
+            }
+
+            @Override
+            public boolean wantsCell(int rowIndex, int columnIndex) {
+                return rowIndex >= TRANSACTION_FIRST_ROW && TRANSACTION_COLUMNS.contains(columnIndex);
+            }
+
+            @Override
+            public void cell(int rowIndex, int columnIndex, String value) {
+                transactionColumns.computeIfAbsent(columnIndex, column -> new Column()).add(rowIndex, value);
+            }
+        };
+    }
+
+    public SheetSink eodSink() {
+        return new SheetSink() {
+            @Override
+            public void row(int rowIndex) {
+                eodLastRowNum = Math.max(eodLastRowNum, rowIndex);
+                if (rowIndex == EOD_HEADER_ROW || rowIndex >= EOD_FIRST_ROW) {
+                    eodRows.put(rowIndex, new String[EOD_LAST_COLUMN + 1]);
+                }
+            }
+
+            @Override
+            public boolean wantsCell(int rowIndex, int columnIndex) {
+                return eodRows.containsKey(rowIndex) && (columnIndex == EOD_MONTH_COLUMN
+                        || (columnIndex >= EOD_FIRST_COLUMN && columnIndex <= EOD_LAST_COLUMN));
+            }
+
+            @Override
+            public void cell(int rowIndex, int columnIndex, String value) {
+                eodRows.get(rowIndex)[columnIndex] = value;
+            }
+        };
+    }
+
+    // Empty when the row or cell is missing
+    public String getCellData(int rowNum, int colNum) {
+        return headerCells.getOrDefault(cellKey(rowNum, colNum), "");
+    }
+
+    public String getMergedCellValue(int rowIndex, int startCol, int endCol) {
+        for (CellRangeAddress region : mergedRegions) {
+            if (region.getFirstRow() == rowIndex &&
+                    region.getFirstColumn() >= startCol &&
+                    region.getLastColumn() <= endCol) {
+
+                if (headerRows.contains(rowIndex)) {
+                    String value = headerCells.get(cellKey(rowIndex, region.getFirstColumn()));
+                    if (value == null) {
+                        throw new IllegalStateException("Missing merged cell at row " + rowIndex + ", col " + region.getFirstColumn());
+                    }
+                    return value;
+                }
+            }
+        }
+        return "";
+    }
+
+    // Present cells of a transaction column, excluding the closing row of the sheet
+    public List<String> readColumnData(int columnIndex) {
+        Column column = transactionColumns.get(columnIndex);
+        if (column == null) return new ArrayList<>();
+        return column.valuesBefore(transactionPhysicalRows - 1);
+    }
+
+    public List<Map<String, String>> readDataFromExcelSheetEOD() {
+        List<Map<String, String>> data = new ArrayList<>();
+
+        if (eodLastRowNum <= EOD_FIRST_ROW) return data; // Ensure valid data range
+
+        String[] headerRow = eodRows.get(EOD_HEADER_ROW);
+        if (headerRow == null) return data;
+
+        for (Map.Entry<Integer, String[]> row : eodRows.tailMap(EOD_FIRST_ROW).headMap(eodLastRowNum).entrySet()) {
+            String[] cells = row.getValue();
+            String monthYear = cells[EOD_MONTH_COLUMN];
+            if (monthYear == null) continue; // Skip if Month/Year is missing
+
+            Map<String, String> entry = new HashMap<>();
+            entry.put("Month/Year", monthYear);
+
+            for (int colIndex = EOD_FIRST_COLUMN; colIndex <= EOD_LAST_COLUMN; colIndex++) {
+                String key = headerRow[colIndex];
+                if (key != null) {
+                    if (cells[colIndex] == null) {
+                        throw new IllegalStateException("Missing EOD balance at row " + row.getKey() + ", col " + colIndex);
+                    }
+                    entry.put(key, cells[colIndex]);
+                }
+            }
+            data.add(entry);
+        }
+        return data;
+    }
+
+    private static long cellKey(int rowIndex, int columnIndex) {
+        return ((long) rowIndex << 32) | columnIndex;
+    }
+
+    private static class Column {
+
+        private int[] rows = new int[1024];
+        private String[] values = new String[1024];
+        private int size;
+
+        void add(int rowIndex, String value) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            rows[size] = rowIndex;
+            values[size] = value;
+            size++;
+        }
+
+        List<String> valuesBefore(int rowLimit) {
+            List<String> result = new ArrayList<>(size);
+            for (int i = 0; i < size && rows[i] < rowLimit; i++) {
+                result.add(values[i]);
+            }
+            return result;
+        }
+    }
+}
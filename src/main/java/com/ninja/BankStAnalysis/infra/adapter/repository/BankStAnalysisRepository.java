@@ -1,8 +1,11 @@
 package com.ninja.BankStAnalysis.infra.adapter.repository;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.jayway.jsonpath.JsonPath;
-import com.jayway.jsonpath.PathNotFoundException;
+import com.ninja.BankStAnalysis.core.ananomyzer.core.MerkleMountainRange;
+import com.ninja.BankStAnalysis.core.ananomyzer.core.MerkleTreeLevels;
+import com.ninja.BankStAnalysis.core.ananomyzer.core.TokenEngine;
+import com.ninja.BankStAnalysis.core.model.NormalizedStatement;
+import com.ninja.BankStAnalysis.core.model.StatementTokens;
+import com.ninja.BankStAnalysis.core.model.StatementWrite;
 import com.ninja.BankStAnalysis.core.modelHelper.BankStatementHashType;
 import com.ninja.BankStAnalysis.core.modelHelper.Provider;
 import com.ninja.BankStAnalysis.core.modelHelper.SourceType;
@@ -10,10 +13,12 @@ import com.ninja.BankStAnalysis.core.port.out.BankStAnalysisRepositoryPort;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
 import java.sql.Timestamp;
+import java.time.LocalDateTime;
 import java.util.*;
 
 @Slf4j
@@ -21,229 +26,348 @@ import java.util.*;
 @RequiredArgsConstructor
 public class BankStAnalysisRepository implements BankStAnalysisRepositoryPort {
 
+    private static final ChunkedRowWriter STATEMENT_MERKLE_WRITER = new ChunkedRowWriter("""
+            INSERT INTO user_bank_statement_merkle
+            (statement_id, leaf_count, merkle_root, nodes, created_at)
+            VALUES
+            """,
+            "(?, ?, ?, ?, ?)",
+            "");
+
     private final JdbcTemplate jdbcTemplate;
-    private final ObjectMapper objectMapper;
+    private final IdBlockAllocator idBlockAllocator;
+    private final TransactionPartitionManager transactionPartitionManager;
 
     @Override
     @Transactional
-    public List<Map<String, Object>> saveDetails(Integer userId, String realmId, Provider provider, String report, String response) {
-        validateInputs(userId, realmId, provider, report, response);
+    public List<Map<String, Object>> saveDetails(Integer userId, String realmId, Provider provider, NormalizedStatement statement, StatementTokens tokens) {
+        validateInputs(userId, realmId, provider, statement, tokens);
+        return saveDetails(List.of(StatementWrite.of(userId, realmId, provider, statement, tokens)));
+    }
+
+    /**
+     * Persists several uploads in one transaction, with one COPY for all their statements and one for all their
+     * transactions. Stored statements are never changed: an upload extending an earlier statement is stored as a
+     * new statement on top of it, holding only the rows after it, so the earlier root and its proofs stay valid.
+     * An upload is only found to extend statements committed before, so two uploads of the same user and realm
+     * should not share a call. Any failure fails the whole call, so no upload is ever saved in part.
+     */
+    @Override
+    @Transactional
+    public List<Map<String, Object>> saveDetails(List<StatementWrite> writes) {
+        Objects.requireNonNull(writes, "writes must not be null");
         try {
             List<Object[]> statementBatch = new ArrayList<>();
-            List<List<Object[]>> transactionBatches = new ArrayList<>();
+            List<TransactionRun> transactionRuns = new ArrayList<>(); // Per statementBatch entry, null without rows
+            List<StatementTokens.AccountTokens> statementAccounts = new ArrayList<>(); // Per statementBatch entry
 
-            // Process each JSON path and collect statements and their transactions
-            processIfPathExists(userId, realmId, provider, report, response, statementBatch, transactionBatches, "$.accountXns[*]");
-            processIfPathExists(userId, realmId, provider, report, response, statementBatch, transactionBatches, "$.eod[*]");
-            processIfPathExists(userId, realmId, provider, report, response, statementBatch, transactionBatches, "$.bankTransactions[*]");
+            // Process each section of each upload and collect statements and their transactions
+            for (StatementWrite write : writes) {
+                for (BankStatementHashType section : List.of(BankStatementHashType.ACCOUNT_XNS, BankStatementHashType.EOD_BALANCE, BankStatementHashType.BANK_TRANSACTION)) {
+                    processIfSectionExists(write, statementBatch, transactionRuns, statementAccounts, section);
+                }
+            }
 
             List<Map<String, Object>> savedStatements = new ArrayList<>();
             List<Long> statementIds = new ArrayList<>();
 
             if (!statementBatch.isEmpty()) {
-                savedStatements = insertUserBankStatement(statementBatch);
-                // Extract IDs from saved statements for transaction linking
-                statementIds = savedStatements.stream()
-                        .map(row -> (Long) row.get("id"))
-                        .toList();
-                log.info("Inserted {} bank statements for userId: {}", statementBatch.size(), userId);
+                // Ids are known before the insert, so transactions are linked without reading the statements back
+                IdBlockAllocator.Ids ids = idBlockAllocator.reserve(IdBlockAllocator.Sequence.STATEMENT, statementBatch.size());
+                statementIds = new ArrayList<>(statementBatch.size());
+                for (int i = 0; i < statementBatch.size(); i++) {
+                    statementIds.add(ids.next());
+                }
+                savedStatements = insertUserBankStatement(statementBatch, statementIds);
+                log.info("Inserted {} bank statements for {} uploads", statementBatch.size(), writes.size());
             } else {
-                log.warn("No bank statements to insert for userId: {}", userId);
+                log.warn("No bank statements to insert for {} uploads", writes.size());
             }
 
-            if (!transactionBatches.isEmpty() && !statementIds.isEmpty()) {
-                List<Object[]> allTransactions = new ArrayList<>();
-                for (int i = 0; i < transactionBatches.size(); i++) {
-                    List<Object[]> transactions = transactionBatches.get(i);
-                    for (Object[] transaction : transactions) {
-                        transaction[transaction.length - 1] = statementIds.get(i); // Assign correct statement_id
-                        allTransactions.add(transaction);
-                    }
+            List<TransactionRun> allRuns = new ArrayList<>();
+            for (int i = 0; i < transactionRuns.size(); i++) {
+                if (transactionRuns.get(i) != null) {
+                    allRuns.add(transactionRuns.get(i).withStatementId(statementIds.get(i))); // Assign correct statement_id
                 }
-                insertUserBankTransaction(allTransactions);
-                log.info("Inserted {} transactions for userId: {}", allTransactions.size(), userId);
+            }
+            if (!allRuns.isEmpty()) {
+                long inserted = insertUserBankTransaction(allRuns);
+                log.info("Inserted {} transactions for {} uploads", inserted, writes.size());
             } else {
-                log.debug("No transactions to insert for userId: {}", userId);
+                log.debug("No transactions to insert for {} uploads", writes.size());
+            }
+
+            // A statement extending another gets the tree over all its rows, including those stored under the base
+            List<Object[]> merkleBatch = new ArrayList<>();
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            for (int i = 0; i < statementIds.size(); i++) {
+                addMerkleTree(merkleBatch, statementIds.get(i), statementAccounts.get(i), now);
+            }
+            if (!merkleBatch.isEmpty()) {
+                insertStatementMerkle(merkleBatch);
             }
 
             return savedStatements;
 
         } catch (Exception e) {
-            log.error("Failed to save bank statement details for userId: {}, realmId: {}, provider: {}", userId, realmId, provider, e);
-            throw new RuntimeException("Error parsing JSON or saving data: " + e.getMessage(), e);
+            log.error("Failed to save bank statement details of {} uploads", writes.size(), e);
+            throw new RuntimeException("Error saving data: " + e.getMessage(), e);
         }
     }
 
-    private void validateInputs(Integer userId, String realmId, Provider provider, String report, String response) {
+    private void validateInputs(Integer userId, String realmId, Provider provider, NormalizedStatement statement, StatementTokens tokens) {
         Objects.requireNonNull(userId, "userId must not be null");
         Objects.requireNonNull(realmId, "realmId must not be null");
         Objects.requireNonNull(provider, "provider must not be null");
-        Objects.requireNonNull(report, "report must not be null");
-        Objects.requireNonNull(response, "response must not be null");
+        Objects.requireNonNull(statement, "statement must not be null");
+        Objects.requireNonNull(tokens, "tokens must not be null");
     }
 
-    private void processIfPathExists(Integer userId, String realmId, Provider provider, String report, String response,
-                                     List<Object[]> statementBatch, List<List<Object[]>> transactionBatches, String jsonPath) {
+    private void processIfSectionExists(StatementWrite write, List<Object[]> statementBatch, List<TransactionRun> transactionRuns,
+                                        List<StatementTokens.AccountTokens> statementAccounts, BankStatementHashType section) {
         try {
-            List<Map<String, Object>> accounts = JsonPath.read(response, jsonPath);
-            if (accounts == null || accounts.isEmpty()) {
-                log.debug("No accounts found for JSON path: {} in response for userId: {}", jsonPath, userId);
+            List<StatementTokens.AccountTokens> accounts = write.getTokens().getSection(section);
+            if (accounts.isEmpty()) {
+                log.info("Section not found: {} for userId: {}, skipping this section", section, write.getUserId());
                 return;
             }
-            processAccounts(userId, realmId, provider, report, accounts, statementBatch, transactionBatches, jsonPath);
-        } catch (PathNotFoundException e) {
-            log.info("JSON path not found: {} for userId: {}, skipping this section", jsonPath, userId);
+            processAccounts(write, accounts, statementBatch, transactionRuns, statementAccounts, section);
         } catch (Exception e) {
-            log.error("Unexpected error processing JSON path: {} for userId: {}", jsonPath, userId, e);
+            log.error("Unexpected error processing section: {} for userId: {}", section, write.getUserId(), e);
+            throw new RuntimeException("Error processing section " + section + ": " + e.getMessage(), e);
         }
     }
 
-    private void processAccounts(Integer userId, String realmId, Provider provider, String report, List<Map<String, Object>> accounts,
-                                 List<Object[]> statementBatch, List<List<Object[]>> transactionBatches, String jsonPath) {
+    private void processAccounts(StatementWrite write, List<StatementTokens.AccountTokens> accounts, List<Object[]> statementBatch,
+                                 List<TransactionRun> transactionRuns, List<StatementTokens.AccountTokens> statementAccounts,
+                                 BankStatementHashType section) {
+        Integer userId = write.getUserId();
+        String realmId = write.getRealmId();
         try {
             for (int i = 0; i < accounts.size(); i++) {
-                Map<String, Object> account = accounts.get(i);
-                String accountNumber = (String) account.get("accountNo");
-                String rootHash = (String) account.get("token");
+                StatementTokens.AccountTokens account = accounts.get(i);
+                String accountNumber = account.getAccountNo();
+                byte[] rootHash = account.getDigest();
 
                 if (accountNumber == null || rootHash == null) {
                     log.warn("Skipping account at index {} for userId: {} due to missing accountNumber or rootHash", i, userId);
                     continue;
                 }
 
-                int hashType = determineHashType(jsonPath);
-                int providerType = provider.ordinal();
+                int hashType = section.ordinal();
+                int providerType = write.getProvider().ordinal();
                 int sourceType = SourceType.BATCH.ordinal();
                 String mediaLink = "";
-                String phoneNumber = safeJsonPathRead(report, String.format("$.customerDetails[%d].mobileNo", i), String.class).orElse("");
+                String phoneNumber = write.getPhoneNumber(i);
                 String createdBy = "SYSTEM";
+                Timestamp now = new Timestamp(System.currentTimeMillis());
+
+                // Only the rows after an earlier upload of the same account are new when this one extends it
+                MerkleMountainRange accumulator = new MerkleMountainRange();
+                Map<String, Object> extended = findExtendedStatement(userId, realmId, accountNumber, hashType, account, accumulator);
+                int firstNewRow = extended == null ? 0 : ((Number) extended.get("mmr_leaf_count")).intValue();
+                Long baseStatementId = extended == null ? null : (Long) extended.get("id");
+                account.appendTransactions(accumulator, (int) accumulator.getLeafCount(), account.getTransactionCount());
+                if (baseStatementId != null) {
+                    log.info("Account {} of userId: {} extends statement {} from row {}", accountNumber, userId, baseStatementId, firstNewRow);
+                }
 
                 statementBatch.add(new Object[]{
                         userId, realmId, accountNumber, phoneNumber, rootHash, hashType,
-                        providerType, sourceType, mediaLink, createdBy, new Timestamp(System.currentTimeMillis())
+                        providerType, sourceType, mediaLink, createdBy, now,
+                        accumulator.getLeafCount(), accumulator.getPeaks(), baseStatementId
                 });
-
-                List<Object[]> transactionBatch = new ArrayList<>();
-                processTransactions(userId, realmId, accountNumber, account, transactionBatch, hashType, providerType);
-                transactionBatches.add(transactionBatch);
+                statementAccounts.add(account);
+                transactionRuns.add(processTransactions(userId, realmId, accountNumber, account, firstNewRow, hashType, providerType));
             }
         } catch (Exception e) {
             log.error("Error processing accounts for userId: {}", userId, e);
+            throw new RuntimeException("Error processing accounts: " + e.getMessage(), e);
         }
     }
 
-    private void processTransactions(Integer userId, String realmId, String accountNumber, Map<String, Object> account,
-                                     List<Object[]> transactionBatch, int hashType, int providerType) {
-        List<Map<String, Object>> transactions = extractTransactions(account);
-        if (transactions == null || transactions.isEmpty()) {
-            log.debug("No transactions found for account: {} under userId: {}", accountNumber, userId);
-            return;
-        }
+    /**
+     * Finds the largest earlier statement of the account whose transactions are exactly the first rows of this one,
+     * by comparing accumulator states at the leaf count of each candidate. The accumulator is left after the last
+     * candidate checked. A statement any of whose rows were stored before the retention window is not a candidate:
+     * those rows are dropped or about to be, so the upload is stored whole instead.
+     */
+    private Map<String, Object> findExtendedStatement(Integer userId, String realmId, String accountNumber, int hashType,
+                                                      StatementTokens.AccountTokens account, MerkleMountainRange accumulator) {
+        LocalDateTime retainedFrom = transactionPartitionManager.getRetainedFrom();
+        List<Map<String, Object>> candidates = jdbcTemplate.queryForList("""
+            WITH RECURSIVE candidate AS (
+                SELECT id, mmr_leaf_count, mmr_peaks FROM user_bank_statement
+                WHERE user_id = ? AND realm_id = ? AND account_number = ? AND hash_type = ?
+                  AND mmr_leaf_count > 0 AND mmr_leaf_count <= ?
+            ), chain AS (
+                SELECT c.id AS candidate_id, s.base_statement_id, s.created_at
+                FROM candidate c JOIN user_bank_statement s ON s.id = c.id
+                UNION ALL
+                SELECT ch.candidate_id, s.base_statement_id, s.created_at
+                FROM chain ch JOIN user_bank_statement s ON s.id = ch.base_statement_id
+            )
+            SELECT id, mmr_leaf_count, mmr_peaks FROM candidate c
+            WHERE NOT EXISTS (
+                SELECT 1 FROM chain ch WHERE ch.candidate_id = c.id AND ch.created_at < COALESCE(?::timestamp, '-infinity')
+            )
+            ORDER BY mmr_leaf_count
+            """, userId, realmId, accountNumber, hashType, account.getTransactionCount(),
+                retainedFrom == null ? null : Timestamp.valueOf(retainedFrom));
 
-        Timestamp now = new Timestamp(System.currentTimeMillis());
-        for (Map<String, Object> txn : transactions) {
-            String txnHash = (String) txn.get("token");
-            if (txnHash != null) {
-                transactionBatch.add(new Object[]{
-                        userId, realmId, accountNumber, txnHash, hashType, providerType, now, null
-                });
+        Map<String, Object> extended = null;
+        for (Map<String, Object> candidate : candidates) {
+            long leafCount = ((Number) candidate.get("mmr_leaf_count")).longValue();
+            account.appendTransactions(accumulator, (int) accumulator.getLeafCount(), (int) leafCount);
+            if (accumulator.matches(leafCount, (byte[]) candidate.get("mmr_peaks"))) {
+                extended = candidate;
             }
         }
+        return extended;
     }
 
-    private List<Map<String, Object>> extractTransactions(Map<String, Object> account) {
-        List<Map<String, Object>> transactions = (List<Map<String, Object>>) account.get("xns");
-        if (transactions == null) {
-            transactions = (List<Map<String, Object>>) account.get("balances");
-        }
-        if (transactions == null) {
-            transactions = (List<Map<String, Object>>) account.get("transactions");
+    // The rows of the account from firstRow on, null when there are none
+    private TransactionRun processTransactions(Integer userId, String realmId, String accountNumber, StatementTokens.AccountTokens account,
+                                               int firstRow, int hashType, int providerType) {
+        if (account.getTransactionCount() == firstRow) {
+            log.debug("No transactions found for account: {} under userId: {}", accountNumber, userId);
+            return null;
         }
-        return transactions;
+        return new TransactionRun(userId, realmId, accountNumber, account, firstRow, hashType, providerType, LocalDateTime.now(), null);
     }
 
-    public static <T> Optional<T> safeJsonPathRead(String json, String path, Class<T> type) {
-        try {
-            Object result = JsonPath.read(json, path);
-            if (result != null && type.isInstance(result)) {
-                return Optional.of(type.cast(result));
+    private List<Map<String, Object>> insertUserBankStatement(List<Object[]> statementBatch, List<Long> statementIds) {
+        if (statementBatch.isEmpty()) return Collections.emptyList();
+
+        String copyStatementSQL = """
+            COPY user_bank_statement
+            (id, user_id, realm_id, account_number, phone_number, root_hash, hash_type, provider, source_type, media_link, created_by, created_at,
+             mmr_leaf_count, mmr_peaks, base_statement_id)
+            FROM STDIN (FORMAT BINARY)
+            """;
+        Long inserted = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try (PgBinaryCopyWriter writer = PgBinaryCopyWriter.open(connection, copyStatementSQL)) {
+                for (int i = 0; i < statementBatch.size(); i++) {
+                    Object[] args = statementBatch.get(i);
+                    writer.startRow(15);
+                    writer.writeLong(statementIds.get(i));                           // id
+                    writer.writeInt((Integer) args[0]);                              // user_id
+                    writer.writeText((String) args[1]);                              // realm_id
+                    writer.writeText((String) args[2]);                              // account_number
+                    writer.writeText((String) args[3]);                              // phone_number
+                    writer.writeBytes((byte[]) args[4]);                             // root_hash
+                    writer.writeShort((Integer) args[5]);                            // hash_type
+                    writer.writeShort((Integer) args[6]);                            // provider
+                    writer.writeShort((Integer) args[7]);                            // source_type
+                    writer.writeText((String) args[8]);                              // media_link
+                    writer.writeText((String) args[9]);                              // created_by
+                    writer.writeTimestamp(((Timestamp) args[10]).toLocalDateTime()); // created_at
+                    writer.writeLong((Long) args[11]);                               // mmr_leaf_count
+                    writer.writeBytes((byte[]) args[12]);                            // mmr_peaks
+                    if (args[13] != null) {                                          // base_statement_id
+                        writer.writeLong((Long) args[13]);
+                    } else {
+                        writer.writeNull();
+                    }
+                }
+                return writer.finish();
             }
-            log.debug("No valid data found at JSON path: {}", path);
-        } catch (Exception e) {
-            log.warn("Failed to read JSON path '{}': {}", path, e.getMessage());
+        });
+
+        if (inserted == null || inserted != statementBatch.size()) {
+            log.error("Mismatch in saved statements: expected {}, got {}", statementBatch.size(), inserted);
+            throw new RuntimeException("Failed to save all statements");
         }
-        return Optional.empty();
-    }
 
-    private int determineHashType(String jsonPath) {
-        if (jsonPath.contains("accountXns")) return BankStatementHashType.ACCOUNT_XNS.ordinal();
-        if (jsonPath.contains("eod")) return BankStatementHashType.EOD_BALANCE.ordinal();
-        if (jsonPath.contains("bankTransactions")) return BankStatementHashType.BANK_TRANSACTION.ordinal();
-        return BankStatementHashType.ACCOUNT_XNS.ordinal();
+        List<Map<String, Object>> savedStatements = new ArrayList<>(statementBatch.size());
+        for (int i = 0; i < statementBatch.size(); i++) {
+            savedStatements.add(statementRow(statementIds.get(i), statementBatch.get(i)));
+        }
+        return savedStatements;
     }
 
-    private List<Map<String, Object>> insertUserBankStatement(List<Object[]> statementBatch) {
-        if (statementBatch.isEmpty()) return Collections.emptyList();
+    // The row insertUserBankStatement wrote
+    private Map<String, Object> statementRow(Long id, Object[] args) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", id);
+        row.put("user_id", args[0]);
+        row.put("realm_id", args[1]);
+        row.put("account_number", args[2]);
+        row.put("phone_number", args[3]);
+        row.put("root_hash", TokenEngine.encode((byte[]) args[4], 0));
+        row.put("hash_type", args[5]);
+        row.put("provider", args[6]);
+        row.put("source_type", args[7]);
+        row.put("media_link", args[8]);
+        row.put("created_by", args[9]);
+        row.put("mmr_leaf_count", args[11]);
+        row.put("base_statement_id", args[13]);
+        row.put("created_at", args[10]);
+        return row;
+    }
 
-        StringBuilder sql = new StringBuilder("""
-            INSERT INTO user_bank_statement
-            (user_id, realm_id, account_number, phone_number, root_hash, hash_type, provider, source_type, media_link, created_by, created_at)
-            VALUES
-        """);
-        for (int i = 0; i < statementBatch.size(); i++) {
-            sql.append("(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
-            if (i < statementBatch.size() - 1) {
-                sql.append(",");
-            }
+    private void addMerkleTree(List<Object[]> merkleBatch, Long statementId, StatementTokens.AccountTokens account, Timestamp now) {
+        MerkleTreeLevels tree = account.buildTransactionTree();
+        if (tree != null) {
+            merkleBatch.add(new Object[]{statementId, tree.getLeafCount(), tree.getRoot(), tree.getInteriorNodes(), now});
         }
-        sql.append(" RETURNING *;");
-
-        List<Map<String, Object>> savedStatements = jdbcTemplate.query(sql.toString(), ps -> {
-            int paramIndex = 1;
-            for (Object[] args : statementBatch) {
-                ps.setInt(paramIndex++, (Integer) args[0]);         // user_id
-                ps.setString(paramIndex++, (String) args[1]);       // realm_id
-                ps.setString(paramIndex++, (String) args[2]);       // account_number
-                ps.setString(paramIndex++, (String) args[3]);       // phone_number
-                ps.setString(paramIndex++, (String) args[4]);       // root_hash
-                ps.setInt(paramIndex++, (Integer) args[5]);         // hash_type
-                ps.setInt(paramIndex++, (Integer) args[6]);         // provider
-                ps.setInt(paramIndex++, (Integer) args[7]);         // source_type
-                ps.setString(paramIndex++, (String) args[8]);       // media_link
-                ps.setString(paramIndex++, (String) args[9]);       // created_by
-                ps.setTimestamp(paramIndex++, (Timestamp) args[10]); // created_at
+    }
+
+    private void insertStatementMerkle(List<Object[]> merkleBatch) {
+        STATEMENT_MERKLE_WRITER.update(jdbcTemplate, merkleBatch);
+    }
+
+    /**
+     * Loads the rows of every run with one binary COPY, reading each row's hashes straight from its account tokens.
+     * Runs on the transaction's connection, so the rows commit or roll back with the statements.
+     */
+    private long insertUserBankTransaction(List<TransactionRun> runs) {
+        String copyTransactionSQL = """
+            COPY user_bank_transaction
+            (id, user_id, realm_id, account_number, hash, hash_fingerprint, field_hashes, hash_type, provider, created_at, statement_id,
+             leaf_index)
+            FROM STDIN (FORMAT BINARY)
+            """;
+        IdBlockAllocator.Ids ids = idBlockAllocator.reserve(IdBlockAllocator.Sequence.TRANSACTION,
+                runs.stream().mapToInt(TransactionRun::rowCount).sum());
+        Long inserted = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try (PgBinaryCopyWriter writer = PgBinaryCopyWriter.open(connection, copyTransactionSQL)) {
+                for (TransactionRun run : runs) {
+                    StatementTokens.AccountTokens account = run.account();
+                    for (int row = run.firstRow(); row < account.getTransactionCount(); row++) {
+                        writer.startRow(12);
+                        writer.writeLong(ids.next());
+                        writer.writeInt(run.userId());
+                        writer.writeText(run.realmId());
+                        writer.writeText(run.accountNumber());
+                        writer.writeBytes(account.getTransactionDigest(row));
+                        writer.writeLong(account.getTransactionFingerprint(row));
+                        writer.writeBytes(account.getFieldHashes(row));
+                        writer.writeShort(run.hashType());
+                        writer.writeShort(run.providerType());
+                        writer.writeTimestamp(run.createdAt());
+                        writer.writeLong(run.statementId());
+                        writer.writeInt(row); // Position in the statement's Merkle tree
+                    }
+                }
+                return writer.finish();
             }
-        }, (rs, rowNum) -> {
-            Map<String, Object> row = new LinkedHashMap<>();
-            row.put("id", rs.getLong("id"));
-            row.put("user_id", rs.getInt("user_id"));
-            row.put("realm_id", rs.getString("realm_id"));
-            row.put("account_number", rs.getString("account_number"));
-            row.put("phone_number", rs.getString("phone_number"));
-            row.put("root_hash", rs.getString("root_hash"));
-            row.put("hash_type", rs.getInt("hash_type"));
-            row.put("provider", rs.getInt("provider"));
-            row.put("source_type", rs.getInt("source_type"));
-            row.put("media_link", rs.getString("media_link"));
-            row.put("created_by", rs.getString("created_by"));
-            row.put("created_at", rs.getTimestamp("created_at"));
-            return row;
         });
+        return inserted == null ? 0 : inserted;
+    }
 
-        if (savedStatements.size() != statementBatch.size()) {
-            log.error("Mismatch in saved statements: expected {}, got {}", statementBatch.size(), savedStatements.size());
-            throw new RuntimeException("Failed to retrieve all saved statements");
-        }
+    /**
+     * Rows [firstRow, transactionCount) of one account, to be inserted under statementId.
+     */
+    private record TransactionRun(Integer userId, String realmId, String accountNumber, StatementTokens.AccountTokens account, int firstRow,
+                                  int hashType, int providerType, LocalDateTime createdAt, Long statementId) {
 
-        return savedStatements;
-    }
+        int rowCount() {
+            return account.getTransactionCount() - firstRow;
+        }
 
-    private void insertUserBankTransaction(List<Object[]> transactionBatch) {
-        String insertTransactionSQL = """
-            INSERT INTO user_bank_transaction
-            (user_id, realm_id, account_number, hash, hash_type, provider, created_at, statement_id)
-            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
-            """;
-        jdbcTemplate.batchUpdate(insertTransactionSQL, transactionBatch);
+        TransactionRun withStatementId(Long statementId) {
+            return new TransactionRun(userId, realmId, accountNumber, account, firstRow, hashType, providerType, createdAt, statementId);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,320 @@
+package com.ninja.BankStAnalysis.infra.adapter.repository;
+
+import com.ninja.BankStAnalysis.core.ananomyzer.core.MerkleMountainRange;
+import com.ninja.BankStAnalysis.core.ananomyzer.core.MerkleTreeLevels;
+import com.ninja.BankStAnalysis.core.model.BatchStatement;
+import com.ninja.BankStAnalysis.core.model.CustomerDetails;
+import com.ninja.BankStAnalysis.core.model.StatementTokens;
+import com.ninja.BankStAnalysis.core.modelHelper.BankStatementHashType;
+import com.ninja.BankStAnalysis.core.modelHelper.ContentHashType;
+import com.ninja.BankStAnalysis.core.modelHelper.SourceType;
+import com.ninja.BankStAnalysis.core.port.out.BatchLoadRepositoryPort;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Bulk load path for partner dumps. A batch of statements is COPYed into the unlogged staging tables and then
+ * merged into user_bank_statement, user_bank_transaction and user_bank_statement_merkle by one set-based
+ * statement, instead of going through the per-upload path row by row.
+ *
+ * <p>The merge is idempotent: a statement whose user, realm, account, section and root hash are already stored,
+ * or appear earlier in the same batch, is skipped together with its transactions, so a dump can be loaded
+ * again after a failure. Statements are always inserted whole; extending an earlier upload is left to the
+ * per-upload path.</p>
+ *
+ * <p>Files are registered in user_bank_statement_upload in the merge's transaction, so a file is registered if
+ * and only if what it loaded committed. A file all of whose statements were skipped is a duplicate and is not
+ * registered.</p>
+ *
+ * <p>A file with a value too long for its user_bank_statement column is not staged at all and is returned in
+ * "rejectedFiles", by its index in the batch, with the reason. The staging columns are wider than the target ones,
+ * so such a value would otherwise only fail the merge, and with it every file of the batch.</p>
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class BatchLoadRepository implements BatchLoadRepositoryPort {
+
+    private static final List<BankStatementHashType> SECTIONS = List.of(
+            BankStatementHashType.ACCOUNT_XNS, BankStatementHashType.EOD_BALANCE, BankStatementHashType.BANK_TRANSACTION);
+
+    // Widths of user_bank_statement.realm_id, account_number and phone_number
+    private static final int REALM_ID_LENGTH = 18;
+    private static final int ACCOUNT_NUMBER_LENGTH = 36;
+    private static final int PHONE_NUMBER_LENGTH = 18;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final IdBlockAllocator idBlockAllocator;
+
+    @Override
+    @Transactional
+    public Map<String, Object> loadBatch(String realmId, List<BatchStatement> statements) {
+        Objects.requireNonNull(realmId, "realmId must not be null");
+        Objects.requireNonNull(statements, "statements must not be null");
+        if (tooLong(realmId, REALM_ID_LENGTH)) {
+            throw new IllegalArgumentException("realmId is longer than " + REALM_ID_LENGTH + " characters");
+        }
+
+        try {
+            Map<Integer, String> rejected = new LinkedHashMap<>();
+            List<StagedAccount> accounts = collectAccounts(statements, rejected);
+            Long batchId = jdbcTemplate.queryForObject("SELECT nextval('user_bank_staging_batch_seq')", Long.class);
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("stagedStatements", accounts.size());
+
+            // A file is loaded when one of its statements was inserted, or it had none to insert
+            boolean[] loaded = new boolean[statements.size()];
+            Arrays.fill(loaded, true);
+            if (accounts.isEmpty()) {
+                log.warn("No bank statements to load for realmId: {}", realmId);
+                result.put("insertedStatements", 0L);
+                result.put("insertedTransactions", 0L);
+            } else {
+                long[] statementIds = stageStatements(batchId, realmId, accounts);
+                stageTransactions(batchId, accounts, statementIds);
+                Set<Long> inserted = mergeBatch(batchId, result);
+                jdbcTemplate.update("DELETE FROM user_bank_transaction_staging WHERE batch_id = ?", batchId);
+                jdbcTemplate.update("DELETE FROM user_bank_statement_staging WHERE batch_id = ?", batchId);
+
+                for (StagedAccount staged : accounts) {
+                    loaded[staged.file()] = false;
+                }
+                for (int i = 0; i < accounts.size(); i++) {
+                    loaded[accounts.get(i).file()] |= inserted.contains(statementIds[i]);
+                }
+            }
+            result.put("duplicateFiles", registerFiles(batchId, realmId, statements, loaded, rejected.keySet()));
+            result.put("rejectedFiles", rejected);
+
+            log.info("Loaded batch {} for realmId: {}: {}", batchId, realmId, result);
+            return result;
+
+        } catch (Exception e) {
+            log.error("Failed to load batch of {} bank statements for realmId: {}", statements.size(), realmId, e);
+            throw new RuntimeException("Error loading batch: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Stores the result of every loaded file under both its content hashes, unless a result is stored there
+     * already, and returns how many files were duplicates. Runs after the merge, still under its advisory lock.
+     * Rejected files are neither registered nor duplicates.
+     */
+    private long registerFiles(Long batchId, String realmId, List<BatchStatement> statements, boolean[] loaded, Set<Integer> rejected) {
+        String registerSQL = """
+            INSERT INTO user_bank_statement_upload AS u (user_id, realm_id, hash_type, content_hash, response)
+            VALUES (?, ?, ?, ?, jsonb_build_array(jsonb_build_object('status', 'BATCH_LOADED', 'realm_id', ?::text, 'batch_id', ?::bigint)))
+            ON CONFLICT (user_id, realm_id, hash_type, content_hash) DO UPDATE
+            SET response = EXCLUDED.response
+            WHERE u.response IS NULL
+            """;
+        List<Object[]> registrations = new ArrayList<>();
+        long duplicates = 0;
+        for (int i = 0; i < statements.size(); i++) {
+            BatchStatement statement = statements.get(i);
+            if (rejected.contains(i)) continue;
+            if (!loaded[i]) {
+                duplicates++;
+                continue;
+            }
+            registrations.add(new Object[]{statement.getUserId(), realmId, ContentHashType.RAW_UPLOAD.ordinal(),
+                    statement.getUploadHash(), realmId, batchId});
+            registrations.add(new Object[]{statement.getUserId(), realmId, ContentHashType.STATEMENT_ROOT.ordinal(),
+                    statement.getStatementHash(), realmId, batchId});
+        }
+        if (!registrations.isEmpty()) {
+            jdbcTemplate.batchUpdate(registerSQL, registrations);
+        }
+        return duplicates;
+    }
+
+    // The accounts to stage; a file with a value its column cannot hold is left out whole and added to rejected
+    private List<StagedAccount> collectAccounts(List<BatchStatement> statements, Map<Integer, String> rejected) {
+        List<StagedAccount> accounts = new ArrayList<>();
+        for (int file = 0; file < statements.size(); file++) {
+            BatchStatement statement = statements.get(file);
+            List<StagedAccount> fileAccounts = new ArrayList<>();
+            String reason = null;
+            for (BankStatementHashType section : SECTIONS) {
+                List<StatementTokens.AccountTokens> sectionAccounts = statement.getTokens().getSection(section);
+                for (int i = 0; i < sectionAccounts.size() && reason == null; i++) {
+                    StatementTokens.AccountTokens account = sectionAccounts.get(i);
+                    if (account.getAccountNo() == null) {
+                        log.warn("Skipping account at index {} for userId: {} due to missing accountNumber", i, statement.getUserId());
+                        continue;
+                    }
+                    String phoneNumber = statement.getStatement().getCustomerDetails(i).map(CustomerDetails::getMobileNo).orElse("");
+                    if (tooLong(account.getAccountNo(), ACCOUNT_NUMBER_LENGTH)) {
+                        reason = "Account number at index " + i + " is longer than " + ACCOUNT_NUMBER_LENGTH + " characters";
+                    } else if (tooLong(phoneNumber, PHONE_NUMBER_LENGTH)) {
+                        reason = "Phone number at index " + i + " is longer than " + PHONE_NUMBER_LENGTH + " characters";
+                    }
+                    fileAccounts.add(new StagedAccount(file, statement.getUserId(), statement.getProvider().ordinal(), section.ordinal(),
+                            phoneNumber, account));
+                }
+            }
+            if (reason != null) {
+                log.warn("Rejecting file {} of batch for userId: {}: {}", file, statement.getUserId(), reason);
+                rejected.put(file, reason);
+            } else {
+                accounts.addAll(fileAccounts);
+            }
+        }
+        return accounts;
+    }
+
+    private static boolean tooLong(String value, int length) {
+        return value != null && value.codePointCount(0, value.length()) > length;
+    }
+
+    // Stages one statement row per account and returns the ids they were given
+    private long[] stageStatements(Long batchId, String realmId, List<StagedAccount> accounts) {
+        String copyStagingSQL = """
+            COPY user_bank_statement_staging
+            (batch_id, id, user_id, realm_id, account_number, phone_number, root_hash, hash_type, provider, source_type,
+             media_link, created_by, created_at, mmr_leaf_count, mmr_peaks, merkle_leaf_count, merkle_root, merkle_nodes)
+            FROM STDIN (FORMAT BINARY)
+            """;
+        IdBlockAllocator.Ids ids = idBlockAllocator.reserve(IdBlockAllocator.Sequence.STATEMENT, accounts.size());
+        long[] statementIds = new long[accounts.size()];
+        LocalDateTime now = LocalDateTime.now();
+
+        jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try (PgBinaryCopyWriter writer = PgBinaryCopyWriter.open(connection, copyStagingSQL)) {
+                for (int i = 0; i < accounts.size(); i++) {
+                    StagedAccount staged = accounts.get(i);
+                    StatementTokens.AccountTokens account = staged.account();
+                    statementIds[i] = ids.next();
+                    MerkleMountainRange accumulator = new MerkleMountainRange();
+                    account.appendTransactions(accumulator, 0, account.getTransactionCount());
+                    MerkleTreeLevels tree = account.buildTransactionTree();
+
+                    writer.startRow(18);
+                    writer.writeLong(batchId);
+                    writer.writeLong(statementIds[i]);
+                    writer.writeInt(staged.userId());
+                    writer.writeText(realmId);
+                    writer.writeText(account.getAccountNo());
+                    writer.writeText(staged.phoneNumber());
+                    writer.writeBytes(account.getDigest());
+                    writer.writeShort(staged.hashType());
+                    writer.writeShort(staged.providerType());
+                    writer.writeShort(SourceType.BATCH.ordinal());
+                    writer.writeText("");
+                    writer.writeText("SYSTEM");
+                    writer.writeTimestamp(now);
+                    writer.writeLong(accumulator.getLeafCount());
+                    writer.writeBytes(accumulator.getPeaks());
+                    if (tree == null) {
+                        writer.writeNull();
+                        writer.writeNull();
+                        writer.writeNull();
+                    } else {
+                        writer.writeInt(tree.getLeafCount());
+                        writer.writeBytes(tree.getRoot());
+                        writer.writeBytes(tree.getInteriorNodes());
+                    }
+                }
+                return writer.finish();
+            }
+        });
+        return statementIds;
+    }
+
+    private void stageTransactions(Long batchId, List<StagedAccount> accounts, long[] statementIds) {
+        String copyStagingSQL = """
+            COPY user_bank_transaction_staging
+            (batch_id, id, statement_id, hash, hash_fingerprint, field_hashes, leaf_index)
+            FROM STDIN (FORMAT BINARY)
+            """;
+        IdBlockAllocator.Ids ids = idBlockAllocator.reserve(IdBlockAllocator.Sequence.TRANSACTION,
+                accounts.stream().mapToInt(staged -> staged.account().getTransactionCount()).sum());
+
+        jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try (PgBinaryCopyWriter writer = PgBinaryCopyWriter.open(connection, copyStagingSQL)) {
+                for (int i = 0; i < accounts.size(); i++) {
+                    StatementTokens.AccountTokens account = accounts.get(i).account();
+                    for (int row = 0; row < account.getTransactionCount(); row++) {
+                        writer.startRow(7);
+                        writer.writeLong(batchId);
+                        writer.writeLong(ids.next());
+                        writer.writeLong(statementIds[i]);
+                        writer.writeBytes(account.getTransactionDigest(row));
+                        writer.writeLong(account.getTransactionFingerprint(row));
+                        writer.writeBytes(account.getFieldHashes(row));
+                        writer.writeInt(row);
+                    }
+                }
+                return writer.finish();
+            }
+        });
+    }
+
+    /**
+     * Inserts the staged statements not stored yet, with their transactions and Merkle trees, in one statement.
+     * Merges are serialized by an advisory lock taken before it, so each one sees what the previous one stored.
+     * Adds the counts to result and returns the ids of the statements inserted.
+     */
+    private Set<Long> mergeBatch(Long batchId, Map<String, Object> result) {
+        jdbcTemplate.execute("SELECT pg_advisory_xact_lock(hashtext('user_bank_statement_batch_merge'))");
+
+        String mergeSQL = """
+            WITH candidates AS MATERIALIZED (
+                SELECT DISTINCT ON (s.user_id, s.realm_id, s.account_number, s.hash_type, s.root_hash) s.*
+                FROM user_bank_statement_staging s
+                WHERE s.batch_id = ?
+                AND NOT EXISTS (
+                    SELECT 1 FROM user_bank_statement e
+                    WHERE e.root_hash = s.root_hash AND e.hash_type = s.hash_type
+                    AND e.user_id = s.user_id AND e.realm_id = s.realm_id AND e.account_number = s.account_number
+                )
+                ORDER BY s.user_id, s.realm_id, s.account_number, s.hash_type, s.root_hash, s.id
+            ), statements AS (
+                INSERT INTO user_bank_statement
+                (id, user_id, realm_id, account_number, phone_number, root_hash, hash_type, provider, source_type, media_link,
+                 created_by, created_at, mmr_leaf_count, mmr_peaks)
+                SELECT id, user_id, realm_id, account_number, phone_number, root_hash, hash_type, provider, source_type, media_link,
+                       created_by, created_at, mmr_leaf_count, mmr_peaks
+                FROM candidates
+                RETURNING id
+            ), transactions AS (
+                INSERT INTO user_bank_transaction
+                (id, user_id, realm_id, account_number, hash, hash_fingerprint, field_hashes, hash_type, provider, created_at, statement_id,
+                 leaf_index)
+                SELECT t.id, c.user_id, c.realm_id, c.account_number, t.hash, t.hash_fingerprint, t.field_hashes, c.hash_type,
+                       c.provider, c.created_at, c.id, t.leaf_index
+                FROM candidates c
+                JOIN user_bank_transaction_staging t ON t.batch_id = c.batch_id AND t.statement_id = c.id
+                RETURNING 1
+            ), trees AS (
+                INSERT INTO user_bank_statement_merkle (statement_id, leaf_count, merkle_root, nodes, created_at)
+                SELECT id, merkle_leaf_count, merkle_root, merkle_nodes, created_at
+                FROM candidates
+                WHERE merkle_nodes IS NOT NULL
+                RETURNING 1
+            )
+            SELECT ARRAY(SELECT id FROM statements) AS inserted_ids,
+                   (SELECT count(*) FROM statements) AS inserted_statements,
+                   (SELECT count(*) FROM transactions) AS inserted_transactions,
+                   (SELECT count(*) FROM trees) AS inserted_trees
+            """;
+        return jdbcTemplate.queryForObject(mergeSQL, (rs, rowNum) -> {
+            result.put("insertedStatements", rs.getLong("inserted_statements"));
+            result.put("insertedTransactions", rs.getLong("inserted_transactions"));
+            result.put("insertedTrees", rs.getLong("inserted_trees"));
+            return new HashSet<>(Arrays.asList((Long[]) rs.getArray("inserted_ids").getArray()));
+        }, batchId);
+    }
+
+    // One account of one section of a staged statement
+    private record StagedAccount(int file, Integer userId, int providerType, int hashType, String phoneNumber,
+                                 StatementTokens.AccountTokens account) {
+    }
+}
@@ -0,0 +1,74 @@
+package com.ninja.BankStAnalysis.infra.adapter.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Writes rows through multi-row statements of a few fixed sizes ({@link #SHAPES}), so any number of rows maps
+ * onto the same handful of SQL texts. The driver keeps those prepared on the server across requests, and no
+ * call comes near PostgreSQL's limit of 65535 bind parameters.
+ *
+ * <p>The SQL is {@code prefix}, the row tuple repeated with commas, then {@code suffix}. Rows are taken
+ * greedily: as many of the largest shape as fit, then the smaller ones for the rest.</p>
+ */
+public final class ChunkedRowWriter {
+
+    private static final int[] SHAPES = {128, 16, 1};
+
+    private static final int MAX_PARAMETERS = 65535;
+
+    private final int parametersPerRow;
+    private final String[] statements = new String[SHAPES.length]; // SQL of each shape
+
+    public ChunkedRowWriter(String prefix, String row, String suffix) {
+        this.parametersPerRow = (int) row.chars().filter(c -> c == '?').count();
+        if (parametersPerRow * SHAPES[0] > MAX_PARAMETERS) {
+            throw new IllegalArgumentException("Too many parameters per row for the largest shape: " + parametersPerRow);
+        }
+        for (int shape = 0; shape < SHAPES.length; shape++) {
+            statements[shape] = prefix + String.join(", ", Collections.nCopies(SHAPES[shape], row)) + " " + suffix;
+        }
+    }
+
+    // Runs the statement over all rows; the chunks of one shape go to the server as one batch
+    public int update(JdbcTemplate jdbcTemplate, List<Object[]> rows) {
+        int updated = 0;
+        int from = 0;
+        for (int shape = 0; shape < SHAPES.length; shape++) {
+            int chunks = (rows.size() - from) / SHAPES[shape];
+            if (chunks == 0) continue;
+
+            List<Object[]> batch = new ArrayList<>(chunks);
+            for (int chunk = 0; chunk < chunks; chunk++, from += SHAPES[shape]) {
+                batch.add(parameters(rows, from, SHAPES[shape]));
+            }
+            updated += Arrays.stream(jdbcTemplate.batchUpdate(statements[shape], batch)).sum();
+        }
+        return updated;
+    }
+
+    // Runs a statement returning rows, such as one ending in RETURNING, over all rows, one call per chunk
+    public <T> List<T> query(JdbcTemplate jdbcTemplate, List<Object[]> rows, RowMapper<T> rowMapper) {
+        List<T> results = new ArrayList<>(rows.size());
+        int from = 0;
+        for (int shape = 0; shape < SHAPES.length; shape++) {
+            for (; rows.size() - from >= SHAPES[shape]; from += SHAPES[shape]) {
+                results.addAll(jdbcTemplate.query(statements[shape], rowMapper, parameters(rows, from, SHAPES[shape])));
+            }
+        }
+        return results;
+    }
+
+    private Object[] parameters(List<Object[]> rows, int from, int count) {
+        Object[] parameters = new Object[count * parametersPerRow];
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(rows.get(from + i), 0, parameters, i * parametersPerRow, parametersPerRow);
+        }
+        return parameters;
+    }
+}
@@ -1,8 +1,9 @@
 package com.ninja.BankStAnalysis.infra.adapter.repository;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.jayway.jsonpath.JsonPath;
+import com.ninja.BankStAnalysis.core.model.CustomerDetails;
+import com.ninja.BankStAnalysis.core.model.NormalizedStatement;
+import com.ninja.BankStAnalysis.core.model.StatementAccount;
+import com.ninja.BankStAnalysis.core.model.StatementTokens;
 import com.ninja.BankStAnalysis.core.modelHelper.BankStatementHashType;
 import com.ninja.BankStAnalysis.core.modelHelper.DedupeStatus;
 import com.ninja.BankStAnalysis.core.modelHelper.Provider;
@@ -10,10 +11,12 @@ import com.ninja.BankStAnalysis.core.port.out.DedupeRepositoryPort;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
-import java.sql.Array;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -22,24 +25,27 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class DedupeRepository implements DedupeRepositoryPort {
 
+    // Date, amount and balance: the leading fields of accountXns rows, leaving out a narration a provider may rewrite
+    private static final int PARTIAL_MATCH_FIELDS = 3;
+
     private final JdbcTemplate jdbcTemplate;
-    private final ObjectMapper objectMapper;
+    private final TransactionPartitionManager transactionPartitionManager;
 
     @Override
     @Transactional
-    public Map<String, Object> fetchDetails(Integer userId, String realmId, Provider provider, String report, String response) {
+    public Map<String, Object> fetchDetails(Integer userId, String realmId, Provider provider, NormalizedStatement statement, StatementTokens tokens) {
         log.info("Fetching dedupe details for userId: {}, realmId: {}, provider: {}", userId, realmId, provider);
 
-        validateInputs(userId, realmId, provider, report, response);
+        validateInputs(userId, realmId, provider, statement, tokens);
 
         try {
-            String accountNumber = safeJsonPathRead(report, "$.accountXns[0].accountNo", String.class)
+            String accountNumber = statement.getAccountXns().stream()
+                    .findFirst()
+                    .map(StatementAccount::getAccountNo)
                     .orElseThrow(() -> new IllegalArgumentException("No account number found in report"));
 
 
-            List<String> totalAccountsInReport = safeJsonPathRead(report, "$.accountXns[*].accountNo", List.class)
-                    .map(value -> (List<String>) value)
-                    .orElse(Collections.emptyList());
+            List<String> totalAccountsInReport = statement.getAccountNos();
 
             int index = totalAccountsInReport.indexOf(accountNumber);
             if (index==-1) {
@@ -49,17 +55,22 @@ public class DedupeRepository implements DedupeRepositoryPort {
 
             BankStatementHashType hashType = BankStatementHashType.BANK_TRANSACTION;
 
-            JsonNode rootNode = objectMapper.readTree(response);
-
-            List<String> transactions = determineTransactionsList(provider, hashType, rootNode, accountNumber);
+            List<byte[]> transactions = determineTransactionsList(provider, hashType, tokens, accountNumber);
+            List<Long> fingerprints = determineFingerprints(hashType, tokens, accountNumber);
 
 
 //            List<Map<String, Object>> matchingBankStatements = findMatchingBankStatements(userId, accountNumber, merkleRootHash);
-            List<Map<String, Object>> matchedBankTransactions = findMatchingBankTransactions(userId, hashType.ordinal(), transactions);
+            List<Map<String, Object>> matchedBankTransactions = findMatchingBankTransactions(userId, hashType.ordinal(), fingerprints, transactions);
             log.debug("Found {} matching transactions for userId: {}", matchedBankTransactions.size(), userId);
 
-            Map<String, Object> output = generateResponse(userId, realmId, report, response, matchedBankTransactions,
+            Map<String, Object> output = generateResponse(userId, realmId, statement, matchedBankTransactions,
                     accountNumber, transactions.size(), index);
+
+            List<byte[]> fieldKeys = determineFieldKeys(tokens, accountNumber);
+            int fieldMatched = countFieldMatchingTransactions(userId, BankStatementHashType.ACCOUNT_XNS.ordinal(), fieldKeys);
+            if (fieldMatched > 0) {
+                output.put("fieldMatchedTransactions", fieldMatched);
+            }
             log.info("Dedupe response generated successfully for userId: {}", userId);
 
             return output;
@@ -74,19 +85,19 @@ public class DedupeRepository implements DedupeRepositoryPort {
         }
     }
 
-    private void validateInputs(Integer userId, String realmId, Provider provider, String report, String response) {
+    private void validateInputs(Integer userId, String realmId, Provider provider, NormalizedStatement statement, StatementTokens tokens) {
         Objects.requireNonNull(userId, "userId must not be null");
         Objects.requireNonNull(realmId, "realmId must not be null");
         Objects.requireNonNull(provider, "provider must not be null");
-        Objects.requireNonNull(report, "report must not be null");
-        Objects.requireNonNull(response, "response must not be null");
+        Objects.requireNonNull(statement, "statement must not be null");
+        Objects.requireNonNull(tokens, "tokens must not be null");
     }
 
-    private List<String> determineTransactionsList(Provider provider, BankStatementHashType hashType,
-                                                   JsonNode rootNode, String accountNumber) {
+    private List<byte[]> determineTransactionsList(Provider provider, BankStatementHashType hashType,
+                                                   StatementTokens statementTokens, String accountNumber) {
         try {
-            Map<String, List<String>> tokens = extractTokens(rootNode, hashTypeToSection(hashType));
-            List<String> transactionTokens = tokens.getOrDefault(accountNumber, Collections.emptyList());
+            Map<String, List<byte[]>> tokens = extractTokens(statementTokens, hashType);
+            List<byte[]> transactionTokens = tokens.getOrDefault(accountNumber, Collections.emptyList());
             if (transactionTokens.isEmpty()) {
                 log.debug("No transactions found for account: {} with hashType: {}", accountNumber, hashType);
             }
@@ -97,16 +108,20 @@ public class DedupeRepository implements DedupeRepositoryPort {
         }
     }
 
-    private String hashTypeToSection(BankStatementHashType hashType) {
-        return switch (hashType) {
-            case ACCOUNT_XNS -> "accountXns";
-            case BANK_TRANSACTION -> "bankTransactions";
-            case EOD_BALANCE -> "eod";
-        };
+    // Fingerprints of the same rows, in the same order, as determineTransactionsList
+    private List<Long> determineFingerprints(BankStatementHashType hashType, StatementTokens statementTokens, String accountNumber) {
+        List<Long> fingerprints = Collections.emptyList();
+        for (StatementTokens.AccountTokens account : statementTokens.getSection(hashType)) {
+            if (!accountNumber.equals(account.getAccountNo()) || account.getTransactionCount() == 0) continue;
+            fingerprints = new ArrayList<>(account.getTransactionCount());
+            for (int row = 0; row < account.getTransactionCount(); row++) {
+                fingerprints.add(account.getTransactionFingerprint(row));
+            }
+        }
+        return fingerprints;
     }
 
-
-    public List<Map<String, Object>> findMatchingBankStatements(Integer userId, String accountNumber, String merkleRootHash, Integer hashType) {
+    public List<Map<String, Object>> findMatchingBankStatements(Integer userId, String accountNumber, byte[] merkleRootHash, Integer hashType) {
         String sql = """
                     SELECT * FROM public.user_bank_statement
                     WHERE root_hash = ?
@@ -127,28 +142,52 @@ public class DedupeRepository implements DedupeRepositoryPort {
         }
     }
 
-    public List<Map<String, Object>> findMatchingBankTransactions(Integer userId, Integer hashType, List<String> transactions) {
+    /**
+     * Finds other users' transactions with the same row tokens. Candidates are looked up on the 64-bit fingerprint
+     * index alone and only those are confirmed against the full token, so the join never compares text over the index.
+     *
+     * <p>Each month partition is split into fingerprint ranges, so the tokens are sent in fingerprint order: every
+     * probe is pruned to the one range its fingerprint falls in, within the months still retained, and the probes
+     * of one range follow each other while its index pages are cached.</p>
+     */
+    public List<Map<String, Object>> findMatchingBankTransactions(Integer userId, Integer hashType, List<Long> fingerprints,
+                                                                  List<byte[]> transactions) {
         if (transactions==null || transactions.isEmpty()) {
             log.debug("No transactions provided to match for userId: {}", userId);
             return Collections.emptyList();
         }
         String sql = """
-                    WITH hash_list AS (
-                        SELECT unnest(?::text[]) AS hash
-                    )
-                    SELECT *
-                    FROM user_bank_transaction u
-                    JOIN hash_list t
-                    ON u.hash = t.hash
-                    WHERE u.hash_type = ? AND u.user_id != ?;
+                    SELECT u.*
+                    FROM unnest(?::bigint[], ?::bytea[]) AS t(fingerprint, hash)
+                    CROSS JOIN LATERAL (
+                        SELECT * FROM user_bank_transaction u
+                        WHERE u.hash_type = ? AND u.hash_fingerprint = t.fingerprint
+                        AND u.created_at >= ?
+                        AND u.user_id != ? AND u.hash = t.hash
+                    ) u;
                 """;
 
-        try {
-            Array hashArray = jdbcTemplate.getDataSource()
-                    .getConnection()
-                    .createArrayOf("text", transactions.toArray());
+        Timestamp retainedFrom = retainedFrom();
+        Integer[] order = new Integer[fingerprints.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(fingerprints::get));
+        Long[] sortedFingerprints = new Long[order.length];
+        byte[][] sortedTransactions = new byte[order.length][];
+        for (int i = 0; i < order.length; i++) {
+            sortedFingerprints[i] = fingerprints.get(order[i]);
+            sortedTransactions[i] = transactions.get(order[i]);
+        }
 
-            List<Map<String, Object>> results = jdbcTemplate.queryForList(sql, hashArray, hashType, userId);
+        try {
+            List<Map<String, Object>> results = jdbcTemplate.query(sql, ps -> {
+                ps.setArray(1, ps.getConnection().createArrayOf("bigint", sortedFingerprints));
+                ps.setArray(2, ps.getConnection().createArrayOf("bytea", sortedTransactions));
+                ps.setInt(3, hashType);
+                ps.setTimestamp(4, retainedFrom);
+                ps.setInt(5, userId);
+            }, new ColumnMapRowMapper());
             log.debug("Found {} matching transactions for userId: {}", results.size(), userId);
             return results;
         } catch (Exception e) {
@@ -157,18 +196,74 @@ public class DedupeRepository implements DedupeRepositoryPort {
         }
     }
 
+    // Start of the retention window the lookups are pruned to; the epoch while everything is retained
+    private Timestamp retainedFrom() {
+        LocalDateTime retainedFrom = transactionPartitionManager.getRetainedFrom();
+        return Timestamp.valueOf(retainedFrom == null ? LocalDateTime.of(1970, 1, 1, 0, 0) : retainedFrom);
+    }
+
+    // Leading field hashes of the account's accountXns rows, the key the field prefix index is built on
+    private List<byte[]> determineFieldKeys(StatementTokens statementTokens, String accountNumber) {
+        List<byte[]> keys = new ArrayList<>();
+        for (StatementTokens.AccountTokens account : statementTokens.getSection(BankStatementHashType.ACCOUNT_XNS)) {
+            if (!accountNumber.equals(account.getAccountNo())) continue;
+            for (int row = 0; row < account.getTransactionCount(); row++) {
+                keys.add(account.getFieldHashes(row, PARTIAL_MATCH_FIELDS));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Counts the distinct rows among {@code fieldKeys} that another user has a transaction with the same date, amount
+     * and balance for, whatever its narration. The comparison is the expression of idx_user_bank_txn_field_prefix.
+     */
+    public int countFieldMatchingTransactions(Integer userId, Integer hashType, List<byte[]> fieldKeys) {
+        if (fieldKeys == null || fieldKeys.isEmpty()) {
+            return 0;
+        }
+        String sql = """
+                    WITH key_list AS (
+                        SELECT DISTINCT unnest(?::bytea[]) AS field_key
+                    )
+                    SELECT COUNT(*)
+                    FROM key_list k
+                    WHERE EXISTS (
+                        SELECT 1 FROM user_bank_transaction u
+                        WHERE u.hash_type = ?
+                        AND substring(u.field_hashes FROM 1 FOR 24) = k.field_key
+                        AND u.created_at >= ?
+                        AND u.user_id != ?
+                    );
+                """;
+
+        try {
+            Integer count = jdbcTemplate.query(sql, ps -> {
+                ps.setArray(1, ps.getConnection().createArrayOf("bytea", fieldKeys.toArray()));
+                ps.setInt(2, hashType);
+                ps.setTimestamp(3, retainedFrom());
+                ps.setInt(4, userId);
+            }, rs -> rs.next() ? rs.getInt(1) : 0);
+            log.debug("Found {} field matching transactions for userId: {}", count, userId);
+            return count == null ? 0 : count;
+        } catch (Exception e) {
+            log.error("Error fetching field matching transactions for userId: {}, hashType: {}", userId, hashType, e);
+            throw new RuntimeException("Error fetching field matching transactions: " + e.getMessage(), e);
+        }
+    }
 
-    public Map<String, Object> generateResponse(Integer userId, String realmId, String report, String response, List<Map<String, Object>> matchedTransactions, String accountNo, Integer totalTransactions, int index) throws Exception {
+    public Map<String, Object> generateResponse(Integer userId, String realmId, NormalizedStatement statement, List<Map<String, Object>> matchedTransactions, String accountNo, Integer totalTransactions, int index) throws Exception {
 
         try {
             Map<String, Object> finalResponse = new LinkedHashMap<>();
 
             finalResponse.put("userId", userId);
             finalResponse.put("realmId", realmId);
-            finalResponse.put("name", safeJsonPathRead(report, String.format("$.customerDetails[%d].name", index), String.class).orElse(""));
-            finalResponse.put("pan", safeJsonPathRead(report, String.format("$.customerDetails[%d].pan", index), String.class).orElse(""));
-            finalResponse.put("aadharMasked", safeJsonPathRead(report, String.format("$.customerDetails[%d].aadharMasked", index), String.class).orElse(""));
-            finalResponse.put("bankName", safeJsonPathRead(report, String.format("$.customerDetails[%d].bankName", index), String.class).orElse(""));
+            Optional<CustomerDetails> customerDetails = statement.getCustomerDetails(index);
+            finalResponse.put("name", customerDetails.map(CustomerDetails::getName).orElse(""));
+            finalResponse.put("pan", customerDetails.map(CustomerDetails::getPan).orElse(""));
+            finalResponse.put("aadharMasked", customerDetails.map(CustomerDetails::getAadharMasked).orElse(""));
+            finalResponse.put("bankName", customerDetails.map(CustomerDetails::getBankName).orElse(""));
 
 
             String currentOverallStatus = "GREEN";
@@ -204,7 +299,7 @@ public class DedupeRepository implements DedupeRepositoryPort {
 
             Map<String, Object> accountMap = new LinkedHashMap<>();
             accountMap.put("accountNumber", accountNo);
-            accountMap.put("bankName", safeJsonPathRead(report, String.format("$.customerDetails[%d].bankName", index), String.class).orElse(""));
+            accountMap.put("bankName", customerDetails.map(CustomerDetails::getBankName).orElse(""));
             accounts.add(accountMap);
 
             finalResponse.put("status", currentOverallStatus);
@@ -292,55 +387,26 @@ public class DedupeRepository implements DedupeRepositoryPort {
         return statementData;
     }
 
-    private Map<String, List<String>> extractTokens(JsonNode rootNode, String section) {
-        Map<String, List<String>> result = new HashMap<>();
+    private Map<String, List<byte[]>> extractTokens(StatementTokens tokens, BankStatementHashType section) {
+        Map<String, List<byte[]>> result = new HashMap<>();
 
-        try {
-            if (!rootNode.has(section)) {
-                log.debug("Section {} not found in response", section);
-            }
-            for (JsonNode accountNode : rootNode.get(section)) {
-                String accountNo = accountNode.path("accountNo").asText(null);
-                if (accountNo==null) continue;
-
-                List<String> tokens = new ArrayList<>();
-                String field = switch (section) {
-                    case "accountXns" -> "xns";
-                    case "eod" -> "balance";
-                    case "bankTransactions" -> "transactions";
-                    default -> null;
-                };
-
-                if (field != null && accountNode.has(field)) {
-                    for (JsonNode subNode : accountNode.get(field)) {
-                        if (subNode.has("token")) {
-                            tokens.add(subNode.get("token").asText());
-                        }
-                    }
-                }
-                if (!tokens.isEmpty()) {
-                    result.put(accountNo, tokens);
-                }
-            }
-            return result;
-        } catch (Exception e) {
-            log.error("Error Extracting tokens for section: {}", section, e);
-            return result;
+        if (!tokens.hasSection(section)) {
+            log.debug("Section {} not found in response", section);
         }
-    }
+        for (StatementTokens.AccountTokens account : tokens.getSection(section)) {
+            if (account.getAccountNo() == null) continue;
 
-    public static <T> Optional<T> safeJsonPathRead(String json, String path, Class<T> type) {
-        try {
-            Object result = JsonPath.read(json, path);
-            if (result!=null && type.isInstance(result)) {
-                return Optional.of(type.cast(result));
+            if (account.getTransactionCount() > 0) {
+                List<byte[]> digests = new ArrayList<>(account.getTransactionCount());
+                for (int row = 0; row < account.getTransactionCount(); row++) {
+                    digests.add(account.getTransactionDigest(row));
+                }
+                result.put(account.getAccountNo(), digests);
             }
-            log.debug("No valid data found at JSON path: {}", path);
-        } catch (Exception e) {
-            log.warn("Failed to read JSON path '{}': {}", path, e.getMessage());
         }
-        return Optional.empty();
+        return result;
     }
 
+
 }
 
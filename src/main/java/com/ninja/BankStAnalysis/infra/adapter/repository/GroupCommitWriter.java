@@ -0,0 +1,143 @@
+package com.ninja.BankStAnalysis.infra.adapter.repository;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Coalesces rows submitted by concurrent requests into one write. A background thread takes the first waiting row,
+ * gathers what else arrives within {@code maxDelayMillis} up to {@code maxBatch} rows, and hands them to the writer
+ * together, so many requests share one statement and one commit. Each submitter gets a future completed when its
+ * row is committed, or failed with the reason it was not.
+ *
+ * <p>When a batch fails, its rows are written again one by one, so a bad row only fails its own request. Rows
+ * whose future was cancelled before their batch is written are left out.</p>
+ *
+ * <p>Every submitted future completes: rows are only queued while the writer is open, and whatever close leaves
+ * in the queue is failed.</p>
+ */
+@Slf4j
+public final class GroupCommitWriter<T> implements AutoCloseable {
+
+    private final int maxBatch;
+    private final long maxDelayNanos;
+    private final Consumer<List<T>> writer;
+    private final LinkedBlockingQueue<Submission<T>> queue = new LinkedBlockingQueue<>();
+    private final Thread flusher;
+    private final ReadWriteLock lifecycle = new ReentrantReadWriteLock(); // Submitters share it, close excludes them
+    private volatile boolean running = true;
+
+    public GroupCommitWriter(String name, int maxBatch, long maxDelayMillis, Consumer<List<T>> writer) {
+        if (maxBatch < 1) {
+            throw new IllegalArgumentException("maxBatch must be at least 1: " + maxBatch);
+        }
+        this.maxBatch = maxBatch;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.writer = writer;
+        this.flusher = new Thread(this::run, name);
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    public CompletableFuture<Void> submit(T row) {
+        CompletableFuture<Void> committed = new CompletableFuture<>();
+        lifecycle.readLock().lock();
+        try {
+            if (!running) {
+                committed.completeExceptionally(new IllegalStateException("Group commit writer is closed"));
+                return committed;
+            }
+            queue.add(new Submission<>(row, committed));
+            return committed;
+        } finally {
+            lifecycle.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        close(30, TimeUnit.SECONDS);
+    }
+
+    // Writes what is still queued, then stops; rows not written within the timeout are failed
+    public void close(long timeout, TimeUnit unit) throws InterruptedException {
+        lifecycle.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            lifecycle.writeLock().unlock();
+        }
+        try {
+            flusher.join(Math.max(1, unit.toMillis(timeout)));
+        } finally {
+            List<Submission<T>> left = new ArrayList<>();
+            queue.drainTo(left);
+            if (!left.isEmpty()) {
+                log.warn("Group commit writer closed with {} rows not written", left.size());
+                IllegalStateException closed = new IllegalStateException("Group commit writer closed before the row was written");
+                left.forEach(submission -> submission.committed().completeExceptionally(closed));
+            }
+        }
+    }
+
+    private void run() {
+        List<Submission<T>> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                Submission<T> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatch) {
+                    Submission<T> next = queue.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                flush(batch);
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                batch.forEach(submission -> submission.committed().completeExceptionally(e));
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Submission<T>> batch) {
+        batch.removeIf(submission -> submission.committed().isCancelled());
+        if (batch.isEmpty()) return;
+        try {
+            writer.accept(batch.stream().map(Submission::row).toList());
+            batch.forEach(submission -> submission.committed().complete(null));
+            log.debug("Group committed {} rows", batch.size());
+            return;
+        } catch (Exception e) {
+            if (batch.size() == 1) {
+                batch.get(0).committed().completeExceptionally(e);
+                return;
+            }
+            log.warn("Group commit of {} rows failed, writing them one by one: {}", batch.size(), e.getMessage());
+        }
+        for (Submission<T> submission : batch) {
+            try {
+                writer.accept(List.of(submission.row()));
+                submission.committed().complete(null);
+            } catch (Exception e) {
+                submission.committed().completeExceptionally(e);
+            }
+        }
+    }
+
+    private record Submission<T>(T row, CompletableFuture<Void> committed) {
+    }
+}
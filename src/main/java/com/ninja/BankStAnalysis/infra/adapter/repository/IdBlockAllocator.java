@@ -0,0 +1,119 @@
+package com.ninja.BankStAnalysis.infra.adapter.repository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Hands out primary keys client side in blocks (hi/lo). Each {@code nextval} of a sequence created with
+ * {@code INCREMENT BY} the block size reserves the ids {@code [value, value + blockSize)} for this instance, so
+ * rows can be written with their ids and their children linked to them without reading anything back.
+ *
+ * <p>Ids are unique across instances and increasing within a reservation, but not gap free: a block left
+ * unused at shutdown is never handed out again, nor is the rest of a block that lost the race to stay open.</p>
+ */
+@Component
+@RequiredArgsConstructor
+public class IdBlockAllocator {
+
+    @Getter
+    @RequiredArgsConstructor
+    public enum Sequence {
+        STATEMENT("user_bank_statement_seq", 1000),
+        TRANSACTION("user_bank_transaction_seq", 1000);
+
+        private final String name;
+        private final int blockSize; // Must be the INCREMENT BY of the sequence
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final long[][] openBlocks = new long[Sequence.values().length][2]; // Next id and end of each open block
+
+    // A block size other than the INCREMENT BY would hand out ids another instance also reserved
+    @PostConstruct
+    public void checkBlockSizes() {
+        for (Sequence sequence : Sequence.values()) {
+            Long increment = jdbcTemplate.queryForObject(
+                    "SELECT seqincrement FROM pg_sequence WHERE seqrelid = ?::regclass", Long.class, sequence.getName());
+            if (increment == null || increment != sequence.getBlockSize()) {
+                throw new IllegalStateException("Sequence " + sequence.getName() + " increments by " + increment
+                        + " but its ids are allocated in blocks of " + sequence.getBlockSize());
+            }
+        }
+    }
+
+    /**
+     * Reserves {@code count} ids of the sequence, fetching all the blocks still needed with one query. The open
+     * block is only locked to take ids from or to replace it; the query runs without it.
+     */
+    public Ids reserve(Sequence sequence, int count) {
+        long[] block = openBlocks[sequence.ordinal()];
+        long[] ranges;
+        int fromBlock;
+        synchronized (block) {
+            fromBlock = (int) Math.min(count, block[1] - block[0]);
+            int blocksNeeded = (count - fromBlock + sequence.getBlockSize() - 1) / sequence.getBlockSize();
+            ranges = new long[(blocksNeeded + 1) * 2];
+            ranges[0] = block[0];
+            ranges[1] = block[0] + fromBlock;
+            block[0] += fromBlock;
+        }
+        if (ranges.length == 2) {
+            return new Ids(ranges);
+        }
+
+        int blocksNeeded = ranges.length / 2 - 1;
+        List<Long> starts = jdbcTemplate.queryForList(
+                "SELECT nextval(?::regclass) FROM generate_series(1, ?)", Long.class, sequence.getName(), blocksNeeded);
+        int remaining = count - fromBlock;
+        long restStart = 0, restEnd = 0;
+        for (int i = 0; i < starts.size(); i++) {
+            long start = starts.get(i);
+            int used = Math.min(remaining, sequence.getBlockSize());
+            ranges[(i + 1) * 2] = start;
+            ranges[(i + 1) * 2 + 1] = start + used;
+            remaining -= used;
+            restStart = start + used;
+            restEnd = start + sequence.getBlockSize();
+        }
+
+        // The rest of the last block stays open unless another reservation left a larger one meanwhile
+        synchronized (block) {
+            if (restEnd - restStart > block[1] - block[0]) {
+                block[0] = restStart;
+                block[1] = restEnd;
+            }
+        }
+        return new Ids(ranges);
+    }
+
+    /**
+     * Ids of one reservation, as [start, end) ranges handed out in order.
+     */
+    public static final class Ids {
+
+        private final long[] ranges;
+        private int range;
+        private long next;
+
+        private Ids(long[] ranges) {
+            this.ranges = ranges;
+            this.next = ranges[0];
+        }
+
+        public long next() {
+            while (next == ranges[range * 2 + 1]) {
+                if (++range * 2 >= ranges.length) {
+                    throw new IllegalStateException("All reserved ids are used");
+                }
+                next = ranges[range * 2];
+            }
+            return next++;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.ninja.BankStAnalysis.infra.adapter.repository;
+
+import com.ninja.BankStAnalysis.core.ananomyzer.core.MerkleTreeLevels;
+import com.ninja.BankStAnalysis.core.ananomyzer.core.TokenEngine;
+import com.ninja.BankStAnalysis.core.model.StatementMerkleTree;
+import com.ninja.BankStAnalysis.core.port.out.MerkleProofRepositoryPort;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+/**
+ * Reads a proof's path without loading the tree: the leaf and its sibling are transaction rows found by
+ * (statement_id, leaf_index), and each interior sibling is a 32 byte slice of the stored levels. A statement
+ * extending an earlier one finds its first leaves under the statements it extends.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class MerkleProofRepository implements MerkleProofRepositoryPort {
+
+    private static final int DIGEST_LENGTH = TokenEngine.DIGEST_LENGTH;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionPartitionManager transactionPartitionManager;
+
+    @Override
+    public Optional<StatementMerkleTree> findStatementTree(Integer userId, String realmId, Long statementId) {
+        String sql = """
+            WITH RECURSIVE chain AS (
+                SELECT id, base_statement_id, created_at FROM user_bank_statement WHERE id = ?
+                UNION ALL
+                SELECT s.id, s.base_statement_id, s.created_at FROM user_bank_statement s JOIN chain c ON s.id = c.base_statement_id
+            )
+            SELECT m.leaf_count, m.merkle_root, s.hash_type, ARRAY(SELECT id FROM chain) AS row_statement_ids,
+                   (SELECT min(created_at) FROM chain) AS rows_from
+            FROM user_bank_statement_merkle m
+            JOIN user_bank_statement s ON s.id = m.statement_id
+            WHERE m.statement_id = ? AND s.user_id = ? AND s.realm_id = ?
+            """;
+        // Rows are written with their statement, so a statement older than the window has lost its rows to retention
+        LocalDateTime retainedFrom = transactionPartitionManager.getRetainedFrom();
+        try {
+            List<StatementMerkleTree> trees = jdbcTemplate.query(sql,
+                    (rs, rowNum) -> new StatementMerkleTree(statementId, rs.getInt("hash_type"), rs.getInt("leaf_count"), rs.getBytes("merkle_root"),
+                            (Long[]) rs.getArray("row_statement_ids").getArray(),
+                            isExpired(rs.getTimestamp("rows_from"), retainedFrom)),
+                    statementId, statementId, userId, realmId);
+            return trees.stream().findFirst();
+        } catch (Exception e) {
+            log.error("Failed to load Merkle tree for statementId: {}, userId: {}", statementId, userId, e);
+            throw new RuntimeException("Error loading Merkle tree: " + e.getMessage(), e);
+        }
+    }
+
+    // Probes the fingerprint index, so only the statement's rows sharing the digest's fingerprint are read
+    @Override
+    public OptionalInt findLeafIndex(StatementMerkleTree tree, byte[] digest) {
+        String sql = """
+            SELECT min(leaf_index)
+            FROM user_bank_transaction
+            WHERE hash_fingerprint = ? AND hash_type = ? AND statement_id = ANY(?) AND hash = ?
+            """;
+        try {
+            List<Integer> leaves = jdbcTemplate.query(sql, ps -> {
+                ps.setLong(1, TokenEngine.fingerprint(digest, 0));
+                ps.setInt(2, tree.getHashType());
+                ps.setArray(3, ps.getConnection().createArrayOf("bigint", tree.getRowStatementIds()));
+                ps.setBytes(4, digest);
+            }, (rs, rowNum) -> (Integer) rs.getObject(1));
+            Integer leaf = leaves.isEmpty() ? null : leaves.get(0);
+            return leaf == null ? OptionalInt.empty() : OptionalInt.of(leaf);
+        } catch (Exception e) {
+            log.error("Failed to find transaction leaf for statementId: {}", tree.getStatementId(), e);
+            throw new RuntimeException("Error finding transaction leaf: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public byte[][] findPathSiblings(StatementMerkleTree tree, int leaf) {
+        int leafCount = tree.getLeafCount();
+        byte[][] siblings = new byte[MerkleTreeLevels.height(leafCount)][];
+        if ((leaf ^ 1) < leafCount) {
+            siblings[0] = findLeaf(tree, leaf ^ 1);
+        }
+
+        // One slice per level above the leaves that has a sibling, all read in one row
+        List<Integer> heights = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        StringBuilder slices = new StringBuilder();
+        for (int height = 1; height < siblings.length; height++) {
+            int pos = (leaf >> height) ^ 1;
+            if (pos >= MerkleTreeLevels.width(leafCount, height)) continue;
+            slices.append(heights.isEmpty() ? "" : ", ").append("substring(nodes FROM ? FOR ").append(DIGEST_LENGTH).append(")");
+            args.add(Math.toIntExact(MerkleTreeLevels.interiorOffset(leafCount, height, pos) + 1)); // bytea offsets are int4, 1 based
+            heights.add(height);
+        }
+        if (heights.isEmpty()) return siblings;
+        args.add(tree.getStatementId());
+
+        try {
+            jdbcTemplate.query("SELECT " + slices + " FROM user_bank_statement_merkle WHERE statement_id = ?", rs -> {
+                for (int i = 0; i < heights.size(); i++) {
+                    siblings[heights.get(i)] = rs.getBytes(i + 1);
+                }
+            }, args.toArray());
+        } catch (Exception e) {
+            log.error("Failed to read Merkle path for statementId: {}, leaf: {}", tree.getStatementId(), leaf, e);
+            throw new RuntimeException("Error reading Merkle path: " + e.getMessage(), e);
+        }
+        for (int height : heights) {
+            if (siblings[height] == null || siblings[height].length != DIGEST_LENGTH) {
+                throw new IllegalStateException("Stored Merkle tree of statement " + tree.getStatementId() + " is incomplete");
+            }
+        }
+        return siblings;
+    }
+
+    private static boolean isExpired(Timestamp rowsFrom, LocalDateTime retainedFrom) {
+        return retainedFrom != null && rowsFrom != null && rowsFrom.toLocalDateTime().isBefore(retainedFrom);
+    }
+
+    private byte[] findLeaf(StatementMerkleTree tree, int leaf) {
+        String sql = """
+            SELECT hash FROM user_bank_transaction
+            WHERE statement_id = ANY(?) AND leaf_index = ? AND hash_type = ?
+            LIMIT 1
+            """;
+        List<byte[]> hashes = jdbcTemplate.query(sql, ps -> {
+            ps.setArray(1, ps.getConnection().createArrayOf("bigint", tree.getRowStatementIds()));
+            ps.setInt(2, leaf);
+            ps.setInt(3, tree.getHashType());
+        }, (rs, rowNum) -> rs.getBytes("hash"));
+        if (hashes.isEmpty()) {
+            throw new IllegalStateException("Transaction " + leaf + " of statement " + tree.getStatementId() + " is no longer stored");
+        }
+        return hashes.get(0);
+    }
+}
@@ -0,0 +1,189 @@
+package com.ninja.BankStAnalysis.infra.adapter.repository;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+
+/**
+ * Streams rows to a {@code COPY ... FROM STDIN (FORMAT BINARY)} in PostgreSQL's binary copy format.
+ *
+ * <p>Rows are encoded into one buffer that is handed to the driver whenever it fills up, so a load of any size
+ * is a single COPY without the rows ever existing as objects. Values must be written in column order with the
+ * binary layout of the column type: int2, int4 and int8 as big-endian integers, text and bytea as their bytes,
+ * timestamp (without time zone) as microseconds since 2000-01-01, and one-dimensional arrays of int4 or
+ * varchar as a header followed by their elements.</p>
+ */
+public final class PgBinaryCopyWriter implements AutoCloseable {
+
+    private static final byte[] HEADER = {
+            'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0, // Signature
+            0, 0, 0, 0,                                                      // Flags
+            0, 0, 0, 0                                                       // Header extension length
+    };
+
+    private static final int FLUSH_SIZE = 1 << 16;
+
+    // Element type OIDs of the arrays that can be written
+    private static final int INT4_OID = 23;
+    private static final int VARCHAR_OID = 1043;
+
+    // Epoch of binary timestamps
+    private static final LocalDateTime POSTGRES_EPOCH = LocalDateTime.of(2000, 1, 1, 0, 0);
+
+    private final CopyIn copyIn;
+    private byte[] buffer = new byte[FLUSH_SIZE + 1024];
+    private int size;
+    private boolean finished;
+
+    private PgBinaryCopyWriter(CopyIn copyIn) {
+        this.copyIn = copyIn;
+        write(HEADER, 0, HEADER.length);
+    }
+
+    // Starts copySql, a COPY ... FROM STDIN (FORMAT BINARY), on the connection
+    public static PgBinaryCopyWriter open(Connection connection, String copySql) throws SQLException {
+        return new PgBinaryCopyWriter(connection.unwrap(PGConnection.class).getCopyAPI().copyIn(copySql));
+    }
+
+    public void startRow(int columns) throws SQLException {
+        if (size >= FLUSH_SIZE) {
+            flush();
+        }
+        putShort(columns);
+    }
+
+    public void writeShort(int value) {
+        putInt(2);
+        putShort(value);
+    }
+
+    public void writeInt(int value) {
+        putInt(4);
+        putInt(value);
+    }
+
+    public void writeLong(long value) {
+        putInt(8);
+        putInt((int) (value >>> 32));
+        putInt((int) value);
+    }
+
+    public void writeText(String value) {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        writeBytes(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void writeBytes(byte[] value) {
+        writeBytes(value, 0, value.length);
+    }
+
+    public void writeBytes(byte[] value, int offset, int length) {
+        putInt(length);
+        write(value, offset, length);
+    }
+
+    // The wall clock value as a timestamp without time zone, the way the driver sends a java.sql.Timestamp
+    public void writeTimestamp(LocalDateTime value) {
+        writeLong(ChronoUnit.MICROS.between(POSTGRES_EPOCH, value));
+    }
+
+    // An int4[] without NULL elements
+    public void writeIntArray(Integer[] values) {
+        putInt(arrayHeaderLength(values.length) + values.length * 8);
+        putArrayHeader(values.length, INT4_OID);
+        for (Integer value : values) {
+            writeInt(value);
+        }
+    }
+
+    // A varchar[] without NULL elements
+    public void writeVarcharArray(String[] values) {
+        byte[][] elements = new byte[values.length][];
+        int length = arrayHeaderLength(values.length);
+        for (int i = 0; i < values.length; i++) {
+            elements[i] = values[i].getBytes(StandardCharsets.UTF_8);
+            length += 4 + elements[i].length;
+        }
+        putInt(length);
+        putArrayHeader(values.length, VARCHAR_OID);
+        for (byte[] element : elements) {
+            writeBytes(element);
+        }
+    }
+
+    public void writeNull() {
+        putInt(-1);
+    }
+
+    // Ends the COPY and returns the number of rows it loaded
+    public long finish() throws SQLException {
+        putShort(-1);
+        flush();
+        finished = true;
+        return copyIn.endCopy();
+    }
+
+    // Cancels a COPY that was not finished, so nothing of it is loaded
+    @Override
+    public void close() throws SQLException {
+        if (!finished && copyIn.isActive()) {
+            copyIn.cancelCopy();
+        }
+    }
+
+    private void flush() throws SQLException {
+        copyIn.writeToCopy(buffer, 0, size);
+        size = 0;
+    }
+
+    // An empty array has no dimensions
+    private static int arrayHeaderLength(int elements) {
+        return elements == 0 ? 12 : 20;
+    }
+
+    // Dimensions, NULL flag and element type, then the size and lower bound of the one dimension
+    private void putArrayHeader(int elements, int elementOid) {
+        putInt(elements == 0 ? 0 : 1);
+        putInt(0);
+        putInt(elementOid);
+        if (elements > 0) {
+            putInt(elements);
+            putInt(1);
+        }
+    }
+
+    private void putShort(int value) {
+        ensureCapacity(2);
+        buffer[size++] = (byte) (value >>> 8);
+        buffer[size++] = (byte) value;
+    }
+
+    private void putInt(int value) {
+        ensureCapacity(4);
+        buffer[size++] = (byte) (value >>> 24);
+        buffer[size++] = (byte) (value >>> 16);
+        buffer[size++] = (byte) (value >>> 8);
+        buffer[size++] = (byte) value;
+    }
+
+    private void write(byte[] bytes, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(bytes, offset, buffer, size, length);
+        size += length;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+    }
+}
@@ -1,19 +1,18 @@
 package com.ninja.BankStAnalysis.infra.adapter.repository;
 
-import com.jayway.jsonpath.JsonPath;
 import com.ninja.BankStAnalysis.core.port.out.ResponsePersistRepositoryPort;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.stereotype.Repository;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
-import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @Repository
@@ -22,44 +21,75 @@ public class ResponsePersistRepository implements ResponsePersistRepositoryPort
 
     private final JdbcTemplate jdbcTemplate;
 
+    // Flag statuses of concurrent dedupe requests are committed together, see GroupCommitWriter
+    @Value("${bankstatement.flag-status.group-commit.max-batch:500}")
+    private int groupCommitMaxBatch = 500;
+
+    @Value("${bankstatement.flag-status.group-commit.max-delay-ms:5}")
+    private long groupCommitMaxDelayMillis = 5;
+
+    private GroupCommitWriter<Object[]> flagStatusWriter;
+
+    @PostConstruct
+    public void startGroupCommit() {
+        flagStatusWriter = new GroupCommitWriter<>("flag-status-group-commit", groupCommitMaxBatch,
+                groupCommitMaxDelayMillis, this::insertUserBankStatementFlagStatus);
+    }
+
+    @PreDestroy
+    public void stopGroupCommit() throws InterruptedException {
+        flagStatusWriter.close();
+    }
+
+    @Override
+    public CompletableFuture<Void> queueUserBankStatementFlagStatus(Object[] record) {
+        Objects.requireNonNull(record, "record must not be null");
+        return flagStatusWriter.submit(record);
+    }
+
+    /**
+     * Inserts the records with one binary COPY, committed on its own. The counterparty arrays are encoded into the
+     * copy stream directly instead of being created as JDBC arrays.
+     */
     public void insertUserBankStatementFlagStatus(List<Object[]> batchData) {
         if (batchData == null || batchData.isEmpty()) {
             log.warn("No records to insert into user_bank_statement_flag_status");
             return;
         }
-        String INSERT_FLAG_STATUS_SQL = """
-            INSERT INTO user_bank_statement_flag_status
+        String COPY_FLAG_STATUS_SQL = """
+            COPY user_bank_statement_flag_status
             (user_id, realm_id, flag, flagged_on, account_number,
             matched_counter_party_user_ids, matched_counter_party_account_nos,
             verified_on, created_at, created_by, updated_at, updated_by)
-            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            FROM STDIN (FORMAT BINARY)
             """;
         try {
-            int[] updateCounts = jdbcTemplate.batchUpdate(INSERT_FLAG_STATUS_SQL, new BatchPreparedStatementSetter() {
-                @Override
-                public void setValues(PreparedStatement ps, int i) throws SQLException {
-                    Object[] record = batchData.get(i);
-                    ps.setInt(1, (Integer) record[0]); // user_id
-                    ps.setString(2, (String) record[1]); // realm_id
-                    ps.setString(3, (String) record[2]); // flag
-                    ps.setTimestamp(4, Timestamp.valueOf((LocalDateTime) record[3])); // flagged_on
-                    ps.setString(5, (String) record[4]); // account_number
-                    ps.setArray(6, ps.getConnection().createArrayOf("INTEGER", (Integer[]) record[5])); // matched_counter_party_user_ids
-                    ps.setArray(7, ps.getConnection().createArrayOf("VARCHAR", (String[]) record[6])); // matched_counter_party_account_nos
-                    ps.setTimestamp(8, Timestamp.valueOf((LocalDateTime) record[7])); // verified_on
-                    ps.setTimestamp(9, Timestamp.valueOf((LocalDateTime) record[8])); // created_at
-                    ps.setString(10, (String) record[9]); // created_by
-                    ps.setTimestamp(11, record[10] != null ? Timestamp.valueOf((LocalDateTime) record[10]) : null); // updated_at
-                    ps.setString(12, (String) record[11]); // updated_by
-                }
-
-                @Override
-                public int getBatchSize() {
-                    return batchData.size();
+            Long inserted = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+                try (PgBinaryCopyWriter writer = PgBinaryCopyWriter.open(connection, COPY_FLAG_STATUS_SQL)) {
+                    for (Object[] record : batchData) {
+                        writer.startRow(12);
+                        writer.writeInt((Integer) record[0]);                 // user_id
+                        writer.writeText((String) record[1]);                 // realm_id
+                        writer.writeText((String) record[2]);                 // flag
+                        writer.writeTimestamp((LocalDateTime) record[3]);     // flagged_on
+                        writer.writeText((String) record[4]);                 // account_number
+                        writer.writeIntArray((Integer[]) record[5]);          // matched_counter_party_user_ids
+                        writer.writeVarcharArray((String[]) record[6]);       // matched_counter_party_account_nos
+                        writer.writeTimestamp((LocalDateTime) record[7]);     // verified_on
+                        writer.writeTimestamp((LocalDateTime) record[8]);     // created_at
+                        writer.writeText((String) record[9]);                 // created_by
+                        if (record[10] != null) {                             // updated_at
+                            writer.writeTimestamp((LocalDateTime) record[10]);
+                        } else {
+                            writer.writeNull();
+                        }
+                        writer.writeText((String) record[11]);                // updated_by
+                    }
+                    return writer.finish();
                 }
             });
 
-            log.debug("Batch insert completed with update counts: {}", Arrays.toString(updateCounts));
+            log.debug("Copy of flag status records completed with {} rows", inserted);
 
         } catch (Exception e) {
             log.error("Batch insert failed: {}", e.getMessage(), e);
@@ -67,4 +97,4 @@ public class ResponsePersistRepository implements ResponsePersistRepositoryPort
         }
     }
 
-}
\ No newline at end of file
+}
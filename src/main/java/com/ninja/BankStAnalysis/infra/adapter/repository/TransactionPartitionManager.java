@@ -0,0 +1,141 @@
+package com.ninja.BankStAnalysis.infra.adapter.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the monthly created_at partitions of user_bank_transaction (V7) in step with the calendar: the month
+ * partitions of the coming months are created ahead, and months that left the retention window are detached
+ * and dropped whole, so retention never deletes rows.
+ *
+ * <p>Retention is off unless {@code bankstatement.transaction.retention-months} is set. With it, a month is kept
+ * while it is one of the last retention-months months before the current one, and {@link #getRetainedFrom()}
+ * is the start of that window, so dedupe lookups are pruned to it even before the next run drops anything.</p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TransactionPartitionManager {
+
+    // Month partitions are named <partition>_mYYYYMM, the history attached by V7 <partition>_before_YYYYMM
+    private static final String EXPIRED_PARTITIONS_SQL = """
+            SELECT p.relname AS parent, c.relname AS partition, i.inhdetachpending AS detach_pending
+            FROM pg_inherits ht
+            JOIN pg_inherits i ON i.inhparent = ht.inhrelid
+            JOIN pg_class p ON p.oid = i.inhparent
+            JOIN pg_class c ON c.oid = i.inhrelid
+            WHERE ht.inhparent = 'user_bank_transaction'::regclass
+            AND CASE
+                WHEN c.relname ~ '_m[0-9]{6}$' THEN to_date(right(c.relname, 6), 'YYYYMM') + interval '1 month'
+                WHEN c.relname ~ '_before_[0-9]{6}$' THEN to_date(right(c.relname, 6), 'YYYYMM')
+            END <= ?
+            ORDER BY c.relname
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${bankstatement.transaction.retention-months:0}")
+    private int retentionMonths = 0;
+
+    @Value("${bankstatement.transaction.partition-months-ahead:3}")
+    private int monthsAhead = 3;
+
+    // Oldest created_at still retained, null while retention is off
+    public LocalDateTime getRetainedFrom() {
+        if (retentionMonths <= 0) return null;
+        return LocalDate.now().withDayOfMonth(1).minusMonths(retentionMonths).atStartOfDay();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintainPartitions();
+    }
+
+    @Scheduled(cron = "${bankstatement.transaction.partition-maintenance-cron:0 30 2 * * *}")
+    public void maintainPartitions() {
+        try {
+            createUpcomingPartitions();
+            dropExpiredPartitions();
+        } catch (Exception e) {
+            log.error("Transaction partition maintenance failed", e);
+        }
+    }
+
+    private void createUpcomingPartitions() {
+        LocalDate month = LocalDate.now().withDayOfMonth(1);
+        for (int i = 0; i <= monthsAhead; i++, month = month.plusMonths(1)) {
+            jdbcTemplate.update("CALL create_transaction_month_partitions(?)", Date.valueOf(month));
+        }
+        log.info("Transaction partitions present up to {}", month.minusMonths(1));
+    }
+
+    /**
+     * Detaches each expired month with DETACH PARTITION ... CONCURRENTLY, which does not block readers and writers
+     * of the other months, then drops it. That form cannot run inside a transaction, so this works in autocommit
+     * on one connection, holding a session advisory lock against another instance doing the same.
+     */
+    private void dropExpiredPartitions() {
+        LocalDateTime retainedFrom = getRetainedFrom();
+        if (retainedFrom == null) return;
+
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            if (!connection.getAutoCommit()) {
+                throw new IllegalStateException("Partition retention needs an autocommit connection");
+            }
+            try (Statement statement = connection.createStatement()) {
+                try (ResultSet lock = statement.executeQuery(
+                        "SELECT pg_try_advisory_lock(hashtext('user_bank_transaction_retention'))")) {
+                    if (!lock.next() || !lock.getBoolean(1)) {
+                        log.info("Transaction partition retention is running elsewhere, skipping");
+                        return null;
+                    }
+                }
+                try {
+                    for (ExpiredPartition expired : findExpiredPartitions(connection, retainedFrom)) {
+                        log.info("Dropping transaction partition {} of {}, older than {}", expired.partition(), expired.parent(), retainedFrom);
+                        // A detach interrupted by a failure is left pending and can only be finalized
+                        statement.execute("ALTER TABLE " + quote(expired.parent()) + " DETACH PARTITION " + quote(expired.partition())
+                                + (expired.detachPending() ? " FINALIZE" : " CONCURRENTLY"));
+                        statement.execute("DROP TABLE " + quote(expired.partition()));
+                    }
+                } finally {
+                    statement.execute("SELECT pg_advisory_unlock(hashtext('user_bank_transaction_retention'))");
+                }
+            }
+            return null;
+        });
+    }
+
+    private List<ExpiredPartition> findExpiredPartitions(Connection connection, LocalDateTime retainedFrom) throws SQLException {
+        List<ExpiredPartition> expired = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement(EXPIRED_PARTITIONS_SQL)) {
+            ps.setTimestamp(1, Timestamp.valueOf(retainedFrom));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    expired.add(new ExpiredPartition(rs.getString("parent"), rs.getString("partition"), rs.getBoolean("detach_pending")));
+                }
+            }
+        }
+        return expired;
+    }
+
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    private record ExpiredPartition(String parent, String partition, boolean detachPending) {
+    }
+}
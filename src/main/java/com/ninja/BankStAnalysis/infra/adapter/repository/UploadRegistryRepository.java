@@ -0,0 +1,77 @@
+package com.ninja.BankStAnalysis.infra.adapter.repository;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ninja.BankStAnalysis.core.modelHelper.ContentHashType;
+import com.ninja.BankStAnalysis.core.port.out.UploadRegistryPort;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Content hashes of processed uploads with the result each one returned, on the unique index
+ * uq_user_bank_statement_upload_hash. A hash is claimed in the transaction that writes the upload, so a
+ * concurrent identical upload waits on the index entry and then finds the committed result instead of writing
+ * again.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class UploadRegistryRepository implements UploadRegistryPort {
+
+    private static final TypeReference<List<Map<String, Object>>> RESULT_TYPE = new TypeReference<>() {
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public Optional<List<Map<String, Object>>> findResult(Integer userId, String realmId, ContentHashType hashType, byte[] contentHash) {
+        List<String> responses = jdbcTemplate.queryForList("""
+                SELECT response::text FROM user_bank_statement_upload
+                WHERE user_id = ? AND realm_id = ? AND hash_type = ? AND content_hash = ? AND response IS NOT NULL
+                """, String.class, userId, realmId, hashType.ordinal(), contentHash);
+        if (responses.isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(objectMapper.readValue(responses.get(0), RESULT_TYPE));
+        } catch (Exception e) {
+            log.error("Failed to read stored upload result for userId: {}, realmId: {}", userId, realmId, e);
+            throw new RuntimeException("Error reading stored upload result: " + e.getMessage(), e);
+        }
+    }
+
+    // Inserts the hash without a result; false when it is already there, waiting first for an uncommitted claim
+    @Override
+    public boolean claim(Integer userId, String realmId, ContentHashType hashType, byte[] contentHash) {
+        return jdbcTemplate.update("""
+                INSERT INTO user_bank_statement_upload (user_id, realm_id, hash_type, content_hash)
+                VALUES (?, ?, ?, ?)
+                ON CONFLICT (user_id, realm_id, hash_type, content_hash) DO NOTHING
+                """, userId, realmId, hashType.ordinal(), contentHash) == 1;
+    }
+
+    // Stores the result of the hash, unless one was stored before
+    @Override
+    public void saveResult(Integer userId, String realmId, ContentHashType hashType, byte[] contentHash,
+                           List<Map<String, Object>> result) {
+        try {
+            jdbcTemplate.update("""
+                    INSERT INTO user_bank_statement_upload AS u (user_id, realm_id, hash_type, content_hash, response)
+                    VALUES (?, ?, ?, ?, ?::jsonb)
+                    ON CONFLICT (user_id, realm_id, hash_type, content_hash) DO UPDATE
+                    SET response = EXCLUDED.response
+                    WHERE u.response IS NULL
+                    """, userId, realmId, hashType.ordinal(), contentHash, objectMapper.writeValueAsString(result));
+        } catch (Exception e) {
+            log.error("Failed to store upload result for userId: {}, realmId: {}", userId, realmId, e);
+            throw new RuntimeException("Error storing upload result: " + e.getMessage(), e);
+        }
+    }
+}
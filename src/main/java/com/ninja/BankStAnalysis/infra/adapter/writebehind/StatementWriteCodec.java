@@ -0,0 +1,129 @@
+package com.ninja.BankStAnalysis.infra.adapter.writebehind;
+
+import com.ninja.BankStAnalysis.core.ananomyzer.core.TokenEngine;
+import com.ninja.BankStAnalysis.core.model.StatementTokens;
+import com.ninja.BankStAnalysis.core.model.StatementWrite;
+import com.ninja.BankStAnalysis.core.modelHelper.BankStatementHashType;
+import com.ninja.BankStAnalysis.core.modelHelper.Provider;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary form of a {@link StatementWrite} in the write-behind log. Digests and field hashes are stored raw, so a
+ * record is a little over 32 bytes plus the field hashes per transaction. Version 2 adds the content hashes;
+ * version 1 records are still read, without them.
+ */
+final class StatementWriteCodec {
+
+    private static final int VERSION = 2;
+
+    private StatementWriteCodec() {
+    }
+
+    static byte[] encode(StatementWrite write) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeInt(write.getUserId());
+            out.writeUTF(write.getRealmId());
+            out.writeByte(write.getProvider().ordinal());
+            out.writeBoolean(write.isRegistered());
+            if (write.isRegistered()) {
+                out.write(write.getUploadHash());
+                out.write(write.getStatementHash());
+            }
+
+            out.writeInt(write.getPhoneNumbers().size());
+            for (String phoneNumber : write.getPhoneNumbers()) {
+                out.writeUTF(phoneNumber);
+            }
+
+            for (BankStatementHashType section : BankStatementHashType.values()) {
+                out.writeBoolean(write.getTokens().hasSection(section));
+                if (!write.getTokens().hasSection(section)) continue;
+
+                List<StatementTokens.AccountTokens> accounts = write.getTokens().getSection(section);
+                out.writeInt(accounts.size());
+                for (StatementTokens.AccountTokens account : accounts) {
+                    writeAccount(out, account);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Only thrown by the underlying stream, which is in memory
+        }
+        return bytes.toByteArray();
+    }
+
+    static StatementWrite decode(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        int version = in.readUnsignedByte();
+        if (version != 1 && version != VERSION) {
+            throw new IOException("Unsupported write-behind record version: " + version);
+        }
+        int userId = in.readInt();
+        String realmId = in.readUTF();
+        Provider provider = Provider.values()[in.readUnsignedByte()];
+        byte[] uploadHash = null;
+        byte[] statementHash = null;
+        if (version >= 2 && in.readBoolean()) {
+            uploadHash = new byte[TokenEngine.DIGEST_LENGTH];
+            statementHash = new byte[TokenEngine.DIGEST_LENGTH];
+            in.readFully(uploadHash);
+            in.readFully(statementHash);
+        }
+
+        int phoneCount = in.readInt();
+        List<String> phoneNumbers = new ArrayList<>(phoneCount);
+        for (int i = 0; i < phoneCount; i++) {
+            phoneNumbers.add(in.readUTF());
+        }
+
+        StatementTokens tokens = new StatementTokens();
+        for (BankStatementHashType section : BankStatementHashType.values()) {
+            if (!in.readBoolean()) continue;
+
+            int accountCount = in.readInt();
+            List<StatementTokens.AccountTokens> accounts = new ArrayList<>(accountCount);
+            for (int i = 0; i < accountCount; i++) {
+                accounts.add(readAccount(in));
+            }
+            tokens.putSection(section, accounts);
+        }
+        return new StatementWrite(userId, realmId, provider, phoneNumbers, tokens, uploadHash, statementHash);
+    }
+
+    private static void writeAccount(DataOutputStream out, StatementTokens.AccountTokens account) throws IOException {
+        out.writeBoolean(account.getAccountNo() != null);
+        if (account.getAccountNo() != null) {
+            out.writeUTF(account.getAccountNo());
+        }
+        out.write(account.getDigest());
+
+        int rows = account.getTransactionCount();
+        int fieldHashLength = rows == 0 ? 0 : account.getFieldHashes(0).length;
+        out.writeInt(rows);
+        out.writeInt(fieldHashLength);
+        for (int row = 0; row < rows; row++) {
+            out.write(account.getTransactionDigest(row));
+        }
+        for (int row = 0; row < rows; row++) {
+            out.write(account.getFieldHashes(row));
+        }
+    }
+
+    private static StatementTokens.AccountTokens readAccount(DataInputStream in) throws IOException {
+        String accountNo = in.readBoolean() ? in.readUTF() : null;
+        byte[] digest = new byte[TokenEngine.DIGEST_LENGTH];
+        in.readFully(digest);
+
+        int rows = in.readInt();
+        int fieldHashLength = in.readInt();
+        byte[] transactionDigests = new byte[rows * TokenEngine.DIGEST_LENGTH];
+        byte[] fieldHashes = new byte[rows * fieldHashLength];
+        in.readFully(transactionDigests);
+        in.readFully(fieldHashes);
+        return new StatementTokens.AccountTokens(accountNo, digest, transactionDigests, fieldHashes);
+    }
+}
@@ -0,0 +1,214 @@
+package com.ninja.BankStAnalysis.infra.adapter.writebehind;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only, file-backed log of write-behind records, split into segment files named after their first sequence
+ * number. A record is its payload length, sequence number and CRC32C, then the payload.
+ *
+ * <p>Writing and syncing are separate so that appenders share fsyncs: {@link #sync(long)} forces everything
+ * written so far, and returns at once for a record a concurrent call already forced. A record torn by a crash
+ * fails its length or checksum and is cut off on the next {@link #open}; it was never synced, so never
+ * acknowledged.</p>
+ */
+@Slf4j
+final class WriteBehindLog implements Closeable {
+
+    private static final long SEGMENT_SIZE = 64L * 1024 * 1024;
+    private static final int HEADER_LENGTH = 4 + 8 + 4;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final TreeMap<Long, Path> segments; // First sequence number of each segment, the open one last
+    private final Object syncLock = new Object();
+
+    private FileChannel current;
+    private long nextSequence;
+    private volatile long writtenSequence; // Last sequence number fully written to the open segment
+    private volatile long syncedSequence;  // Last sequence number known to be on disk, guarded by syncLock
+
+    private WriteBehindLog(Path directory, TreeMap<Long, Path> segments, long nextSequence) {
+        this.directory = directory;
+        this.segments = segments;
+        this.nextSequence = nextSequence;
+        this.writtenSequence = nextSequence - 1;
+        this.syncedSequence = nextSequence - 1;
+    }
+
+    /**
+     * Opens the log in the directory, passing every intact record after appliedSequence to replay in order, and
+     * starts a new segment for the records written from now on.
+     */
+    static WriteBehindLog open(Path directory, long appliedSequence, BiConsumer<Long, byte[]> replay) throws IOException {
+        Files.createDirectories(directory);
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().matches(SEGMENT_PREFIX + "\\d+\\" + SEGMENT_SUFFIX))
+                    .forEach(file -> segments.put(firstSequence(file), file));
+        }
+
+        long lastSequence = appliedSequence;
+        for (Long firstSequence : List.copyOf(segments.keySet())) {
+            Path segment = segments.get(firstSequence);
+            long segmentLast = readSegment(segment, firstSequence.equals(segments.lastKey()), appliedSequence, replay);
+            if (segmentLast < firstSequence) { // Holds no record, and the next segment may start at the same number
+                Files.delete(segment);
+                segments.remove(firstSequence);
+            }
+            lastSequence = Math.max(lastSequence, segmentLast);
+        }
+
+        WriteBehindLog writeBehindLog = new WriteBehindLog(directory, segments, lastSequence + 1);
+        writeBehindLog.startSegment();
+        return writeBehindLog;
+    }
+
+    // Writes the record to the open segment and returns its sequence number; it is durable only after sync
+    synchronized long write(byte[] payload) throws IOException {
+        if (current.position() >= SEGMENT_SIZE) {
+            startSegment();
+        }
+        long sequence = nextSequence++;
+        CRC32C crc = new CRC32C();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).putInt(payload.length).putLong(sequence);
+        crc.update(header.array(), 4, 8);
+        crc.update(payload);
+        header.putInt((int) crc.getValue()).flip();
+
+        ByteBuffer record = ByteBuffer.wrap(payload);
+        while (header.hasRemaining()) current.write(header);
+        while (record.hasRemaining()) current.write(record);
+        writtenSequence = sequence;
+        return sequence;
+    }
+
+    // Returns once the record with the sequence number, and every one before it, is on disk
+    void sync(long sequence) throws IOException {
+        if (syncedSequence >= sequence) return;
+        synchronized (syncLock) {
+            if (syncedSequence >= sequence) return;
+            long written = writtenSequence;
+            current.force(false);
+            syncedSequence = written;
+        }
+    }
+
+    // Deletes the segments whose records are all at or before appliedSequence
+    synchronized void release(long appliedSequence) throws IOException {
+        while (segments.size() > 1) {
+            Map.Entry<Long, Path> oldest = segments.firstEntry();
+            Long next = segments.higherKey(oldest.getKey());
+            if (next - 1 > appliedSequence) break;
+            Files.deleteIfExists(oldest.getValue());
+            segments.remove(oldest.getKey());
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        synchronized (syncLock) {
+            current.force(false);
+            current.close();
+        }
+    }
+
+    // Called with the monitor held, or before the log is shared
+    private void startSegment() throws IOException {
+        synchronized (syncLock) {
+            if (current != null) {
+                current.force(false); // The records of a closed segment are never forced again
+                current.close();
+                syncedSequence = writtenSequence;
+            }
+            Path segment = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextSequence, SEGMENT_SUFFIX));
+            current = FileChannel.open(segment, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            segments.put(nextSequence, segment);
+            syncDirectory();
+        }
+    }
+
+    // Makes the new segment's directory entry durable, where the platform allows syncing a directory
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Could not sync write-behind directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    /**
+     * Replays the records of one segment after appliedSequence and returns the last sequence number in it. A torn
+     * record ends the open segment of a crashed run and is cut off; anywhere else it is corruption.
+     */
+    private static long readSegment(Path segment, boolean last, long appliedSequence, BiConsumer<Long, byte[]> replay)
+            throws IOException {
+        long lastSequence = firstSequence(segment) - 1;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long position = 0;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            while (position < channel.size()) {
+                try {
+                    header.clear();
+                    readFully(channel, header, position);
+                    header.flip();
+                    int length = header.getInt();
+                    long sequence = header.getLong();
+                    int checksum = header.getInt();
+                    if (length < 0 || position + HEADER_LENGTH + length > channel.size()) {
+                        throw new EOFException("Record " + sequence + " runs past the end of " + segment);
+                    }
+                    ByteBuffer payload = ByteBuffer.allocate(length);
+                    readFully(channel, payload, position + HEADER_LENGTH);
+
+                    CRC32C crc = new CRC32C();
+                    crc.update(header.array(), 4, 8);
+                    crc.update(payload.array());
+                    if ((int) crc.getValue() != checksum) {
+                        throw new IOException("Checksum mismatch in record " + sequence + " of " + segment);
+                    }
+                    if (sequence > appliedSequence) {
+                        replay.accept(sequence, payload.array());
+                    }
+                    lastSequence = sequence;
+                    position += HEADER_LENGTH + length;
+
+                } catch (IOException e) {
+                    if (!last) throw e;
+                    log.warn("Truncating write-behind segment {} at {} after a torn record: {}", segment, position, e.getMessage());
+                    channel.truncate(position);
+                    channel.force(false);
+                    break;
+                }
+            }
+        }
+        return lastSequence;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) throw new EOFException();
+        }
+    }
+
+    private static long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
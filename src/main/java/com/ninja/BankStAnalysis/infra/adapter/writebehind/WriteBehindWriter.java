@@ -0,0 +1,285 @@
+package com.ninja.BankStAnalysis.infra.adapter.writebehind;
+
+import com.ninja.BankStAnalysis.core.model.StatementWrite;
+import com.ninja.BankStAnalysis.core.modelHelper.ContentHashType;
+import com.ninja.BankStAnalysis.core.port.out.BankStAnalysisRepositoryPort;
+import com.ninja.BankStAnalysis.core.port.out.StatementWriteQueuePort;
+import com.ninja.BankStAnalysis.core.port.out.UploadRegistryPort;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Write-behind mode of ingestion, on when {@code bankstatement.write-behind.enabled=true}. An upload is acknowledged
+ * once its {@link StatementWrite} is synced to the local {@link WriteBehindLog}; a single background thread then
+ * commits the queued uploads of many requests together through {@link BankStAnalysisRepositoryPort#saveDetails(List)},
+ * one transaction and one COPY per table for each group.
+ *
+ * <p>The last applied sequence number is stored in write_behind_checkpoint in the same transaction as the rows, so
+ * after a crash exactly the records not committed yet are replayed from the log. Each node needs its own log
+ * directory and node id. A group never holds two uploads of the same user and realm, since an upload is only found
+ * to extend statements that are already committed.</p>
+ *
+ * <p>The upload's content hashes are claimed and given their result in that transaction too. An upload whose hash
+ * another one registered first is not written, and one that is set aside or never applied leaves no claim.</p>
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "bankstatement.write-behind.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class WriteBehindWriter implements StatementWriteQueuePort {
+
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    private final BankStAnalysisRepositoryPort bankStAnalysisRepositoryPort;
+    private final UploadRegistryPort uploadRegistryPort;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${bankstatement.write-behind.directory:write-behind}")
+    private String directory = "write-behind";
+
+    @Value("${bankstatement.write-behind.node-id:${HOSTNAME:local}}")
+    private String nodeId = "local";
+
+    @Value("${bankstatement.write-behind.max-pending:1000}")
+    private int maxPending = 1000;
+
+    @Value("${bankstatement.write-behind.max-group:64}")
+    private int maxGroup = 64;
+
+    private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>(); // In sequence order
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private WriteBehindLog writeBehindLog;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() throws IOException {
+        List<Long> applied = jdbcTemplate.queryForList(
+                "SELECT applied_sequence FROM write_behind_checkpoint WHERE node_id = ?", Long.class, nodeId);
+        long appliedSequence = applied.isEmpty() ? 0 : applied.get(0);
+
+        writeBehindLog = WriteBehindLog.open(Path.of(directory), appliedSequence, this::replay);
+        log.info("Write-behind log {} opened for node {}, {} uploads to replay after sequence {}",
+                directory, nodeId, queue.size(), appliedSequence);
+
+        running = true;
+        writerThread = new Thread(this::run, "write-behind-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        running = false;
+        writerThread.join(TimeUnit.SECONDS.toMillis(30)); // What is left is replayed on the next start
+        writeBehindLog.close();
+    }
+
+    @Override
+    public long enqueue(StatementWrite write) {
+        byte[] record = StatementWriteCodec.encode(write);
+        if (pendingCount.incrementAndGet() > maxPending) {
+            pendingCount.decrementAndGet();
+            throw new IllegalStateException("Write-behind queue is full");
+        }
+        try {
+            long sequence;
+            synchronized (queue) { // Queued in the order written, so the checkpoint never passes an unapplied record
+                sequence = writeBehindLog.write(record);
+                queue.add(new Pending(sequence, write));
+            }
+            writeBehindLog.sync(sequence);
+            return sequence;
+        } catch (IOException e) {
+            log.error("Failed to append upload for userId: {} to the write-behind log", write.getUserId(), e);
+            throw new RuntimeException("Error appending to write-behind log", e);
+        }
+    }
+
+    private void replay(Long sequence, byte[] record) {
+        try {
+            queue.add(new Pending(sequence, StatementWriteCodec.decode(record)));
+            pendingCount.incrementAndGet();
+        } catch (IOException e) {
+            log.error("Skipping unreadable write-behind record {}", sequence, e);
+        }
+    }
+
+    private void run() {
+        Deque<Pending> group = new ArrayDeque<>(); // Taken from the queue, not applied yet
+        while (running) {
+            try {
+                if (group.isEmpty()) {
+                    Pending first = queue.poll(1, TimeUnit.SECONDS);
+                    if (first == null) continue;
+                    group.addAll(nextGroup(first));
+                }
+                long last = group.getLast().sequence();
+                writeBehindLog.sync(last); // Nothing is applied before it is durable
+
+                if (apply(List.copyOf(group), 1) == null) {
+                    pendingCount.addAndGet(-group.size());
+                    group.clear();
+                } else {
+                    while (!group.isEmpty()) {
+                        if (!applyAlone(group.getFirst())) return;
+                        group.removeFirst();
+                        pendingCount.decrementAndGet();
+                    }
+                }
+                writeBehindLog.release(last);
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Write-behind writer failed, retrying {} uploads", group.size(), e);
+                try {
+                    Thread.sleep(MAX_BACKOFF_MILLIS / 30);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // The first and the uploads queued after it, up to max-group and stopping before a second one of the same owner
+    private List<Pending> nextGroup(Pending first) {
+        List<Pending> group = new ArrayList<>();
+        Set<String> owners = new HashSet<>();
+        group.add(first);
+        owners.add(first.owner());
+        while (group.size() < maxGroup) {
+            Pending next = queue.peek();
+            if (next == null || !owners.add(next.owner())) break;
+            group.add(queue.poll());
+        }
+        return group;
+    }
+
+    /**
+     * Retries one upload with backoff until it is applied, or false when stopped first. An upload the database
+     * rejects for its data would never apply, so it is set aside in the failed directory and skipped.
+     */
+    private boolean applyAlone(Pending pending) throws InterruptedException, IOException {
+        for (int attempt = 1; running; attempt++) {
+            Exception failure = apply(List.of(pending), attempt);
+            if (failure == null) return true;
+            if (isRejected(failure)) {
+                setAside(pending);
+                return true;
+            }
+            Thread.sleep(Math.min(MAX_BACKOFF_MILLIS, 100L << Math.min(attempt, 20)));
+        }
+        return false;
+    }
+
+    private void setAside(Pending pending) throws IOException {
+        Path failed = Path.of(directory, "failed", pending.sequence() + ".rec");
+        Files.createDirectories(failed.getParent());
+        Files.write(failed, StatementWriteCodec.encode(pending.write()));
+        transactionTemplate.executeWithoutResult(status -> saveCheckpoint(pending.sequence()));
+        log.error("Write-behind upload {} for userId: {} was rejected by the database, kept in {}",
+                pending.sequence(), pending.write().getUserId(), failed);
+    }
+
+    // Integrity and data exceptions (SQLSTATE classes 23 and 22) fail the same way on every attempt
+    private static boolean isRejected(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DataIntegrityViolationException) return true;
+            if (cause instanceof SQLException sqlException && sqlException.getSQLState() != null
+                    && (sqlException.getSQLState().startsWith("22") || sqlException.getSQLState().startsWith("23"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Null once applied, otherwise the failure
+    private Exception apply(List<Pending> group, int attempt) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<StatementWrite> writes = group.stream().map(Pending::write).filter(this::claim).toList();
+                if (!writes.isEmpty()) {
+                    List<Map<String, Object>> saved = bankStAnalysisRepositoryPort.saveDetails(writes);
+                    writes.forEach(write -> saveResult(write, savedFor(write, saved)));
+                }
+                saveCheckpoint(group.get(group.size() - 1).sequence());
+            });
+            log.debug("Applied {} write-behind uploads up to sequence {}", group.size(), group.get(group.size() - 1).sequence());
+            return null;
+        } catch (Exception e) {
+            log.warn("Failed to apply {} write-behind uploads from sequence {} (attempt {}): {}",
+                    group.size(), group.get(0).sequence(), attempt, e.getMessage());
+            return e;
+        }
+    }
+
+    /**
+     * Claims the upload's content hashes, false when an upload holding either one was registered first; that one's
+     * result is then stored under both. An upload queued without hashes is always written.
+     */
+    private boolean claim(StatementWrite write) {
+        if (!write.isRegistered()) return true;
+        boolean newUpload = uploadRegistryPort.claim(write.getUserId(), write.getRealmId(), ContentHashType.RAW_UPLOAD, write.getUploadHash());
+        boolean newStatement = uploadRegistryPort.claim(write.getUserId(), write.getRealmId(), ContentHashType.STATEMENT_ROOT, write.getStatementHash());
+        if (newUpload && newStatement) return true;
+
+        Optional<List<Map<String, Object>>> stored = uploadRegistryPort
+                .findResult(write.getUserId(), write.getRealmId(), ContentHashType.STATEMENT_ROOT, write.getStatementHash())
+                .or(() -> uploadRegistryPort.findResult(write.getUserId(), write.getRealmId(), ContentHashType.RAW_UPLOAD, write.getUploadHash()));
+        if (stored.isEmpty()) return true; // Claimed without a result, which nothing would ever complete
+        log.info("Write-behind upload for userId: {} duplicates an earlier upload, not written", write.getUserId());
+        saveResult(write, stored.get());
+        return false;
+    }
+
+    private void saveResult(StatementWrite write, List<Map<String, Object>> result) {
+        if (!write.isRegistered()) return;
+        uploadRegistryPort.saveResult(write.getUserId(), write.getRealmId(), ContentHashType.RAW_UPLOAD, write.getUploadHash(), result);
+        uploadRegistryPort.saveResult(write.getUserId(), write.getRealmId(), ContentHashType.STATEMENT_ROOT, write.getStatementHash(), result);
+    }
+
+    // The statements of one upload among those saved for a group, which holds a single upload per user and realm
+    private static List<Map<String, Object>> savedFor(StatementWrite write, List<Map<String, Object>> saved) {
+        return saved.stream()
+                .filter(row -> write.getUserId().equals(row.get("user_id"))
+                        && write.getRealmId().trim().equals(String.valueOf(row.get("realm_id")).trim()))
+                .toList();
+    }
+
+    private void saveCheckpoint(long sequence) {
+        jdbcTemplate.update("""
+                INSERT INTO write_behind_checkpoint (node_id, applied_sequence, updated_at)
+                VALUES (?, ?, CURRENT_TIMESTAMP)
+                ON CONFLICT (node_id) DO UPDATE
+                SET applied_sequence = EXCLUDED.applied_sequence, updated_at = EXCLUDED.updated_at
+                """, nodeId, sequence);
+    }
+
+    private record Pending(long sequence, StatementWrite write) {
+
+        String owner() {
+            return write.getUserId() + "/" + write.getRealmId();
+        }
+    }
+}
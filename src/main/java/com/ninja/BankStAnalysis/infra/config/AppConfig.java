@@ -3,15 +3,19 @@ package com.ninja.BankStAnalysis.infra.config;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import jakarta.servlet.MultipartConfigElement;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.servlet.MultipartConfigFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.util.unit.DataSize;
 
 import javax.sql.DataSource;
+import java.util.concurrent.ForkJoinPool;
 
 @Configuration
+@EnableScheduling
 public class AppConfig {
 
     //JSON Configuration (Supports LocalDateTime)
@@ -27,6 +31,12 @@ public class AppConfig {
         return new JdbcTemplate(dataSource); // Spring provides DataSource
     }
 
+    //Bounded pool for tokenizing large statements (0 = one worker per core)
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool tokenizationPool(@Value("${bankstatement.token.parallelism:0}") int parallelism) {
+        return new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
     //File Upload Configuration (Allows Large File Uploads)
     @Bean
     public MultipartConfigElement multipartConfigElement() {
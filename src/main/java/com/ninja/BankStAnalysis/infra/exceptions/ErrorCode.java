@@ -3,7 +3,9 @@ package com.ninja.BankStAnalysis.infra.exceptions;
 
 public enum ErrorCode {
     RS_ERROR_0001("Invalid request parameters"),
-    RS_ERROR_0002("SourceObjectId mismatch with userId");
+    RS_ERROR_0002("SourceObjectId mismatch with userId"),
+    RS_ERROR_0003("Failed to generate statement tokens"),
+    RS_ERROR_0004("Statement transactions are past the retention window");
 
     private final String message;
 
@@ -13,6 +13,11 @@ public class ServiceRuntimeException extends RuntimeException {
         this.errorCode = errorCode;
     }
 
+    public ServiceRuntimeException(ErrorCode errorCode, String customMessage, Throwable cause) {
+        super(customMessage, cause);
+        this.errorCode = errorCode;
+    }
+
     public ErrorCode getErrorCode() {
         return errorCode;
     }
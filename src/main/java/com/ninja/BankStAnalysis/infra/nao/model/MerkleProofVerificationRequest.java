@@ -0,0 +1,12 @@
+package com.ninja.BankStAnalysis.infra.nao.model;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+@Data
+public class MerkleProofVerificationRequest {
+    @NotNull
+    private String token; // Transaction token the proof is for
+    @NotNull
+    private String proof; // Base64 serialized partial Merkle tree, as returned by the proof endpoint
+}
@@ -17,7 +17,8 @@ import java.time.LocalDateTime;
         indexes = {
                 @Index(name = "idx_user_bank_stmt_user_id", columnList = "user_id"),
                 @Index(name = "idx_user_bank_stmt_account_number", columnList = "account_number"),
-                @Index(name = "idx_user_bank_stmt_root_hash", columnList = "root_hash, hash_type")
+                @Index(name = "idx_user_bank_stmt_root_hash", columnList = "root_hash, hash_type"),
+                @Index(name = "idx_user_bank_stmt_account_mmr", columnList = "user_id, account_number, hash_type, mmr_leaf_count")
         })
 @Getter
 @Setter
@@ -26,8 +27,7 @@ import java.time.LocalDateTime;
 public class UserBankStatement implements Serializable {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private Long id; // Unique primary key for table
+    private Long id; // Unique primary key for table, assigned in blocks by IdBlockAllocator
 
     @Column(name = "user_id", nullable = false)
     private Integer userId;
@@ -41,8 +41,8 @@ public class UserBankStatement implements Serializable {
     @Column(name = "phone_number", nullable = false, length = 18)
     private String phoneNumber;
 
-    @Column(name = "root_hash", nullable = false, length = 64)
-    private String rootHash;
+    @Column(name = "root_hash", nullable = false, columnDefinition = "bytea")
+    private byte[] rootHash; // 32 byte SHA-256 digest, Base64 only in API responses
 
     @Column(name = "hash_type", nullable = false)
     @Enumerated(EnumType.ORDINAL)
@@ -59,6 +59,15 @@ public class UserBankStatement implements Serializable {
     @Column(name = "media_link", columnDefinition = "TEXT")
     private String mediaLink;
 
+    @Column(name = "mmr_leaf_count", nullable = false)
+    private Long mmrLeafCount; // Transactions covered by mmrPeaks
+
+    @Column(name = "mmr_peaks", nullable = false, columnDefinition = "bytea")
+    private byte[] mmrPeaks; // Merkle Mountain Range peaks of the transaction hashes, 32 bytes each
+
+    @Column(name = "base_statement_id")
+    private Long baseStatementId; // Earlier statement whose rows are this one's first leaves, null when stored whole
+
     @Column(name = "created_by", nullable = false)
     private String createdBy;
 
@@ -74,19 +83,22 @@ public class UserBankStatement implements Serializable {
     private LocalDateTime modifiedAt;
 }
 
-// CREATE SEQUENCE user_bank_statement_seq START WITH 1 INCREMENT BY 1000;
+// CREATE SEQUENCE user_bank_statement_seq START WITH 1 INCREMENT BY 1000; -- Id blocks, see IdBlockAllocator
 //-- Creating user_bank_statement table
 //CREATE TABLE user_bank_statement (
-//id BIGSERIAL PRIMARY KEY,
+//id BIGINT PRIMARY KEY,
 //user_id INTEGER NOT NULL,
 //realm_id CHAR(18) NOT NULL,
 //account_number VARCHAR(36) NOT NULL,
 //phone_number VARCHAR(18) NOT NULL,
-//root_hash VARCHAR(64) NOT NULL,
+//root_hash BYTEA NOT NULL,
 //hash_type SMALLINT NOT NULL,
 //provider SMALLINT NOT NULL,
 //source_type SMALLINT NOT NULL,
 //media_link TEXT,
+//mmr_leaf_count BIGINT NOT NULL DEFAULT 0,
+//mmr_peaks BYTEA NOT NULL DEFAULT ''::bytea,
+//base_statement_id BIGINT,
 //created_by VARCHAR(255) NOT NULL,
 //modified_by VARCHAR(255),
 //created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
@@ -97,4 +109,5 @@ public class UserBankStatement implements Serializable {
 //CREATE INDEX idx_user_bank_stmt_user_id ON user_bank_statement(user_id);
 //CREATE INDEX idx_user_bank_stmt_account_number ON user_bank_statement(account_number);
 //CREATE INDEX idx_user_bank_stmt_root_hash ON user_bank_statement(root_hash, hash_type);
+//CREATE INDEX idx_user_bank_stmt_account_mmr ON user_bank_statement(user_id, account_number, hash_type, mmr_leaf_count);
 //
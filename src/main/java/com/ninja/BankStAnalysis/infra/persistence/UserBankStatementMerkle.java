@@ -0,0 +1,45 @@
+package com.ninja.BankStAnalysis.infra.persistence;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "user_bank_statement_merkle")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserBankStatementMerkle implements Serializable {
+
+    @Id
+    @Column(name = "statement_id")
+    private Long statementId; // Same id as the user_bank_statement row
+
+    @Column(name = "leaf_count", nullable = false)
+    private Integer leafCount;
+
+    @Column(name = "merkle_root", nullable = false, columnDefinition = "bytea")
+    private byte[] merkleRoot;
+
+    @Column(name = "nodes", nullable = false, columnDefinition = "bytea")
+    private byte[] nodes; // Every level above the leaves, lowest first, 32 bytes per node
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
+
+//-- Creating user_bank_statement_merkle table
+//CREATE TABLE user_bank_statement_merkle (
+//statement_id BIGINT PRIMARY KEY,  -- Same id as user_bank_statement(id)
+//leaf_count INTEGER NOT NULL,
+//merkle_root BYTEA NOT NULL,
+//nodes BYTEA NOT NULL,  -- STORAGE EXTERNAL, read by slice
+//created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+//CONSTRAINT fk_statement_merkle_statement_id
+//FOREIGN KEY (statement_id) REFERENCES user_bank_statement(id) ON DELETE CASCADE
+//);
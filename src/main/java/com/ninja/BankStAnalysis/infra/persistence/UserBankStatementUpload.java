@@ -0,0 +1,65 @@
+package com.ninja.BankStAnalysis.infra.persistence;
+
+import com.ninja.BankStAnalysis.core.modelHelper.ContentHashType;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(
+        name = "user_bank_statement_upload",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uq_user_bank_statement_upload_hash",
+                        columnNames = {"user_id", "realm_id", "hash_type", "content_hash"})
+        }
+)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserBankStatementUpload implements Serializable {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Integer userId;
+
+    @Column(name = "realm_id", nullable = false, columnDefinition = "bpchar(18)")
+    private String realmId;
+
+    @Column(name = "hash_type", nullable = false)
+    @Enumerated(EnumType.ORDINAL)
+    private ContentHashType hashType;
+
+    @Column(name = "content_hash", nullable = false, columnDefinition = "bytea")
+    private byte[] contentHash; // SHA-256, 32 bytes
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "response", columnDefinition = "jsonb")
+    private String response; // Result returned for the upload, null while it is being written
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
+
+//-- Creating user_bank_statement_upload table
+//CREATE TABLE user_bank_statement_upload (
+//id BIGSERIAL PRIMARY KEY,
+//user_id INTEGER NOT NULL,
+//realm_id CHAR(18) NOT NULL,
+//hash_type SMALLINT NOT NULL,  -- 0 = raw upload, 1 = statement root
+//content_hash BYTEA NOT NULL,
+//response JSONB,
+//created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+//);
+//
+//-- Retries are answered from this index alone
+//CREATE UNIQUE INDEX uq_user_bank_statement_upload_hash ON user_bank_statement_upload (user_id, realm_id, hash_type, content_hash);
@@ -15,8 +15,8 @@ import java.time.LocalDateTime;
         indexes = {
                 @Index(name = "idx_user_bank_stmt_user_id", columnList = "user_id"),
                 @Index(name = "idx_user_bank_stmt_account_number", columnList = "account_number"),
-                @Index(name = "idx_user_bank_stmt_hash", columnList = "hash, hash_type"),
-                @Index(name = "idx_user_bank_txn_statement_id", columnList = "statement_id")
+                @Index(name = "idx_user_bank_txn_fingerprint", columnList = "hash_fingerprint, hash_type"),
+                @Index(name = "idx_user_bank_txn_statement_leaf", columnList = "statement_id, leaf_index")
         })
 @Getter
 @Setter
@@ -25,8 +25,7 @@ import java.time.LocalDateTime;
 public class UserBankTransaction implements Serializable {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private Long id; // Unique primary key for table
+    private Long id; // Unique primary key for table, assigned in blocks by IdBlockAllocator
 
     @Column(name = "user_id", nullable = false)
     private Integer userId;
@@ -37,8 +36,14 @@ public class UserBankTransaction implements Serializable {
     @Column(name = "account_number", nullable = false, length = 36)
     private String accountNumber;
 
-    @Column(name = "hash", nullable = false, length = 64)
-    private String hash;
+    @Column(name = "hash", nullable = false, columnDefinition = "bytea")
+    private byte[] hash; // 32 byte SHA-256 digest
+
+    @Column(name = "hash_fingerprint", nullable = false)
+    private Long hashFingerprint; // Leading 64 bits of the hash digest, the lookup key; hash confirms a match
+
+    @Column(name = "field_hashes", nullable = false, columnDefinition = "bytea")
+    private byte[] fieldHashes; // 8 byte leaf hash per field, in the section's field order
 
     @Column(name = "hash_type", nullable = false)
     @Enumerated(EnumType.ORDINAL)
@@ -52,32 +57,45 @@ public class UserBankTransaction implements Serializable {
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
+    @Column(name = "leaf_index")
+    private Integer leafIndex; // Position among the statement's Merkle tree leaves
+
     @ManyToOne
     @JoinColumn(name = "statement_id", nullable = false, foreignKey = @ForeignKey(name = "fk_transaction_statement_id", value = ConstraintMode.CONSTRAINT))
     private UserBankStatement statementId; // Foreign key reference
 }
 
-//-- Create a shared sequence
-//CREATE SEQUENCE user_bank_transaction_id_seq;
+//-- Id blocks, see IdBlockAllocator
+//CREATE SEQUENCE user_bank_transaction_seq START WITH 1 INCREMENT BY 1000;
 
 //-- Creating partitioned user_bank_transaction table
 //CREATE TABLE user_bank_transaction (
-//id BIGSERIAL NOT NULL,
+//id BIGINT NOT NULL,
 //user_id INTEGER NOT NULL,
 //realm_id CHAR(18) NOT NULL,
 //account_number VARCHAR(36) NOT NULL,
-//hash VARCHAR(64) NOT NULL,
+//hash BYTEA NOT NULL,
+//hash_fingerprint BIGINT NOT NULL,
+//field_hashes BYTEA NOT NULL DEFAULT ''::bytea,
 //hash_type SMALLINT NOT NULL,
 //provider SMALLINT NOT NULL,
 //statement_id BIGINT NOT NULL,  -- Foreign Key reference to user_bank_statement(id)
+//leaf_index INTEGER,  -- Position among the statement's Merkle tree leaves
 //created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
-//PRIMARY KEY (id, hash_type)
+//PRIMARY KEY (id, hash_type, created_at, hash_fingerprint)
 //) PARTITION BY LIST (hash_type);
 //
-//-- Creating partitions
-//CREATE TABLE bank_transaction PARTITION OF user_bank_transaction FOR VALUES IN (0);
-//CREATE TABLE account_xns PARTITION OF user_bank_transaction FOR VALUES IN (1);
-//CREATE TABLE eod_balance PARTITION OF user_bank_transaction FOR VALUES IN (2);
+//-- Creating partitions, each split into calendar months, each month into 16 fingerprint ranges
+//-- (see V7__user_bank_transaction_monthly_partitions.sql; months are created ahead and dropped by TransactionPartitionManager)
+//CREATE TABLE bank_transaction PARTITION OF user_bank_transaction FOR VALUES IN (0) PARTITION BY RANGE (created_at);
+//CREATE TABLE account_xns PARTITION OF user_bank_transaction FOR VALUES IN (1) PARTITION BY RANGE (created_at);
+//CREATE TABLE eod_balance PARTITION OF user_bank_transaction FOR VALUES IN (2) PARTITION BY RANGE (created_at);
+//CALL create_transaction_month_partitions('2026-11-01');
+//-- which creates, under each of them:
+//CREATE TABLE bank_transaction_m202611 PARTITION OF bank_transaction FOR VALUES FROM ('2026-11-01') TO ('2026-12-01') PARTITION BY RANGE (hash_fingerprint);
+//CREATE TABLE bank_transaction_m202611_fp00 PARTITION OF bank_transaction_m202611 FOR VALUES FROM (MINVALUE) TO (-8070450532247928832);
+//-- ... one range of 2^60 fingerprints per partition, up to
+//CREATE TABLE bank_transaction_m202611_fp15 PARTITION OF bank_transaction_m202611 FOR VALUES FROM (8070450532247928832) TO (MAXVALUE);
 //
 //-- Adding foreign key constraint for cascading delete
 //ALTER TABLE user_bank_transaction
@@ -85,5 +103,11 @@ public class UserBankTransaction implements Serializable {
 //FOREIGN KEY (statement_id) REFERENCES user_bank_statement(id)
 //ON DELETE CASCADE;
 //
-//-- Adding index on statement_id for faster lookups
-//CREATE INDEX idx_user_bank_txn_statement_id ON user_bank_transaction(statement_id);
+//-- Statement lookups, and the leaves of a Merkle proof by position
+//CREATE INDEX idx_user_bank_txn_statement_leaf ON user_bank_transaction(statement_id, leaf_index);
+//
+//-- Row lookups go through the fingerprint; hash is only read to confirm candidates
+//CREATE INDEX idx_user_bank_txn_fingerprint ON user_bank_transaction(hash_fingerprint, hash_type);
+//
+//-- Matching on date, amount and balance alone
+//CREATE INDEX idx_user_bank_txn_field_prefix ON user_bank_transaction(hash_type, substring(field_hashes FROM 1 FOR 24));
@@ -1,22 +1,33 @@
 package com.ninja.BankStAnalysis.infra.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.jayway.jsonpath.JsonPath;
-import com.ninja.BankStAnalysis.core.ananomyzer.impl.Anonymizer;
+import com.ninja.BankStAnalysis.core.model.BatchStatement;
+import com.ninja.BankStAnalysis.core.model.IngestionContext;
+import com.ninja.BankStAnalysis.core.model.NormalizedStatement;
+import com.ninja.BankStAnalysis.core.model.StatementTokens;
+import com.ninja.BankStAnalysis.core.model.StatementWrite;
+import com.ninja.BankStAnalysis.core.modelHelper.BankStatementHashType;
+import com.ninja.BankStAnalysis.core.modelHelper.ContentHashType;
 import com.ninja.BankStAnalysis.core.modelHelper.Provider;
 import com.ninja.BankStAnalysis.core.port.in.BankStAnalysisServicePort;
 import com.ninja.BankStAnalysis.core.port.out.BankStAnalysisRepositoryPort;
 import com.ninja.BankStAnalysis.core.port.out.BankStatementExtractionPort;
+import com.ninja.BankStAnalysis.core.port.out.BatchLoadRepositoryPort;
+import com.ninja.BankStAnalysis.core.port.out.StatementWriteQueuePort;
+import com.ninja.BankStAnalysis.core.port.out.UploadRegistryPort;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.poifs.filesystem.FileMagic;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 
 @Slf4j
@@ -26,35 +37,46 @@ public class BankStAnalysisService implements BankStAnalysisServicePort {
 
     private final BankStatementExtractionPort extractionPort;
     private final BankStAnalysisRepositoryPort bankStAnalysisRepositoryPort;
+    private final StatementTokenizer statementTokenizer;
+    private final BatchLoadRepositoryPort batchLoadRepositoryPort;
+    private final Optional<StatementWriteQueuePort> statementWriteQueuePort; // Present in write-behind mode
+    private final UploadRegistryPort uploadRegistryPort;
+    private final TransactionTemplate transactionTemplate;
     private final ObjectMapper objectMapper;
 
+    @Value("${bankstatement.batch-load.batch-size:500}")
+    private int batchSize = 500;
+
     public List<Map<String, Object>> processBankStatement(Integer userId, String realmId, MultipartFile bankStatement){
 
         validateInput(userId, realmId, bankStatement);
+        IngestionContext ingestion = openIngestion(bankStatement);
+
+        // A retried upload is answered from the registry before anything is parsed
+        byte[] uploadHash = ingestion.getContentHash();
+        Optional<List<Map<String, Object>>> storedResult =
+                uploadRegistryPort.findResult(userId, realmId, ContentHashType.RAW_UPLOAD, uploadHash);
+        if (storedResult.isPresent()) {
+            log.info("Bank statement {} already processed for User: {}, returning the stored result", ingestion.getOriginalFilename(), userId);
+            return storedResult.get();
+        }
 
-        Provider provider = identifyProvider(bankStatement)
-                .orElseThrow(() -> new IllegalArgumentException("Unsupported provider for file: " + bankStatement.getOriginalFilename()));
+        Provider provider = identifyProvider(ingestion)
+                .orElseThrow(() -> new IllegalArgumentException("Unsupported provider for file: " + ingestion.getOriginalFilename()));
 
         log.info("Processing bank statement for User: {}, Realm: {}, Provider: {}", userId, realmId, provider);
 
         try {
-            String report = extractionPort.extractReport(provider, bankStatement);
-            if (report==null) {
+            NormalizedStatement statement = extractionPort.extractStatement(provider, ingestion);
+            if (statement==null) {
                 log.error("Failed to extract report for Provider: {}", provider);
                 throw new RuntimeException("Report extraction failed.");
             }
 
-            Map<String, Object> merkleSummary = generateTokens(userId, realmId, report);
-            String jsonMerkleSummary = objectMapper.writeValueAsString(merkleSummary);
-
-            if (provider!=Provider.SCOREME) {
-                JsonNode jsonNode = objectMapper.readTree(bankStatement.getInputStream());
-                String bankStatementJson = jsonNode.toString();
-            }
-
+            StatementTokens tokens = statementTokenizer.tokenize(userId, realmId, statement);
 
             log.info("Bank statement processed successfully for User: {}", userId);
-            return persistData(userId, realmId, provider, report, jsonMerkleSummary);
+            return persistOnce(userId, realmId, provider, statement, tokens, uploadHash);
 
         } catch (Exception e) {
             log.error("Failed to process bank statement for userId: {}, error: {}", userId, e.getMessage(), e);
@@ -62,6 +84,124 @@ public class BankStAnalysisService implements BankStAnalysisServicePort {
         }
     }
 
+    /**
+     * Bulk load of a partner dump: userIds.get(i) owns bankStatements.get(i). Statements are extracted and
+     * tokenized one by one, then merged batchSize at a time through the staging tables. A file that cannot be
+     * read, holds a value too long to store, or whose chunk fails to load, is reported in "failures"; a file
+     * repeated in the dump, processed before or holding only statements stored before is counted in "duplicateFiles".
+     */
+    public Map<String, Object> processBankStatementBatch(String realmId, List<Integer> userIds, List<MultipartFile> bankStatements) {
+        Objects.requireNonNull(realmId, "realmId must not be null");
+        if (userIds == null || bankStatements == null || userIds.size() != bankStatements.size()) {
+            throw new IllegalArgumentException("Every bank statement file needs exactly one userId");
+        }
+
+        log.info("Processing batch of {} bank statements for Realm: {}", bankStatements.size(), realmId);
+
+        List<Map<String, Object>> failures = new ArrayList<>();
+        List<BatchStatement> batch = new ArrayList<>(Math.min(batchSize, bankStatements.size()));
+        List<Integer> batchFiles = new ArrayList<>(Math.min(batchSize, bankStatements.size())); // Index of each in the request
+        Set<String> takenHashes = new HashSet<>(); // Content hashes of the files taken so far, per user
+        long duplicateFiles = 0;
+        long insertedStatements = 0;
+        long insertedTransactions = 0;
+
+        for (int i = 0; i < bankStatements.size(); i++) {
+            Integer userId = userIds.get(i);
+            MultipartFile bankStatement = bankStatements.get(i);
+            String filename = bankStatement == null ? null : bankStatement.getOriginalFilename();
+            try {
+                validateInput(userId, realmId, bankStatement);
+                IngestionContext ingestion = openIngestion(bankStatement);
+                byte[] uploadHash = ingestion.getContentHash();
+                String uploadKey = hashKey(userId, ContentHashType.RAW_UPLOAD, uploadHash);
+                if (takenHashes.contains(uploadKey)
+                        || uploadRegistryPort.findResult(userId, realmId, ContentHashType.RAW_UPLOAD, uploadHash).isPresent()) {
+                    log.info("Skipping bank statement {} for userId: {} in batch, already processed", filename, userId);
+                    duplicateFiles++;
+                } else {
+                    BatchStatement prepared = prepareBatchStatement(userId, realmId, ingestion, uploadHash);
+                    if (!takenHashes.add(hashKey(userId, ContentHashType.STATEMENT_ROOT, prepared.getStatementHash()))) {
+                        log.info("Skipping bank statement {} for userId: {} in batch, same statement as an earlier file", filename, userId);
+                        duplicateFiles++;
+                    } else {
+                        takenHashes.add(uploadKey);
+                        batch.add(prepared);
+                        batchFiles.add(i);
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("Skipping bank statement {} for userId: {} in batch, error: {}", filename, userId, e.getMessage());
+                failures.add(failure(i, filename, e));
+            }
+
+            if (batch.size() == batchSize || (i == bankStatements.size() - 1 && !batch.isEmpty())) {
+                try {
+                    Map<String, Object> loaded = batchLoadRepositoryPort.loadBatch(realmId, batch);
+                    insertedStatements += (Long) loaded.get("insertedStatements");
+                    insertedTransactions += (Long) loaded.get("insertedTransactions");
+                    duplicateFiles += (Long) loaded.get("duplicateFiles");
+                    @SuppressWarnings("unchecked")
+                    Map<Integer, String> rejected = (Map<Integer, String>) loaded.get("rejectedFiles");
+                    rejected.forEach((j, reason) -> {
+                        BatchStatement failed = batch.get(j);
+                        takenHashes.remove(hashKey(failed.getUserId(), ContentHashType.RAW_UPLOAD, failed.getUploadHash()));
+                        takenHashes.remove(hashKey(failed.getUserId(), ContentHashType.STATEMENT_ROOT, failed.getStatementHash()));
+                        int file = batchFiles.get(j);
+                        failures.add(failure(file, bankStatements.get(file).getOriginalFilename(), new IllegalArgumentException(reason)));
+                    });
+                } catch (Exception e) {
+                    // Nothing of the chunk committed, so its files can be sent again
+                    log.error("Failed to load chunk of {} bank statements for Realm: {}", batch.size(), realmId, e);
+                    for (int j = 0; j < batch.size(); j++) {
+                        BatchStatement failed = batch.get(j);
+                        takenHashes.remove(hashKey(failed.getUserId(), ContentHashType.RAW_UPLOAD, failed.getUploadHash()));
+                        takenHashes.remove(hashKey(failed.getUserId(), ContentHashType.STATEMENT_ROOT, failed.getStatementHash()));
+                        int file = batchFiles.get(j);
+                        failures.add(failure(file, bankStatements.get(file).getOriginalFilename(), e));
+                    }
+                }
+                batch.clear();
+                batchFiles.clear();
+            }
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("receivedFiles", bankStatements.size());
+        result.put("loadedFiles", bankStatements.size() - failures.size() - duplicateFiles);
+        result.put("duplicateFiles", duplicateFiles);
+        result.put("insertedStatements", insertedStatements);
+        result.put("insertedTransactions", insertedTransactions);
+        result.put("failures", failures);
+        log.info("Batch processed for Realm: {}: {} files, {} statements inserted, {} failed",
+                realmId, bankStatements.size(), insertedStatements, failures.size());
+        return result;
+    }
+
+    private BatchStatement prepareBatchStatement(Integer userId, String realmId, IngestionContext ingestion, byte[] uploadHash) throws Exception {
+        Provider provider = identifyProvider(ingestion)
+                .orElseThrow(() -> new IllegalArgumentException("Unsupported provider for file: " + ingestion.getOriginalFilename()));
+
+        NormalizedStatement statement = extractionPort.extractStatement(provider, ingestion);
+        if (statement == null) {
+            throw new RuntimeException("Report extraction failed.");
+        }
+        StatementTokens tokens = statementTokenizer.tokenize(userId, realmId, statement);
+        return new BatchStatement(userId, provider, statement, tokens, uploadHash, hashStatement(tokens, uploadHash));
+    }
+
+    private static String hashKey(Integer userId, ContentHashType hashType, byte[] contentHash) {
+        return userId + ":" + hashType + ":" + Base64.getEncoder().encodeToString(contentHash);
+    }
+
+    private static Map<String, Object> failure(int index, String filename, Exception e) {
+        return Map.of(
+                "index", index,
+                "file", String.valueOf(filename),
+                "message", String.valueOf(e.getMessage())
+        );
+    }
+
     private void validateInput(Integer userId, String realmId, MultipartFile bankStatement) {
         Objects.requireNonNull(userId, "userId must not be null");
         Objects.requireNonNull(realmId, "realmId must not be null");
@@ -70,19 +210,28 @@ public class BankStAnalysisService implements BankStAnalysisServicePort {
         }
     }
 
-    private Optional<Provider> identifyProvider(MultipartFile bankStatement) {
-        String fileType = identifyFileType(bankStatement);
+    private IngestionContext openIngestion(MultipartFile bankStatement) {
+        try {
+            return IngestionContext.of(bankStatement, objectMapper);
+        } catch (IOException e) {
+            log.error("Failed to read bank statement file: {}, error: {}", bankStatement.getOriginalFilename(), e.getMessage(), e);
+            throw new RuntimeException("Error reading bank statement", e);
+        }
+    }
+
+    private Optional<Provider> identifyProvider(IngestionContext ingestion) {
+        String fileType = identifyFileType(ingestion);
 
         return switch (fileType) {
-            case "JSON" -> identifyJsonProvider(bankStatement);
-            case "EXCEL" -> identifyExcelProvider(bankStatement);
+            case "JSON" -> identifyJsonProvider(ingestion);
+            case "EXCEL" -> identifyExcelProvider(ingestion);
             default -> Optional.empty();
         };
     }
 
-    private String identifyFileType(MultipartFile file) {
-        String contentType = file.getContentType();
-        String filename = file.getOriginalFilename();
+    private String identifyFileType(IngestionContext ingestion) {
+        String contentType = ingestion.getContentType();
+        String filename = ingestion.getOriginalFilename();
 
         if (contentType!=null) {
             if ("application/json".equalsIgnoreCase(contentType)) return "JSON";
@@ -102,161 +251,122 @@ public class BankStAnalysisService implements BankStAnalysisServicePort {
         return "UNKNOWN";
     }
 
-    private Optional<Provider> identifyJsonProvider(MultipartFile file) {
-        try (InputStream inputStream = file.getInputStream()) {
-            JsonNode rootNode = objectMapper.readTree(inputStream);
-            if (rootNode.has("accountXns") ||
-                    (rootNode.has("report") && rootNode.get("report").has("accountXns"))) {
+    private Optional<Provider> identifyJsonProvider(IngestionContext ingestion) {
+        try {
+            if (ingestion.hasField("accountXns") || ingestion.hasField("report", "accountXns")) {
                 return Optional.of(Provider.PERFIOS);
             }
-            if (rootNode.has("accounts")) {
+            if (ingestion.hasField("accounts")) {
                 return Optional.of(Provider.FINBOX);
             }
-            if (rootNode.has("data")) {
+            if (ingestion.hasField("data")) {
                 return Optional.of(Provider.ONEMONEY);
             }
             return Optional.empty();
         } catch (IOException e) {
-            log.warn("Failed to identify JSON provider for file: {}, error: {}", file.getOriginalFilename(), e.getMessage());
-            return Optional.empty();
-        }
-    }
-
-    private Optional<Provider> identifyExcelProvider(MultipartFile file) {
-        try (InputStream inputStream = file.getInputStream();
-             Workbook workbook = WorkbookFactory.create(inputStream)) {
-
-            Sheet sheet = workbook.getSheetAt(0);
-            if (sheet==null) return Optional.empty();
-
-//            String firstCellData = getCellData(sheet, 0, 0).toLowerCase();
-            String firstCellData = "scoreme";
-            if (firstCellData.contains("scoreme")) return Optional.of(Provider.SCOREME);
-
-            return Optional.empty();
-        } catch (IOException e) {
-            log.warn("Failed to identify Excel provider for file: {}, error: {}", file.getOriginalFilename(), e.getMessage());
+            log.warn("Failed to identify JSON provider for file: {}, error: {}", ingestion.getOriginalFilename(), e.getMessage());
             return Optional.empty();
         }
     }
 
-    private static String getCellData(Sheet sheet, int rowNum, int colNum) {
-        try {
-            Row row = sheet.getRow(rowNum);
-            if (row==null) return "";
+    // Scoreme is the only Excel provider; the magic bytes are enough to reject non-workbooks without loading one
+    private Optional<Provider> identifyExcelProvider(IngestionContext ingestion) {
+        FileMagic fileMagic = FileMagic.valueOf(ingestion.getContent());
+        if (fileMagic == FileMagic.OOXML || fileMagic == FileMagic.OLE2) return Optional.of(Provider.SCOREME);
 
-            Cell cell = row.getCell(colNum);
-            if (cell==null) return "";
-
-            return getCellValueAsString(cell);
-        } catch (Exception e) {
-            throw new RuntimeException("Error reading cell at row " + rowNum + ", col " + colNum + "for the purpose of identifying Excel Provider", e);
-        }
-    }
-
-    private static String getCellValueAsString(Cell cell) {
-        return switch (cell.getCellType()) {
-            case STRING -> cell.getStringCellValue().trim();
-            case NUMERIC ->
-                    DateUtil.isCellDateFormatted(cell) ? cell.getDateCellValue().toString():String.valueOf(cell.getNumericCellValue());
-            case BOOLEAN -> String.valueOf(cell.getBooleanCellValue());
-            case FORMULA -> cell.getCellFormula();
-            case BLANK -> "";
-            default -> "";
-        };
+        log.warn("Failed to identify Excel provider for file: {}, not an Excel workbook", ingestion.getOriginalFilename());
+        return Optional.empty();
     }
 
-    private Map<String, Object> generateTokens(Integer userId, String realmId, String jsonInput) {
-
-        Anonymizer anonymizer = new Anonymizer(userId, realmId, true);
-        ObjectMapper mapper = new ObjectMapper();
-
-        try {
-            // Parse input JSON
-            JsonNode rootNode = mapper.readTree(jsonInput);
-            Map<String, Object> response = new LinkedHashMap<>();
-
-            // Process accountXns
-            if (rootNode.has("accountXns")) {
-                ArrayNode accountXns = (ArrayNode) rootNode.get("accountXns");
-                List<Map<String, Object>> processedAccounts = new ArrayList<>();
-
-                for (JsonNode account : accountXns) {
-                    Map<String, Object> processedAccount = new LinkedHashMap<>();
-                    processedAccount.put("token", anonymizer.generateToken(account.toString()));
-                    processedAccount.put("accountNo", account.get("accountNo").asText());
-                    processedAccount.put("accountType", account.get("accountType").asText());
-
-                    List<Map<String, Object>> processedXns = new ArrayList<>();
-                    for (JsonNode xn : account.get("xns")) {
-                        Map<String, Object> processedXn = mapper.convertValue(xn, Map.class);
-                        processedXn.put("token", anonymizer.generateToken(xn.toString()));
-                        processedXns.add(processedXn);
-                    }
-                    processedAccount.put("xns", processedXns);
-                    processedAccounts.add(processedAccount);
-                }
-                response.put("accountXns", processedAccounts);
+    /**
+     * Writes the upload in the transaction that claims its content hashes. When another upload holds either hash,
+     * because it is a retry or has the same statement under another file, the result stored for that one is
+     * returned instead and nothing is written; a concurrent claim is waited for on the unique index.
+     *
+     * <p>In write-behind mode the hashes travel with the queued write and are claimed by the transaction that
+     * applies it, so nothing is registered for an upload until its rows are committed.</p>
+     */
+    private List<Map<String, Object>> persistOnce(Integer userId, String realmId, Provider provider, NormalizedStatement statement,
+                                                  StatementTokens tokens, byte[] uploadHash) {
+        byte[] statementHash = hashStatement(tokens, uploadHash);
+        if (statementWriteQueuePort.isPresent()) {
+            Optional<List<Map<String, Object>>> storedResult =
+                    uploadRegistryPort.findResult(userId, realmId, ContentHashType.STATEMENT_ROOT, statementHash);
+            if (storedResult.isPresent()) {
+                log.info("Bank statement for User: {} duplicates an earlier upload, returning its result", userId);
+                return storedResult.get();
             }
-
-            // Process bankTransactions
-            if (rootNode.has("bankTransactions")) {
-                ArrayNode bankTransactions = (ArrayNode) rootNode.get("bankTransactions");
-                List<Map<String, Object>> processedTransactions = new ArrayList<>();
-
-                for (JsonNode transaction : bankTransactions) {
-                    Map<String, Object> processedTransaction = new LinkedHashMap<>();
-                    processedTransaction.put("token", anonymizer.generateToken(transaction.toString()));
-                    processedTransaction.put("accountNo", transaction.get("accountNo").asText());
-
-                    List<Map<String, Object>> processedTxns = new ArrayList<>();
-                    for (JsonNode txn : transaction.get("transactions")) {
-                        Map<String, Object> processedTxn = mapper.convertValue(txn, Map.class);
-                        processedTxn.put("token", anonymizer.generateToken(txn.toString()));
-                        processedTxns.add(processedTxn);
-                    }
-                    processedTransaction.put("transactions", processedTxns);
-                    processedTransactions.add(processedTransaction);
-                }
-                response.put("bankTransactions", processedTransactions);
+            try {
+                return enqueue(StatementWrite.of(userId, realmId, provider, statement, tokens, uploadHash, statementHash));
+            } catch (IllegalStateException e) {
+                log.warn("Write-behind queue is full, persisting directly for User: {}", userId);
             }
+        }
 
-            // Process eod
-            if (rootNode.has("eod")) {
-                ArrayNode eod = (ArrayNode) rootNode.get("eod");
-                List<Map<String, Object>> processedEod = new ArrayList<>();
-
-                for (JsonNode eodEntry : eod) {
-                    Map<String, Object> processedEntry = new LinkedHashMap<>();
-                    processedEntry.put("token", anonymizer.generateToken(eodEntry.toString()));
-                    processedEntry.put("accountNo", eodEntry.get("accountNo").asText());
-
-                    List<Map<String, Object>> processedBalances = new ArrayList<>();
-                    for (JsonNode balance : eodEntry.get("balances")) {
-                        Map<String, Object> processedBalance = mapper.convertValue(balance, Map.class);
-                        processedBalance.put("token", anonymizer.generateToken(balance.toString()));
-                        processedBalances.add(processedBalance);
-                    }
-                    processedEntry.put("balances", processedBalances);
-                    processedEod.add(processedEntry);
-                }
-                response.put("eod", processedEod);
+        return transactionTemplate.execute(status -> {
+            boolean newUpload = uploadRegistryPort.claim(userId, realmId, ContentHashType.RAW_UPLOAD, uploadHash);
+            boolean newStatement = uploadRegistryPort.claim(userId, realmId, ContentHashType.STATEMENT_ROOT, statementHash);
+
+            List<Map<String, Object>> result;
+            if (newUpload && newStatement) {
+                result = bankStAnalysisRepositoryPort.saveDetails(userId, realmId, provider, statement, tokens);
+                log.info("Data persisted successfully for User: {}, Provider: {}", userId, provider);
+            } else {
+                result = uploadRegistryPort.findResult(userId, realmId, ContentHashType.STATEMENT_ROOT, statementHash)
+                        .or(() -> uploadRegistryPort.findResult(userId, realmId, ContentHashType.RAW_UPLOAD, uploadHash))
+                        .orElseThrow(() -> new IllegalStateException("Stored result of a duplicate upload not found"));
+                log.info("Bank statement for User: {} duplicates an earlier upload, returning its result", userId);
             }
+            uploadRegistryPort.saveResult(userId, realmId, ContentHashType.RAW_UPLOAD, uploadHash, result);
+            uploadRegistryPort.saveResult(userId, realmId, ContentHashType.STATEMENT_ROOT, statementHash, result);
+            return result;
+        });
+    }
 
-            return response;
-
-        } catch (Exception e) {
-            Map<String, Object> errorResponse = new LinkedHashMap<>();
-            errorResponse.put("error", e.getMessage());
-            return errorResponse;
+    /**
+     * SHA-256 over the account numbers and digests of every section, equal for uploads of the same statement. A
+     * statement without any account would hash the same for every file, so the upload's own hash is folded in and
+     * such files are only ever duplicates of identical ones.
+     */
+    private byte[] hashStatement(StatementTokens tokens, byte[] uploadHash) {
+        MessageDigest digest = sha256();
+        boolean hasAccounts = false;
+        for (BankStatementHashType section : BankStatementHashType.values()) {
+            List<StatementTokens.AccountTokens> accounts = tokens.getSection(section);
+            digest.update(ByteBuffer.allocate(4).putInt(tokens.hasSection(section) ? accounts.size() + 1 : 0).array());
+            hasAccounts |= !accounts.isEmpty();
+            for (StatementTokens.AccountTokens account : accounts) {
+                byte[] accountNo = String.valueOf(account.getAccountNo()).getBytes(StandardCharsets.UTF_8);
+                digest.update(ByteBuffer.allocate(4).putInt(accountNo.length).array());
+                digest.update(accountNo);
+                digest.update(account.getDigest());
+            }
         }
+        if (!hasAccounts) {
+            digest.update(uploadHash);
+        }
+        return digest.digest();
     }
 
-    private List<Map<String, Object>> persistData(Integer userId, String realmId, Provider provider, String report, String summaryJson) {
-        log.info("Data persisted successfully for User: {}, Provider: {}", userId, provider);
-        return bankStAnalysisRepositoryPort.saveDetails(userId, realmId, provider, report, summaryJson);
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
 
+    // In write-behind mode the upload is acknowledged once queued; throws IllegalStateException when the queue is full
+    private List<Map<String, Object>> enqueue(StatementWrite write) {
+        long sequence = statementWriteQueuePort.orElseThrow().enqueue(write);
+        log.info("Data queued for write-behind for User: {}, Provider: {}, sequence: {}", write.getUserId(), write.getProvider(), sequence);
+        return List.of(Map.of(
+                "status", "QUEUED",
+                "user_id", write.getUserId(),
+                "realm_id", write.getRealmId(),
+                "write_sequence", sequence
+        ));
+    }
 
 }
 
@@ -1,25 +1,28 @@
 package com.ninja.BankStAnalysis.infra.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.jayway.jsonpath.JsonPath;
-import com.ninja.BankStAnalysis.core.ananomyzer.impl.Anonymizer;
+import com.ninja.BankStAnalysis.core.model.IngestionContext;
+import com.ninja.BankStAnalysis.core.model.NormalizedStatement;
+import com.ninja.BankStAnalysis.core.model.StatementTokens;
 import com.ninja.BankStAnalysis.core.modelHelper.Provider;
 import com.ninja.BankStAnalysis.core.port.in.DedupeServicePort;
 import com.ninja.BankStAnalysis.core.port.in.ResponsePersistServicePort;
 import com.ninja.BankStAnalysis.core.port.out.BankStatementExtractionPort;
 import com.ninja.BankStAnalysis.core.port.out.DedupeRepositoryPort;
-import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.poifs.filesystem.FileMagic;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Slf4j
 @RequiredArgsConstructor
@@ -30,44 +33,51 @@ public class DedupeService implements DedupeServicePort {
     private final DedupeRepositoryPort dedupeRepositoryPort;
     private final ResponsePersistServicePort responsePersistServicePort;
     private final AssociationService associationService;
+    private final StatementTokenizer statementTokenizer;
+    private final TransactionTemplate transactionTemplate;
     private final ObjectMapper objectMapper;
 
-    @Transactional
+    @Value("${bankstatement.flag-status.group-commit.timeout-seconds:30}")
+    private long flagStatusTimeoutSeconds = 30;
+
+    /**
+     * The lookup and the associations commit in one transaction. The flag status row is group committed after it,
+     * and waited for once the transaction has released its connection: a rolled back request writes no flag status,
+     * and a request whose flag status fails or times out has its other writes committed already. A timed out row
+     * is cancelled, but may still be written if the flusher had taken it.
+     */
     public Map<String, Object> processBankStatement(Integer userId, String realmId, MultipartFile bankStatement){
 
         validateInput(userId, realmId, bankStatement);
 
-        Provider provider = identifyProvider(bankStatement)
-                .orElseThrow(() -> new IllegalArgumentException("Unsupported provider for file: " + bankStatement.getOriginalFilename()));
+        IngestionContext ingestion = openIngestion(bankStatement);
+        Provider provider = identifyProvider(ingestion)
+                .orElseThrow(() -> new IllegalArgumentException("Unsupported provider for file: " + ingestion.getOriginalFilename()));
 
         log.info("Processing bank statement for User: {}, Realm: {}, Provider: {}", userId, realmId, provider);
 
         try {
-            String report = extractionPort.extractReport(provider, bankStatement);
-            if (report==null) {
+            NormalizedStatement statement = extractionPort.extractStatement(provider, ingestion);
+            if (statement==null) {
                 log.error("Failed to extract report for Provider: {}", provider);
                 throw new RuntimeException("Report extraction failed.");
             }
 
-            Map<String, Object> merkleSummary = generateTokens(userId, realmId, report);
-            String jsonMerkleSummary = objectMapper.writeValueAsString(merkleSummary);
-
-            String bankStatementJson = "";
-            if (provider!=Provider.SCOREME) {
-                JsonNode jsonNode = objectMapper.readTree(bankStatement.getInputStream());
-                bankStatementJson = jsonNode.toString();
-            }
-
+            StatementTokens tokens = statementTokenizer.tokenize(userId, realmId, statement);
 
-            Map<String, Object> dedupeResponse= checkData(userId, realmId, provider, report, bankStatementJson, jsonMerkleSummary);
+            Dedupe dedupe = transactionTemplate.execute(status -> {
+                Map<String, Object> dedupeResponse= checkData(userId, realmId, provider, statement, tokens);
 
-            //Response saving
-            responsePersistServicePort.persistResponse(objectMapper.writeValueAsString(dedupeResponse));
-            associationService.createAssociationsFromResponse(userId, realmId, dedupeResponse);
+                //Response saving
+                CompletableFuture<Void> flagStatus = responsePersistServicePort.persistResponse(toJson(dedupeResponse));
+                associationService.createAssociationsFromResponse(userId, realmId, dedupeResponse);
+                return new Dedupe(dedupeResponse, flagStatus);
+            });
+            awaitFlagStatus(dedupe.flagStatus());
 
             log.info("Bank statement processed successfully for User: {}", userId);
 
-            return dedupeResponse;
+            return dedupe.response();
         } catch (Exception e) {
             log.error("Failed to process bank statement for userId: {}, error: {}", userId, e.getMessage(), e);
             throw new RuntimeException("Error processing bank statement", e);
@@ -82,19 +92,28 @@ public class DedupeService implements DedupeServicePort {
         }
     }
 
-    private Optional<Provider> identifyProvider(MultipartFile bankStatement) {
-        String fileType = identifyFileType(bankStatement);
+    private IngestionContext openIngestion(MultipartFile bankStatement) {
+        try {
+            return IngestionContext.of(bankStatement, objectMapper);
+        } catch (IOException e) {
+            log.error("Failed to read bank statement file: {}, error: {}", bankStatement.getOriginalFilename(), e.getMessage(), e);
+            throw new RuntimeException("Error reading bank statement", e);
+        }
+    }
+
+    private Optional<Provider> identifyProvider(IngestionContext ingestion) {
+        String fileType = identifyFileType(ingestion);
 
         return switch (fileType) {
-            case "JSON" -> identifyJsonProvider(bankStatement);
-            case "EXCEL" -> identifyExcelProvider(bankStatement);
+            case "JSON" -> identifyJsonProvider(ingestion);
+            case "EXCEL" -> identifyExcelProvider(ingestion);
             default -> Optional.empty();
         };
     }
 
-    private String identifyFileType(MultipartFile file) {
-        String contentType = file.getContentType();
-        String filename = file.getOriginalFilename();
+    private String identifyFileType(IngestionContext ingestion) {
+        String contentType = ingestion.getContentType();
+        String filename = ingestion.getOriginalFilename();
 
         if (contentType!=null) {
             if ("application/json".equalsIgnoreCase(contentType)) return "JSON";
@@ -114,168 +133,56 @@ public class DedupeService implements DedupeServicePort {
         return "UNKNOWN";
     }
 
-    private Optional<Provider> identifyJsonProvider(MultipartFile file) {
-        try (InputStream inputStream = file.getInputStream()) {
-            JsonNode rootNode = objectMapper.readTree(inputStream);
-            if (rootNode.has("accountXns") ||
-                    (rootNode.has("report") && rootNode.get("report").has("accountXns"))) {
+    private Optional<Provider> identifyJsonProvider(IngestionContext ingestion) {
+        try {
+            if (ingestion.hasField("accountXns") || ingestion.hasField("report", "accountXns")) {
                 return Optional.of(Provider.PERFIOS);
             }
-            if (rootNode.has("accounts")) {
+            if (ingestion.hasField("accounts")) {
                 return Optional.of(Provider.FINBOX);
             }
-            if (rootNode.has("data")) {
+            if (ingestion.hasField("data")) {
                 return Optional.of(Provider.ONEMONEY);
             }
             return Optional.empty();
         } catch (IOException e) {
-            log.warn("Failed to identify JSON provider for file: {}, error: {}", file.getOriginalFilename(), e.getMessage());
+            log.warn("Failed to identify JSON provider for file: {}, error: {}", ingestion.getOriginalFilename(), e.getMessage());
             return Optional.empty();
         }
     }
 
-    private Optional<Provider> identifyExcelProvider(MultipartFile file) {
-        try (InputStream inputStream = file.getInputStream();
-             Workbook workbook = WorkbookFactory.create(inputStream)) {
-
-            Sheet sheet = workbook.getSheetAt(0);
-            if (sheet==null) return Optional.empty();
-
-//            String firstCellData = getCellData(sheet, 0, 0).toLowerCase();
-            String firstCellData = "scoreme";
-            if (firstCellData.contains("scoreme")) return Optional.of(Provider.SCOREME);
+    // Scoreme is the only Excel provider; the magic bytes are enough to reject non-workbooks without loading one
+    private Optional<Provider> identifyExcelProvider(IngestionContext ingestion) {
+        FileMagic fileMagic = FileMagic.valueOf(ingestion.getContent());
+        if (fileMagic == FileMagic.OOXML || fileMagic == FileMagic.OLE2) return Optional.of(Provider.SCOREME);
 
-            return Optional.empty();
-        } catch (IOException e) {
-            log.warn("Failed to identify Excel provider for file: {}, error: {}", file.getOriginalFilename(), e.getMessage());
-            return Optional.empty();
-        }
+        log.warn("Failed to identify Excel provider for file: {}, not an Excel workbook", ingestion.getOriginalFilename());
+        return Optional.empty();
     }
 
-    private static String getCellData(Sheet sheet, int rowNum, int colNum) {
-        try {
-            Row row = sheet.getRow(rowNum);
-            if (row==null) return "";
-
-            Cell cell = row.getCell(colNum);
-            if (cell==null) return "";
+    private Map<String, Object> checkData(Integer userId, String realmId, Provider provider, NormalizedStatement statement, StatementTokens tokens) {
+        Map<String, Object> result = dedupeRepositoryPort.fetchDetails(userId, realmId, provider, statement, tokens);
 
-            return getCellValueAsString(cell);
-        } catch (Exception e) {
-            throw new RuntimeException("Error reading cell at row " + rowNum + ", col " + colNum + "for the purpose of identifying Excel Provider", e);
-        }
-    }
-
-    private static String getCellValueAsString(Cell cell) {
-        return switch (cell.getCellType()) {
-            case STRING -> cell.getStringCellValue().trim();
-            case NUMERIC ->
-                    DateUtil.isCellDateFormatted(cell) ? cell.getDateCellValue().toString():String.valueOf(cell.getNumericCellValue());
-            case BOOLEAN -> String.valueOf(cell.getBooleanCellValue());
-            case FORMULA -> cell.getCellFormula();
-            case BLANK -> "";
-            default -> "";
-        };
+        return result;
     }
 
-    private String safeJsonPathRead(String json, String path) {
+    private String toJson(Map<String, Object> dedupeResponse) {
         try {
-            return JsonPath.read(json, path);
-        } catch (Exception e) {
-            return null;
+            return objectMapper.writeValueAsString(dedupeResponse);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Error serializing dedupe response", e);
         }
     }
 
-    private Map<String, Object> generateTokens(Integer userId, String realmId, String jsonInput) {
-
-        Anonymizer anonymizer = new Anonymizer(userId, realmId, true);
-        ObjectMapper mapper = new ObjectMapper();
-
+    private void awaitFlagStatus(CompletableFuture<Void> flagStatus) throws Exception {
         try {
-            // Parse input JSON
-            JsonNode rootNode = mapper.readTree(jsonInput);
-            Map<String, Object> response = new LinkedHashMap<>();
-
-            // Process accountXns
-            if (rootNode.has("accountXns")) {
-                ArrayNode accountXns = (ArrayNode) rootNode.get("accountXns");
-                List<Map<String, Object>> processedAccounts = new ArrayList<>();
-
-                for (JsonNode account : accountXns) {
-                    Map<String, Object> processedAccount = new LinkedHashMap<>();
-                    processedAccount.put("token", anonymizer.generateToken(account.toString()));
-                    processedAccount.put("accountNo", account.get("accountNo").asText());
-                    processedAccount.put("accountType", account.get("accountType").asText());
-
-                    List<Map<String, Object>> processedXns = new ArrayList<>();
-                    for (JsonNode xn : account.get("xns")) {
-                        Map<String, Object> processedXn = mapper.convertValue(xn, Map.class);
-                        processedXn.put("token", anonymizer.generateToken(xn.toString()));
-                        processedXns.add(processedXn);
-                    }
-                    processedAccount.put("xns", processedXns);
-                    processedAccounts.add(processedAccount);
-                }
-                response.put("accountXns", processedAccounts);
-            }
-
-            // Process bankTransactions
-            if (rootNode.has("bankTransactions")) {
-                ArrayNode bankTransactions = (ArrayNode) rootNode.get("bankTransactions");
-                List<Map<String, Object>> processedTransactions = new ArrayList<>();
-
-                for (JsonNode transaction : bankTransactions) {
-                    Map<String, Object> processedTransaction = new LinkedHashMap<>();
-                    processedTransaction.put("token", anonymizer.generateToken(transaction.toString()));
-                    processedTransaction.put("accountNo", transaction.get("accountNo").asText());
-
-                    List<Map<String, Object>> processedTxns = new ArrayList<>();
-                    for (JsonNode txn : transaction.get("transactions")) {
-                        Map<String, Object> processedTxn = mapper.convertValue(txn, Map.class);
-                        processedTxn.put("token", anonymizer.generateToken(txn.toString()));
-                        processedTxns.add(processedTxn);
-                    }
-                    processedTransaction.put("transactions", processedTxns);
-                    processedTransactions.add(processedTransaction);
-                }
-                response.put("bankTransactions", processedTransactions);
-            }
-
-            // Process eod
-            if (rootNode.has("eod")) {
-                ArrayNode eod = (ArrayNode) rootNode.get("eod");
-                List<Map<String, Object>> processedEod = new ArrayList<>();
-
-                for (JsonNode eodEntry : eod) {
-                    Map<String, Object> processedEntry = new LinkedHashMap<>();
-                    processedEntry.put("token", anonymizer.generateToken(eodEntry.toString()));
-                    processedEntry.put("accountNo", eodEntry.get("accountNo").asText());
-
-                    List<Map<String, Object>> processedBalances = new ArrayList<>();
-                    for (JsonNode balance : eodEntry.get("balances")) {
-                        Map<String, Object> processedBalance = mapper.convertValue(balance, Map.class);
-                        processedBalance.put("token", anonymizer.generateToken(balance.toString()));
-                        processedBalances.add(processedBalance);
-                    }
-                    processedEntry.put("balances", processedBalances);
-                    processedEod.add(processedEntry);
-                }
-                response.put("eod", processedEod);
-            }
-
-            return response;
-
-        } catch (Exception e) {
-            Map<String, Object> errorResponse = new LinkedHashMap<>();
-            errorResponse.put("error", e.getMessage());
-            return errorResponse;
+            flagStatus.get(flagStatusTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            flagStatus.cancel(false);
+            throw e;
         }
     }
 
-
-    private Map<String, Object> checkData(Integer userId, String realmId, Provider provider, String report, String bankStatementJson, String summaryJson) throws Exception{
-        Map<String, Object> result = dedupeRepositoryPort.fetchDetails(userId, realmId, provider, report, summaryJson);
-
-        return result;
+    private record Dedupe(Map<String, Object> response, CompletableFuture<Void> flagStatus) {
     }
 }
@@ -0,0 +1,106 @@
+package com.ninja.BankStAnalysis.infra.service;
+
+import com.ninja.BankStAnalysis.core.ananomyzer.core.PartialMerkleTree;
+import com.ninja.BankStAnalysis.core.ananomyzer.core.TokenEngine;
+import com.ninja.BankStAnalysis.core.model.StatementMerkleTree;
+import com.ninja.BankStAnalysis.core.port.in.MerkleProofServicePort;
+import com.ninja.BankStAnalysis.core.port.out.MerkleProofRepositoryPort;
+import com.ninja.BankStAnalysis.infra.exceptions.ErrorCode;
+import com.ninja.BankStAnalysis.infra.exceptions.ServiceRuntimeException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.VerificationException;
+import org.bitcoinj.params.MainNetParams;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Inclusion proofs of a transaction token in a stored statement. A proof is the bitcoin serialization of a
+ * {@link PartialMerkleTree} matching that one transaction, so it carries O(log n) hashes and can be checked
+ * against the statement's Merkle root by anyone holding it. Building one reads only those hashes. Once retention
+ * has dropped a statement's transactions no new proof can be built, but proofs issued before still verify.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MerkleProofService implements MerkleProofServicePort {
+
+    private static final NetworkParameters PARAMS = MainNetParams.get();
+
+    private final MerkleProofRepositoryPort merkleProofRepositoryPort;
+
+    @Override
+    public Map<String, Object> generateProof(Integer userId, String realmId, Long statementId, String token) {
+        StatementMerkleTree tree = loadTree(userId, realmId, statementId);
+        if (tree.isExpired()) {
+            throw new ServiceRuntimeException(ErrorCode.RS_ERROR_0004,
+                    "Transactions of statement " + statementId + " are past the retention window, no proof can be built");
+        }
+        byte[] digest = decodeToken(token);
+        int leaf = merkleProofRepositoryPort.findLeafIndex(tree, digest)
+                .orElseThrow(() -> new IllegalArgumentException("Transaction token not found in statement: " + statementId));
+
+        byte[][] siblings = merkleProofRepositoryPort.findPathSiblings(tree, leaf);
+        byte[] proof = PartialMerkleTree.buildFromPath(PARAMS, tree.getLeafCount(), leaf, digest, siblings).bitcoinSerialize();
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("statementId", statementId);
+        response.put("token", token);
+        response.put("transactionCount", tree.getLeafCount());
+        response.put("merkleRoot", Sha256Hash.wrap(tree.getRoot()).toString());
+        response.put("proof", Base64.getEncoder().encodeToString(proof));
+        return response;
+    }
+
+    @Override
+    public Map<String, Object> verifyProof(Integer userId, String realmId, Long statementId, String token, String proof) {
+        StatementMerkleTree tree = loadTree(userId, realmId, statementId);
+        Sha256Hash transaction = Sha256Hash.wrap(decodeToken(token));
+        Sha256Hash merkleRoot = Sha256Hash.wrap(tree.getRoot());
+
+        boolean verified;
+        String reason = null;
+        try {
+            PartialMerkleTree partialTree = new PartialMerkleTree(PARAMS, Base64.getDecoder().decode(proof), 0);
+            List<Sha256Hash> matched = new ArrayList<>();
+            Sha256Hash proofRoot = partialTree.getTxnHashAndMerkleRoot(matched);
+            verified = proofRoot.equals(merkleRoot) && matched.contains(transaction);
+            if (!verified) {
+                reason = proofRoot.equals(merkleRoot) ? "Proof does not include the transaction" : "Proof does not lead to the statement root";
+            }
+        } catch (IllegalArgumentException | VerificationException e) {
+            log.warn("Invalid Merkle proof for statementId: {}, error: {}", statementId, e.getMessage());
+            verified = false;
+            reason = "Malformed proof: " + e.getMessage();
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("statementId", statementId);
+        response.put("token", token);
+        response.put("merkleRoot", merkleRoot.toString());
+        response.put("verified", verified);
+        if (reason != null) {
+            response.put("reason", reason);
+        }
+        return response;
+    }
+
+    private StatementMerkleTree loadTree(Integer userId, String realmId, Long statementId) {
+        Objects.requireNonNull(userId, "userId must not be null");
+        Objects.requireNonNull(realmId, "realmId must not be null");
+        Objects.requireNonNull(statementId, "statementId must not be null");
+        return merkleProofRepositoryPort.findStatementTree(userId, realmId, statementId)
+                .orElseThrow(() -> new IllegalArgumentException("No Merkle tree stored for statement: " + statementId));
+    }
+
+    private static byte[] decodeToken(String token) {
+        byte[] digest = token == null ? null : Base64.getDecoder().decode(token);
+        if (digest == null || digest.length != TokenEngine.DIGEST_LENGTH) {
+            throw new IllegalArgumentException("Transaction token must be a Base64 SHA-256 digest");
+        }
+        return digest;
+    }
+}
@@ -1,19 +1,21 @@
 package com.ninja.BankStAnalysis.infra.service;
 
-import com.jayway.jsonpath.JsonPath;
+import com.ninja.BankStAnalysis.core.enums.JSONPathRegistry;
+import com.ninja.BankStAnalysis.core.model.JsonDocument;
 import com.ninja.BankStAnalysis.core.port.in.ResponsePersistServicePort;
 import com.ninja.BankStAnalysis.core.port.out.ResponsePersistRepositoryPort;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @Service
@@ -23,17 +25,24 @@ public class ResponsePersistService implements ResponsePersistServicePort {
     private final JdbcTemplate jdbcTemplate;
     private final ResponsePersistRepositoryPort responsePersistRepositoryPort;
 
-    @Transactional
-    public void persistResponse(String response) {
+    /**
+     * Queues the flag status row for the group commit and returns without waiting for it. Inside a transaction the
+     * row is only queued once that transaction commits, and is never written if it rolls back, so the caller waits
+     * on the returned future after its own connection is released rather than holding it while the flusher needs
+     * another.
+     */
+    public CompletableFuture<Void> persistResponse(String response) {
         try {
             log.info("Starting persistence of response for user data");
 
+            JsonDocument document = JsonDocument.parse(response);
+
             // Extract core fields with fallbacks
-            Integer userId = safeJsonPathRead(response, "$.userId", Integer.class)
+            Integer userId = document.find(JSONPathRegistry.USER_ID, Integer.class)
                     .orElseThrow(() -> new IllegalArgumentException("userId is required"));
-            String realmId = safeJsonPathRead(response, "$.realmId", String.class).orElse("").trim();
-            String flag = safeJsonPathRead(response, "$.status", String.class).orElse("UNKNOWN");
-            String accountNumber = safeJsonPathRead(response, "$.accounts[0].accountNumber", String.class)
+            String realmId = document.find(JSONPathRegistry.REALM_ID, String.class).orElse("").trim();
+            String flag = document.find(JSONPathRegistry.STATUS, String.class).orElse("UNKNOWN");
+            String accountNumber = document.find(JSONPathRegistry.FIRST_ACCOUNT_NUMBER, String.class)
                     .orElse("");
 
             if (accountNumber.isEmpty()) {
@@ -41,13 +50,11 @@ public class ResponsePersistService implements ResponsePersistServicePort {
             }
 
             // Extract matched counterparty data with empty list fallback
-            List<String> matchedCounterPartyUserIdsRaw = safeJsonPathRead(response,
-                    "$.statements[*].matchedCounterParty[*].counterPartyUserId", List.class)
+            List<String> matchedCounterPartyUserIdsRaw = document.find(JSONPathRegistry.COUNTER_PARTY_USER_IDS, List.class)
                     .orElse(Collections.emptyList());
             List<Integer> matchedCounterPartyUserIds = parseCounterPartyUserIds(matchedCounterPartyUserIdsRaw);
 
-            List<String> matchedCounterPartyAccountNos = safeJsonPathRead(response,
-                    "$.statements[*].matchedCounterParty[*].counterPartyAccountNumber", List.class)
+            List<String> matchedCounterPartyAccountNos = document.find(JSONPathRegistry.COUNTER_PARTY_ACCOUNT_NUMBERS, List.class)
                     .orElse(Collections.emptyList());
 
             // Audit timestamps
@@ -59,16 +66,33 @@ public class ResponsePersistService implements ResponsePersistServicePort {
             LocalDateTime updatedAt = null; //Initial update at is null
             String updatedBy = null;     // Initial update by is null
 
-            // Prepare data for batch insert
-            List<Object[]> batchData = Collections.singletonList(new Object[]{
+            Object[] record = new Object[]{
                     userId, realmId, flag, flaggedOn, accountNumber,
                     matchedCounterPartyUserIds.toArray(new Integer[0]),
                     matchedCounterPartyAccountNos.toArray(new String[0]),
                     verifiedOn, createdAt, createdBy, updatedAt, updatedBy
-            });
-
-            responsePersistRepositoryPort.insertUserBankStatementFlagStatus(batchData);
-            log.info("Successfully persisted response for userId: {}", userId);
+            };
+
+            CompletableFuture<Void> written = new CompletableFuture<>();
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        queue(record, written);
+                    }
+
+                    @Override
+                    public void afterCompletion(int status) {
+                        if (status != STATUS_COMMITTED) {
+                            written.completeExceptionally(new IllegalStateException("Request rolled back, flag status not written"));
+                        }
+                    }
+                });
+            } else {
+                queue(record, written);
+            }
+            log.info("Queued response for userId: {}", userId);
+            return written;
 
         } catch (Exception e) {
             log.error("Failed to persist response: {}", e.getMessage(), e);
@@ -76,6 +100,23 @@ public class ResponsePersistService implements ResponsePersistServicePort {
         }
     }
 
+    // A caller that gives up on the row cancels it, so the writer skips it if it has not been written yet
+    private void queue(Object[] record, CompletableFuture<Void> written) {
+        CompletableFuture<Void> queued = responsePersistRepositoryPort.queueUserBankStatementFlagStatus(record);
+        queued.whenComplete((ignored, e) -> {
+            if (e == null) {
+                written.complete(null);
+            } else {
+                written.completeExceptionally(e);
+            }
+        });
+        written.whenComplete((ignored, e) -> {
+            if (written.isCancelled()) {
+                queued.cancel(false);
+            }
+        });
+    }
+
     private List<Integer> parseCounterPartyUserIds(List<String> rawIds) {
         List<Integer> parsedIds = new ArrayList<>();
         if (rawIds == null || rawIds.isEmpty()) {
@@ -92,18 +133,6 @@ public class ResponsePersistService implements ResponsePersistServicePort {
         return parsedIds;
     }
 
-    public static <T> Optional<T> safeJsonPathRead(String json, String path, Class<T> type) {
-        try {
-            Object result = JsonPath.read(json, path);
-            if (result != null && type.isInstance(result)) {
-                return Optional.of(type.cast(result));
-            }
-            log.debug("No valid data found at JSON path: {}", path);
-        } catch (Exception e) {
-            log.warn("Failed to read JSON path '{}': {}", path, e.getMessage());
-        }
-        return Optional.empty();
-    }
 
 
 }
@@ -0,0 +1,390 @@
+package com.ninja.BankStAnalysis.infra.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.ninja.BankStAnalysis.core.ananomyzer.core.CanonicalTokenEncoder;
+import com.ninja.BankStAnalysis.core.ananomyzer.core.TokenEngine;
+import com.ninja.BankStAnalysis.core.model.AmountDateCodec;
+import com.ninja.BankStAnalysis.core.model.NormalizedStatement;
+import com.ninja.BankStAnalysis.core.model.StatementAccount;
+import com.ninja.BankStAnalysis.core.model.StatementTokens;
+import com.ninja.BankStAnalysis.core.model.TransactionColumns;
+import com.ninja.BankStAnalysis.core.modelHelper.BankStatementHashType;
+import com.ninja.BankStAnalysis.core.modelHelper.TokenEncoding;
+import com.ninja.BankStAnalysis.infra.exceptions.ErrorCode;
+import com.ninja.BankStAnalysis.infra.exceptions.ServiceRuntimeException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Generates the account and row tokens of a {@link NormalizedStatement}. Tokens are computed over the
+ * same JSON the extractors used to emit for each account and row, so they match the tokens already stored.
+ *
+ * <p>Each account is written once, as a byte stream in the platform charset the tokens were always hashed in.
+ * Every row is hashed from the stream as soon as it is complete and the account digest is fed incrementally,
+ * so neither the rows nor the account are ever held as Strings.</p>
+ *
+ * <p>With {@link TokenEncoding#CANONICAL_V1} the JSON is skipped entirely and the binary layout of
+ * {@link CanonicalTokenEncoder} is hashed instead.</p>
+ *
+ * <p>Statements of at least {@code parallel-threshold} rows are tokenized on the tokenization pool: every account
+ * is a task, split further into ranges of {@link #CHUNK_ROWS} rows whose digests land in their own slice of the
+ * account's digest array, so the output order is the statement order. Smaller statements stay on the caller.</p>
+ *
+ * <p>Whatever the encoding, every field of a row is also hashed on its own from its {@link CanonicalTokenEncoder}
+ * layout and the leading {@link StatementTokens.AccountTokens#FIELD_HASH_LENGTH} bytes are kept, so partial matches
+ * on a subset of fields never need the statement again.</p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StatementTokenizer {
+
+    private static final int CHUNK_ROWS = 2048;
+
+    private static final byte[] COMMA = {','};
+
+    private static final BankStatementHashType[] SECTIONS = {
+            BankStatementHashType.ACCOUNT_XNS, BankStatementHashType.BANK_TRANSACTION, BankStatementHashType.EOD_BALANCE
+    };
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    @Value("${bankstatement.token.encoding:LEGACY}")
+    private TokenEncoding encoding = TokenEncoding.LEGACY;
+
+    @Value("${bankstatement.token.parallel-threshold:20000}")
+    private int parallelThreshold = 20_000;
+
+    private final ForkJoinPool tokenizationPool;
+
+    public StatementTokens tokenize(Integer userId, String realmId, NormalizedStatement statement) {
+        try {
+            if (isParallel(statement)) {
+                return tokenizeParallel(statement);
+            }
+
+            TokenEngine engine = TokenEngine.current();
+            StatementTokens tokens = new StatementTokens();
+            ByteSink sink = new ByteSink();
+            char[] scratch = new char[AmountDateCodec.MAX_AMOUNT_LENGTH];
+            CanonicalTokenEncoder encoder = new CanonicalTokenEncoder();
+            for (BankStatementHashType section : SECTIONS) {
+                if (!statement.hasSection(section)) continue;
+
+                List<StatementTokens.AccountTokens> accounts = new ArrayList<>();
+                for (StatementAccount account : statement.getSection(section)) {
+                    accounts.add(encoding == TokenEncoding.CANONICAL_V1
+                            ? tokenizeCanonical(engine, section, account, encoder)
+                            : tokenizeAccount(engine, section, account, sink, scratch, encoder));
+                }
+                tokens.putSection(section, accounts);
+            }
+            return tokens;
+
+        } catch (Exception e) {
+            // A statement without tokens would be stored as never seen before, so it is not stored at all
+            log.error("Failed to generate tokens for userId: {}, error: {}", userId, e.getMessage(), e);
+            throw new ServiceRuntimeException(ErrorCode.RS_ERROR_0003, "Failed to generate tokens for userId: " + userId, e);
+        }
+    }
+
+    private boolean isParallel(NormalizedStatement statement) {
+        if (tokenizationPool.getParallelism() < 2) return false;
+        int rows = 0;
+        for (BankStatementHashType section : SECTIONS) {
+            if (!statement.hasSection(section)) continue;
+            for (StatementAccount account : statement.getSection(section)) {
+                rows += account.getTransactions().size();
+            }
+        }
+        return rows >= parallelThreshold;
+    }
+
+    private StatementTokens tokenizeParallel(NormalizedStatement statement) {
+        List<BankStatementHashType> sections = new ArrayList<>();
+        List<List<ForkJoinTask<StatementTokens.AccountTokens>>> tasks = new ArrayList<>();
+        for (BankStatementHashType section : SECTIONS) {
+            if (!statement.hasSection(section)) continue;
+
+            List<ForkJoinTask<StatementTokens.AccountTokens>> accounts = new ArrayList<>();
+            for (StatementAccount account : statement.getSection(section)) {
+                accounts.add(tokenizationPool.submit(() -> tokenizeChunked(section, account)));
+            }
+            sections.add(section);
+            tasks.add(accounts);
+        }
+
+        StatementTokens tokens = new StatementTokens();
+        for (int i = 0; i < sections.size(); i++) {
+            List<StatementTokens.AccountTokens> accounts = new ArrayList<>();
+            for (ForkJoinTask<StatementTokens.AccountTokens> task : tasks.get(i)) {
+                accounts.add(task.join());
+            }
+            tokens.putSection(sections.get(i), accounts);
+        }
+        return tokens;
+    }
+
+    // Runs on the pool; the row ranges are forked again so one large account still spreads over the workers
+    private StatementTokens.AccountTokens tokenizeChunked(BankStatementHashType section, StatementAccount account) throws IOException {
+        TransactionColumns columns = account.getTransactions();
+        byte[] transactionDigests = new byte[columns.size() * TokenEngine.DIGEST_LENGTH];
+        byte[] fieldHashes = newFieldHashes(section, columns.size());
+        int chunkCount = (columns.size() + CHUNK_ROWS - 1) / CHUNK_ROWS;
+        ByteSink[] chunks = new ByteSink[chunkCount]; // Row JSON of each range, needed again for the legacy account digest
+
+        List<ForkJoinTask<?>> chunkTasks = new ArrayList<>(chunkCount);
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            int from = chunk * CHUNK_ROWS;
+            int to = Math.min(from + CHUNK_ROWS, columns.size());
+            int index = chunk;
+            chunkTasks.add(ForkJoinTask.adapt(() -> {
+                CanonicalTokenEncoder encoder = new CanonicalTokenEncoder();
+                if (encoding == TokenEncoding.CANONICAL_V1) {
+                    hashCanonicalRows(TokenEngine.current(), section, columns, from, to, transactionDigests, encoder);
+                } else {
+                    chunks[index] = hashJsonRows(section, columns, from, to, transactionDigests);
+                }
+                hashFields(TokenEngine.current(), section, columns, from, to, fieldHashes, encoder);
+            }));
+        }
+        ForkJoinTask.invokeAll(chunkTasks);
+
+        TokenEngine engine = TokenEngine.current();
+        byte[] digest = new byte[TokenEngine.DIGEST_LENGTH];
+        if (encoding == TokenEncoding.CANONICAL_V1) {
+            finishCanonicalAccount(engine, section, account, transactionDigests, new CanonicalTokenEncoder(), digest);
+        } else {
+            finishJsonAccount(engine, section, account, chunks, digest);
+        }
+        return new StatementTokens.AccountTokens(String.valueOf(account.getAccountNo()), digest, transactionDigests, fieldHashes);
+    }
+
+    // Writes rows [from, to) as the elements of one JSON array and hashes each of them
+    private ByteSink hashJsonRows(BankStatementHashType section, TransactionColumns columns, int from, int to,
+                                  byte[] transactionDigests) {
+        TokenEngine engine = TokenEngine.current();
+        ByteSink sink = new ByteSink();
+        char[] scratch = new char[AmountDateCodec.MAX_AMOUNT_LENGTH];
+
+        try (JsonGenerator generator = jsonFactory.createGenerator(new OutputStreamWriter(sink, Charset.defaultCharset()))) {
+            generator.writeStartArray();
+            for (int row = from; row < to; row++) {
+                generator.flush();
+                int mark = sink.size;
+                writeRow(generator, section, columns, row, scratch);
+                generator.flush();
+                int start = sink.bytes[mark] == ',' ? mark + 1 : mark;
+                engine.hash(sink.bytes, start, sink.size - start, transactionDigests, row * TokenEngine.DIGEST_LENGTH);
+            }
+            generator.writeEndArray();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write transactions for tokenization", e);
+        }
+        return sink;
+    }
+
+    // Feeds the account JSON with the already written rows spliced in between its header and closing brackets
+    private void finishJsonAccount(TokenEngine engine, BankStatementHashType section, StatementAccount account,
+                                   ByteSink[] chunks, byte[] digest) throws IOException {
+        ByteSink sink = new ByteSink();
+        int headerLength;
+        try (JsonGenerator generator = jsonFactory.createGenerator(new OutputStreamWriter(sink, Charset.defaultCharset()))) {
+            writeAccountStart(generator, section, account);
+            generator.flush();
+            headerLength = sink.size;
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+
+        engine.update(sink.bytes, 0, headerLength);
+        for (int chunk = 0; chunk < chunks.length; chunk++) {
+            if (chunk > 0) {
+                engine.update(COMMA, 0, 1);
+            }
+            engine.update(chunks[chunk].bytes, 1, chunks[chunk].size - 2); // Without the array brackets
+        }
+        engine.update(sink.bytes, headerLength, sink.size - headerLength);
+        engine.finish(digest, 0);
+    }
+
+    private StatementTokens.AccountTokens tokenizeAccount(TokenEngine engine, BankStatementHashType section,
+                                                          StatementAccount account, ByteSink sink, char[] scratch,
+                                                          CanonicalTokenEncoder encoder) throws IOException {
+        TransactionColumns columns = account.getTransactions();
+        byte[] transactionDigests = new byte[columns.size() * TokenEngine.DIGEST_LENGTH];
+        byte[] fieldHashes = newFieldHashes(section, columns.size());
+        byte[] digest = new byte[TokenEngine.DIGEST_LENGTH];
+        hashFields(engine, section, columns, 0, columns.size(), fieldHashes, encoder);
+        sink.reset();
+
+        try (JsonGenerator generator = jsonFactory.createGenerator(new OutputStreamWriter(sink, Charset.defaultCharset()))) {
+            writeAccountStart(generator, section, account);
+            for (int row = 0; row < columns.size(); row++) {
+                // Everything before the row belongs to the account only
+                generator.flush();
+                engine.update(sink.bytes, 0, sink.size);
+                sink.reset();
+
+                writeRow(generator, section, columns, row, scratch);
+                generator.flush();
+                int start = sink.size > 0 && sink.bytes[0] == ',' ? 1 : 0; // The separator is not part of the row
+                engine.hash(sink.bytes, start, sink.size - start, transactionDigests, row * TokenEngine.DIGEST_LENGTH);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        engine.update(sink.bytes, 0, sink.size);
+        engine.finish(digest, 0);
+
+        return new StatementTokens.AccountTokens(String.valueOf(account.getAccountNo()), digest, transactionDigests, fieldHashes);
+    }
+
+    private StatementTokens.AccountTokens tokenizeCanonical(TokenEngine engine, BankStatementHashType section,
+                                                            StatementAccount account, CanonicalTokenEncoder encoder) {
+        TransactionColumns columns = account.getTransactions();
+        byte[] transactionDigests = new byte[columns.size() * TokenEngine.DIGEST_LENGTH];
+        byte[] fieldHashes = newFieldHashes(section, columns.size());
+        byte[] digest = new byte[TokenEngine.DIGEST_LENGTH];
+
+        hashCanonicalRows(engine, section, columns, 0, columns.size(), transactionDigests, encoder);
+        hashFields(engine, section, columns, 0, columns.size(), fieldHashes, encoder);
+        finishCanonicalAccount(engine, section, account, transactionDigests, encoder, digest);
+        return new StatementTokens.AccountTokens(String.valueOf(account.getAccountNo()), digest, transactionDigests, fieldHashes);
+    }
+
+    private static void hashCanonicalRows(TokenEngine engine, BankStatementHashType section, TransactionColumns columns,
+                                          int from, int to, byte[] transactionDigests, CanonicalTokenEncoder encoder) {
+        for (int row = from; row < to; row++) {
+            encoder.encodeRow(section, columns, row);
+            engine.hash(encoder.bytes(), 0, encoder.size(), transactionDigests, row * TokenEngine.DIGEST_LENGTH);
+        }
+    }
+
+    private static byte[] newFieldHashes(BankStatementHashType section, int rows) {
+        return new byte[rows * CanonicalTokenEncoder.fieldCount(section) * StatementTokens.AccountTokens.FIELD_HASH_LENGTH];
+    }
+
+    // Leaf hash of each field of rows [from, to), cut to FIELD_HASH_LENGTH bytes
+    private static void hashFields(TokenEngine engine, BankStatementHashType section, TransactionColumns columns,
+                                   int from, int to, byte[] fieldHashes, CanonicalTokenEncoder encoder) {
+        int fields = CanonicalTokenEncoder.fieldCount(section);
+        byte[] leaf = new byte[TokenEngine.DIGEST_LENGTH];
+        for (int row = from; row < to; row++) {
+            for (int field = 0; field < fields; field++) {
+                encoder.encodeField(section, columns, row, field);
+                engine.hash(encoder.bytes(), 0, encoder.size(), leaf, 0);
+                System.arraycopy(leaf, 0, fieldHashes, (row * fields + field) * StatementTokens.AccountTokens.FIELD_HASH_LENGTH,
+                        StatementTokens.AccountTokens.FIELD_HASH_LENGTH);
+            }
+        }
+    }
+
+    private static void finishCanonicalAccount(TokenEngine engine, BankStatementHashType section, StatementAccount account,
+                                               byte[] transactionDigests, CanonicalTokenEncoder encoder, byte[] digest) {
+        encoder.encodeAccount(section, account.getAccountNo(), account.getAccountType(), account.getTransactions().size());
+        engine.update(encoder.bytes(), 0, encoder.size());
+        engine.update(transactionDigests, 0, transactionDigests.length);
+        engine.finish(digest, 0);
+    }
+
+    // Opens the account object up to and including the '[' of its rows
+    private static void writeAccountStart(JsonGenerator generator, BankStatementHashType section,
+                                          StatementAccount account) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("accountNo", account.getAccountNo());
+        if (section == BankStatementHashType.ACCOUNT_XNS) {
+            generator.writeStringField("accountType", account.getAccountType());
+        }
+        generator.writeArrayFieldStart(rowsField(section));
+    }
+
+    // Row fields in the order the extractors wrote them; EOD rows have no amount, only accountXns has narration
+    private void writeRow(JsonGenerator generator, BankStatementHashType section, TransactionColumns columns, int row,
+                          char[] scratch) throws IOException {
+        generator.writeStartObject();
+        if (columns.has(row, TransactionColumns.DATE)) {
+            generator.writeFieldName("date");
+            int epochDay = columns.getEpochDay(row);
+            if (epochDay != TransactionColumns.NO_EPOCH_DAY) {
+                generator.writeString(scratch, 0, AmountDateCodec.formatDate(epochDay, scratch, 0));
+            } else {
+                generator.writeString(columns.getDate(row));
+            }
+        }
+        if (section != BankStatementHashType.EOD_BALANCE && columns.has(row, TransactionColumns.AMOUNT)) {
+            generator.writeFieldName("amount");
+            writeAmount(generator, columns.getAmountMinorUnits(row), columns.getAmount(row), scratch);
+        }
+        if (columns.has(row, TransactionColumns.BALANCE)) {
+            generator.writeFieldName("balance");
+            writeAmount(generator, columns.getBalanceMinorUnits(row), columns.getBalance(row), scratch);
+        }
+        if (section == BankStatementHashType.ACCOUNT_XNS && columns.has(row, TransactionColumns.NARRATION)) {
+            generator.writeStringField("narration", columns.getNarration(row));
+        }
+        generator.writeEndObject();
+    }
+
+    // Paise are written as the same text Double.toString gives for the rupee value
+    private static void writeAmount(JsonGenerator generator, long minorUnits, double value, char[] scratch) throws IOException {
+        if (minorUnits != TransactionColumns.NO_MINOR_UNITS) {
+            generator.writeRawValue(scratch, 0, AmountDateCodec.formatMinorUnits(minorUnits, scratch, 0));
+        } else {
+            generator.writeNumber(value);
+        }
+    }
+
+    private static String rowsField(BankStatementHashType section) {
+        return switch (section) {
+            case ACCOUNT_XNS -> "xns";
+            case EOD_BALANCE -> "balances";
+            case BANK_TRANSACTION -> "transactions";
+        };
+    }
+
+    /**
+     * Growable byte buffer reused for every row of a statement; it only ever holds the bytes not hashed yet.
+     */
+    private static class ByteSink extends OutputStream {
+
+        private byte[] bytes = new byte[1024];
+        private int size;
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(1);
+            bytes[size++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensureCapacity(len);
+            System.arraycopy(b, off, bytes, size, len);
+            size += len;
+        }
+
+        void reset() {
+            size = 0;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+-- Dedupe lookup latency on user_bank_transaction with and without the 16 fingerprint ranges of a V7 month.
+--
+--   psql -d bank_statement_db -v rows=1000000000 -v probes=300 -f transaction_lookup_benchmark.sql
+--
+-- Loads :rows synthetic account_xns transactions into two scratch tables in schema txn_bench: "flat" is
+-- partitioned by hash_type only, "split" also by fingerprint range. Then probes both with :probes stored
+-- hashes, sorted by fingerprint the way DedupeRepository sends them, and prints each plan with its timing
+-- and buffer counts. Loading a billion rows takes hours and about 150 GB per table; start smaller to compare.
+--
+-- "flat" is the history V7 attaches as <partition>_before_YYYYMM, "split" one month after
+-- db/maintenance/split_transaction_history.sql has moved it into fingerprint ranges.
+--
+-- Results: none recorded yet. This script has not been run at any size, so the lookup latency of either layout
+-- at a billion rows is unmeasured and the fingerprint split is not yet backed by numbers. Record each run here
+-- (rows, probes, server, execution time and shared buffers hit/read of both plans).
+
+\if :{?rows}
+\else
+\set rows 1000000000
+\endif
+\if :{?probes}
+\else
+\set probes 300
+\endif
+\timing on
+
+CREATE EXTENSION IF NOT EXISTS tsm_system_rows;
+DROP SCHEMA IF EXISTS txn_bench CASCADE;
+CREATE SCHEMA txn_bench;
+
+CREATE TABLE txn_bench.flat (
+    id BIGINT NOT NULL,
+    user_id INTEGER NOT NULL,
+    hash BYTEA NOT NULL,
+    hash_fingerprint BIGINT NOT NULL,
+    hash_type SMALLINT NOT NULL
+) PARTITION BY LIST (hash_type);
+CREATE TABLE txn_bench.flat_account_xns PARTITION OF txn_bench.flat FOR VALUES IN (1);
+
+CREATE TABLE txn_bench.split (LIKE txn_bench.flat) PARTITION BY LIST (hash_type);
+CREATE TABLE txn_bench.split_account_xns PARTITION OF txn_bench.split FOR VALUES IN (1)
+    PARTITION BY RANGE (hash_fingerprint);
+DO $$
+BEGIN
+    FOR k IN 0..15 LOOP
+        EXECUTE format('CREATE TABLE txn_bench.%I PARTITION OF txn_bench.split_account_xns FOR VALUES FROM (%s) TO (%s)',
+                       'split_account_xns_fp' || lpad(k::text, 2, '0'),
+                       CASE WHEN k = 0 THEN 'MINVALUE' ELSE ((k - 8)::bigint << 60)::text END,
+                       CASE WHEN k = 15 THEN 'MAXVALUE' ELSE ((k - 7)::bigint << 60)::text END);
+    END LOOP;
+END;
+$$;
+
+-- Same rows in both tables; the fingerprint is the leading 64 bits of the hash, as the application stores it
+INSERT INTO txn_bench.flat
+SELECT i, (i % 1000000)::int, h, ('x' || encode(substring(h FROM 1 FOR 8), 'hex'))::bit(64)::bigint, 1
+FROM generate_series(1, :rows) AS i, LATERAL (SELECT sha256(int8send(i)) AS h) d;
+INSERT INTO txn_bench.split SELECT * FROM txn_bench.flat;
+
+CREATE INDEX ON txn_bench.flat (hash_fingerprint, hash_type);
+CREATE INDEX ON txn_bench.split (hash_fingerprint, hash_type);
+ANALYZE txn_bench.flat;
+ANALYZE txn_bench.split;
+
+-- One statement's worth of stored hashes, in fingerprint order
+CREATE TABLE txn_bench.probe AS
+SELECT hash_fingerprint AS fingerprint, hash
+FROM txn_bench.flat TABLESAMPLE SYSTEM_ROWS(:probes)
+ORDER BY hash_fingerprint;
+
+\echo 'Unsplit partition'
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+SELECT u.*
+FROM txn_bench.probe t
+CROSS JOIN LATERAL (
+    SELECT * FROM txn_bench.flat u
+    WHERE u.hash_type = 1 AND u.hash_fingerprint = t.fingerprint AND u.user_id != -1 AND u.hash = t.hash
+) u;
+
+\echo 'Fingerprint ranges'
+EXPLAIN (ANALYZE, BUFFERS, COSTS OFF)
+SELECT u.*
+FROM txn_bench.probe t
+CROSS JOIN LATERAL (
+    SELECT * FROM txn_bench.split u
+    WHERE u.hash_type = 1 AND u.hash_fingerprint = t.fingerprint AND u.user_id != -1 AND u.hash = t.hash
+) u;
@@ -0,0 +1,121 @@
+-- Moves the history V7 attached as <partition>_before_YYYYMM into the layout of every later month: one
+-- <partition>_mYYYYMM per calendar month, each split into the 16 hash_fingerprint ranges. Dedupe probes then
+-- descend one small per-range index per month, and retention drops the history month by month.
+--
+--   psql -d bank_statement_db -v ON_ERROR_STOP=1 -f split_transaction_history.sql
+--
+-- Run it in autocommit, not with --single-transaction: the procedure commits after every batch of copied rows,
+-- and calling it again resumes where an interrupted run stopped. Rows are copied, not moved, into month tables
+-- that stay detached until the end, so the history remains attached and visible to dedupe throughout. The final
+-- swap detaches the history and attaches the month tables in one transaction, holding an exclusive lock on the
+-- hash_type partition only for that; every copied table carries CHECK constraints implying its bounds, so the
+-- attaches validate nothing. The first run scans the history once for its oldest created_at.
+--
+-- Rows are copied in id order, and ids are handed out in blocks (IdBlockAllocator), so the history must no longer
+-- receive rows: the procedure refuses to start before a day into the month its name carries. It holds the
+-- retention job's advisory lock while it runs, so the history is not dropped under it.
+
+CREATE OR REPLACE PROCEDURE split_transaction_history(p_partition TEXT, p_batch_rows INTEGER DEFAULT 100000)
+LANGUAGE plpgsql AS $$
+DECLARE
+    v_history TEXT;
+    v_bound DATE;
+    v_copy TEXT;
+    v_hash_type INTEGER;
+    v_columns TEXT;
+    v_first DATE;
+    v_month DATE;
+    v_child TEXT;
+    v_leaf TEXT;
+    v_last BIGINT;
+    v_copied BIGINT;
+    v_total BIGINT := 0;
+BEGIN
+    SELECT c.relname, substring(pg_get_expr(p.relpartbound, p.oid) FROM 'IN \((\d+)\)')::int
+    INTO v_history, v_hash_type
+    FROM pg_inherits i
+    JOIN pg_class c ON c.oid = i.inhrelid
+    JOIN pg_class p ON p.oid = i.inhparent
+    WHERE i.inhparent = p_partition::regclass AND c.relname ~ ('^' || p_partition || '_before_[0-9]{6}$');
+    IF v_history IS NULL THEN
+        RAISE NOTICE '% has no history partition left to split', p_partition;
+        RETURN;
+    END IF;
+
+    v_bound := to_date(right(v_history, 6), 'YYYYMM');
+    IF now() < v_bound + interval '1 day' THEN
+        RAISE EXCEPTION '% may still receive rows; split it from % on', v_history, v_bound + interval '1 day';
+    END IF;
+    IF NOT pg_try_advisory_lock(hashtext('user_bank_transaction_retention')) THEN
+        RAISE EXCEPTION 'Transaction partition retention is running, try again once it is done';
+    END IF;
+
+    SELECT string_agg(quote_ident(attname), ', ' ORDER BY attnum) INTO v_columns
+    FROM pg_attribute
+    WHERE attrelid = 'user_bank_transaction'::regclass AND attnum > 0 AND NOT attisdropped;
+
+    -- Month tables under one detached holder, named as they will be once attached
+    v_copy := v_history || '_split';
+    IF to_regclass(v_copy) IS NULL THEN
+        EXECUTE format('SELECT date_trunc(''month'', min(created_at))::date FROM %I', v_history) INTO v_first;
+        EXECUTE format('CREATE TABLE %I (LIKE user_bank_transaction INCLUDING DEFAULTS INCLUDING INDEXES) '
+                       'PARTITION BY RANGE (created_at)', v_copy);
+        v_month := v_first;
+        WHILE v_month < v_bound LOOP
+            v_child := p_partition || '_m' || to_char(v_month, 'YYYYMM');
+            EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L) '
+                           'PARTITION BY RANGE (hash_fingerprint)',
+                           v_child, v_copy, v_month, (v_month + interval '1 month')::date);
+            FOR k IN 0..15 LOOP
+                v_leaf := v_child || '_fp' || lpad(k::text, 2, '0');
+                EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%s) TO (%s)',
+                               v_leaf, v_child,
+                               CASE WHEN k = 0 THEN 'MINVALUE' ELSE ((k - 8)::bigint << 60)::text END,
+                               CASE WHEN k = 15 THEN 'MAXVALUE' ELSE ((k - 7)::bigint << 60)::text END);
+                EXECUTE format('ALTER TABLE %I ADD CONSTRAINT %I CHECK (hash_type = %s AND created_at >= %L AND created_at < %L)',
+                               v_leaf, v_leaf || '_bound', v_hash_type, v_month, (v_month + interval '1 month')::date);
+            END LOOP;
+            v_month := (v_month + interval '1 month')::date;
+        END LOOP;
+        COMMIT;
+    END IF;
+
+    -- Resumes after the highest id already copied
+    EXECUTE format('SELECT coalesce(max(id), 0) FROM %I', v_copy) INTO v_last;
+    LOOP
+        EXECUTE format('WITH copied AS ('
+                       '    INSERT INTO %1$I (%2$s) SELECT %2$s FROM %3$I WHERE id > %4$s ORDER BY id LIMIT %5$s RETURNING id'
+                       ') SELECT count(*), max(id) FROM copied',
+                       v_copy, v_columns, v_history, v_last, p_batch_rows)
+        INTO v_copied, v_last;
+        EXIT WHEN v_copied = 0;
+        v_total := v_total + v_copied;
+        COMMIT;
+        RAISE NOTICE '% rows of % copied, up to id %', v_total, v_history, v_last;
+    END LOOP;
+    COMMIT;
+
+    EXECUTE format('LOCK TABLE %I IN ACCESS EXCLUSIVE MODE', p_partition);
+    EXECUTE format('ALTER TABLE %I DETACH PARTITION %I', p_partition, v_history);
+    FOR v_child IN
+        SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = v_copy::regclass
+        ORDER BY c.relname
+    LOOP
+        v_month := to_date(right(v_child, 6), 'YYYYMM');
+        EXECUTE format('ALTER TABLE %I DETACH PARTITION %I', v_copy, v_child);
+        EXECUTE format('ALTER TABLE %I ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                       p_partition, v_child, v_month, (v_month + interval '1 month')::date);
+    END LOOP;
+    EXECUTE format('DROP TABLE %I', v_copy);
+    EXECUTE format('DROP TABLE %I', v_history);
+    COMMIT;
+
+    PERFORM pg_advisory_unlock(hashtext('user_bank_transaction_retention'));
+    RAISE NOTICE '% split into months of 16 fingerprint ranges', v_history;
+END;
+$$;
+
+CALL split_transaction_history('bank_transaction');
+CALL split_transaction_history('account_xns');
+CALL split_transaction_history('eod_balance');
@@ -0,0 +1,16 @@
+-- Content hashes of processed uploads, so a retried or duplicated upload returns the stored result without being
+-- extracted or written again (see UploadRegistryRepository). hash_type is ContentHashType: 0 for the SHA-256 of
+-- the raw file, 1 for the SHA-256 of the tokenized statement's account digests. response stays NULL while the
+-- upload that claimed the hash is still being written.
+CREATE TABLE IF NOT EXISTS user_bank_statement_upload (
+    id BIGSERIAL PRIMARY KEY,
+    user_id INTEGER NOT NULL,
+    realm_id CHAR(18) NOT NULL,
+    hash_type SMALLINT NOT NULL,
+    content_hash BYTEA NOT NULL,
+    response JSONB,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uq_user_bank_statement_upload_hash
+    ON user_bank_statement_upload (user_id, realm_id, hash_type, content_hash);
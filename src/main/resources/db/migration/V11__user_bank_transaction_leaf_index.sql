@@ -0,0 +1,35 @@
+-- Proofs read their path instead of the whole tree. Each transaction row records its position among the
+-- statement's leaves, and user_bank_statement_merkle.nodes keeps only the levels above the leaves (the leaves are
+-- the rows' hashes), so a proof reads two rows by (statement_id, leaf_index) and one 32 byte slice per level.
+ALTER TABLE user_bank_transaction ADD COLUMN IF NOT EXISTS leaf_index INTEGER;
+ALTER TABLE user_bank_transaction_staging ADD COLUMN IF NOT EXISTS leaf_index INTEGER;
+
+-- Positions of stored rows come from the leaves still held in nodes. Identical rows of a statement share a hash,
+-- so they are paired with the leaves holding it in id order.
+WITH leaves AS (
+    SELECT m.statement_id, l.leaf_index, substring(m.nodes FROM l.leaf_index * 32 + 1 FOR 32) AS hash
+    FROM user_bank_statement_merkle m
+    CROSS JOIN LATERAL generate_series(0, m.leaf_count - 1) AS l(leaf_index)
+), numbered_leaves AS (
+    SELECT statement_id, leaf_index, hash,
+           row_number() OVER (PARTITION BY statement_id, hash ORDER BY leaf_index) AS nth
+    FROM leaves
+), numbered_rows AS (
+    SELECT t.id, t.hash_type, t.created_at, t.hash_fingerprint, t.statement_id, t.hash,
+           row_number() OVER (PARTITION BY t.statement_id, t.hash ORDER BY t.id) AS nth
+    FROM user_bank_transaction t
+    WHERE t.statement_id IN (SELECT statement_id FROM user_bank_statement_merkle)
+)
+UPDATE user_bank_transaction t
+SET leaf_index = l.leaf_index
+FROM numbered_rows r
+JOIN numbered_leaves l ON l.statement_id = r.statement_id AND l.hash = r.hash AND l.nth = r.nth
+WHERE t.id = r.id AND t.hash_type = r.hash_type AND t.created_at = r.created_at AND t.hash_fingerprint = r.hash_fingerprint;
+
+-- statement_id lookups and the cascading delete are served by the leading column
+CREATE INDEX IF NOT EXISTS idx_user_bank_txn_statement_leaf ON user_bank_transaction (statement_id, leaf_index);
+DROP INDEX IF EXISTS idx_user_bank_txn_statement_id;
+
+-- Stored uncompressed, so substring() reads only the TOAST chunks holding the slice
+ALTER TABLE user_bank_statement_merkle ALTER COLUMN nodes SET STORAGE EXTERNAL;
+UPDATE user_bank_statement_merkle SET nodes = substring(nodes FROM leaf_count * 32 + 1);
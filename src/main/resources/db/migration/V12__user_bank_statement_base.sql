@@ -0,0 +1,4 @@
+-- Stored statements are no longer updated when a later upload extends them. The extending upload is a new
+-- statement whose first mmr_leaf_count rows of the base are stored under the base (and its own bases), and whose
+-- own rows continue their leaf_index, so a proof of either statement reads its leaves along the chain.
+ALTER TABLE user_bank_statement ADD COLUMN IF NOT EXISTS base_statement_id BIGINT;
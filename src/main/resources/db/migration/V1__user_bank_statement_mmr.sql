@@ -0,0 +1,9 @@
+-- Merkle Mountain Range state of each statement's transaction hashes, so a re-upload that only adds
+-- transactions can extend the earlier statement instead of storing every hash again.
+-- Statements stored before this migration keep a leaf count of 0 and are never extended.
+ALTER TABLE user_bank_statement
+    ADD COLUMN mmr_leaf_count BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN mmr_peaks BYTEA NOT NULL DEFAULT ''::bytea;
+
+CREATE INDEX idx_user_bank_stmt_account_mmr
+    ON user_bank_statement(user_id, account_number, hash_type, mmr_leaf_count);
@@ -0,0 +1,11 @@
+-- Every level of the Merkle tree over a statement's transaction hashes, leaves first, 32 bytes per node.
+-- Inclusion proofs read this one row instead of the statement's transactions.
+CREATE TABLE user_bank_statement_merkle (
+    statement_id BIGINT PRIMARY KEY,
+    leaf_count INTEGER NOT NULL,
+    merkle_root BYTEA NOT NULL,
+    nodes BYTEA NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT fk_statement_merkle_statement_id
+        FOREIGN KEY (statement_id) REFERENCES user_bank_statement(id) ON DELETE CASCADE
+);
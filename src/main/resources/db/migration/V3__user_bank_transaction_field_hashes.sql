@@ -0,0 +1,9 @@
+-- Leading 8 bytes of the SHA-256 leaf hash of every field of a transaction, back to back in the section's
+-- field order: date, amount, balance, then narration for accountXns. Transactions stored before this
+-- migration have no field hashes and only ever match on their whole-row hash.
+ALTER TABLE user_bank_transaction
+    ADD COLUMN field_hashes BYTEA NOT NULL DEFAULT ''::bytea;
+
+-- Date, amount and balance are the first 24 bytes; rows whose narration was rewritten still meet here
+CREATE INDEX idx_user_bank_txn_field_prefix
+    ON user_bank_transaction(hash_type, substring(field_hashes FROM 1 FOR 24));
@@ -0,0 +1,19 @@
+-- Leading 64 bits of each transaction's hash digest, big-endian, as the key of the row lookup index.
+-- The text hash stays as it is and is only compared to confirm the few rows a fingerprint finds.
+ALTER TABLE user_bank_transaction
+    ADD COLUMN hash_fingerprint BIGINT;
+
+-- Hashes are Base64 tokens (44 chars) or, for older rows, hex digests (64 chars)
+UPDATE user_bank_transaction
+SET hash_fingerprint = ('x' || substr(
+        CASE WHEN length(hash) = 64 THEN hash ELSE encode(decode(hash, 'base64'), 'hex') END, 1, 16))::bit(64)::bigint
+WHERE hash_fingerprint IS NULL;
+
+ALTER TABLE user_bank_transaction
+    ALTER COLUMN hash_fingerprint SET NOT NULL;
+
+CREATE INDEX idx_user_bank_txn_fingerprint
+    ON user_bank_transaction(hash_fingerprint, hash_type);
+
+-- The text index is replaced by the fingerprint one
+DROP INDEX IF EXISTS idx_user_bank_stmt_hash;
@@ -0,0 +1,10 @@
+-- Token hashes are stored as their raw 32 byte SHA-256 digest instead of text; Base64 is only produced in
+-- API responses. Existing values are Base64 tokens (44 chars) or, for older rows, hex digests (64 chars).
+-- Indexes on the columns are rebuilt by the type change.
+ALTER TABLE user_bank_statement
+    ALTER COLUMN root_hash TYPE BYTEA
+    USING CASE WHEN length(root_hash) = 64 THEN decode(root_hash, 'hex') ELSE decode(root_hash, 'base64') END;
+
+ALTER TABLE user_bank_transaction
+    ALTER COLUMN hash TYPE BYTEA
+    USING CASE WHEN length(hash) = 64 THEN decode(hash, 'hex') ELSE decode(hash, 'base64') END;
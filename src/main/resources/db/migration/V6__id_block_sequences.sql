@@ -0,0 +1,13 @@
+-- Statement and transaction ids are assigned by the application in blocks of 1000: every nextval of these
+-- sequences reserves [value, value + 1000). The INCREMENT BY must stay equal to IdBlockAllocator's block size.
+CREATE SEQUENCE IF NOT EXISTS user_bank_statement_seq INCREMENT BY 1000;
+ALTER SEQUENCE user_bank_statement_seq INCREMENT BY 1000;
+SELECT setval('user_bank_statement_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM user_bank_statement), false);
+
+CREATE SEQUENCE IF NOT EXISTS user_bank_transaction_seq INCREMENT BY 1000;
+ALTER SEQUENCE user_bank_transaction_seq INCREMENT BY 1000;
+SELECT setval('user_bank_transaction_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM user_bank_transaction), false);
+
+-- Ids drawn from the column defaults would collide with the blocks, so every writer has to bring its own
+ALTER TABLE user_bank_statement ALTER COLUMN id DROP DEFAULT;
+ALTER TABLE user_bank_transaction ALTER COLUMN id DROP DEFAULT;
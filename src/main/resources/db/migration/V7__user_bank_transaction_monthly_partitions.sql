@@ -0,0 +1,80 @@
+-- Partitions every hash_type partition of user_bank_transaction by calendar month of created_at, and every month
+-- by 16 ranges of hash_fingerprint. A dedupe probe descends the index of one fingerprint range per retained month,
+-- and old transactions are removed by dropping whole months (see TransactionPartitionManager) instead of DELETEs.
+--
+--   user_bank_transaction                 LIST (hash_type)
+--     bank_transaction                    RANGE (created_at)
+--       bank_transaction_m202611          one calendar month, RANGE (hash_fingerprint)
+--         bank_transaction_m202611_fp00   the fingerprints with (hash_fingerprint >> 60) + 8 = 00, up to _fp15
+--
+-- Existing rows are not moved, so they stay visible to dedupe throughout. Each hash_type partition becomes the
+-- month range partition <partition>_before_YYYYMM, holding everything created before the next month. Attaching it
+-- scans it once to validate the bound, under an exclusive lock on user_bank_transaction. It is split into months
+-- and fingerprint ranges later, online, by db/maintenance/split_transaction_history.sql; until then it is one
+-- unsplit partition, dropped as one piece once its month leaves the retention window.
+--
+-- Runs in a single transaction like every other file here.
+
+-- A primary key of a partitioned table has to include every partition key column
+ALTER TABLE user_bank_transaction DROP CONSTRAINT IF EXISTS user_bank_transaction_pkey;
+
+-- Creates the month partition of p_month, with its fingerprint ranges, under every hash_type partition. A month
+-- that already exists, or overlaps a _before_ partition, is left alone, so it can be called for any month.
+CREATE OR REPLACE PROCEDURE create_transaction_month_partitions(p_month DATE)
+LANGUAGE plpgsql AS $$
+DECLARE
+    v_from DATE := date_trunc('month', p_month)::date;
+    v_parent TEXT;
+    v_month TEXT;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('user_bank_transaction_partitions'));
+
+    FOR v_parent IN
+        SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'user_bank_transaction'::regclass
+    LOOP
+        v_month := v_parent || '_m' || to_char(v_from, 'YYYYMM');
+        CONTINUE WHEN to_regclass(v_month) IS NOT NULL;
+        BEGIN
+            EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L) '
+                           'PARTITION BY RANGE (hash_fingerprint)',
+                           v_month, v_parent, v_from, (v_from + interval '1 month')::date);
+        EXCEPTION WHEN invalid_object_definition THEN
+            CONTINUE; -- Overlaps an existing partition
+        END;
+        FOR k IN 0..15 LOOP
+            EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%s) TO (%s)',
+                           v_month || '_fp' || lpad(k::text, 2, '0'), v_month,
+                           CASE WHEN k = 0 THEN 'MINVALUE' ELSE ((k - 8)::bigint << 60)::text END,
+                           CASE WHEN k = 15 THEN 'MAXVALUE' ELSE ((k - 7)::bigint << 60)::text END);
+        END LOOP;
+    END LOOP;
+END;
+$$;
+
+DO $$
+DECLARE
+    v_bound DATE := (date_trunc('month', now()) + interval '1 month')::date;
+    v_partition RECORD;
+    v_before TEXT;
+BEGIN
+    FOR v_partition IN
+        SELECT * FROM (VALUES ('bank_transaction', 0), ('account_xns', 1), ('eod_balance', 2)) AS p(name, hash_type)
+    LOOP
+        v_before := v_partition.name || '_before_' || to_char(v_bound, 'YYYYMM');
+        EXECUTE format('ALTER TABLE user_bank_transaction DETACH PARTITION %I', v_partition.name);
+        EXECUTE format('ALTER TABLE %I RENAME TO %I', v_partition.name, v_before);
+        EXECUTE format('CREATE TABLE %I PARTITION OF user_bank_transaction FOR VALUES IN (%s) '
+                       'PARTITION BY RANGE (created_at)', v_partition.name, v_partition.hash_type);
+        EXECUTE format('ALTER TABLE %I ATTACH PARTITION %I FOR VALUES FROM (MINVALUE) TO (%L)',
+                       v_partition.name, v_before, v_bound);
+    END LOOP;
+END;
+$$;
+
+-- The months after the attached history; the application keeps creating them ahead from here on
+CALL create_transaction_month_partitions((date_trunc('month', now()) + interval '1 month')::date);
+CALL create_transaction_month_partitions((date_trunc('month', now()) + interval '2 month')::date);
+CALL create_transaction_month_partitions((date_trunc('month', now()) + interval '3 month')::date);
+
+ALTER TABLE user_bank_transaction ADD PRIMARY KEY (id, hash_type, created_at, hash_fingerprint);
@@ -0,0 +1,37 @@
+-- Staging tables of the bulk load path (BatchLoadRepository). A batch is COPYed in under its own batch_id, merged
+-- into user_bank_statement, user_bank_transaction and user_bank_statement_merkle with one statement, then deleted.
+-- They are UNLOGGED: nothing in them outlives its transaction, so they need no WAL and are emptied by a crash.
+CREATE SEQUENCE IF NOT EXISTS user_bank_staging_batch_seq;
+
+CREATE UNLOGGED TABLE IF NOT EXISTS user_bank_statement_staging (
+    batch_id BIGINT NOT NULL,
+    id BIGINT NOT NULL,
+    user_id INTEGER NOT NULL,
+    realm_id VARCHAR(255) NOT NULL,
+    account_number VARCHAR(255) NOT NULL,
+    phone_number VARCHAR(255),
+    root_hash BYTEA NOT NULL,
+    hash_type SMALLINT NOT NULL,
+    provider SMALLINT NOT NULL,
+    source_type SMALLINT NOT NULL,
+    media_link VARCHAR(255),
+    created_by VARCHAR(255),
+    created_at TIMESTAMP NOT NULL,
+    mmr_leaf_count BIGINT NOT NULL,
+    mmr_peaks BYTEA NOT NULL,
+    merkle_leaf_count INTEGER,
+    merkle_root BYTEA,
+    merkle_nodes BYTEA,
+    PRIMARY KEY (batch_id, id)
+);
+
+CREATE UNLOGGED TABLE IF NOT EXISTS user_bank_transaction_staging (
+    batch_id BIGINT NOT NULL,
+    id BIGINT NOT NULL,
+    statement_id BIGINT NOT NULL,
+    hash BYTEA NOT NULL,
+    hash_fingerprint BIGINT NOT NULL,
+    field_hashes BYTEA
+);
+
+CREATE INDEX IF NOT EXISTS idx_user_bank_txn_staging_statement ON user_bank_transaction_staging (batch_id, statement_id);
@@ -0,0 +1,7 @@
+-- Last write-behind log record applied by each node (see WriteBehindWriter). It is updated in the transaction
+-- that applies the records, so a node replaying its log after a crash skips exactly what was committed.
+CREATE TABLE IF NOT EXISTS write_behind_checkpoint (
+    node_id VARCHAR(255) PRIMARY KEY,
+    applied_sequence BIGINT NOT NULL,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
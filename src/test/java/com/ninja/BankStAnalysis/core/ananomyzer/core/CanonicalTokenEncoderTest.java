@@ -0,0 +1,169 @@
+package com.ninja.BankStAnalysis.core.ananomyzer.core;
+
+import com.ninja.BankStAnalysis.core.model.TransactionColumns;
+import com.ninja.BankStAnalysis.core.modelHelper.BankStatementHashType;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stored tokens are hashes of these bytes, so the CANONICAL_V1 layout must never change.
+ */
+class CanonicalTokenEncoderTest {
+
+    private static final int VERSION = 1;
+    private static final int ABSENT = 0;
+    private static final int EXACT = 1;
+    private static final int RAW = 2;
+
+    private final CanonicalTokenEncoder encoder = new CanonicalTokenEncoder();
+
+    @Test
+    void encodesExactRowFieldsInSectionOrder() throws IOException {
+        TransactionColumns columns = new TransactionColumns();
+        int row = columns.addRow();
+        columns.setDate(row, "2024-01-01");
+        columns.setAmount(row, 10.5);
+        columns.setNarration(row, "UPI/é");
+
+        encoder.encodeRow(BankStatementHashType.ACCOUNT_XNS, columns, row);
+
+        Bytes expected = new Bytes()
+                .b(VERSION).b(BankStatementHashType.ACCOUNT_XNS.ordinal())
+                .b(EXACT).i((int) LocalDate.of(2024, 1, 1).toEpochDay())
+                .b(EXACT).l(1050)
+                .b(ABSENT)
+                .b(EXACT).text("UPI/é");
+        assertEncoded(expected);
+    }
+
+    @Test
+    void keepsInexactValuesRaw() throws IOException {
+        TransactionColumns columns = new TransactionColumns();
+        int row = columns.addRow();
+        columns.setDate(row, "2024-02-30");
+        columns.setAmount(row, 10.005);
+        columns.setBalance(row, -0.0);
+
+        encoder.encodeRow(BankStatementHashType.BANK_TRANSACTION, columns, row);
+
+        Bytes expected = new Bytes()
+                .b(VERSION).b(BankStatementHashType.BANK_TRANSACTION.ordinal())
+                .b(RAW).text("2024-02-30")
+                .b(RAW).l(Double.doubleToLongBits(10.005))
+                .b(RAW).l(Double.doubleToLongBits(-0.0));
+        assertEncoded(expected);
+    }
+
+    @Test
+    void encodesAccountHeaders() throws IOException {
+        encoder.encodeAccount(BankStatementHashType.ACCOUNT_XNS, "XX01", null, 3);
+        assertEncoded(new Bytes()
+                .b(VERSION).b(BankStatementHashType.ACCOUNT_XNS.ordinal()).b(EXACT).text("XX01").b(ABSENT).i(3));
+
+        // Only accountXns carries the account type
+        encoder.encodeAccount(BankStatementHashType.EOD_BALANCE, "XX01", "SAVINGS", 0);
+        assertEncoded(new Bytes()
+                .b(VERSION).b(BankStatementHashType.EOD_BALANCE.ordinal()).b(EXACT).text("XX01").i(0));
+    }
+
+    @Test
+    void encodesSingleFieldsWithTheirFlag() throws IOException {
+        TransactionColumns columns = new TransactionColumns();
+        columns.addBalance("2024-03-01", 250.75);
+
+        assertEquals(2, CanonicalTokenEncoder.fieldCount(BankStatementHashType.EOD_BALANCE));
+        encoder.encodeField(BankStatementHashType.EOD_BALANCE, columns, 0, 1);
+
+        assertEncoded(new Bytes()
+                .b(VERSION).b(BankStatementHashType.EOD_BALANCE.ordinal()).b(TransactionColumns.BALANCE)
+                .b(EXACT).l(25075));
+    }
+
+    // Parsed and directly set values are indistinguishable, whichever path an extractor takes
+    @Test
+    void dependsOnlyOnNormalizedValues() {
+        TransactionColumns parsed = new TransactionColumns();
+        parsed.add("2024-01-31", 1.1, 100, "NEFT");
+        TransactionColumns direct = new TransactionColumns();
+        int row = direct.addRow();
+        direct.setEpochDay(row, (int) LocalDate.of(2024, 1, 31).toEpochDay());
+        direct.setAmountMinorUnits(row, 110);
+        direct.setBalanceMinorUnits(row, 10000);
+        direct.setNarration(row, "NEFT");
+
+        encoder.encodeRow(BankStatementHashType.ACCOUNT_XNS, parsed, 0);
+        byte[] fromParsed = Arrays.copyOf(encoder.bytes(), encoder.size());
+        encoder.encodeRow(BankStatementHashType.ACCOUNT_XNS, direct, 0);
+
+        assertArrayEquals(fromParsed, Arrays.copyOf(encoder.bytes(), encoder.size()));
+    }
+
+    @Test
+    void encodesTextAsStringGetBytesDoes() {
+        Random random = new Random(8);
+        for (int i = 0; i < 2000; i++) {
+            char[] chars = new char[random.nextInt(40)];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = random.nextInt(4) == 0 ? (char) random.nextInt(0x10000) : (char) (' ' + random.nextInt(95));
+            }
+            String narration = new String(chars);
+            TransactionColumns columns = new TransactionColumns();
+            int row = columns.addRow();
+            columns.setNarration(row, narration);
+
+            encoder.encodeField(BankStatementHashType.ACCOUNT_XNS, columns, row, 3);
+
+            byte[] utf8 = narration.getBytes(StandardCharsets.UTF_8);
+            byte[] encoded = Arrays.copyOfRange(encoder.bytes(), 3, encoder.size());
+            assertEquals(EXACT, encoded[0]);
+            assertEquals(utf8.length, ((encoded[1] & 0xFF) << 24) | ((encoded[2] & 0xFF) << 16) | ((encoded[3] & 0xFF) << 8) | (encoded[4] & 0xFF));
+            assertArrayEquals(utf8, Arrays.copyOfRange(encoded, 5, encoded.length), narration);
+        }
+    }
+
+    private void assertEncoded(Bytes expected) {
+        assertArrayEquals(expected.toByteArray(), Arrays.copyOf(encoder.bytes(), encoder.size()));
+    }
+
+    // Big-endian builder of the expected layout
+    private static class Bytes {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        Bytes b(int value) throws IOException {
+            out.writeByte(value);
+            return this;
+        }
+
+        Bytes i(int value) throws IOException {
+            out.writeInt(value);
+            return this;
+        }
+
+        Bytes l(long value) throws IOException {
+            out.writeLong(value);
+            return this;
+        }
+
+        Bytes text(String value) throws IOException {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(utf8.length);
+            out.write(utf8);
+            return this;
+        }
+
+        byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+    }
+}
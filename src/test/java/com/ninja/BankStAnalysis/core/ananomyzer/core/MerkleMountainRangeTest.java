@@ -0,0 +1,140 @@
+package com.ninja.BankStAnalysis.core.ananomyzer.core;
+
+import com.ninja.BankStAnalysis.core.model.StatementTokens;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MerkleMountainRangeTest {
+
+    private static final int DIGEST_LENGTH = TokenEngine.DIGEST_LENGTH;
+
+    @Test
+    void peaksAreThePerfectSubtreesOfTheLeafCount() throws Exception {
+        byte[] leaves = leaves(300, 1);
+        for (int count = 0; count <= 300; count++) {
+            MerkleMountainRange mmr = new MerkleMountainRange();
+            mmr.append(leaves, 0, count);
+
+            assertEquals(count, mmr.getLeafCount());
+            assertEquals(Long.bitCount(count), mmr.getPeakCount());
+            assertArrayEquals(referencePeaks(leaves, count), mmr.getPeaks(), "leaf count " + count);
+        }
+    }
+
+    @Test
+    void stateDoesNotDependOnHowLeavesWereAppended() {
+        Random random = new Random(12);
+        byte[] leaves = leaves(500, 2);
+        MerkleMountainRange whole = new MerkleMountainRange();
+        whole.append(leaves, 0, 500);
+
+        for (int attempt = 0; attempt < 50; attempt++) {
+            MerkleMountainRange pieces = new MerkleMountainRange();
+            int appended = 0;
+            while (appended < 500) {
+                int count = Math.min(500 - appended, random.nextInt(40));
+                pieces.append(leaves, appended * DIGEST_LENGTH, count);
+                appended += count;
+            }
+            assertTrue(pieces.matches(whole.getLeafCount(), whole.getPeaks()));
+        }
+    }
+
+    /**
+     * The save path: candidates are checked in leaf count order on one accumulator, the largest match is extended,
+     * and the rows after it are appended to the same accumulator. The merged state must be the state of the whole
+     * upload, so the next extension finds it again.
+     */
+    @Test
+    void extendingAStoredPrefixGivesTheStateOfTheWholeUpload() {
+        byte[] rows = leaves(200, 3);
+        StatementTokens.AccountTokens upload = account(rows);
+        long[] storedCounts = {5, 64, 100, 150};
+        byte[][] storedPeaks = new byte[storedCounts.length][];
+        for (int i = 0; i < storedCounts.length; i++) {
+            MerkleMountainRange stored = new MerkleMountainRange();
+            account(Arrays.copyOf(rows, (int) storedCounts[i] * DIGEST_LENGTH)).appendTransactions(stored, 0, (int) storedCounts[i]);
+            storedPeaks[i] = stored.getPeaks();
+        }
+        storedPeaks[3][0] ^= 1; // The 150-row statement differs, so 100 rows is the largest prefix
+
+        MerkleMountainRange accumulator = new MerkleMountainRange();
+        long extended = 0;
+        for (int i = 0; i < storedCounts.length; i++) {
+            upload.appendTransactions(accumulator, (int) accumulator.getLeafCount(), (int) storedCounts[i]);
+            if (accumulator.matches(storedCounts[i], storedPeaks[i])) {
+                extended = storedCounts[i];
+            }
+        }
+        upload.appendTransactions(accumulator, (int) accumulator.getLeafCount(), upload.getTransactionCount());
+
+        assertEquals(100, extended);
+        MerkleMountainRange whole = new MerkleMountainRange();
+        upload.appendTransactions(whole, 0, upload.getTransactionCount());
+        assertEquals(200, accumulator.getLeafCount());
+        assertArrayEquals(whole.getPeaks(), accumulator.getPeaks());
+    }
+
+    @Test
+    void aChangedOrReorderedRowIsNotAPrefix() {
+        byte[] rows = leaves(40, 4);
+        MerkleMountainRange stored = new MerkleMountainRange();
+        stored.append(rows, 0, 32);
+
+        byte[] changed = rows.clone();
+        changed[17 * DIGEST_LENGTH] ^= 1;
+        MerkleMountainRange upload = new MerkleMountainRange();
+        upload.append(changed, 0, 32);
+        assertFalse(upload.matches(stored.getLeafCount(), stored.getPeaks()));
+
+        byte[] swapped = rows.clone();
+        System.arraycopy(rows, 0, swapped, DIGEST_LENGTH, DIGEST_LENGTH);
+        System.arraycopy(rows, DIGEST_LENGTH, swapped, 0, DIGEST_LENGTH);
+        upload = new MerkleMountainRange();
+        upload.append(swapped, 0, 32);
+        assertFalse(upload.matches(stored.getLeafCount(), stored.getPeaks()));
+
+        upload = new MerkleMountainRange();
+        upload.append(rows, 0, 31);
+        assertFalse(upload.matches(stored.getLeafCount(), stored.getPeaks()));
+        assertFalse(upload.matches(31, null));
+    }
+
+    private static StatementTokens.AccountTokens account(byte[] transactionDigests) {
+        return new StatementTokens.AccountTokens("XX01", new byte[DIGEST_LENGTH], transactionDigests, new byte[0]);
+    }
+
+    private static byte[] leaves(int count, int seed) {
+        byte[] leaves = new byte[count * DIGEST_LENGTH];
+        new Random(seed).nextBytes(leaves);
+        return leaves;
+    }
+
+    // One root per set bit of count, highest first, each over the next 2^bit leaves
+    private static byte[] referencePeaks(byte[] leaves, int count) throws Exception {
+        ByteArrayOutputStream peaks = new ByteArrayOutputStream();
+        int from = 0;
+        for (int bit = 31; bit >= 0; bit--) {
+            if ((count & (1 << bit)) == 0) continue;
+            peaks.write(root(leaves, from, 1 << bit));
+            from += 1 << bit;
+        }
+        return peaks.toByteArray();
+    }
+
+    private static byte[] root(byte[] leaves, int from, int count) throws Exception {
+        if (count == 1) {
+            return Arrays.copyOfRange(leaves, from * DIGEST_LENGTH, (from + 1) * DIGEST_LENGTH);
+        }
+        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+        sha256.update(root(leaves, from, count / 2));
+        sha256.update(root(leaves, from + count / 2, count / 2));
+        return sha256.digest();
+    }
+}
@@ -0,0 +1,64 @@
+package com.ninja.BankStAnalysis.core.ananomyzer.core;
+
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.params.MainNetParams;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A proof built from the stored path, reading siblings at interiorOffset, must be the proof of the full tree.
+ */
+class PartialMerkleTreeTest {
+
+    private static final NetworkParameters PARAMS = MainNetParams.get();
+    private static final int DIGEST_LENGTH = TokenEngine.DIGEST_LENGTH;
+
+    @Test
+    void pathProofMatchesFullTreeProof() throws Exception {
+        Random random = new Random(13);
+        for (int leafCount : new int[]{1, 2, 3, 7, 8, 9, 33, 100}) {
+            byte[] leaves = new byte[leafCount * DIGEST_LENGTH];
+            random.nextBytes(leaves);
+            MerkleTreeLevels tree = MerkleTreeLevels.build(leaves, 0, leafCount);
+            byte[] interior = tree.getInteriorNodes();
+            List<Sha256Hash> leafHashes = new ArrayList<>();
+            for (int leaf = 0; leaf < leafCount; leaf++) {
+                leafHashes.add(Sha256Hash.wrap(digest(leaves, leaf)));
+            }
+
+            for (int leaf = 0; leaf < leafCount; leaf++) {
+                byte[][] siblings = new byte[MerkleTreeLevels.height(leafCount)][];
+                for (int height = 0; height < siblings.length; height++) {
+                    int pos = (leaf >> height) ^ 1;
+                    if (pos >= MerkleTreeLevels.width(leafCount, height)) continue;
+                    siblings[height] = height == 0 ? digest(leaves, pos)
+                            : slice(interior, MerkleTreeLevels.interiorOffset(leafCount, height, pos));
+                }
+                byte[] includeBits = new byte[(leafCount + 7) / 8];
+                includeBits[leaf / 8] |= (byte) (1 << (leaf % 8));
+
+                PartialMerkleTree fromPath = PartialMerkleTree.buildFromPath(PARAMS, leafCount, leaf, digest(leaves, leaf), siblings);
+                assertEquals(PartialMerkleTree.buildFromLeaves(PARAMS, includeBits, leafHashes), fromPath, leafCount + " leaves, leaf " + leaf);
+
+                List<Sha256Hash> matched = new ArrayList<>();
+                assertEquals(Sha256Hash.wrap(tree.getRoot()), fromPath.getTxnHashAndMerkleRoot(matched));
+                assertEquals(List.of(leafHashes.get(leaf)), matched);
+            }
+        }
+    }
+
+    private static byte[] digest(byte[] leaves, int leaf) {
+        return Arrays.copyOfRange(leaves, leaf * DIGEST_LENGTH, (leaf + 1) * DIGEST_LENGTH);
+    }
+
+    private static byte[] slice(byte[] nodes, long offset) {
+        return Arrays.copyOfRange(nodes, (int) offset, (int) offset + DIGEST_LENGTH);
+    }
+}
@@ -0,0 +1,133 @@
+package com.ninja.BankStAnalysis.infra.adapter.extractor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ninja.BankStAnalysis.core.ananomyzer.core.CanonicalTokenEncoder;
+import com.ninja.BankStAnalysis.core.model.CustomerDetails;
+import com.ninja.BankStAnalysis.core.model.IngestionContext;
+import com.ninja.BankStAnalysis.core.model.NormalizedStatement;
+import com.ninja.BankStAnalysis.core.model.StatementAccount;
+import com.ninja.BankStAnalysis.core.model.TransactionColumns;
+import com.ninja.BankStAnalysis.core.modelHelper.BankStatementHashType;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The streaming extractor has to produce exactly the statement of the tree based extractors, down to the
+ * canonical bytes every token is hashed from.
+ */
+class PerfiosStreamingExtractorTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void plainLayoutMatchesTreeExtractor() throws Exception {
+        byte[] content = new ClassPathResource("perfios.json").getContentAsByteArray();
+
+        assertSameStatement(new PerfiosExtractor().processStatement(ingestion(content)),
+                new PerfiosStreamingExtractor().processStatement(ingestion(content)));
+    }
+
+    @Test
+    void reportLayoutMatchesNinjacartExtractor() throws Exception {
+        byte[] content = new ClassPathResource("perfiosNinjacart.json").getContentAsByteArray();
+
+        assertSameStatement(new PerfiosNinjacartExtractor().processStatement(ingestion(content)),
+                new PerfiosStreamingExtractor().processStatement(ingestion(content)));
+    }
+
+    // Values without an exact epoch day or paise amount are kept as reported by both
+    @Test
+    void inexactValuesMatchTreeExtractor() throws Exception {
+        byte[] content = """
+                {
+                  "customerInfo": {"name": "A", "mobile": 9876543210, "bank": "Bank"},
+                  "accountXns": [{
+                    "accountNo": "XX01", "accountType": "SAVINGS",
+                    "xns": [
+                      {"date": "2024-02-30", "amount": 10.005, "balance": -0.0, "narration": "UPI/\\u00e9\\ud83d\\ude00"},
+                      {"date": "2024-03-01", "amount": 1e3, "balance": 12345678901.25, "narration": null},
+                      {"date": "01/03/2024", "amount": -7, "balance": 0.1}
+                    ]
+                  }],
+                  "accountAnalysis": [{"eODBalances": [{"date": "2024-03-01", "balance": 99.999}]}]
+                }
+                """.getBytes(StandardCharsets.UTF_8);
+
+        NormalizedStatement tree = new PerfiosExtractor().processStatement(ingestion(content));
+        NormalizedStatement streamed = new PerfiosStreamingExtractor().processStatement(ingestion(content));
+
+        assertSameStatement(tree, streamed);
+        assertNull(streamed.getCustomerDetails(0).orElseThrow().getMobileNo());
+        assertEquals(TransactionColumns.NO_EPOCH_DAY, streamed.getAccountXns().get(0).getTransactions().getEpochDay(0));
+        assertEquals(TransactionColumns.NO_MINOR_UNITS, streamed.getAccountXns().get(0).getTransactions().getAmountMinorUnits(0));
+    }
+
+    private IngestionContext ingestion(byte[] content) {
+        try {
+            return IngestionContext.of(new MockMultipartFile("file", "statement.json", "application/json", content), objectMapper);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void assertSameStatement(NormalizedStatement expected, NormalizedStatement actual) {
+        assertEquals(expected.getCustomerDetails().size(), actual.getCustomerDetails().size());
+        for (int i = 0; i < expected.getCustomerDetails().size(); i++) {
+            CustomerDetails expectedCustomer = expected.getCustomerDetails().get(i);
+            CustomerDetails actualCustomer = actual.getCustomerDetails().get(i);
+            assertEquals(expectedCustomer.getName(), actualCustomer.getName());
+            assertEquals(expectedCustomer.getMobileNo(), actualCustomer.getMobileNo());
+            assertEquals(expectedCustomer.getPan(), actualCustomer.getPan());
+            assertEquals(expectedCustomer.getAadharMasked(), actualCustomer.getAadharMasked());
+            assertEquals(expectedCustomer.getBankName(), actualCustomer.getBankName());
+        }
+
+        for (BankStatementHashType section : BankStatementHashType.values()) {
+            assertEquals(expected.hasSection(section), actual.hasSection(section), section.name());
+            if (!expected.hasSection(section)) continue;
+            assertSameSection(section, expected.getSection(section), actual.getSection(section));
+        }
+
+        // accountXns and bankTransactions share their columns in both
+        for (int i = 0; i < actual.getAccountXns().size(); i++) {
+            assertSame(actual.getAccountXns().get(i).getTransactions(), actual.getBankTransactions().get(i).getTransactions());
+        }
+    }
+
+    private static void assertSameSection(BankStatementHashType section, List<StatementAccount> expected, List<StatementAccount> actual) {
+        CanonicalTokenEncoder expectedEncoder = new CanonicalTokenEncoder();
+        CanonicalTokenEncoder actualEncoder = new CanonicalTokenEncoder();
+
+        assertEquals(expected.size(), actual.size(), section.name());
+        for (int i = 0; i < expected.size(); i++) {
+            StatementAccount expectedAccount = expected.get(i);
+            StatementAccount actualAccount = actual.get(i);
+            TransactionColumns expectedRows = expectedAccount.getTransactions();
+            TransactionColumns actualRows = actualAccount.getTransactions();
+
+            expectedEncoder.encodeAccount(section, expectedAccount.getAccountNo(), expectedAccount.getAccountType(), expectedRows.size());
+            actualEncoder.encodeAccount(section, actualAccount.getAccountNo(), actualAccount.getAccountType(), actualRows.size());
+            assertEncoded(expectedEncoder, actualEncoder, section + " account " + i);
+
+            for (int row = 0; row < expectedRows.size(); row++) {
+                expectedEncoder.encodeRow(section, expectedRows, row);
+                actualEncoder.encodeRow(section, actualRows, row);
+                assertEncoded(expectedEncoder, actualEncoder, section + " account " + i + " row " + row);
+                assertEquals(expectedRows.getDate(row), actualRows.getDate(row));
+                assertEquals(expectedRows.getNarration(row), actualRows.getNarration(row));
+            }
+        }
+    }
+
+    private static void assertEncoded(CanonicalTokenEncoder expected, CanonicalTokenEncoder actual, String what) {
+        assertArrayEquals(Arrays.copyOf(expected.bytes(), expected.size()), Arrays.copyOf(actual.bytes(), actual.size()), what);
+    }
+}
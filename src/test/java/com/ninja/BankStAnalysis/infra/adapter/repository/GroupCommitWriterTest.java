@@ -0,0 +1,98 @@
+package com.ninja.BankStAnalysis.infra.adapter.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Every submitted row's future completes, with the outcome of that row alone.
+ */
+class GroupCommitWriterTest {
+
+    @Test
+    void failedBatchIsWrittenAgainOneRowAtATime() throws Exception {
+        List<List<String>> writes = Collections.synchronizedList(new ArrayList<>());
+        // A batch closes when it is full, so the three rows are always written together first
+        try (GroupCommitWriter<String> writer = new GroupCommitWriter<>("test-group-commit", 3, TimeUnit.MINUTES.toMillis(1), rows -> {
+            writes.add(rows);
+            if (rows.contains("bad")) throw new IllegalArgumentException("bad row");
+        })) {
+            CompletableFuture<Void> first = writer.submit("a");
+            CompletableFuture<Void> bad = writer.submit("bad");
+            CompletableFuture<Void> last = writer.submit("c");
+
+            first.get(10, TimeUnit.SECONDS);
+            last.get(10, TimeUnit.SECONDS);
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> bad.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalArgumentException.class, failure.getCause());
+        }
+
+        assertEquals(List.of(List.of("a", "bad", "c"), List.of("a"), List.of("bad"), List.of("c")), writes);
+    }
+
+    @Test
+    void closeFailsEveryRowLeftInTheQueue() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        GroupCommitWriter<String> writer = new GroupCommitWriter<>("test-group-commit", 1, 0, rows -> {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        CompletableFuture<Void> inFlight = writer.submit("a");
+        assertTrue(writing.await(10, TimeUnit.SECONDS));
+        List<CompletableFuture<Void>> queued = List.of(writer.submit("b"), writer.submit("c"));
+
+        writer.close(100, TimeUnit.MILLISECONDS);
+
+        for (CompletableFuture<Void> row : queued) {
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> row.get(0, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, failure.getCause());
+        }
+        CompletableFuture<Void> afterClose = writer.submit("d");
+        assertInstanceOf(IllegalStateException.class, assertThrows(ExecutionException.class, afterClose::get).getCause());
+
+        release.countDown();
+        inFlight.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void cancelledRowsAreNotWritten() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        try (GroupCommitWriter<String> writer = new GroupCommitWriter<>("test-group-commit", 1, 0, rows -> {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            written.addAll(rows);
+        })) {
+            CompletableFuture<Void> inFlight = writer.submit("a");
+            assertTrue(writing.await(10, TimeUnit.SECONDS));
+            CompletableFuture<Void> cancelled = writer.submit("b");
+            CompletableFuture<Void> kept = writer.submit("c");
+            cancelled.cancel(false);
+
+            release.countDown();
+            inFlight.get(10, TimeUnit.SECONDS);
+            kept.get(10, TimeUnit.SECONDS);
+        }
+
+        assertEquals(List.of("a", "c"), written);
+    }
+}
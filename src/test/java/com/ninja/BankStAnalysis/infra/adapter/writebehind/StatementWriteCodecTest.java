@@ -0,0 +1,103 @@
+package com.ninja.BankStAnalysis.infra.adapter.writebehind;
+
+import com.ninja.BankStAnalysis.core.ananomyzer.core.TokenEngine;
+import com.ninja.BankStAnalysis.core.model.StatementTokens;
+import com.ninja.BankStAnalysis.core.model.StatementWrite;
+import com.ninja.BankStAnalysis.core.modelHelper.BankStatementHashType;
+import com.ninja.BankStAnalysis.core.modelHelper.Provider;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A replayed record has to write exactly what the upload would have written directly.
+ */
+class StatementWriteCodecTest {
+
+    private final Random random = new Random(23);
+
+    @Test
+    void decodesWhatWasEncoded() throws IOException {
+        StatementTokens tokens = new StatementTokens();
+        tokens.putSection(BankStatementHashType.ACCOUNT_XNS, List.of(account("XX01", 3, 4), account(null, 0, 0)));
+        tokens.putSection(BankStatementHashType.EOD_BALANCE, List.of()); // Reported, but without accounts
+        StatementWrite write = new StatementWrite(7, "realm-000000000001", Provider.FINBOX, List.of("9876543210", ""), tokens,
+                digest(), digest());
+
+        StatementWrite decoded = StatementWriteCodec.decode(StatementWriteCodec.encode(write));
+
+        assertEquals(write.getUserId(), decoded.getUserId());
+        assertEquals(write.getRealmId(), decoded.getRealmId());
+        assertEquals(write.getProvider(), decoded.getProvider());
+        assertEquals(write.getPhoneNumbers(), decoded.getPhoneNumbers());
+        assertArrayEquals(write.getUploadHash(), decoded.getUploadHash());
+        assertArrayEquals(write.getStatementHash(), decoded.getStatementHash());
+        for (BankStatementHashType section : BankStatementHashType.values()) {
+            assertEquals(tokens.hasSection(section), decoded.getTokens().hasSection(section), section.name());
+            List<StatementTokens.AccountTokens> expected = tokens.getSection(section);
+            List<StatementTokens.AccountTokens> actual = decoded.getTokens().getSection(section);
+            assertEquals(expected.size(), actual.size(), section.name());
+            for (int i = 0; i < expected.size(); i++) {
+                assertSameAccount(expected.get(i), actual.get(i));
+            }
+        }
+    }
+
+    // Written directly after the queue filled up, or queued before content hashes were recorded
+    @Test
+    void decodesAWriteWithoutContentHashes() throws IOException {
+        StatementWrite write = new StatementWrite(7, "realm", Provider.PERFIOS, List.of(), new StatementTokens(), null, null);
+        byte[] record = StatementWriteCodec.encode(write);
+
+        assertFalse(StatementWriteCodec.decode(record).isRegistered());
+
+        // Version 1 has no flag for the hashes after the version, user id, realm id and provider
+        int flag = 1 + 4 + 2 + "realm".length() + 1;
+        byte[] version1 = new byte[record.length - 1];
+        System.arraycopy(record, 0, version1, 0, flag);
+        System.arraycopy(record, flag + 1, version1, flag, record.length - flag - 1);
+        version1[0] = 1;
+        StatementWrite decoded = StatementWriteCodec.decode(version1);
+        assertEquals(7, decoded.getUserId());
+        assertFalse(decoded.isRegistered());
+    }
+
+    @Test
+    void rejectsAnUnknownVersion() {
+        StatementWrite write = new StatementWrite(7, "realm", Provider.PERFIOS, List.of(), new StatementTokens(), null, null);
+        byte[] record = StatementWriteCodec.encode(write);
+        record[0] = 3;
+
+        assertThrows(IOException.class, () -> StatementWriteCodec.decode(record));
+    }
+
+    private byte[] digest() {
+        byte[] digest = new byte[TokenEngine.DIGEST_LENGTH];
+        random.nextBytes(digest);
+        return digest;
+    }
+
+    private StatementTokens.AccountTokens account(String accountNo, int rows, int fields) {
+        byte[] digest = new byte[TokenEngine.DIGEST_LENGTH];
+        byte[] transactionDigests = new byte[rows * TokenEngine.DIGEST_LENGTH];
+        byte[] fieldHashes = new byte[rows * fields * StatementTokens.AccountTokens.FIELD_HASH_LENGTH];
+        random.nextBytes(digest);
+        random.nextBytes(transactionDigests);
+        random.nextBytes(fieldHashes);
+        return new StatementTokens.AccountTokens(accountNo, digest, transactionDigests, fieldHashes);
+    }
+
+    private static void assertSameAccount(StatementTokens.AccountTokens expected, StatementTokens.AccountTokens actual) {
+        assertEquals(expected.getAccountNo(), actual.getAccountNo());
+        assertArrayEquals(expected.getDigest(), actual.getDigest());
+        assertEquals(expected.getTransactionCount(), actual.getTransactionCount());
+        for (int row = 0; row < expected.getTransactionCount(); row++) {
+            assertArrayEquals(expected.getTransactionDigest(row), actual.getTransactionDigest(row));
+            assertArrayEquals(expected.getFieldHashes(row), actual.getFieldHashes(row));
+        }
+    }
+}
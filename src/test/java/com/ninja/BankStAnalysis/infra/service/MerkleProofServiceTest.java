@@ -0,0 +1,142 @@
+package com.ninja.BankStAnalysis.infra.service;
+
+import com.ninja.BankStAnalysis.core.ananomyzer.core.MerkleTreeLevels;
+import com.ninja.BankStAnalysis.core.ananomyzer.core.TokenEngine;
+import com.ninja.BankStAnalysis.core.model.StatementMerkleTree;
+import com.ninja.BankStAnalysis.core.port.out.MerkleProofRepositoryPort;
+import com.ninja.BankStAnalysis.infra.exceptions.ErrorCode;
+import com.ninja.BankStAnalysis.infra.exceptions.ServiceRuntimeException;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Statements are stored the way BankStAnalysisRepository stores them: an upload extending an earlier statement is a
+ * new statement holding only the rows after it, and the earlier statement is left as it was.
+ */
+class MerkleProofServiceTest {
+
+    private static final int DIGEST_LENGTH = TokenEngine.DIGEST_LENGTH;
+
+    private final StoredStatements store = new StoredStatements();
+    private final MerkleProofService service = new MerkleProofService(store);
+
+    @Test
+    void proofOfTheOriginalStatementStillVerifiesAfterAnExtension() {
+        byte[] rows = new byte[17 * DIGEST_LENGTH];
+        new Random(21).nextBytes(rows);
+        long original = store.save(rows, 10, null);
+        Map<String, Object> issued = service.generateProof(1, "realm", original, token(rows, 3));
+
+        long extension = store.save(rows, 17, original);
+
+        Map<String, Object> verified = service.verifyProof(1, "realm", original, token(rows, 3), (String) issued.get("proof"));
+        assertEquals(true, verified.get("verified"), String.valueOf(verified.get("reason")));
+        assertEquals(issued.get("merkleRoot"), verified.get("merkleRoot"));
+
+        // The extension proves rows stored under the original as well as its own
+        for (int row : new int[]{3, 9, 10, 16}) {
+            Map<String, Object> proof = service.generateProof(1, "realm", extension, token(rows, row));
+            assertEquals(17, proof.get("transactionCount"));
+            assertEquals(true, service.verifyProof(1, "realm", extension, token(rows, row), (String) proof.get("proof")).get("verified"), "row " + row);
+        }
+        assertNotEquals(issued.get("merkleRoot"), service.generateProof(1, "realm", extension, token(rows, 3)).get("merkleRoot"));
+        assertThrows(IllegalArgumentException.class, () -> service.generateProof(1, "realm", original, token(rows, 12)));
+    }
+
+    @Test
+    void expiredStatementsBuildNoProofButEarlierProofsStillVerify() {
+        byte[] rows = new byte[12 * DIGEST_LENGTH];
+        new Random(22).nextBytes(rows);
+        long original = store.save(rows, 8, null);
+        long extension = store.save(rows, 12, original);
+        Map<String, Object> issued = service.generateProof(1, "realm", extension, token(rows, 10));
+
+        store.expire(original);
+
+        for (long statementId : new long[]{original, extension}) {
+            ServiceRuntimeException expired = assertThrows(ServiceRuntimeException.class,
+                    () -> service.generateProof(1, "realm", statementId, token(rows, 2)));
+            assertEquals(ErrorCode.RS_ERROR_0004, expired.getErrorCode());
+        }
+        assertEquals(true, service.verifyProof(1, "realm", extension, token(rows, 10), (String) issued.get("proof")).get("verified"));
+    }
+
+    private static String token(byte[] rows, int row) {
+        return Base64.getEncoder().encodeToString(Arrays.copyOfRange(rows, row * DIGEST_LENGTH, (row + 1) * DIGEST_LENGTH));
+    }
+
+    // user_bank_statement, user_bank_statement_merkle and user_bank_transaction, read as MerkleProofRepository does
+    private static class StoredStatements implements MerkleProofRepositoryPort {
+
+        private final Map<Long, Statement> statements = new HashMap<>();
+        private final List<Row> transactions = new ArrayList<>();
+        private final Set<Long> expired = new HashSet<>();
+
+        long save(byte[] rows, int count, Long baseStatementId) {
+            long id = statements.size() + 1;
+            int firstRow = baseStatementId == null ? 0 : statements.get(baseStatementId).leafCount();
+            MerkleTreeLevels tree = MerkleTreeLevels.build(rows, 0, count);
+            statements.put(id, new Statement(count, tree.getRoot(), tree.getInteriorNodes(), baseStatementId));
+            for (int row = firstRow; row < count; row++) {
+                transactions.add(new Row(id, row, Arrays.copyOfRange(rows, row * DIGEST_LENGTH, (row + 1) * DIGEST_LENGTH)));
+            }
+            return id;
+        }
+
+        // Retention dropped the statement's rows
+        void expire(long statementId) {
+            expired.add(statementId);
+            transactions.removeIf(row -> row.statementId() == statementId);
+        }
+
+        @Override
+        public Optional<StatementMerkleTree> findStatementTree(Integer userId, String realmId, Long statementId) {
+            Statement statement = statements.get(statementId);
+            if (statement == null) return Optional.empty();
+            List<Long> chain = new ArrayList<>();
+            for (Long id = statementId; id != null; id = statements.get(id).baseStatementId()) {
+                chain.add(id);
+            }
+            return Optional.of(new StatementMerkleTree(statementId, 0, statement.leafCount(), statement.root(), chain.toArray(new Long[0]),
+                    chain.stream().anyMatch(expired::contains)));
+        }
+
+        @Override
+        public OptionalInt findLeafIndex(StatementMerkleTree tree, byte[] digest) {
+            return rows(tree).filter(row -> Arrays.equals(row.hash(), digest)).mapToInt(Row::leafIndex).min();
+        }
+
+        @Override
+        public byte[][] findPathSiblings(StatementMerkleTree tree, int leaf) {
+            int leafCount = tree.getLeafCount();
+            byte[] interior = statements.get(tree.getStatementId()).interiorNodes();
+            byte[][] siblings = new byte[MerkleTreeLevels.height(leafCount)][];
+            for (int height = 0; height < siblings.length; height++) {
+                int pos = (leaf >> height) ^ 1;
+                if (pos >= MerkleTreeLevels.width(leafCount, height)) continue;
+                if (height == 0) {
+                    siblings[0] = rows(tree).filter(row -> row.leafIndex() == pos).findFirst().orElseThrow().hash();
+                } else {
+                    int offset = (int) MerkleTreeLevels.interiorOffset(leafCount, height, pos);
+                    siblings[height] = Arrays.copyOfRange(interior, offset, offset + DIGEST_LENGTH);
+                }
+            }
+            return siblings;
+        }
+
+        private Stream<Row> rows(StatementMerkleTree tree) {
+            List<Long> chain = List.of(tree.getRowStatementIds());
+            return transactions.stream().filter(row -> chain.contains(row.statementId()));
+        }
+
+        private record Statement(int leafCount, byte[] root, byte[] interiorNodes, Long baseStatementId) {
+        }
+
+        private record Row(long statementId, int leafIndex, byte[] hash) {
+        }
+    }
+}